@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks and reports the allocation rate besides the score. Accepts the
+ * usual JMH command line options, e.g. a regular expression for selecting benchmarks.
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain ()
+    {
+    }
+
+    public static void main (String[] args_) throws Exception
+    {
+        Options options = new OptionsBuilder() //
+                .parent(new CommandLineOptions(args_)) //
+                .addProfiler(GCProfiler.class) //
+                .build();
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego.bench;
+
+import java.util.Date;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import de.zazaz.iot.bosch.indego.DeviceCalendar;
+import de.zazaz.iot.bosch.indego.DeviceCalendar.DeviceCalendarDayEntry;
+import de.zazaz.iot.bosch.indego.DeviceCalendar.DeviceCalendarDaySlot;
+import de.zazaz.iot.bosch.indego.DeviceCalendar.DeviceCalendarEntry;
+import de.zazaz.iot.bosch.indego.DeviceStateInformation;
+import de.zazaz.iot.bosch.indego.DeviceStateInformation.GetStateResponseRuntime;
+import de.zazaz.iot.bosch.indego.DeviceStateInformation.GetStateResponseRuntimes;
+import de.zazaz.iot.bosch.indego.LocationWeather;
+import de.zazaz.iot.bosch.indego.LocationWeather.Forecast;
+import de.zazaz.iot.bosch.indego.LocationWeather.Interval;
+import de.zazaz.iot.bosch.indego.LocationWeather.Location;
+import de.zazaz.iot.bosch.indego.LocationWeather.Weather;
+
+/**
+ * Creates realistic server responses, which are used as input for the benchmarks.
+ */
+public final class BenchmarkPayloads {
+
+    /** the number of forecast intervals (3 hours each), which the server sends for a week */
+    public static final int WEATHER_INTERVALS = 7 * 8;
+
+    /** the number of calendars, which can be configured on the device */
+    public static final int CALENDARS = 5;
+
+    private BenchmarkPayloads ()
+    {
+    }
+
+    /**
+     * @return the state of a mowing device
+     */
+    public static DeviceStateInformation createState ()
+    {
+        GetStateResponseRuntime total = new GetStateResponseRuntime();
+        total.setOperate(98765);
+        total.setCharge(23456);
+        GetStateResponseRuntime session = new GetStateResponseRuntime();
+        session.setOperate(42);
+        session.setCharge(7);
+        GetStateResponseRuntimes runtime = new GetStateResponseRuntimes();
+        runtime.setTotal(total);
+        runtime.setSession(session);
+
+        DeviceStateInformation state = new DeviceStateInformation();
+        state.setState(518);
+        state.setMowed(67);
+        state.setMowedTimestamp(1467331200000L);
+        state.setMapSvgCacheTimestamp(1467331100000L);
+        state.setRuntime(runtime);
+        return state;
+    }
+
+    /**
+     * @return a weather forecast with <code>WEATHER_INTERVALS</code> intervals
+     */
+    public static LocationWeather createWeather ()
+    {
+        Location location = new Location();
+        location.setTown("Stuttgart");
+        location.setCountry("DE");
+        location.setTimeZone("Europe/Berlin");
+
+        long start = 1467331200000L;
+        Interval[] intervals = new Interval[WEATHER_INTERVALS];
+        for (int i = 0; i < intervals.length; i++) {
+            Interval interval = new Interval();
+            interval.setDate(new Date(start + i * 3 * 60 * 60 * 1000L));
+            interval.setIntervalLength(3);
+            interval.setRain((i * 7) % 100);
+            interval.setTemperature(12.5f + (i % 8));
+            intervals[i] = interval;
+        }
+        Forecast forecast = new Forecast();
+        forecast.setIntervals(intervals);
+
+        Weather weather = new Weather();
+        weather.setLocation(location);
+        weather.setForecast(forecast);
+        LocationWeather result = new LocationWeather();
+        result.setWeather(weather);
+        return result;
+    }
+
+    /**
+     * @return a mowing calendar with <code>CALENDARS</code> calendars, each containing two slots per day
+     */
+    public static DeviceCalendar createCalendar ()
+    {
+        DeviceCalendarEntry[] entries = new DeviceCalendarEntry[CALENDARS];
+        for (int c = 0; c < entries.length; c++) {
+            DeviceCalendarDayEntry[] days = new DeviceCalendarDayEntry[7];
+            for (int d = 0; d < days.length; d++) {
+                DeviceCalendarDaySlot first = new DeviceCalendarDaySlot();
+                first.setEnabled(d < 5);
+                first.setStartHour(9);
+                first.setStartMinute(50);
+                first.setEndHour(11);
+                first.setEndMinute(55);
+                DeviceCalendarDaySlot second = new DeviceCalendarDaySlot();
+                days[d] = new DeviceCalendarDayEntry();
+                days[d].setNumber(d);
+                days[d].setSlots(new DeviceCalendarDaySlot[] { first, second });
+            }
+            entries[c] = new DeviceCalendarEntry();
+            entries[c].setNumber(c + 1);
+            entries[c].setDays(days);
+        }
+        DeviceCalendar result = new DeviceCalendar();
+        result.setSelectedEntryNumber(1);
+        result.setEntries(entries);
+        return result;
+    }
+
+    /**
+     * Marshals an object to JSON, like the server does.
+     * 
+     * @param mapper_ the mapper to use
+     * @param value_ the object to marshal
+     * @return the UTF-8 encoded JSON
+     */
+    public static byte[] toJson (ObjectMapper mapper_, Object value_)
+    {
+        try {
+            return mapper_.writeValueAsBytes(value_);
+        }
+        catch (JsonProcessingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import de.zazaz.iot.bosch.indego.DeviceStateInformation;
+import de.zazaz.iot.bosch.indego.IndegoCodecs;
+import de.zazaz.iot.bosch.indego.LocationWeather;
+
+/**
+ * Measures the costs of the JSON mapping, which are caused by each controller instance
+ * (creating a mapper and introspecting the classes on the first request) and by each
+ * request (with and without the Afterburner module):
+ * 
+ * <pre>
+ * java -jar bosch-indego-controller-bench/target/benchmarks.jar CodecBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    /** the codecs using reflection for accessing the properties */
+    private IndegoCodecs reflectionCodecs;
+
+    /** the codecs using the Afterburner module */
+    private IndegoCodecs afterburnerCodecs;
+
+    /** the JSON of the device state */
+    private byte[] stateJson;
+
+    /** the JSON of the weather forecast */
+    private byte[] weatherJson;
+
+    @Setup
+    public void setUp ()
+    {
+        reflectionCodecs = new IndegoCodecs(false);
+        afterburnerCodecs = new IndegoCodecs(true);
+        if ( !afterburnerCodecs.isAfterburnerEnabled() ) {
+            throw new IllegalStateException("The Afterburner module is not on the classpath");
+        }
+        ObjectMapper mapper = new ObjectMapper();
+        stateJson = BenchmarkPayloads.toJson(mapper, BenchmarkPayloads.createState());
+        weatherJson = BenchmarkPayloads.toJson(mapper, BenchmarkPayloads.createWeather());
+    }
+
+    /**
+     * The first request of a controller, which uses an own mapper.
+     */
+    @Benchmark
+    public DeviceStateInformation firstStateWithOwnMapper () throws IOException
+    {
+        ObjectMapper mapper = new ObjectMapper();
+        return mapper.readValue(new ByteArrayInputStream(stateJson), DeviceStateInformation.class);
+    }
+
+    /**
+     * The first request of a controller, which uses the shared codecs.
+     */
+    @Benchmark
+    public DeviceStateInformation firstStateWithSharedCodecs () throws IOException
+    {
+        ObjectReader reader = IndegoCodecs.getDefault().getReader(DeviceStateInformation.class);
+        return reader.readValue(new ByteArrayInputStream(stateJson));
+    }
+
+    @Benchmark
+    public DeviceStateInformation stateWithReflection () throws IOException
+    {
+        return reflectionCodecs.getReader(DeviceStateInformation.class).readValue(
+                new ByteArrayInputStream(stateJson));
+    }
+
+    @Benchmark
+    public DeviceStateInformation stateWithAfterburner () throws IOException
+    {
+        return afterburnerCodecs.getReader(DeviceStateInformation.class).readValue(
+                new ByteArrayInputStream(stateJson));
+    }
+
+    @Benchmark
+    public LocationWeather weatherWithReflection () throws IOException
+    {
+        return reflectionCodecs.getReader(LocationWeather.class).readValue(new ByteArrayInputStream(weatherJson));
+    }
+
+    @Benchmark
+    public LocationWeather weatherWithAfterburner () throws IOException
+    {
+        return afterburnerCodecs.getReader(LocationWeather.class).readValue(new ByteArrayInputStream(weatherJson));
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.zazaz.iot.bosch.indego.DeviceStateInformation;
+import de.zazaz.iot.bosch.indego.IndegoController;
+import de.zazaz.iot.bosch.indego.IndegoException;
+import de.zazaz.iot.bosch.indego.IndegoResource;
+
+/**
+ * Measures a complete state query of the controller (HTTP round trip over a pooled
+ * keep-alive connection and unmarshalling) against an in-process server. The cache of
+ * the controller is disabled, so every call sends a request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ControllerBenchmark {
+
+    private EmbeddedIndegoServer server;
+
+    private IndegoController controller;
+
+    @Setup
+    public void setUp () throws Exception
+    {
+        server = new EmbeddedIndegoServer();
+        server.start();
+        controller = new IndegoController(server.getBaseUrl(), EmbeddedIndegoServer.USERNAME,
+                EmbeddedIndegoServer.PASSWORD);
+        controller.setCacheTimeToLive(IndegoResource.STATE, 0);
+        controller.connect();
+    }
+
+    @TearDown
+    public void tearDown () throws Exception
+    {
+        controller.disconnect();
+        server.stop();
+    }
+
+    @Benchmark
+    public DeviceStateInformation getState () throws IndegoException
+    {
+        return controller.getState();
+    }
+
+}
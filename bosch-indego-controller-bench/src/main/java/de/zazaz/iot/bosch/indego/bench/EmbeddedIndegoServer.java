@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego.bench;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import de.zazaz.iot.bosch.indego.AuthenticationResponse;
+
+/**
+ * A minimal in-process server, which answers the requests of the controller like the
+ * srvmock server does (authentication, device state and calendar), but without the overhead
+ * of the Spring container. It listens on a random local port and counts the received GET
+ * requests per path.
+ */
+public class EmbeddedIndegoServer {
+
+    /** the serial number of the simulated device */
+    public static final String DEVICE_SERIAL = "123456789";
+
+    /** the user name, which is accepted */
+    public static final String USERNAME = "bench@example.com";
+
+    /** the password, which is accepted */
+    public static final String PASSWORD = "secret";
+
+    /** the jetty server */
+    private final Server server;
+
+    /** the authentication response */
+    private final byte[] authenticationJson;
+
+    /** the state response */
+    private final byte[] stateJson;
+
+    /** the calendar response */
+    private final byte[] calendarJson;
+
+    /** the number of received GET requests per path */
+    private final ConcurrentMap<String, AtomicInteger> getRequestCounts = new ConcurrentHashMap<>();
+
+    /** the time (in ms), for which the device responses are delayed */
+    private volatile long responseDelayMs;
+
+    public EmbeddedIndegoServer ()
+    {
+        ObjectMapper mapper = new ObjectMapper();
+        AuthenticationResponse authentication = new AuthenticationResponse();
+        authentication.setContextId("bench-context");
+        authentication.setUserId("bench-user");
+        authentication.setAlmSn(DEVICE_SERIAL);
+        authenticationJson = BenchmarkPayloads.toJson(mapper, authentication);
+        stateJson = BenchmarkPayloads.toJson(mapper, BenchmarkPayloads.createState());
+        calendarJson = BenchmarkPayloads.toJson(mapper, BenchmarkPayloads.createCalendar());
+
+        server = new Server(0);
+        ServletContextHandler context = new ServletContextHandler();
+        context.setContextPath("/api/v1");
+        context.addServlet(new ServletHolder(new HttpServlet() {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void doPost (HttpServletRequest req_, HttpServletResponse resp_)
+                    throws ServletException, IOException
+            {
+                if ( "/authenticate".equals(req_.getPathInfo()) ) {
+                    writeJson(resp_, authenticationJson);
+                }
+                else {
+                    resp_.sendError(HttpServletResponse.SC_NOT_FOUND);
+                }
+            }
+
+            @Override
+            protected void doGet (HttpServletRequest req_, HttpServletResponse resp_)
+                    throws ServletException, IOException
+            {
+                countGetRequest(req_.getPathInfo());
+                if ( ("/alms/" + DEVICE_SERIAL + "/state").equals(req_.getPathInfo()) ) {
+                    delayResponse();
+                    writeJson(resp_, stateJson);
+                }
+                else if ( ("/alms/" + DEVICE_SERIAL + "/calendar").equals(req_.getPathInfo()) ) {
+                    delayResponse();
+                    writeJson(resp_, calendarJson);
+                }
+                else if ( "/authenticate/check".equals(req_.getPathInfo()) ) {
+                    writeJson(resp_, authenticationJson);
+                }
+                else {
+                    resp_.sendError(HttpServletResponse.SC_NOT_FOUND);
+                }
+            }
+
+        }), "/*");
+        server.setHandler(context);
+    }
+
+    /**
+     * Counts a received GET request.
+     * 
+     * @param path_ the path of the request
+     */
+    private void countGetRequest (String path_)
+    {
+        if ( path_ != null ) {
+            getRequestCounts.computeIfAbsent(path_, path -> new AtomicInteger()).incrementAndGet();
+        }
+    }
+
+    /**
+     * Delays a device response by the configured time.
+     */
+    private void delayResponse ()
+    {
+        long delayMs = responseDelayMs;
+        if ( delayMs > 0 ) {
+            try {
+                Thread.sleep(delayMs);
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Writes a JSON response.
+     * 
+     * @param resp_ the response
+     * @param json_ the JSON contents
+     * @throws IOException in case of a broken connection
+     */
+    private static void writeJson (HttpServletResponse resp_, byte[] json_) throws IOException
+    {
+        resp_.setStatus(HttpServletResponse.SC_OK);
+        resp_.setContentType("application/json;charset=UTF-8");
+        resp_.setContentLength(json_.length);
+        resp_.getOutputStream().write(json_);
+    }
+
+    /**
+     * Starts the server.
+     * 
+     * @throws Exception in case the server could not be started
+     */
+    public void start () throws Exception
+    {
+        server.start();
+    }
+
+    /**
+     * Stops the server.
+     * 
+     * @throws Exception in case the server could not be stopped
+     */
+    public void stop () throws Exception
+    {
+        server.stop();
+    }
+
+    /**
+     * Sets the time, for which the device responses (state and calendar) are delayed. This allows
+     * overlapping concurrent requests.
+     * 
+     * @param responseDelayMs_ the delay (in ms); 0 for answering immediately
+     */
+    public void setResponseDelayMs (long responseDelayMs_)
+    {
+        responseDelayMs = responseDelayMs_;
+    }
+
+    /**
+     * @param path_ the path of the requests, relative to the base url (e.g. "/alms/123456789/state")
+     * @return the number of GET requests, which were received for the path
+     */
+    public int getGetRequestCount (String path_)
+    {
+        AtomicInteger count = getRequestCounts.get(path_);
+        return count != null ? count.get() : 0;
+    }
+
+    /**
+     * @return the base url of the api, which can be passed to the controller
+     */
+    public String getBaseUrl ()
+    {
+        return "http://localhost:" + server.getConnectors()[0].getLocalPort() + "/api/v1/";
+    }
+
+}
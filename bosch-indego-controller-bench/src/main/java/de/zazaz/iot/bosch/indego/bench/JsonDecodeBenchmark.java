@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import de.zazaz.iot.bosch.indego.DeviceCalendar;
+import de.zazaz.iot.bosch.indego.LocationWeather;
+
+/**
+ * Compares unmarshalling a response after copying it to a string (as done by
+ * <code>EntityUtils.toString</code>) with reading it directly from the stream using a
+ * reused <code>ObjectReader</code>. Compare the allocation rate per operation:
+ * 
+ * <pre>
+ * java -jar bosch-indego-controller-bench/target/benchmarks.jar JsonDecodeBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonDecodeBenchmark {
+
+    /** the mapper, which is shared by all variants */
+    private ObjectMapper mapper;
+
+    /** the reused reader for the weather forecast */
+    private ObjectReader weatherReader;
+
+    /** the reused reader for the calendar */
+    private ObjectReader calendarReader;
+
+    /** the JSON of the weather forecast */
+    private byte[] weatherJson;
+
+    /** the JSON of the calendar */
+    private byte[] calendarJson;
+
+    @Setup
+    public void setUp ()
+    {
+        mapper = new ObjectMapper();
+        weatherReader = mapper.readerFor(LocationWeather.class);
+        calendarReader = mapper.readerFor(DeviceCalendar.class);
+        weatherJson = BenchmarkPayloads.toJson(mapper, BenchmarkPayloads.createWeather());
+        calendarJson = BenchmarkPayloads.toJson(mapper, BenchmarkPayloads.createCalendar());
+    }
+
+    @Benchmark
+    public LocationWeather weatherFromString () throws IOException
+    {
+        String contents = new String(weatherJson, StandardCharsets.UTF_8);
+        return mapper.readValue(contents, LocationWeather.class);
+    }
+
+    @Benchmark
+    public LocationWeather weatherFromStream () throws IOException
+    {
+        return weatherReader.readValue(new ByteArrayInputStream(weatherJson));
+    }
+
+    @Benchmark
+    public DeviceCalendar calendarFromString () throws IOException
+    {
+        String contents = new String(calendarJson, StandardCharsets.UTF_8);
+        return mapper.readValue(contents, DeviceCalendar.class);
+    }
+
+    @Benchmark
+    public DeviceCalendar calendarFromStream () throws IOException
+    {
+        return calendarReader.readValue(new ByteArrayInputStream(calendarJson));
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.zazaz.iot.bosch.indego.DeviceCalendar;
+import de.zazaz.iot.bosch.indego.DeviceStateInformation;
+import de.zazaz.iot.bosch.indego.IndegoCodecs;
+import de.zazaz.iot.bosch.indego.LocationWeather;
+
+/**
+ * Measures marshalling a protocol object to JSON and unmarshalling it again, using the
+ * shared codecs of the controllers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonRoundTripBenchmark {
+
+    /** the codecs, which are used by the controllers */
+    private IndegoCodecs codecs;
+
+    private DeviceStateInformation state;
+
+    private DeviceCalendar calendar;
+
+    private LocationWeather weather;
+
+    @Setup
+    public void setUp ()
+    {
+        codecs = IndegoCodecs.getDefault();
+        state = BenchmarkPayloads.createState();
+        calendar = BenchmarkPayloads.createCalendar();
+        weather = BenchmarkPayloads.createWeather();
+    }
+
+    /**
+     * Marshals an object and unmarshals the result.
+     * 
+     * @param value_ the object to marshal
+     * @param type_ the class of the object
+     * @return the unmarshalled copy
+     * @throws IOException in case of invalid JSON
+     */
+    private <T> T roundTrip (T value_, Class<T> type_) throws IOException
+    {
+        byte[] json = codecs.getWriter(type_).writeValueAsBytes(value_);
+        return codecs.getReader(type_).readValue(json);
+    }
+
+    @Benchmark
+    public DeviceStateInformation state () throws IOException
+    {
+        return roundTrip(state, DeviceStateInformation.class);
+    }
+
+    @Benchmark
+    public DeviceCalendar calendar () throws IOException
+    {
+        return roundTrip(calendar, DeviceCalendar.class);
+    }
+
+    @Benchmark
+    public LocationWeather weather () throws IOException
+    {
+        return roundTrip(weather, LocationWeather.class);
+    }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego.bench;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.zazaz.iot.bosch.indego.IndegoController;
+
+/**
+ * Checks, that concurrent queries of the same resource share one request to the server.
+ */
+public class ControllerConcurrencyTest {
+
+    /** the number of concurrent callers */
+    private static final int CALLERS = 16;
+
+    /** the delay of the server responses (in ms), which lets the concurrent queries overlap */
+    private static final long RESPONSE_DELAY_MS = 300;
+
+    /** the path of the state resource */
+    private static final String STATE_PATH = "/alms/" + EmbeddedIndegoServer.DEVICE_SERIAL + "/state";
+
+    /** the path of the calendar resource */
+    private static final String CALENDAR_PATH = "/alms/" + EmbeddedIndegoServer.DEVICE_SERIAL + "/calendar";
+
+    /** the server */
+    private EmbeddedIndegoServer server;
+
+    /** the controller */
+    private IndegoController controller;
+
+    /** runs the callers */
+    private ExecutorService executor;
+
+    @Before
+    public void setUp () throws Exception
+    {
+        server = new EmbeddedIndegoServer();
+        server.start();
+        controller = new IndegoController(server.getBaseUrl(), EmbeddedIndegoServer.USERNAME,
+                EmbeddedIndegoServer.PASSWORD);
+        controller.connect();
+        server.setResponseDelayMs(RESPONSE_DELAY_MS);
+        executor = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @After
+    public void tearDown () throws Exception
+    {
+        executor.shutdownNow();
+        controller.disconnect();
+        server.stop();
+    }
+
+    @Test
+    public void concurrentStateQueriesSendOneRequest () throws Exception
+    {
+        runConcurrently(() -> controller.getState(), () -> controller.getState());
+
+        assertEquals(1, server.getGetRequestCount(STATE_PATH));
+    }
+
+    @Test
+    public void concurrentCalendarQueriesSendOneRequest () throws Exception
+    {
+        runConcurrently(() -> controller.getCalendar(), () -> controller.getCalendar());
+
+        assertEquals(1, server.getGetRequestCount(CALENDAR_PATH));
+    }
+
+    @Test
+    public void mixedQueriesSendOneRequestPerResource () throws Exception
+    {
+        runConcurrently(() -> controller.getState(), () -> controller.getCalendar());
+
+        assertEquals(1, server.getGetRequestCount(STATE_PATH));
+        assertEquals(1, server.getGetRequestCount(CALENDAR_PATH));
+    }
+
+    /**
+     * Starts the queries with all callers at once and waits for their results. The callers
+     * alternate between the two queries.
+     * 
+     * @param evenQuery_ the query of the callers with an even index
+     * @param oddQuery_ the query of the callers with an odd index
+     * @throws Exception if a query failed
+     */
+    private void runConcurrently (Callable<Object> evenQuery_, Callable<Object> oddQuery_) throws Exception
+    {
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<Object>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            final Callable<Object> query = i % 2 == 0 ? evenQuery_ : oddQuery_;
+            results.add(executor.submit(() -> {
+                start.await();
+                return query.call();
+            }));
+        }
+        start.countDown();
+        for (Future<Object> result : results) {
+            assertNotNull(result.get(10, TimeUnit.SECONDS));
+        }
+    }
+
+}
@@ -31,6 +31,8 @@ import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 
 import de.zazaz.iot.bosch.indego.DeviceCommand;
+import de.zazaz.iot.bosch.indego.IndegoAdaptivePollingConfiguration;
+import de.zazaz.iot.bosch.indego.IndegoAdaptivePollingPolicy;
 import de.zazaz.iot.bosch.indego.ifttt.IftttIndegoAdapter;
 import de.zazaz.iot.bosch.indego.ifttt.IftttIndegoAdapterConfiguration;
 
@@ -122,10 +124,56 @@ public class IndegoIftttAdapter {
         config.setIftttErrorEventName(properties.getProperty("indego.ifttt.maker.eventname-error"));
         config.setIftttErrorClearedEventName(properties.getProperty("indego.ifttt.maker.eventname-error-cleared"));
         config.setIftttStateChangeEventName(properties.getProperty("indego.ifttt.maker.eventname-state-change"));
+        String queueCapacity = properties.getProperty("indego.ifttt.maker.queue-capacity");
+        if ( queueCapacity != null ) {
+            config.setIftttQueueCapacity(Integer.parseInt(queueCapacity));
+        }
+        String maxAttempts = properties.getProperty("indego.ifttt.maker.max-attempts");
+        if ( maxAttempts != null ) {
+            config.setIftttMaxAttempts(Integer.parseInt(maxAttempts));
+        }
+        String debounceWindow = properties.getProperty("indego.ifttt.maker.debounce-window-ms");
+        if ( debounceWindow != null ) {
+            config.setIftttDebounceWindowMs(Long.parseLong(debounceWindow));
+        }
+        config.setIftttSummaryEventName(properties.getProperty("indego.ifttt.maker.eventname-summary"));
+        String maxTriggersPerMinute = properties.getProperty("indego.ifttt.maker.max-triggers-per-minute");
+        if ( maxTriggersPerMinute != null ) {
+            config.setIftttMaxTriggersPerMinute(Double.parseDouble(maxTriggersPerMinute));
+        }
+        String receiverMaxThreads = properties.getProperty("indego.ifttt.maker.receiver-max-threads");
+        if ( receiverMaxThreads != null ) {
+            config.getReceiverConfiguration().setMaxThreads(Integer.parseInt(receiverMaxThreads));
+        }
+        String receiverIdleTimeout = properties.getProperty("indego.ifttt.maker.receiver-idle-timeout-ms");
+        if ( receiverIdleTimeout != null ) {
+            config.getReceiverConfiguration().setMaxIdleTimeMs(Integer.parseInt(receiverIdleTimeout));
+        }
+        String commandQueueCapacity = properties.getProperty("indego.ifttt.command-queue-capacity");
+        if ( commandQueueCapacity != null ) {
+            config.setCommandQueueCapacity(Integer.parseInt(commandQueueCapacity));
+        }
         config.setIndegoBaseUrl(properties.getProperty("indego.ifttt.device.base-url"));
         config.setIndegoUsername(properties.getProperty("indego.ifttt.device.username"));
         config.setIndegoPassword(properties.getProperty("indego.ifttt.device.password"));
         config.setPollingIntervalMs(Integer.parseInt(properties.getProperty("indego.ifttt.polling-interval-ms")));
+        if ( Boolean.parseBoolean(properties.getProperty("indego.ifttt.polling-adaptive")) ) {
+            IndegoAdaptivePollingConfiguration pollingConfig = new IndegoAdaptivePollingConfiguration();
+            pollingConfig.setActiveIntervalMs(config.getPollingIntervalMs());
+            String idleInterval = properties.getProperty("indego.ifttt.polling-idle-interval-ms");
+            if ( idleInterval != null ) {
+                pollingConfig.setIdleIntervalMs(Long.parseLong(idleInterval));
+            }
+            config.setPollingPolicy(new IndegoAdaptivePollingPolicy(pollingConfig));
+        }
+        String initialBackoff = properties.getProperty("indego.ifttt.reconnect-initial-backoff-ms");
+        if ( initialBackoff != null ) {
+            config.getCircuitBreakerConfiguration().setInitialBackoffMs(Long.parseLong(initialBackoff));
+        }
+        String maxBackoff = properties.getProperty("indego.ifttt.reconnect-max-backoff-ms");
+        if ( maxBackoff != null ) {
+            config.getCircuitBreakerConfiguration().setMaxBackoffMs(Long.parseLong(maxBackoff));
+        }
 
         IftttIndegoAdapter adapter = new IftttIndegoAdapter(config);
         adapter.startup();
@@ -31,6 +31,8 @@ import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 
 import de.zazaz.iot.bosch.indego.DeviceCommand;
+import de.zazaz.iot.bosch.indego.IndegoAdaptivePollingConfiguration;
+import de.zazaz.iot.bosch.indego.IndegoAdaptivePollingPolicy;
 import de.zazaz.iot.bosch.indego.mqtt.MqttIndegoAdapter;
 import de.zazaz.iot.bosch.indego.mqtt.MqttIndegoAdapterConfiguration;
 
@@ -122,6 +124,40 @@ public class IndegoMqttAdapter {
         config.setMqttPassword(properties.getProperty("indego.mqtt.broker.password"));
         config.setMqttTopicRoot(properties.getProperty("indego.mqtt.broker.topic-root"));
         config.setPollingIntervalMs(Integer.parseInt(properties.getProperty("indego.mqtt.polling-interval-ms")));
+        String maxInflight = properties.getProperty("indego.mqtt.broker.max-inflight");
+        if ( maxInflight != null ) {
+            config.setMqttMaxInflight(Integer.parseInt(maxInflight));
+        }
+        String fullRepublishInterval = properties.getProperty("indego.mqtt.broker.full-republish-interval-ms");
+        if ( fullRepublishInterval != null ) {
+            config.setMqttFullRepublishIntervalMs(Long.parseLong(fullRepublishInterval));
+        }
+        String commandQueueCapacity = properties.getProperty("indego.mqtt.command-queue-capacity");
+        if ( commandQueueCapacity != null ) {
+            config.setCommandQueueCapacity(Integer.parseInt(commandQueueCapacity));
+        }
+        config.setMqttStateDocumentEnabled(
+                Boolean.parseBoolean(properties.getProperty("indego.mqtt.broker.state-document-enabled")));
+        config.setMqttPersistentSession(
+                Boolean.parseBoolean(properties.getProperty("indego.mqtt.broker.persistent-session")));
+        config.setMqttPersistenceDirectory(properties.getProperty("indego.mqtt.broker.persistence-directory"));
+        if ( Boolean.parseBoolean(properties.getProperty("indego.mqtt.polling-adaptive")) ) {
+            IndegoAdaptivePollingConfiguration pollingConfig = new IndegoAdaptivePollingConfiguration();
+            pollingConfig.setActiveIntervalMs(config.getPollingIntervalMs());
+            String idleInterval = properties.getProperty("indego.mqtt.polling-idle-interval-ms");
+            if ( idleInterval != null ) {
+                pollingConfig.setIdleIntervalMs(Long.parseLong(idleInterval));
+            }
+            config.setPollingPolicy(new IndegoAdaptivePollingPolicy(pollingConfig));
+        }
+        String initialBackoff = properties.getProperty("indego.mqtt.reconnect-initial-backoff-ms");
+        if ( initialBackoff != null ) {
+            config.getCircuitBreakerConfiguration().setInitialBackoffMs(Long.parseLong(initialBackoff));
+        }
+        String maxBackoff = properties.getProperty("indego.mqtt.reconnect-max-backoff-ms");
+        if ( maxBackoff != null ) {
+            config.getCircuitBreakerConfiguration().setMaxBackoffMs(Long.parseLong(maxBackoff));
+        }
 
         MqttIndegoAdapter adapter = new MqttIndegoAdapter(config);
         adapter.startup();
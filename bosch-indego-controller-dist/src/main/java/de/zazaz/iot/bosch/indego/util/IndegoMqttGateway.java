@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import de.zazaz.iot.bosch.indego.mqtt.MqttIndegoGateway;
+import de.zazaz.iot.bosch.indego.mqtt.MqttIndegoGatewayConfiguration;
+
+public class IndegoMqttGateway {
+
+    public static void main (String[] args)
+    {
+        System.setProperty("log4j.configurationFile", "log4j2-indegoMqttGateway-normal.xml");
+
+        Options options = new Options();
+
+        options.addOption(Option //
+                .builder("c") //
+                .longOpt("config") //
+                .desc("The configuration file to use") //
+                .required() //
+                .hasArg() //
+                .build());
+        options.addOption(Option //
+                .builder("d") //
+                .longOpt("debug") //
+                .desc("Logs more details") //
+                .build());
+        options.addOption(Option //
+                .builder("?") //
+                .longOpt("help") //
+                .desc("Prints this help") //
+                .build());
+
+        CommandLineParser parser = new DefaultParser();
+        CommandLine cmds = null;
+        try {
+            cmds = parser.parse(options, args);
+        }
+        catch (ParseException ex) {
+            System.err.println(ex.getMessage());
+            System.err.println();
+            HelpFormatter formatter = new HelpFormatter();
+            formatter.printHelp(IndegoMqttGateway.class.getName(), options);
+            System.exit(1);
+            return;
+        }
+
+        if ( cmds.hasOption("?") ) {
+            HelpFormatter formatter = new HelpFormatter();
+            formatter.printHelp(IndegoMqttGateway.class.getName(), options);
+            return;
+        }
+
+        if ( cmds.hasOption("d") ) {
+            System.setProperty("log4j.configurationFile", "log4j2-indegoMqttGateway-debug.xml");
+        }
+
+        String configFileName = cmds.getOptionValue('c');
+        File configFile = new File(configFileName);
+
+        if ( !configFile.exists() ) {
+            System.err.println(String.format("The specified config file (%s) does not exist", configFileName));
+            System.err.println();
+            System.exit(2);
+            return;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(configFile)) {
+            properties.load(in);
+        }
+        catch (IOException ex) {
+            System.err.println(ex.getMessage());
+            System.err.println(String.format("Was not able to load the properties file (%s)", configFileName));
+            System.err.println();
+        }
+
+        MqttIndegoGatewayConfiguration config = new MqttIndegoGatewayConfiguration();
+        config.setMqttBroker(properties.getProperty("indego.mqtt.broker.connection"));
+        config.setMqttClientId(properties.getProperty("indego.mqtt.broker.client-id"));
+        config.setMqttUsername(properties.getProperty("indego.mqtt.broker.username"));
+        config.setMqttPassword(properties.getProperty("indego.mqtt.broker.password"));
+        config.setMqttTopicRoot(properties.getProperty("indego.mqtt.broker.topic-root"));
+        config.setPollingIntervalMs(Integer.parseInt(properties.getProperty("indego.mqtt.polling-interval-ms")));
+        String maxInflight = properties.getProperty("indego.mqtt.broker.max-inflight");
+        if ( maxInflight != null ) {
+            config.setMqttMaxInflight(Integer.parseInt(maxInflight));
+        }
+        String fullRepublishInterval = properties.getProperty("indego.mqtt.broker.full-republish-interval-ms");
+        if ( fullRepublishInterval != null ) {
+            config.setMqttFullRepublishIntervalMs(Long.parseLong(fullRepublishInterval));
+        }
+        config.setMqttStateDocumentEnabled(
+                Boolean.parseBoolean(properties.getProperty("indego.mqtt.broker.state-document-enabled")));
+        config.setMqttPersistentSession(
+                Boolean.parseBoolean(properties.getProperty("indego.mqtt.broker.persistent-session")));
+        config.setMqttPersistenceDirectory(properties.getProperty("indego.mqtt.broker.persistence-directory"));
+        String maxConcurrentRequests = properties.getProperty("indego.mqtt.gateway.max-concurrent-requests");
+        if ( maxConcurrentRequests != null ) {
+            config.getFleetConfiguration().setMaxConcurrentRequests(Integer.parseInt(maxConcurrentRequests));
+        }
+        String maxRequestsPerSecond = properties.getProperty("indego.mqtt.gateway.max-requests-per-second");
+        if ( maxRequestsPerSecond != null ) {
+            config.getFleetConfiguration().getPollSchedulerConfiguration()
+                    .setMaxRequestsPerSecond(Double.parseDouble(maxRequestsPerSecond));
+        }
+        String pollingJitter = properties.getProperty("indego.mqtt.gateway.polling-jitter");
+        if ( pollingJitter != null ) {
+            config.getFleetConfiguration().getPollSchedulerConfiguration()
+                    .setJitterRatio(Double.parseDouble(pollingJitter));
+        }
+        String initialBackoff = properties.getProperty("indego.mqtt.reconnect-initial-backoff-ms");
+        if ( initialBackoff != null ) {
+            config.getCircuitBreakerConfiguration().setInitialBackoffMs(Long.parseLong(initialBackoff));
+            config.getFleetConfiguration().getCircuitBreakerConfiguration().setInitialBackoffMs(Long.parseLong(initialBackoff));
+        }
+        String maxBackoff = properties.getProperty("indego.mqtt.reconnect-max-backoff-ms");
+        if ( maxBackoff != null ) {
+            config.getCircuitBreakerConfiguration().setMaxBackoffMs(Long.parseLong(maxBackoff));
+            config.getFleetConfiguration().getCircuitBreakerConfiguration().setMaxBackoffMs(Long.parseLong(maxBackoff));
+        }
+
+        MqttIndegoGateway gateway = new MqttIndegoGateway(config);
+        String accounts = properties.getProperty("indego.mqtt.gateway.accounts", "");
+        for (String accountId : accounts.split(",")) {
+            accountId = accountId.trim();
+            if ( accountId.isEmpty() ) {
+                continue;
+            }
+            String prefix = "indego.mqtt.gateway.account." + accountId + ".";
+            gateway.addAccount(accountId, properties.getProperty(prefix + "base-url"),
+                    properties.getProperty(prefix + "username"), properties.getProperty(prefix + "password"));
+        }
+        gateway.startup();
+    }
+
+}
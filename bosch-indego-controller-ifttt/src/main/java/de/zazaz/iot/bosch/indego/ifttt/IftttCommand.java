@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego.ifttt;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.zazaz.iot.bosch.indego.DeviceCommand;
+import de.zazaz.iot.bosch.indego.IndegoCommandStatus;
+
+/**
+ * A command, which was received by the IFTTT receiver. Its status can be queried by its id, while
+ * it is executed and for a while afterwards.
+ */
+class IftttCommand {
+
+    /** the id of the command */
+    private final long id;
+
+    /** the command to execute */
+    private final DeviceCommand command;
+
+    /** the current status */
+    private volatile IndegoCommandStatus status = IndegoCommandStatus.PENDING;
+
+    /** the listeners, which are called once the command has finished; guarded by this */
+    private final List<Runnable> completionListeners = new ArrayList<>();
+
+    /**
+     * @param id the id of the command
+     * @param command the command to execute
+     */
+    IftttCommand (long id, DeviceCommand command)
+    {
+        this.id = id;
+        this.command = command;
+    }
+
+    /**
+     * @return the id of the command
+     */
+    long getId ()
+    {
+        return id;
+    }
+
+    /**
+     * @return the command to execute
+     */
+    DeviceCommand getCommand ()
+    {
+        return command;
+    }
+
+    /**
+     * @return the current status
+     */
+    IndegoCommandStatus getStatus ()
+    {
+        return status;
+    }
+
+    /**
+     * @param status the new status
+     */
+    void setStatus (IndegoCommandStatus status)
+    {
+        List<Runnable> listeners = null;
+        synchronized ( this ) {
+            this.status = status;
+            if ( isFinished() && !completionListeners.isEmpty() ) {
+                listeners = new ArrayList<>(completionListeners);
+                completionListeners.clear();
+            }
+        }
+        if ( listeners != null ) {
+            for (Runnable listener : listeners) {
+                listener.run();
+            }
+        }
+    }
+
+    /**
+     * Adds a listener, which is called once the command has finished. If it has already finished,
+     * the listener is called immediately. The listener is called by the thread, which finished the
+     * command, so it must not block.
+     * 
+     * @param listener the listener to add
+     */
+    void addCompletionListener (Runnable listener)
+    {
+        synchronized ( this ) {
+            if ( !isFinished() ) {
+                completionListeners.add(listener);
+                return;
+            }
+        }
+        listener.run();
+    }
+
+    /**
+     * @return true, if the execution of the command has finished (successfully or not)
+     */
+    boolean isFinished ()
+    {
+        return status.isFinished();
+    }
+
+    /**
+     * @return the command as JSON document, as it is returned by the IFTTT receiver
+     */
+    String toJson ()
+    {
+        return String.format("{ \"id\" : %d, \"command\" : \"%s\", \"status\" : \"%s\" }", id, command, status);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString ()
+    {
+        return String.format("%s (id %d)", command, id);
+    }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego.ifttt;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.zazaz.iot.bosch.indego.DeviceCommand;
+import de.zazaz.iot.bosch.indego.IndegoCommandQueue;
+
+/**
+ * A bounded FIFO queue of the commands, which were received by the IFTTT receiver. It is filled by
+ * the receiver threads and drained by the command executor of {@link IftttIndegoAdapter}.
+ * <p>
+ * A command stays in the queue, until it was executed (see {@link #remove(IftttCommand)}). Afterwards,
+ * it can still be queried by its id, until it is displaced by newer commands.
+ * <p>
+ * The queue supports several producers and a single consumer.
+ */
+class IftttCommandQueue implements IndegoCommandQueue<IftttCommand> {
+
+    /** the number of finished commands, which can still be queried by their id */
+    private static final int MAX_FINISHED_COMMANDS = 64;
+
+    /** the maximum number of pending commands */
+    private final int capacity;
+
+    /** the pending commands (oldest first) */
+    private final ConcurrentLinkedQueue<IftttCommand> commands = new ConcurrentLinkedQueue<>();
+
+    /** the number of pending commands */
+    private final AtomicInteger size = new AtomicInteger();
+
+    /** the id of the next command */
+    private final AtomicLong nextId = new AtomicLong(1);
+
+    /** the pending and the recently finished commands by id; guarded by itself */
+    private final Map<Long, IftttCommand> commandsById;
+
+    /** semaphore for waking the consumer up */
+    private final Semaphore semWaker = new Semaphore(0);
+
+    /**
+     * @param capacity_ the maximum number of pending commands
+     */
+    IftttCommandQueue (int capacity_)
+    {
+        if ( capacity_ < 1 ) {
+            throw new IllegalArgumentException("The capacity has to be at least 1");
+        }
+        capacity = capacity_;
+        commandsById = new LinkedHashMap<Long, IftttCommand>() {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry (Map.Entry<Long, IftttCommand> eldest_)
+            {
+                return size() > capacity + MAX_FINISHED_COMMANDS && eldest_.getValue().isFinished();
+            }
+        };
+    }
+
+    /**
+     * Adds a command to the end of the queue.
+     * 
+     * @param command_ the command to add
+     * @return the queued command; null, if the queue is full
+     */
+    IftttCommand offer (DeviceCommand command_)
+    {
+        if ( size.incrementAndGet() > capacity ) {
+            size.decrementAndGet();
+            return null;
+        }
+        IftttCommand result = new IftttCommand(nextId.getAndIncrement(), command_);
+        synchronized ( commandsById ) {
+            commandsById.put(result.getId(), result);
+        }
+        commands.add(result);
+        semWaker.release();
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public IftttCommand peek ()
+    {
+        return commands.peek();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void await (long timeoutMs_) throws InterruptedException
+    {
+        semWaker.tryAcquire(timeoutMs_, TimeUnit.MILLISECONDS);
+        semWaker.drainPermits();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void remove (IftttCommand command_)
+    {
+        if ( commands.remove(command_) ) {
+            size.decrementAndGet();
+        }
+    }
+
+    /**
+     * @param id_ the id of a command
+     * @return the pending or recently finished command with the given id; null, if it's unknown
+     */
+    IftttCommand get (long id_)
+    {
+        synchronized ( commandsById ) {
+            return commandsById.get(id_);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void wakeup ()
+    {
+        semWaker.release();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size ()
+    {
+        return size.get();
+    }
+
+}
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego.ifttt;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.zazaz.iot.bosch.indego.ifttt.IftttTriggerDispatcher.Trigger;
+
+/**
+ * Debounces the events of the {@link IftttTriggerDispatcher}, so a flapping device (e.g. an error,
+ * which is set and cleared repeatedly) does not cause a webhook per transition.
+ * <p>
+ * The first event is passed on immediately and opens a window. The events, which are triggered
+ * within the window, are collected and passed on collapsed, when the window has elapsed: if an
+ * event was triggered several times and a summary event is configured, a single summary event is
+ * passed on instead; otherwise only the latest values of each event are passed on. Afterwards a
+ * new window is opened, so a device, which keeps changing, causes at most one batch per window.
+ * <p>
+ * The summary event contains the number of collected transitions (value1), the latest value of
+ * each event with its number of occurrences, e.g. "mower_state=PAUSE (3x)" (value2), and the third
+ * value of the latest event (value3).
+ * <p>
+ * This class is not thread safe; it is guarded by the dispatcher.
+ */
+class IftttEventAggregator {
+
+    /** the length of a window (in ms) */
+    private final long windowMs;
+
+    /** the name of the summary event; null, if the collected events are passed on individually */
+    private final String summaryEventName;
+
+    /** the latest values of the collected events by name (in the order of their latest occurrence) */
+    private final LinkedHashMap<String, Trigger> collected = new LinkedHashMap<>();
+
+    /** the number of occurrences of the collected events by name */
+    private final Map<String, Integer> counts = new HashMap<>();
+
+    /** the number of collected transitions */
+    private int totalCount;
+
+    /** the timestamp, when the current window ends; 0, if no window is open */
+    private long windowEndTs;
+
+    /**
+     * @param windowMs the length of a window (in ms)
+     * @param summaryEventName the name of the summary event; null, if the collected events are
+     *      passed on individually
+     */
+    IftttEventAggregator (long windowMs, String summaryEventName)
+    {
+        this.windowMs = windowMs;
+        this.summaryEventName = summaryEventName;
+    }
+
+    /**
+     * Adds an event.
+     * 
+     * @param trigger the event to add
+     * @param now the current timestamp
+     * @return the event, if it has to be passed on immediately; null, if it was collected
+     */
+    Trigger add (Trigger trigger, long now)
+    {
+        if ( collected.isEmpty() && now >= windowEndTs ) {
+            windowEndTs = now + windowMs;
+            return trigger;
+        }
+        collected.remove(trigger.eventName);
+        collected.put(trigger.eventName, trigger);
+        counts.merge(trigger.eventName, 1, Integer::sum);
+        totalCount++;
+        return null;
+    }
+
+    /**
+     * @return the timestamp, when the collected events have to be passed on; Long.MAX_VALUE, if
+     *      no events are collected
+     */
+    long getDueTs ()
+    {
+        return collected.isEmpty() ? Long.MAX_VALUE : windowEndTs;
+    }
+
+    /**
+     * Returns the collected events, if the window has elapsed, and opens a new window.
+     * 
+     * @param now the current timestamp
+     * @return the events to pass on (in the order of their latest occurrence); empty, if the
+     *      window has not elapsed yet
+     */
+    List<Trigger> flush (long now)
+    {
+        if ( collected.isEmpty() || now < windowEndTs ) {
+            return Collections.emptyList();
+        }
+        List<Trigger> result;
+        if ( summaryEventName != null && totalCount > collected.size() ) {
+            result = Collections.singletonList(summarize());
+        }
+        else {
+            result = new ArrayList<>(collected.values());
+        }
+        clear();
+        windowEndTs = now + windowMs;
+        return result;
+    }
+
+    /**
+     * Returns the collected events, regardless of the window.
+     * 
+     * @return the collected events (in the order of their latest occurrence)
+     */
+    List<Trigger> drain ()
+    {
+        List<Trigger> result = new ArrayList<>(collected.values());
+        clear();
+        return result;
+    }
+
+    /**
+     * @return the number of collected transitions
+     */
+    int size ()
+    {
+        return totalCount;
+    }
+
+    /**
+     * @return the summary event of the collected events
+     */
+    private Trigger summarize ()
+    {
+        StringBuilder changes = new StringBuilder();
+        Trigger latest = null;
+        for (Trigger trigger : collected.values()) {
+            if ( changes.length() > 0 ) {
+                changes.append(", ");
+            }
+            changes.append(String.format("%s=%s (%dx)", trigger.eventName, trigger.value1, counts.get(trigger.eventName)));
+            latest = trigger;
+        }
+        return new Trigger(summaryEventName, Integer.toString(totalCount), changes.toString(), latest.value3);
+    }
+
+    /**
+     * Removes the collected events.
+     */
+    private void clear ()
+    {
+        collected.clear();
+        counts.clear();
+        totalCount = 0;
+    }
+
+}
@@ -16,40 +16,38 @@
  */
 package de.zazaz.iot.bosch.indego.ifttt;
 
-import java.io.IOException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
 
-import javax.servlet.ServletException;
-import javax.servlet.http.HttpServlet;
-import javax.servlet.http.HttpServletRequest;
-import javax.servlet.http.HttpServletResponse;
-
-import org.apache.http.HttpStatus;
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpPut;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
-import org.apache.http.entity.ContentType;
-import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.http.ssl.SSLContextBuilder;
 import org.apache.http.ssl.TrustStrategy;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.eclipse.jetty.server.Server;
-import org.eclipse.jetty.servlet.ServletHandler;
-import org.eclipse.jetty.servlet.ServletHolder;
 
 import de.zazaz.iot.bosch.indego.DeviceCommand;
 import de.zazaz.iot.bosch.indego.DeviceStateInformation;
-import de.zazaz.iot.bosch.indego.DeviceStatus;
+import de.zazaz.iot.bosch.indego.IndegoCalendarRefresher;
+import de.zazaz.iot.bosch.indego.IndegoCircuitBreaker;
+import de.zazaz.iot.bosch.indego.IndegoCommandExecutor;
+import de.zazaz.iot.bosch.indego.IndegoCommandHandler;
+import de.zazaz.iot.bosch.indego.IndegoCommandStatus;
 import de.zazaz.iot.bosch.indego.IndegoController;
 import de.zazaz.iot.bosch.indego.IndegoException;
+import de.zazaz.iot.bosch.indego.IndegoFixedPollingPolicy;
+import de.zazaz.iot.bosch.indego.IndegoPollScheduler;
+import de.zazaz.iot.bosch.indego.IndegoPollSlot;
+import de.zazaz.iot.bosch.indego.IndegoPollingPolicy;
+import de.zazaz.iot.bosch.indego.IndegoResource;
+import de.zazaz.iot.bosch.indego.IndegoRestartBackoff;
+import de.zazaz.iot.bosch.indego.IndegoStateEvent;
+import de.zazaz.iot.bosch.indego.IndegoStateEventBus;
+import de.zazaz.iot.bosch.indego.IndegoTransport;
 
 /**
  * This class connects to an Indego device and provides a simple server which can be used by the IFTTT maker
@@ -60,8 +58,6 @@ public class IftttIndegoAdapter {
     /** the logger */
     private static final Logger LOG = LogManager.getLogger(IftttIndegoAdapter.class);
 
-    private static final String URL_IFTTT = "https://maker.ifttt.com/trigger/%s/with/key/%s";
-
     /** the configuration to use */
     private IftttIndegoAdapterConfiguration configuration;
 
@@ -74,8 +70,64 @@ public class IftttIndegoAdapter {
     /** a reference to the worker thread */
     private Thread threadWorker;
 
-    /** contains the last command */
-    private AtomicReference<String> commandToExecute = new AtomicReference<>();
+    /** sends the events to IFTTT, independently of the worker thread */
+    private IftttTriggerDispatcher triggerDispatcher;
+
+    /** the bus, which detects the state changes of the device */
+    private IndegoStateEventBus eventBus;
+
+    /** translates the state changes of the device into IFTTT events */
+    private IftttStateListener stateListener;
+
+    /** the received commands, which wait for being executed */
+    private IftttCommandQueue commandQueue;
+
+    /** the receiver of the IFTTT commands; null, if no commands are received */
+    private IftttReceiver receiver;
+
+    /** this is used for indicating, that the receiver was started by this adapter */
+    private boolean ownReceiver;
+
+    /** a reference to the command executor thread */
+    private Thread threadCommandExecutor;
+
+    /** executes the received commands with the controller of the worker thread */
+    private IndegoCommandExecutor<IftttCommand> commandExecutor;
+
+    /** backs off the connection attempts to the Indego server, while it is down */
+    private final IndegoCircuitBreaker indegoCircuitBreaker;
+
+    /** the connection pool to the Indego server, which is kept across reconnects until shutdown */
+    private IndegoTransport indegoTransport;
+
+    /** backs off the restarts of the worker thread after unhandled exceptions */
+    private final IndegoRestartBackoff restartBackoff;
+
+    /**
+     * This class passes the commands received by the IFTTT receiver to the command executor and
+     * tracks their status, which is queried by the receiver
+     */
+    private static class IftttCommandHandler implements IndegoCommandHandler<IftttCommand> {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public DeviceCommand getDeviceCommand (IftttCommand command)
+        {
+            return command.getCommand();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void setStatus (IftttCommand command, IndegoCommandStatus status)
+        {
+            command.setStatus(status);
+        }
+
+    }
 
     /**
      * Initializes the IFTTT Adapter.
@@ -86,6 +138,8 @@ public class IftttIndegoAdapter {
     {
         // Get a clone, since we don't want to be manipulated during runtime
         configuration = (IftttIndegoAdapterConfiguration) configuration_.clone();
+        indegoCircuitBreaker = new IndegoCircuitBreaker(configuration.getCircuitBreakerConfiguration());
+        restartBackoff = new IndegoRestartBackoff(configuration.getCircuitBreakerConfiguration());
     }
 
     /**
@@ -98,6 +152,33 @@ public class IftttIndegoAdapter {
         }
         flagShutdown.set(false);
         semThreadWaker = new Semaphore(0);
+        commandQueue = new IftttCommandQueue(configuration.getCommandQueueCapacity());
+        commandExecutor = new IndegoCommandExecutor<>(commandQueue, new IftttCommandHandler(), semThreadWaker::release);
+        try {
+            startReceiver();
+        }
+        catch (RuntimeException ex) {
+            LOG.fatal("Was not able to start the command receiver", ex);
+            commandQueue = null;
+            commandExecutor = null;
+            throw ex;
+        }
+        indegoTransport = new IndegoTransport();
+        triggerDispatcher = new IftttTriggerDispatcher(configuration, buildHttpClient());
+        triggerDispatcher.startup();
+        // Without a shared bus, the worker thread publishes the polled states to an own bus
+        eventBus = configuration.getEventBus() != null ? configuration.getEventBus() : new IndegoStateEventBus();
+        stateListener = new IftttStateListener(configuration, triggerDispatcher);
+        eventBus.subscribe(stateListener, getEventSourceId(), IndegoStateEvent.Type.ONLINE, IndegoStateEvent.Type.OFFLINE,
+                IndegoStateEvent.Type.STATE, IndegoStateEvent.Type.ERROR);
+        threadCommandExecutor = new Thread(new Runnable() {
+
+            @Override
+            public void run ()
+            {
+                commandExecutor.run(flagShutdown, configuration.getPollingIntervalMs());
+            }
+        });
         threadWorker = new Thread(new Runnable() {
 
             @Override
@@ -110,10 +191,28 @@ public class IftttIndegoAdapter {
         try {
             threadWorker.start();
             LOG.debug("Worker thread started");
+            threadCommandExecutor.start();
+            LOG.debug("Command executor thread started");
         }
         catch (RuntimeException ex) {
             LOG.error("Failed to start worker thread", ex);
+            if ( threadWorker.isAlive() ) {
+                flagShutdown.set(true);
+                semThreadWaker.release();
+                joinThread(threadWorker);
+            }
             threadWorker = null;
+            threadCommandExecutor = null;
+            stopReceiver();
+            commandQueue = null;
+            commandExecutor = null;
+            eventBus.unsubscribe(stateListener);
+            eventBus = null;
+            stateListener = null;
+            triggerDispatcher.shutdown();
+            triggerDispatcher = null;
+            indegoTransport.close();
+            indegoTransport = null;
             throw ex;
         }
     }
@@ -127,28 +226,129 @@ public class IftttIndegoAdapter {
             throw new IllegalStateException("The adapter is not started");
         }
         try {
+            if ( receiver != null ) {
+                // Refuse further commands; the pending ones are finished by the command executor, which
+                // answers the status requests waiting for them
+                LOG.debug("Stopping to receive commands");
+                receiver.unregister(configuration.getIftttReceiverSecret(), commandQueue);
+            }
             LOG.debug("Requesting worker thread to shut down");
             flagShutdown.set(true);
             semThreadWaker.release();
+            commandQueue.wakeup();
+            LOG.debug("Waiting for command executor thread");
+            joinThread(threadCommandExecutor);
             LOG.debug("Waiting for worker thread");
-            while (true) {
-                try {
-                    threadWorker.join();
-                    break;
-                }
-                catch (InterruptedException ex) {
-                    // Ignored
-                }
-            }
-            LOG.debug("Worker thread terminated, shutdown complete");
+            joinThread(threadWorker);
+            eventBus.unsubscribe(stateListener);
+            LOG.debug("Worker thread terminated, shutting down IFTTT trigger dispatcher");
+            triggerDispatcher.shutdown();
+            LOG.debug("Shutdown complete");
         }
         finally {
+            stopReceiver();
+            if ( indegoTransport != null ) {
+                indegoTransport.close();
+                indegoTransport = null;
+            }
             threadWorker = null;
+            threadCommandExecutor = null;
+            triggerDispatcher = null;
+            eventBus = null;
+            stateListener = null;
             semThreadWaker = null;
+            commandQueue = null;
+            commandExecutor = null;
             flagShutdown.set(false);
         }
     }
 
+    /**
+     * @return the id of the device on the event bus
+     */
+    private String getEventSourceId ()
+    {
+        return configuration.getEventSourceId() != null ? configuration.getEventSourceId()
+                : configuration.getIndegoUsername();
+    }
+
+    /**
+     * Registers the command queue with the receiver. If no shared receiver is configured, an own
+     * receiver is started, which lives as long as the adapter (independently of restarts of the
+     * worker thread).
+     */
+    private void startReceiver ()
+    {
+        if ( configuration.getReceiver() != null ) {
+            receiver = configuration.getReceiver();
+            ownReceiver = false;
+        }
+        else if ( configuration.getIftttReceiverPort() != 0 ) {
+            receiver = new IftttReceiver(configuration.getIftttReceiverPort(), configuration.getReceiverConfiguration());
+            receiver.startup();
+            ownReceiver = true;
+        }
+        if ( receiver != null ) {
+            try {
+                receiver.register(configuration.getIftttReceiverSecret(), commandQueue);
+            }
+            catch (RuntimeException ex) {
+                if ( ownReceiver ) {
+                    receiver.shutdown();
+                }
+                receiver = null;
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Unregisters the command queue from the receiver and shuts the receiver down, if it was
+     * started by this adapter.
+     */
+    private void stopReceiver ()
+    {
+        try {
+            if ( receiver != null ) {
+                receiver.unregister(configuration.getIftttReceiverSecret(), commandQueue);
+                if ( ownReceiver ) {
+                    receiver.shutdown();
+                }
+            }
+        }
+        finally {
+            receiver = null;
+            ownReceiver = false;
+        }
+    }
+
+    /**
+     * Waits for the termination of a thread.
+     * 
+     * @param thread the thread to wait for
+     */
+    private void joinThread (Thread thread)
+    {
+        while ( true ) {
+            try {
+                thread.join();
+                break;
+            }
+            catch (InterruptedException ex) {
+                // Ignored
+            }
+        }
+    }
+
+    /**
+     * @return the circuit breaker, which backs off the connection attempts to the Indego server
+     *      (e.g. for reading its statistics)
+     */
+    public IndegoCircuitBreaker getIndegoCircuitBreaker ()
+    {
+        return indegoCircuitBreaker;
+    }
+
     /**
      * This is the initial entry point for the worker thread.
      */
@@ -157,11 +357,13 @@ public class IftttIndegoAdapter {
         LOG.debug("Worker thread started");
         try {
             while (!flagShutdown.get()) {
+                long startTs = System.currentTimeMillis();
                 try {
                     runInternal();
                 }
                 catch (Exception ex) {
                     LOG.fatal("Unhandled exception thrown! Trying a restart...", ex);
+                    restartBackoff.awaitRestart(startTs, semThreadWaker, flagShutdown);
                 }
             }
         }
@@ -175,124 +377,80 @@ public class IftttIndegoAdapter {
      */
     private void runInternal ()
     {
-        CloseableHttpClient httpClient = buildHttpClient();
-        Server httpServer = buildHttpServer();
         IndegoController indegoController = null;
         Semaphore semWakeup = semThreadWaker;
-
-        boolean firstRun = true;
-        boolean lastOffline = false;
-        DeviceCommand lastCommand = null;
-        int lastErrorCode = 0;
+        IndegoStateEventBus bus = eventBus;
+        String sourceId = getEventSourceId();
+        // With a shared bus, the states are published by another producer
+        boolean polling = configuration.getEventBus() == null;
+        IndegoPollScheduler pollScheduler = configuration.getPollScheduler() != null
+                ? configuration.getPollScheduler() : IndegoPollScheduler.getDefault();
+        IndegoPollSlot pollSlot = pollScheduler.register(configuration.getPollingIntervalMs());
+        IndegoPollingPolicy pollingPolicy = configuration.getPollingPolicy() != null
+                ? configuration.getPollingPolicy() : new IndegoFixedPollingPolicy(configuration.getPollingIntervalMs());
+        IndegoCalendarRefresher calendarRefresher = new IndegoCalendarRefresher(pollingPolicy);
 
         try {
             while (!flagShutdown.get()) {
-                if ( indegoController == null ) {
+                IndegoController failedController = commandExecutor.takeReconnectRequest();
+                if ( failedController != null && failedController == indegoController ) {
+                    LOG.info("Command execution failed, reconnecting to Indego server.");
+                    commandExecutor.setActiveController(null);
+                    disconnect(indegoController);
+                    indegoController = null;
+                }
+                // The controller reports the result of the connection attempt to the circuit breaker
+                if ( indegoController == null && indegoCircuitBreaker.getRemainingOpenMs() == 0 ) {
                     LOG.info("No connection to Indego server. Creating connection.");
                     indegoController = connectIndego();
                     if ( indegoController == null ) {
                         LOG.warn("Was not able to connect to Indego server.");
+                        indegoCircuitBreaker.logOpenCircuit("Indego server");
                     }
-                }
-
-                DeviceStateInformation currentState = null;
-                if ( indegoController != null ) {
-                    try {
-                        currentState = indegoController.getState();
-                    }
-                    catch (Exception ex) {
-                        LOG.error("Exception during fetching Indego state", ex);
-                        disconnect(indegoController);
-                        indegoController = null;
-                        try {
-                            semWakeup.tryAcquire(configuration.getPollingIntervalMs(), TimeUnit.MILLISECONDS);
-                        }
-                        catch (InterruptedException ex2) {
-                            // Ignored
-                        }
-                        continue;
+                    else {
+                        commandExecutor.setActiveController(indegoController);
                     }
                 }
 
-                if ( indegoController != null ) {
-                    String command = commandToExecute.getAndSet(null);
-                    if ( command != null ) {
-                        LOG.info(String.format("Received command: %s", command));
-                        DeviceCommand cmd = null;
+                long delayMs = configuration.getPollingIntervalMs();
+                if ( polling ) {
+                    DeviceStateInformation currentState = null;
+                    if ( indegoController != null ) {
                         try {
-                            cmd = DeviceCommand.valueOf(command);
+                            long lagMs = pollSlot.acquire();
+                            if ( lagMs > pollSlot.getIntervalMs() / 2 ) {
+                                LOG.warn(String.format("Polling is %d ms behind schedule", lagMs));
+                            }
                         }
-                        catch (Exception ex) {
-                            LOG.error(String.format("Received invalid command from IFTTT (%s)", command), ex);
+                        catch (InterruptedException ex) {
+                            // Ignored
                         }
                         try {
-                            if ( cmd != null ) {
-                                LOG.info(String.format("Sending command to Indego: %s", cmd));
-                                indegoController.sendCommand(cmd);
-                                LOG.info(String.format("Command '%s' was sent successfully", cmd));
-                            }
+                            currentState = indegoController.getState();
+                            calendarRefresher.refresh(indegoController);
                         }
                         catch (Exception ex) {
-                            LOG.error(String.format("Indego was not able to execute command (%s)", command), ex);
-                        }
-                    }
-                }
-
-                boolean currentOffline = indegoController == null;
-                DeviceCommand currentCommand = null;
-                int currentErrorCode = 0;
-                if ( currentState != null ) {
-                    currentCommand = DeviceStatus.decodeStatusCode(currentState.getState()).getAssociatedCommand();
-                    currentErrorCode = currentState.getError();
-                }
-
-                boolean commitOffline = firstRun;
-                boolean commitCommand = firstRun;
-                boolean commitErrorCode = firstRun;
-
-                if ( !firstRun ) {
-                    String percentMowed = currentState != null ? Integer.toString(currentState.getMowed()) : "unknown";
-
-                    if ( currentOffline != lastOffline ) {
-                        if ( currentOffline ) {
-                            commitOffline = sendIfftTrigger(httpClient, configuration.getIftttOfflineEventName(), "offline", "",
-                                    percentMowed);
+                            LOG.error("Exception during fetching Indego state", ex);
+                            commandExecutor.setActiveController(null);
+                            disconnect(indegoController);
+                            indegoController = null;
+                            indegoCircuitBreaker.logOpenCircuit("Indego server");
                         }
-                        else {
-                            commitOffline = sendIfftTrigger(httpClient, configuration.getIftttOnlineEventName(), "online", "", percentMowed);
-                        }
-                    }
-
-                    if ( currentCommand != lastCommand ) {
-                        String message = currentCommand != null ? currentCommand.toString() : "UNKNOWN";
-                        commitCommand = sendIfftTrigger(httpClient, configuration.getIftttStateChangeEventName(), message, "", percentMowed);
                     }
 
-                    if ( currentErrorCode != lastErrorCode ) {
-                        if ( currentErrorCode == 0 ) {
-                            commitErrorCode = sendIfftTrigger(httpClient, configuration.getIftttErrorClearedEventName(),
-                                    Integer.toString(currentErrorCode), "", percentMowed);
-                        }
-                        else {
-                            commitErrorCode = sendIfftTrigger(httpClient, configuration.getIftttErrorEventName(),
-                                    Integer.toString(currentErrorCode), "Unknown error", percentMowed);
-                        }
-                    }
-                }
+                    // The bus detects the changes; the listener passes them to the dispatcher, which
+                    // sends (and retries) the events, so the polling never waits for IFTTT
+                    bus.publish(sourceId, currentState);
 
-                if ( commitOffline ) {
-                    lastOffline = currentOffline;
-                }
-                if ( commitCommand ) {
-                    lastCommand = currentCommand;
+                    pollSlot.setIntervalMs(pollingPolicy.nextIntervalMs(currentState));
+                    delayMs = pollSlot.getDelayMs();
                 }
-                if ( commitErrorCode ) {
-                    lastErrorCode = currentErrorCode;
+                if ( indegoController == null ) {
+                    // Don't wake up for reconnecting, before the circuit breaker allows it
+                    delayMs = Math.max(delayMs, indegoCircuitBreaker.getRemainingOpenMs());
                 }
-                firstRun = false;
-
                 try {
-                    semWakeup.tryAcquire(configuration.getPollingIntervalMs(), TimeUnit.MILLISECONDS);
+                    semWakeup.tryAcquire(delayMs, TimeUnit.MILLISECONDS);
                 }
                 catch (InterruptedException ex) {
                     // Ignored
@@ -300,71 +458,11 @@ public class IftttIndegoAdapter {
             }
         }
         finally {
+            commandExecutor.setActiveController(null);
             disconnect(indegoController);
-            disconnect(httpServer);
-            disconnect(httpClient);
         }
     }
 
-    /**
-     * This handles a command request
-     * 
-     * @param req_ the servlet request
-     * @param resp_ the servlet response
-     */
-    private void handleIftttCommand (HttpServletRequest req_, HttpServletResponse resp_)
-    {
-        String commandStr = req_.getPathInfo();
-        int idx = commandStr.lastIndexOf('/');
-        if ( idx > 0 ) {
-            commandStr = commandStr.substring(idx + 1);
-        }
-        commandToExecute.set(commandStr);
-        semThreadWaker.release();
-    }
-
-    private boolean sendIfftTrigger (CloseableHttpClient httpClient, String triggerName, String value1, String value2, String value3)
-    {
-        if ( triggerName == null ) {
-            return true;
-        }
-
-        LOG.info(String.format("Sending IFTTT trigger ('%s', '%s', '%s', '%s')", triggerName, value1, value2, value3));
-
-        String json = String.format("{ \"value1\" : \"%s\", \"value2\" : \"%s\", \"value3\" : \"%s\" }", value1, value2, value3);
-
-        HttpPut httpRequest = new HttpPut(String.format(URL_IFTTT, triggerName, configuration.getIftttMakerKey()));
-        httpRequest.setEntity(new StringEntity(json, ContentType.APPLICATION_JSON));
-
-        CloseableHttpResponse response = null;
-        try {
-            response = httpClient.execute(httpRequest);
-            if ( response.getStatusLine().getStatusCode() == HttpStatus.SC_OK ) {
-                LOG.debug("IFTT Trigger sent successfully");
-            }
-            else {
-                LOG.error(String.format("IFTTT trigger was not accepted ('%s', '%s', '%s', '%s') => %s", triggerName, value1, value2,
-                        value3, response.getStatusLine()));
-            }
-        }
-        catch (IOException ex) {
-            LOG.error(String.format("Error while sending IFTTT trigger ('%s', '%s', '%s', '%s')", triggerName, value1, value2, value3), ex);
-            return false;
-        }
-        finally {
-            try {
-                if ( response != null ) {
-                    response.close();
-                }
-            }
-            catch (IOException ex) {
-                // Ignored
-            }
-        }
-
-        return true;
-    }
-
     /**
      * Connects to the Indego server.
      * 
@@ -374,8 +472,16 @@ public class IftttIndegoAdapter {
     {
         try {
             LOG.info("Connecting to Indego");
-            IndegoController result = new IndegoController(configuration.getIndegoBaseUrl(), 
+            // The transport is shared by the successive controllers, so no pool is created per attempt
+            IndegoController result = new IndegoController(indegoTransport, configuration.getIndegoBaseUrl(),
                     configuration.getIndegoUsername(), configuration.getIndegoPassword());
+            result.setCircuitBreaker(indegoCircuitBreaker);
+            IndegoPollingPolicy pollingPolicy = configuration.getPollingPolicy();
+            if ( pollingPolicy != null && pollingPolicy.getMinIntervalMs() > 0 ) {
+                // Every poll of the policy should get a fresh state instead of the cached one
+                result.setCacheTimeToLive(IndegoResource.STATE,
+                        Math.min(IndegoResource.STATE.getDefaultTimeToLiveMs(), pollingPolicy.getMinIntervalMs()));
+            }
             result.connect();
             LOG.info("Connection to Indego established");
             return result;
@@ -417,51 +523,6 @@ public class IftttIndegoAdapter {
         }
     }
 
-    /**
-     * This creates a HTTP server instance for receiving IFTTT commands.
-     * 
-     * @return the HTTP server instance
-     */
-    private Server buildHttpServer ()
-    {
-        if ( configuration.getIftttReceiverPort() == 0 ) {
-            return null;
-        }
-
-        HttpServlet servlet = new HttpServlet() {
-
-            private static final long serialVersionUID = 1L;
-
-            @Override
-            protected void doGet (HttpServletRequest req_, HttpServletResponse resp_) throws ServletException, IOException
-            {
-                if ( req_.getPathInfo().startsWith(String.format("/%s/command/", configuration.getIftttReceiverSecret())) ) {
-                    handleIftttCommand(req_, resp_);
-                    resp_.setContentType("text/html");
-                    resp_.setStatus(HttpStatus.SC_OK);
-                }
-                else {
-                    super.doGet(req_, resp_);
-                }
-            }
-
-        };
-
-        Server result = new Server(configuration.getIftttReceiverPort());
-        ServletHandler handler = new ServletHandler();
-        result.setHandler(handler);
-        handler.addServletWithMapping(new ServletHolder(servlet), "/*");
-        try {
-            result.start();
-        }
-        catch (Exception ex) {
-            LOG.fatal("Was not able to start the command server", ex);
-            return null;
-        }
-
-        return result;
-    }
-
     /**
      * Disconnects a connected Indego controller.
      * 
@@ -479,34 +540,4 @@ public class IftttIndegoAdapter {
             LOG.warn("Something strange happened while disconnecting from Indego", ex);
         }
     }
-
-    /**
-     * Closes the HTTP client.
-     * 
-     * @param httpClient the HTTP client instance to close
-     */
-    private void disconnect (CloseableHttpClient httpClient)
-    {
-        try {
-            if ( httpClient != null ) {
-                LOG.info("Closing the HTTP client");
-                httpClient.close();
-            }
-        }
-        catch (Exception ex) {
-            LOG.warn("Something strange happened while closing the HTTP client", ex);
-        }
-    }
-
-    /**
-     * Closes the HTTP server.
-     * 
-     * @param httpServer the HTTP server to close
-     */
-    private void disconnect (Server httpServer)
-    {
-        if ( httpServer != null ) {
-            httpServer.destroy();
-        }
-    }
 }
@@ -16,6 +16,11 @@
  */
 package de.zazaz.iot.bosch.indego.ifttt;
 
+import de.zazaz.iot.bosch.indego.IndegoCircuitBreakerConfiguration;
+import de.zazaz.iot.bosch.indego.IndegoPollScheduler;
+import de.zazaz.iot.bosch.indego.IndegoPollingPolicy;
+import de.zazaz.iot.bosch.indego.IndegoStateEventBus;
+
 /**
  * This contains the configuration to initialize the IFTTT adapter.
  */
@@ -30,6 +35,12 @@ public class IftttIndegoAdapterConfiguration implements Cloneable {
     /** An string, which is built into the receiver path (as password) */
     private String iftttReceiverSecret;
 
+    /** the receiver, which is shared with other adapters; if null, the adapter starts an own receiver */
+    private IftttReceiver receiver;
+
+    /** the configuration of the own receiver of the adapter */
+    private IftttReceiverConfiguration receiverConfiguration = new IftttReceiverConfiguration();
+
     /** If set to true, the IFTTT server certificate is not checked (required for older Java versions) */
     private boolean iftttIgnoreServerCertificate;
 
@@ -47,6 +58,33 @@ public class IftttIndegoAdapterConfiguration implements Cloneable {
 
     /** The name of the error cleared event (null, if no event should be sent) */
     private String iftttErrorClearedEventName;
+
+    /** the maximum number of events, which wait for being sent to IFTTT */
+    private int iftttQueueCapacity = 16;
+
+    /** the maximum number of attempts for sending an event to IFTTT */
+    private int iftttMaxAttempts = 5;
+
+    /** the delay (in ms) before the first retry of a failed event; it doubles with each retry */
+    private long iftttRetryInitialDelayMs = 2000;
+
+    /** the maximum delay (in ms) between two attempts of sending an event */
+    private long iftttRetryMaxDelayMs = 60 * 1000;
+
+    /** the window (in ms), within which the events are debounced (0: disabled) */
+    private long iftttDebounceWindowMs;
+
+    /** The name of the summary event of debounced events (null, if the events should be sent individually) */
+    private String iftttSummaryEventName;
+
+    /** the maximum number of events per minute, which are sent with the maker key (0: unlimited) */
+    private double iftttMaxTriggersPerMinute = 10;
+
+    /** the number of events, which can be sent at once with the maker key */
+    private int iftttTriggerBurst = 5;
+
+    /** the maximum number of received commands, which wait for being executed */
+    private int commandQueueCapacity = 16;
     
     /** Base url of the Indego web service (if different from default) */
     private String indegoBaseUrl;
@@ -60,6 +98,21 @@ public class IftttIndegoAdapterConfiguration implements Cloneable {
     /** the polling interval (in ms) */
     private int pollingIntervalMs;
 
+    /** the scheduler, which spreads the polls; if null, the default scheduler of the JVM is used */
+    private IndegoPollScheduler pollScheduler;
+
+    /** the policy, which determines the polling interval; if null, the polling interval is fixed */
+    private IndegoPollingPolicy pollingPolicy;
+
+    /** the bus, which provides the state changes of the device; if null, the adapter polls the device itself */
+    private IndegoStateEventBus eventBus;
+
+    /** the id of the device on the event bus; if null, the Indego username is used */
+    private String eventSourceId;
+
+    /** the configuration of the circuit breakers, which back off the reconnects to the Indego server */
+    private IndegoCircuitBreakerConfiguration circuitBreakerConfiguration = new IndegoCircuitBreakerConfiguration();
+
     /**
      * {@inheritDoc}
      */
@@ -67,7 +120,11 @@ public class IftttIndegoAdapterConfiguration implements Cloneable {
     public Object clone ()
     {
         try {
-            return super.clone();
+            IftttIndegoAdapterConfiguration result = (IftttIndegoAdapterConfiguration) super.clone();
+            result.circuitBreakerConfiguration =
+                    (IndegoCircuitBreakerConfiguration) circuitBreakerConfiguration.clone();
+            result.receiverConfiguration = (IftttReceiverConfiguration) receiverConfiguration.clone();
+            return result;
         }
         catch (CloneNotSupportedException ex) {
             throw new RuntimeException(ex);
@@ -334,4 +391,346 @@ public class IftttIndegoAdapterConfiguration implements Cloneable {
         this.pollingIntervalMs = pollingIntervalMs;
     }
 
+    /**
+     * Gets the scheduler, which spreads the polls; if null, the default scheduler of the JVM is used.
+     *
+     * @return the scheduler, which spreads the polls
+     */
+    public IndegoPollScheduler getPollScheduler ()
+    {
+        return pollScheduler;
+    }
+
+    /**
+     * Sets the scheduler, which spreads the polls. Adapters, which share a scheduler, share its
+     * limit of polls per second, too.
+     *
+     * @param pollScheduler the new scheduler; if null, the default scheduler of the JVM is used
+     */
+    public void setPollScheduler (IndegoPollScheduler pollScheduler)
+    {
+        this.pollScheduler = pollScheduler;
+    }
+
+    /**
+     * Gets the policy, which determines the polling interval; if null, the polling interval is fixed.
+     *
+     * @return the policy, which determines the polling interval
+     */
+    public IndegoPollingPolicy getPollingPolicy ()
+    {
+        return pollingPolicy;
+    }
+
+    /**
+     * Sets the policy, which determines the polling interval; if null, the polling interval is fixed.
+     * The policy must not be shared with other adapters.
+     *
+     * @param pollingPolicy the new policy, which determines the polling interval
+     */
+    public void setPollingPolicy (IndegoPollingPolicy pollingPolicy)
+    {
+        this.pollingPolicy = pollingPolicy;
+    }
+
+    /**
+     * Gets the bus, which provides the state changes of the device; if null, the adapter polls the device itself.
+     *
+     * @return the bus, which provides the state changes of the device
+     */
+    public IndegoStateEventBus getEventBus ()
+    {
+        return eventBus;
+    }
+
+    /**
+     * Sets the bus, which provides the state changes of the device. If set, the adapter does not
+     * poll the device, but receives the changes, which are published by another producer (e.g. a
+     * MQTT adapter or a fleet), so the device is polled only once. The connection to the Indego
+     * server is used for executing the received commands only then.
+     *
+     * @param eventBus the new bus; if null, the adapter polls the device itself
+     */
+    public void setEventBus (IndegoStateEventBus eventBus)
+    {
+        this.eventBus = eventBus;
+    }
+
+    /**
+     * Gets the id of the device on the event bus; if null, the Indego username is used.
+     *
+     * @return the id of the device on the event bus
+     */
+    public String getEventSourceId ()
+    {
+        return eventSourceId;
+    }
+
+    /**
+     * Sets the id of the device on the event bus. It has to match the id, which is used by the
+     * producer of the states.
+     *
+     * @param eventSourceId the new id of the device; if null, the Indego username is used
+     */
+    public void setEventSourceId (String eventSourceId)
+    {
+        this.eventSourceId = eventSourceId;
+    }
+
+    /**
+     * Gets the configuration of the circuit breakers, which back off the reconnects to the Indego server.
+     *
+     * @return the configuration of the circuit breakers
+     */
+    public IndegoCircuitBreakerConfiguration getCircuitBreakerConfiguration ()
+    {
+        return circuitBreakerConfiguration;
+    }
+
+    /**
+     * Sets the configuration of the circuit breakers, which back off the reconnects to the Indego server
+     * (and the restarts of the worker thread after an unhandled exception).
+     *
+     * @param circuitBreakerConfiguration the new configuration of the circuit breakers
+     */
+    public void setCircuitBreakerConfiguration (IndegoCircuitBreakerConfiguration circuitBreakerConfiguration)
+    {
+        this.circuitBreakerConfiguration = circuitBreakerConfiguration;
+    }
+
+    /**
+     * Gets the maximum number of events, which wait for being sent to IFTTT.
+     *
+     * @return the maximum number of events, which wait for being sent to IFTTT
+     */
+    public int getIftttQueueCapacity ()
+    {
+        return iftttQueueCapacity;
+    }
+
+    /**
+     * Sets the maximum number of events, which wait for being sent to IFTTT. If the queue is
+     * full, the oldest event is dropped.
+     *
+     * @param iftttQueueCapacity the new maximum number of events, which wait for being sent to IFTTT
+     */
+    public void setIftttQueueCapacity (int iftttQueueCapacity)
+    {
+        this.iftttQueueCapacity = iftttQueueCapacity;
+    }
+
+    /**
+     * Gets the maximum number of attempts for sending an event to IFTTT.
+     *
+     * @return the maximum number of attempts for sending an event to IFTTT
+     */
+    public int getIftttMaxAttempts ()
+    {
+        return iftttMaxAttempts;
+    }
+
+    /**
+     * Sets the maximum number of attempts for sending an event to IFTTT.
+     *
+     * @param iftttMaxAttempts the new maximum number of attempts for sending an event to IFTTT
+     */
+    public void setIftttMaxAttempts (int iftttMaxAttempts)
+    {
+        this.iftttMaxAttempts = iftttMaxAttempts;
+    }
+
+    /**
+     * Gets the delay (in ms) before the first retry of a failed event.
+     *
+     * @return the delay (in ms) before the first retry of a failed event
+     */
+    public long getIftttRetryInitialDelayMs ()
+    {
+        return iftttRetryInitialDelayMs;
+    }
+
+    /**
+     * Sets the delay (in ms) before the first retry of a failed event. The delay
+     * doubles with each retry.
+     *
+     * @param iftttRetryInitialDelayMs the new delay (in ms) before the first retry of a failed event
+     */
+    public void setIftttRetryInitialDelayMs (long iftttRetryInitialDelayMs)
+    {
+        this.iftttRetryInitialDelayMs = iftttRetryInitialDelayMs;
+    }
+
+    /**
+     * Gets the maximum delay (in ms) between two attempts of sending an event.
+     *
+     * @return the maximum delay (in ms) between two attempts of sending an event
+     */
+    public long getIftttRetryMaxDelayMs ()
+    {
+        return iftttRetryMaxDelayMs;
+    }
+
+    /**
+     * Sets the maximum delay (in ms) between two attempts of sending an event.
+     *
+     * @param iftttRetryMaxDelayMs the new maximum delay (in ms) between two attempts of sending an event
+     */
+    public void setIftttRetryMaxDelayMs (long iftttRetryMaxDelayMs)
+    {
+        this.iftttRetryMaxDelayMs = iftttRetryMaxDelayMs;
+    }
+
+    /**
+     * Gets the window (in ms), within which the events are debounced (0: disabled).
+     *
+     * @return the window (in ms), within which the events are debounced
+     */
+    public long getIftttDebounceWindowMs ()
+    {
+        return iftttDebounceWindowMs;
+    }
+
+    /**
+     * Sets the window (in ms), within which the events are debounced. The first event is sent
+     * immediately; the events, which follow within the window, are sent collapsed after the window
+     * has elapsed.
+     *
+     * @param iftttDebounceWindowMs the new window (in ms), within which the events are debounced
+     *      (0: disabled)
+     */
+    public void setIftttDebounceWindowMs (long iftttDebounceWindowMs)
+    {
+        this.iftttDebounceWindowMs = iftttDebounceWindowMs;
+    }
+
+    /**
+     * Gets the name of the summary event of debounced events.
+     *
+     * @return the name of the summary event of debounced events
+     */
+    public String getIftttSummaryEventName ()
+    {
+        return iftttSummaryEventName;
+    }
+
+    /**
+     * Sets the name of the summary event of debounced events. It is sent instead of the debounced
+     * events, if an event was triggered several times within the window.
+     *
+     * @param iftttSummaryEventName the new name of the summary event (null, if only the latest
+     *      values of each event should be sent)
+     */
+    public void setIftttSummaryEventName (String iftttSummaryEventName)
+    {
+        this.iftttSummaryEventName = iftttSummaryEventName;
+    }
+
+    /**
+     * Gets the maximum number of events per minute, which are sent with the maker key (0: unlimited).
+     *
+     * @return the maximum number of events per minute
+     */
+    public double getIftttMaxTriggersPerMinute ()
+    {
+        return iftttMaxTriggersPerMinute;
+    }
+
+    /**
+     * Sets the maximum number of events per minute, which are sent with the maker key. The limit
+     * is shared by all adapters of the JVM, which use the same maker key; the first adapter
+     * determines it.
+     *
+     * @param iftttMaxTriggersPerMinute the new maximum number of events per minute (0: unlimited)
+     */
+    public void setIftttMaxTriggersPerMinute (double iftttMaxTriggersPerMinute)
+    {
+        this.iftttMaxTriggersPerMinute = iftttMaxTriggersPerMinute;
+    }
+
+    /**
+     * Gets the number of events, which can be sent at once with the maker key.
+     *
+     * @return the number of events, which can be sent at once
+     */
+    public int getIftttTriggerBurst ()
+    {
+        return iftttTriggerBurst;
+    }
+
+    /**
+     * Sets the number of events, which can be sent at once with the maker key.
+     *
+     * @param iftttTriggerBurst the new number of events, which can be sent at once
+     */
+    public void setIftttTriggerBurst (int iftttTriggerBurst)
+    {
+        this.iftttTriggerBurst = iftttTriggerBurst;
+    }
+
+    /**
+     * Gets the maximum number of received commands, which wait for being executed.
+     *
+     * @return the maximum number of received commands, which wait for being executed
+     */
+    public int getCommandQueueCapacity ()
+    {
+        return commandQueueCapacity;
+    }
+
+    /**
+     * Sets the maximum number of received commands, which wait for being executed. Further commands
+     * are rejected with HTTP status 503.
+     *
+     * @param commandQueueCapacity the new maximum number of received commands, which wait for being
+     *      executed
+     */
+    public void setCommandQueueCapacity (int commandQueueCapacity)
+    {
+        this.commandQueueCapacity = commandQueueCapacity;
+    }
+
+    /**
+     * Gets the receiver, which is shared with other adapters; if null, the adapter starts an own receiver.
+     *
+     * @return the shared receiver
+     */
+    public IftttReceiver getReceiver ()
+    {
+        return receiver;
+    }
+
+    /**
+     * Sets the receiver, which is shared with other adapters. The adapters are distinguished by
+     * their receiver secrets, so each adapter needs an own secret. The receiver has to be started
+     * and shut down by the caller; the receiver port of this configuration is ignored.
+     *
+     * @param receiver the new shared receiver; if null, the adapter starts an own receiver on the
+     *      receiver port (if it is not 0)
+     */
+    public void setReceiver (IftttReceiver receiver)
+    {
+        this.receiver = receiver;
+    }
+
+    /**
+     * Gets the configuration of the own receiver of the adapter.
+     *
+     * @return the configuration of the own receiver
+     */
+    public IftttReceiverConfiguration getReceiverConfiguration ()
+    {
+        return receiverConfiguration;
+    }
+
+    /**
+     * Sets the configuration of the own receiver of the adapter. It is not used, if a shared
+     * receiver is set.
+     *
+     * @param receiverConfiguration the new configuration of the own receiver
+     */
+    public void setReceiverConfiguration (IftttReceiverConfiguration receiverConfiguration)
+    {
+        this.receiverConfiguration = receiverConfiguration;
+    }
+
 }
@@ -0,0 +1,445 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego.ifttt;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.http.HttpStatus;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.nio.SelectChannelConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+import de.zazaz.iot.bosch.indego.DeviceCommand;
+
+/**
+ * A HTTP server, which receives the commands of the IFTTT maker channel for one or more adapters.
+ * Each adapter registers its command queue with its receiver secret, so several IFTTT / Indego
+ * account pairs can share one port. The requests are routed by the secret in the first path
+ * segment:
+ * <ul>
+ * <li>GET /{secret}/command/{commandcode} queues a command and answers with 202 and the id of the
+ * command</li>
+ * <li>GET /{secret}/status/{id} returns the status of a command; with the parameter "wait-ms", the
+ * request is suspended until the command has finished or the time has elapsed</li>
+ * </ul>
+ * The server runs independently of the worker threads of the adapters, so it keeps handling requests
+ * while a worker is restarted. The requests are handled by a bounded thread pool; suspended status
+ * requests don't occupy a thread.
+ * <p>
+ * This class is thread safe.
+ */
+public class IftttReceiver {
+
+    /** the logger */
+    private static final Logger LOG = LogManager.getLogger(IftttReceiver.class);
+
+    /** the name of the request parameter, which specifies how long a status request waits */
+    private static final String PARAM_WAIT_MS = "wait-ms";
+
+    /** the port number to listen on */
+    private final int port;
+
+    /** the configuration to use */
+    private final IftttReceiverConfiguration configuration;
+
+    /** the command queues of the registered adapters by their receiver secret */
+    private final ConcurrentHashMap<String, IftttCommandQueue> commandQueues = new ConcurrentHashMap<>();
+
+    /** the running HTTP server; null, if the receiver is not started */
+    private Server httpServer;
+
+    /**
+     * Initializes the receiver.
+     * 
+     * @param port the port number to listen on
+     * @param configuration_ the configuration to use
+     */
+    public IftttReceiver (int port, IftttReceiverConfiguration configuration_)
+    {
+        this.port = port;
+        // Get a clone, since we don't want to be manipulated during runtime
+        configuration = (IftttReceiverConfiguration) configuration_.clone();
+    }
+
+    /**
+     * This starts the HTTP server.
+     * 
+     * @throws IllegalStateException if the receiver is already started or the server could not be
+     *      started (e.g. since the port is in use)
+     */
+    public synchronized void startup ()
+    {
+        if ( httpServer != null ) {
+            throw new IllegalStateException("The receiver is already started");
+        }
+
+        QueuedThreadPool threadPool = new QueuedThreadPool();
+        threadPool.setName("IftttReceiver");
+        threadPool.setMinThreads(configuration.getMinThreads());
+        threadPool.setMaxThreads(configuration.getMaxThreads());
+        threadPool.setMaxQueued(configuration.getMaxQueuedRequests());
+
+        SelectChannelConnector connector = new SelectChannelConnector();
+        connector.setPort(port);
+        connector.setAcceptQueueSize(configuration.getAcceptQueueSize());
+        connector.setMaxIdleTime(configuration.getMaxIdleTimeMs());
+        connector.setLowResourcesConnections(configuration.getLowResourcesConnections());
+        connector.setLowResourcesMaxIdleTime(configuration.getLowResourcesMaxIdleTimeMs());
+        connector.setRequestHeaderSize(configuration.getRequestHeaderSize());
+
+        ServletHolder holder = new ServletHolder(new ReceiverServlet());
+        holder.setAsyncSupported(true);
+        ServletContextHandler handler = new ServletContextHandler();
+        handler.setContextPath("/");
+        handler.addServlet(holder, "/*");
+
+        Server server = new Server();
+        server.setThreadPool(threadPool);
+        server.addConnector(connector);
+        server.setSendServerVersion(false);
+        server.setHandler(handler);
+        LOG.debug(String.format("Starting IFTTT receiver on port %d", port));
+        try {
+            server.start();
+        }
+        catch (Exception ex) {
+            stop(server);
+            throw new IllegalStateException(String.format("Was not able to start the IFTTT receiver on port %d", port),
+                    ex);
+        }
+        httpServer = server;
+        LOG.info(String.format("IFTTT receiver started on port %d", port));
+    }
+
+    /**
+     * This shuts the HTTP server down.
+     */
+    public synchronized void shutdown ()
+    {
+        if ( httpServer == null ) {
+            throw new IllegalStateException("The receiver is not started");
+        }
+        try {
+            LOG.debug("Shutting down IFTTT receiver");
+            stop(httpServer);
+            LOG.debug("IFTTT receiver terminated");
+        }
+        finally {
+            httpServer = null;
+        }
+    }
+
+    /**
+     * @return true, if the receiver is started
+     */
+    public synchronized boolean isStarted ()
+    {
+        return httpServer != null;
+    }
+
+    /**
+     * @return the port number to listen on
+     */
+    public int getPort ()
+    {
+        return port;
+    }
+
+    /**
+     * Registers the command queue of an adapter. The commands, which are received for the given
+     * secret, are added to this queue.
+     * 
+     * @param secret the receiver secret of the adapter
+     * @param queue the command queue of the adapter
+     */
+    void register (String secret, IftttCommandQueue queue)
+    {
+        if ( secret == null || secret.isEmpty() || secret.indexOf('/') >= 0 ) {
+            throw new IllegalArgumentException("The receiver secret must not be empty or contain a slash");
+        }
+        if ( commandQueues.putIfAbsent(secret, queue) != null ) {
+            throw new IllegalArgumentException("The receiver secret is already used by another adapter");
+        }
+    }
+
+    /**
+     * Unregisters the command queue of an adapter.
+     * 
+     * @param secret the receiver secret of the adapter
+     * @param queue the command queue of the adapter
+     */
+    void unregister (String secret, IftttCommandQueue queue)
+    {
+        if ( secret != null ) {
+            commandQueues.remove(secret, queue);
+        }
+    }
+
+    /**
+     * Stops and destroys the HTTP server.
+     * 
+     * @param server the HTTP server to stop
+     */
+    private void stop (Server server)
+    {
+        try {
+            server.stop();
+            server.join();
+        }
+        catch (Exception ex) {
+            LOG.warn("Something strange happened while stopping the IFTTT receiver", ex);
+        }
+        if ( server.isStopped() ) {
+            server.destroy();
+        }
+    }
+
+    /**
+     * This handles a request of the IFTTT maker channel.
+     * 
+     * @param req_ the servlet request
+     * @param resp_ the servlet response
+     * @throws IOException if the response could not be written
+     */
+    private void handleRequest (HttpServletRequest req_, HttpServletResponse resp_) throws IOException
+    {
+        if ( req_.getContentLength() > configuration.getMaxContentLength() ) {
+            resp_.sendError(HttpStatus.SC_REQUEST_TOO_LONG);
+            return;
+        }
+
+        // The path is "/{secret}/{action}/{argument}"
+        String[] segments = req_.getPathInfo() != null ? req_.getPathInfo().split("/", -1) : new String[0];
+        IftttCommandQueue queue = segments.length == 4 ? commandQueues.get(segments[1]) : null;
+        if ( queue == null ) {
+            resp_.sendError(HttpStatus.SC_NOT_FOUND);
+        }
+        else if ( "command".equals(segments[2]) ) {
+            handleCommand(queue, segments[1], segments[3], resp_);
+        }
+        else if ( "status".equals(segments[2]) ) {
+            handleStatus(queue, segments[3], req_, resp_);
+        }
+        else {
+            resp_.sendError(HttpStatus.SC_NOT_FOUND);
+        }
+    }
+
+    /**
+     * This handles a command request. The command is queued for the command executor of the adapter
+     * and acknowledged immediately with its id.
+     * 
+     * @param queue_ the command queue of the adapter
+     * @param secret_ the receiver secret of the adapter
+     * @param commandStr_ the received command code
+     * @param resp_ the servlet response
+     * @throws IOException if the response could not be written
+     */
+    private void handleCommand (IftttCommandQueue queue_, String secret_, String commandStr_, HttpServletResponse resp_)
+            throws IOException
+    {
+        DeviceCommand command;
+        try {
+            command = DeviceCommand.valueOf(commandStr_);
+        }
+        catch (IllegalArgumentException ex) {
+            LOG.warn(String.format("Received invalid command from IFTTT (%s)", commandStr_));
+            resp_.sendError(HttpStatus.SC_BAD_REQUEST, String.format("Invalid command: %s", commandStr_));
+            return;
+        }
+
+        IftttCommand queuedCommand = queue_.offer(command);
+        if ( queuedCommand == null ) {
+            LOG.warn(String.format("Command queue is full, rejecting command '%s'", command));
+            resp_.sendError(HttpStatus.SC_SERVICE_UNAVAILABLE, "Too many pending commands");
+            return;
+        }
+        LOG.info(String.format("Received command: %s (id %d)", command, queuedCommand.getId()));
+        resp_.setHeader("Location", String.format("/%s/status/%d", secret_, queuedCommand.getId()));
+        writeJson(resp_, HttpStatus.SC_ACCEPTED, queuedCommand);
+    }
+
+    /**
+     * This handles a request for the status of a received command. If the request asks for waiting
+     * and the command has not finished yet, the request is suspended until the command has finished
+     * or the wait time has elapsed.
+     * 
+     * @param queue_ the command queue of the adapter
+     * @param idStr_ the id of the command
+     * @param req_ the servlet request
+     * @param resp_ the servlet response
+     * @throws IOException if the response could not be written
+     */
+    private void handleStatus (IftttCommandQueue queue_, String idStr_, HttpServletRequest req_,
+            HttpServletResponse resp_) throws IOException
+    {
+        final IftttCommand command;
+        long waitMs;
+        try {
+            command = queue_.get(Long.parseLong(idStr_));
+            String waitStr = req_.getParameter(PARAM_WAIT_MS);
+            waitMs = waitStr != null ? Math.min(Long.parseLong(waitStr), configuration.getMaxStatusWaitMs()) : 0;
+        }
+        catch (NumberFormatException ex) {
+            resp_.sendError(HttpStatus.SC_BAD_REQUEST);
+            return;
+        }
+        if ( command == null ) {
+            resp_.sendError(HttpStatus.SC_NOT_FOUND, "Unknown command id");
+            return;
+        }
+        if ( waitMs <= 0 || command.isFinished() ) {
+            writeJson(resp_, HttpStatus.SC_OK, command);
+            return;
+        }
+
+        // Suspend the request, so it doesn't occupy a thread while waiting
+        final AsyncContext asyncContext = req_.startAsync();
+        final AtomicBoolean flagResponded = new AtomicBoolean(false);
+        asyncContext.setTimeout(waitMs);
+        asyncContext.addListener(new AsyncListener() {
+
+            @Override
+            public void onTimeout (AsyncEvent event_) throws IOException
+            {
+                respondAsync(asyncContext, command, flagResponded);
+            }
+
+            @Override
+            public void onStartAsync (AsyncEvent event_) throws IOException
+            {
+                // Nothing to do
+            }
+
+            @Override
+            public void onError (AsyncEvent event_) throws IOException
+            {
+                // Nothing to do
+            }
+
+            @Override
+            public void onComplete (AsyncEvent event_) throws IOException
+            {
+                // Nothing to do
+            }
+        });
+        command.addCompletionListener(new Runnable() {
+
+            @Override
+            public void run ()
+            {
+                if ( flagResponded.get() ) {
+                    return;
+                }
+                try {
+                    // Write the response by a thread of the receiver, not by the command executor
+                    asyncContext.start(new Runnable() {
+
+                        @Override
+                        public void run ()
+                        {
+                            try {
+                                respondAsync(asyncContext, command, flagResponded);
+                            }
+                            catch (IOException ex) {
+                                LOG.debug("Was not able to write the status of a command", ex);
+                            }
+                        }
+                    });
+                }
+                catch (IllegalStateException ex) {
+                    // The request has already timed out
+                }
+            }
+        });
+    }
+
+    /**
+     * Writes the status of a command to a suspended request and completes it, if this was not
+     * done before.
+     * 
+     * @param asyncContext_ the context of the suspended request
+     * @param command_ the command to write
+     * @param flagResponded_ indicates, that the request was already answered
+     * @throws IOException if the response could not be written
+     */
+    private void respondAsync (AsyncContext asyncContext_, IftttCommand command_, AtomicBoolean flagResponded_)
+            throws IOException
+    {
+        if ( !flagResponded_.compareAndSet(false, true) ) {
+            return;
+        }
+        try {
+            writeJson((HttpServletResponse) asyncContext_.getResponse(), HttpStatus.SC_OK, command_);
+        }
+        finally {
+            asyncContext_.complete();
+        }
+    }
+
+    /**
+     * Writes the given command as JSON document to the response.
+     * 
+     * @param resp_ the servlet response
+     * @param status_ the HTTP status code
+     * @param command_ the command to write
+     * @throws IOException if the response could not be written
+     */
+    private void writeJson (HttpServletResponse resp_, int status_, IftttCommand command_) throws IOException
+    {
+        resp_.setStatus(status_);
+        resp_.setContentType("application/json");
+        resp_.setCharacterEncoding("UTF-8");
+        resp_.getWriter().write(command_.toJson());
+    }
+
+    /**
+     * The servlet, which passes all requests to the receiver.
+     */
+    private class ReceiverServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void doGet (HttpServletRequest req_, HttpServletResponse resp_) throws ServletException, IOException
+        {
+            handleRequest(req_, resp_);
+        }
+
+        @Override
+        protected void doPost (HttpServletRequest req_, HttpServletResponse resp_) throws ServletException, IOException
+        {
+            handleRequest(req_, resp_);
+        }
+
+    }
+
+}
@@ -0,0 +1,272 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego.ifttt;
+
+/**
+ * This contains the configuration of the HTTP server, which receives the IFTTT commands.
+ */
+public class IftttReceiverConfiguration implements Cloneable {
+
+    /** the minimum number of threads, which handle the requests */
+    private int minThreads = 2;
+
+    /** the maximum number of threads, which handle the requests */
+    private int maxThreads = 8;
+
+    /** the maximum number of requests, which wait for a free thread */
+    private int maxQueuedRequests = 32;
+
+    /** the maximum number of connections, which wait for being accepted (backlog of the server socket) */
+    private int acceptQueueSize = 16;
+
+    /** the time (in ms), after which an idle keep-alive connection is closed */
+    private int maxIdleTimeMs = 30 * 1000;
+
+    /** the number of open connections, from which on the server is considered to be low on resources */
+    private int lowResourcesConnections = 64;
+
+    /** the time (in ms), after which an idle connection is closed, while the server is low on resources */
+    private int lowResourcesMaxIdleTimeMs = 1000;
+
+    /** the maximum size (in bytes) of the request line and the request headers */
+    private int requestHeaderSize = 4096;
+
+    /** the maximum size (in bytes) of a request body */
+    private int maxContentLength = 1024;
+
+    /** the maximum time (in ms), a status request waits for the execution of its command */
+    private long maxStatusWaitMs = 30 * 1000;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object clone ()
+    {
+        try {
+            return super.clone();
+        }
+        catch (CloneNotSupportedException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Gets the minimum number of threads, which handle the requests.
+     *
+     * @return the minimum number of threads, which handle the requests
+     */
+    public int getMinThreads ()
+    {
+        return minThreads;
+    }
+
+    /**
+     * Sets the minimum number of threads, which handle the requests.
+     *
+     * @param minThreads the new minimum number of threads, which handle the requests
+     */
+    public void setMinThreads (int minThreads)
+    {
+        this.minThreads = minThreads;
+    }
+
+    /**
+     * Gets the maximum number of threads, which handle the requests.
+     *
+     * @return the maximum number of threads, which handle the requests
+     */
+    public int getMaxThreads ()
+    {
+        return maxThreads;
+    }
+
+    /**
+     * Sets the maximum number of threads, which handle the requests.
+     *
+     * @param maxThreads the new maximum number of threads, which handle the requests
+     */
+    public void setMaxThreads (int maxThreads)
+    {
+        this.maxThreads = maxThreads;
+    }
+
+    /**
+     * Gets the maximum number of requests, which wait for a free thread.
+     *
+     * @return the maximum number of requests, which wait for a free thread
+     */
+    public int getMaxQueuedRequests ()
+    {
+        return maxQueuedRequests;
+    }
+
+    /**
+     * Sets the maximum number of requests, which wait for a free thread. Further requests are
+     * rejected, until a thread gets free.
+     *
+     * @param maxQueuedRequests the new maximum number of requests, which wait for a free thread
+     */
+    public void setMaxQueuedRequests (int maxQueuedRequests)
+    {
+        this.maxQueuedRequests = maxQueuedRequests;
+    }
+
+    /**
+     * Gets the maximum number of connections, which wait for being accepted.
+     *
+     * @return the maximum number of connections, which wait for being accepted
+     */
+    public int getAcceptQueueSize ()
+    {
+        return acceptQueueSize;
+    }
+
+    /**
+     * Sets the maximum number of connections, which wait for being accepted.
+     *
+     * @param acceptQueueSize the new maximum number of connections, which wait for being accepted
+     */
+    public void setAcceptQueueSize (int acceptQueueSize)
+    {
+        this.acceptQueueSize = acceptQueueSize;
+    }
+
+    /**
+     * Gets the time (in ms), after which an idle keep-alive connection is closed.
+     *
+     * @return the time (in ms), after which an idle keep-alive connection is closed
+     */
+    public int getMaxIdleTimeMs ()
+    {
+        return maxIdleTimeMs;
+    }
+
+    /**
+     * Sets the time (in ms), after which an idle keep-alive connection is closed.
+     *
+     * @param maxIdleTimeMs the new time (in ms), after which an idle keep-alive connection is closed
+     */
+    public void setMaxIdleTimeMs (int maxIdleTimeMs)
+    {
+        this.maxIdleTimeMs = maxIdleTimeMs;
+    }
+
+    /**
+     * Gets the number of open connections, from which on the server is considered to be low on resources.
+     *
+     * @return the number of open connections, from which on the server is considered to be low on resources
+     */
+    public int getLowResourcesConnections ()
+    {
+        return lowResourcesConnections;
+    }
+
+    /**
+     * Sets the number of open connections, from which on the server is considered to be low on resources.
+     *
+     * @param lowResourcesConnections the new number of open connections, from which on the server is
+     *      considered to be low on resources
+     */
+    public void setLowResourcesConnections (int lowResourcesConnections)
+    {
+        this.lowResourcesConnections = lowResourcesConnections;
+    }
+
+    /**
+     * Gets the time (in ms), after which an idle connection is closed, while the server is low on resources.
+     *
+     * @return the time (in ms), after which an idle connection is closed, while the server is low on resources
+     */
+    public int getLowResourcesMaxIdleTimeMs ()
+    {
+        return lowResourcesMaxIdleTimeMs;
+    }
+
+    /**
+     * Sets the time (in ms), after which an idle connection is closed, while the server is low on resources.
+     *
+     * @param lowResourcesMaxIdleTimeMs the new time (in ms), after which an idle connection is closed,
+     *      while the server is low on resources
+     */
+    public void setLowResourcesMaxIdleTimeMs (int lowResourcesMaxIdleTimeMs)
+    {
+        this.lowResourcesMaxIdleTimeMs = lowResourcesMaxIdleTimeMs;
+    }
+
+    /**
+     * Gets the maximum size (in bytes) of the request line and the request headers.
+     *
+     * @return the maximum size (in bytes) of the request line and the request headers
+     */
+    public int getRequestHeaderSize ()
+    {
+        return requestHeaderSize;
+    }
+
+    /**
+     * Sets the maximum size (in bytes) of the request line and the request headers. Larger
+     * requests are rejected with HTTP status 413.
+     *
+     * @param requestHeaderSize the new maximum size (in bytes) of the request line and the request headers
+     */
+    public void setRequestHeaderSize (int requestHeaderSize)
+    {
+        this.requestHeaderSize = requestHeaderSize;
+    }
+
+    /**
+     * Gets the maximum size (in bytes) of a request body.
+     *
+     * @return the maximum size (in bytes) of a request body
+     */
+    public int getMaxContentLength ()
+    {
+        return maxContentLength;
+    }
+
+    /**
+     * Sets the maximum size (in bytes) of a request body. Larger requests are rejected with HTTP status 413.
+     *
+     * @param maxContentLength the new maximum size (in bytes) of a request body
+     */
+    public void setMaxContentLength (int maxContentLength)
+    {
+        this.maxContentLength = maxContentLength;
+    }
+
+    /**
+     * Gets the maximum time (in ms), a status request waits for the execution of its command.
+     *
+     * @return the maximum time (in ms), a status request waits for the execution of its command
+     */
+    public long getMaxStatusWaitMs ()
+    {
+        return maxStatusWaitMs;
+    }
+
+    /**
+     * Sets the maximum time (in ms), a status request waits for the execution of its command.
+     *
+     * @param maxStatusWaitMs the new maximum time (in ms), a status request waits for the execution of its command
+     */
+    public void setMaxStatusWaitMs (long maxStatusWaitMs)
+    {
+        this.maxStatusWaitMs = maxStatusWaitMs;
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego.ifttt;
+
+import de.zazaz.iot.bosch.indego.DeviceCommand;
+import de.zazaz.iot.bosch.indego.DeviceStateInformation;
+import de.zazaz.iot.bosch.indego.DeviceStatus;
+import de.zazaz.iot.bosch.indego.IndegoStateEvent;
+import de.zazaz.iot.bosch.indego.IndegoStateListener;
+
+/**
+ * Translates the state changes of the device into the events of the IFTTT maker channel and passes
+ * them to the dispatcher. This is called by the thread, which published the state to the bus; it
+ * returns quickly, since the dispatcher never blocks.
+ */
+class IftttStateListener implements IndegoStateListener {
+
+    /** the configuration of the adapter */
+    private final IftttIndegoAdapterConfiguration configuration;
+
+    /** the dispatcher, which sends the events */
+    private final IftttTriggerDispatcher dispatcher;
+
+    /**
+     * @param configuration the configuration of the adapter
+     * @param dispatcher the dispatcher, which sends the events
+     */
+    IftttStateListener (IftttIndegoAdapterConfiguration configuration, IftttTriggerDispatcher dispatcher)
+    {
+        this.configuration = configuration;
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void stateChanged (IndegoStateEvent event)
+    {
+        DeviceStateInformation currentState = event.getCurrentState();
+        String percentMowed = currentState != null ? Integer.toString(currentState.getMowed()) : "unknown";
+
+        switch ( event.getType() ) {
+            case OFFLINE:
+                dispatcher.dispatch(configuration.getIftttOfflineEventName(), "offline", "", percentMowed);
+                break;
+
+            case ONLINE:
+                dispatcher.dispatch(configuration.getIftttOnlineEventName(), "online", "", percentMowed);
+                break;
+
+            case STATE:
+                // Only the changes, which are relevant for the commands, are sent
+                DeviceCommand previousCommand = getAssociatedCommand(event.getPreviousState());
+                DeviceCommand currentCommand = getAssociatedCommand(currentState);
+                if ( currentCommand != previousCommand ) {
+                    String message = currentCommand != null ? currentCommand.toString() : "UNKNOWN";
+                    dispatcher.dispatch(configuration.getIftttStateChangeEventName(), message, "", percentMowed);
+                }
+                break;
+
+            case ERROR:
+                if ( currentState.getError() == 0 ) {
+                    dispatcher.dispatch(configuration.getIftttErrorClearedEventName(),
+                            Integer.toString(currentState.getError()), "", percentMowed);
+                }
+                else {
+                    dispatcher.dispatch(configuration.getIftttErrorEventName(),
+                            Integer.toString(currentState.getError()), "Unknown error", percentMowed);
+                }
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    /**
+     * @param state the state of the device (may be null)
+     * @return the command, which is associated with the state; null, if there is none
+     */
+    private DeviceCommand getAssociatedCommand (DeviceStateInformation state)
+    {
+        return state != null ? DeviceStatus.decodeStatusCode(state.getState()).getAssociatedCommand() : null;
+    }
+
+}
@@ -0,0 +1,449 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego.ifttt;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.zazaz.iot.bosch.indego.IndegoRateLimiter;
+
+/**
+ * This sends the events of the {@link IftttIndegoAdapter} to the IFTTT maker channel by an own
+ * thread, so the polling of the device never waits for the IFTTT server.
+ * <p>
+ * The pending events are kept in a bounded queue and sent in the order of their arrival. If an event
+ * is triggered again, while it is still pending, only the latest values are sent. A failed event is
+ * retried with an exponentially growing delay, the following events wait for it; events, which were
+ * given up (after the maximum number of attempts, on a permanent error or
+ * because the queue is full), are logged to the dead letter logger
+ * <code>de.zazaz.iot.bosch.indego.ifttt.IftttTriggerDispatcher.DeadLetter</code>.
+ * <p>
+ * Optionally, the events are debounced by an {@link IftttEventAggregator} before they are queued.
+ * The requests (including the retries) are limited by a token bucket per maker key, which is
+ * shared by all dispatchers of the JVM, since IFTTT throttles the requests per key.
+ */
+class IftttTriggerDispatcher {
+
+    /** the logger */
+    private static final Logger LOG = LogManager.getLogger(IftttTriggerDispatcher.class);
+
+    /** the logger for the events, which were given up */
+    private static final Logger LOG_DEAD_LETTER = LogManager.getLogger(IftttTriggerDispatcher.class.getName() + ".DeadLetter");
+
+    private static final String URL_IFTTT = "https://maker.ifttt.com/trigger/%s/with/key/%s";
+
+    /** the rate limiters by maker key */
+    private static final ConcurrentHashMap<String, IndegoRateLimiter> RATE_LIMITERS = new ConcurrentHashMap<>();
+
+    /**
+     * An event, which waits for being sent.
+     */
+    static class Trigger {
+
+        /** the name of the event */
+        final String eventName;
+
+        /** the values of the event */
+        final String value1, value2, value3;
+
+        /** the number of failed attempts */
+        private int attempts;
+
+        /** the timestamp, when the event is sent next */
+        private long dueTs;
+
+        Trigger (String eventName, String value1, String value2, String value3)
+        {
+            this.eventName = eventName;
+            this.value1 = value1;
+            this.value2 = value2;
+            this.value3 = value3;
+        }
+
+        @Override
+        public String toString ()
+        {
+            return String.format("('%s', '%s', '%s', '%s')", eventName, value1, value2, value3);
+        }
+
+    }
+
+    /** the configuration to use */
+    private final IftttIndegoAdapterConfiguration configuration;
+
+    /** the HTTP client for sending the events; it is closed on shutdown */
+    private final CloseableHttpClient httpClient;
+
+    /** the pending events (oldest first); guarded by itself */
+    private final List<Trigger> pending = new ArrayList<>();
+
+    /** debounces the events before they are queued; null, if disabled; guarded by the pending events */
+    private final IftttEventAggregator aggregator;
+
+    /** limits the requests to IFTTT; null, if unlimited */
+    private final IndegoRateLimiter rateLimiter;
+
+    /** the timestamp, until the dispatcher waits for its reserved token; 0, if no token is reserved */
+    private long rateLimitedUntilTs;
+
+    /** this is used for indicating, that we are request to shutdown */
+    private final AtomicBoolean flagShutdown = new AtomicBoolean(false);
+
+    /** semaphore for waking the dispatcher thread up */
+    private final Semaphore semThreadWaker = new Semaphore(0);
+
+    /** a reference to the dispatcher thread */
+    private Thread threadDispatcher;
+
+    /**
+     * @param configuration the configuration of the adapter
+     * @param httpClient the HTTP client for sending the events
+     */
+    IftttTriggerDispatcher (IftttIndegoAdapterConfiguration configuration, CloseableHttpClient httpClient)
+    {
+        this.configuration = configuration;
+        this.httpClient = httpClient;
+        aggregator = configuration.getIftttDebounceWindowMs() > 0
+                ? new IftttEventAggregator(configuration.getIftttDebounceWindowMs(), configuration.getIftttSummaryEventName())
+                : null;
+        rateLimiter = configuration.getIftttMaxTriggersPerMinute() > 0 ? getRateLimiter(configuration) : null;
+    }
+
+    /**
+     * Returns the rate limiter of the maker key of the given configuration. If it does not exist yet,
+     * it is created with the limits of the configuration.
+     * 
+     * @param configuration the configuration of the adapter
+     * @return the rate limiter of the maker key
+     */
+    private static IndegoRateLimiter getRateLimiter (IftttIndegoAdapterConfiguration configuration)
+    {
+        return RATE_LIMITERS.computeIfAbsent(String.valueOf(configuration.getIftttMakerKey()),
+                key -> new IndegoRateLimiter(configuration.getIftttMaxTriggersPerMinute() / 60.0,
+                        Math.max(1, configuration.getIftttTriggerBurst())));
+    }
+
+    /**
+     * Starts the dispatcher thread.
+     */
+    synchronized void startup ()
+    {
+        if ( threadDispatcher != null ) {
+            throw new IllegalStateException("The dispatcher is already started");
+        }
+        flagShutdown.set(false);
+        threadDispatcher = new Thread(new Runnable() {
+
+            @Override
+            public void run ()
+            {
+                runDispatcher();
+            }
+        });
+        threadDispatcher.start();
+    }
+
+    /**
+     * Stops the dispatcher thread and closes the HTTP client. The events, which were not sent yet,
+     * are dropped.
+     */
+    synchronized void shutdown ()
+    {
+        if ( threadDispatcher == null ) {
+            throw new IllegalStateException("The dispatcher is not started");
+        }
+        LOG.debug("Requesting dispatcher thread to shut down");
+        flagShutdown.set(true);
+        semThreadWaker.release();
+        while (true) {
+            try {
+                threadDispatcher.join();
+                break;
+            }
+            catch (InterruptedException ex) {
+                // Ignored
+            }
+        }
+        threadDispatcher = null;
+        synchronized ( pending ) {
+            if ( aggregator != null ) {
+                pending.addAll(aggregator.drain());
+            }
+            if ( pending.size() > 0 ) {
+                LOG.warn(String.format("Dropping %d pending IFTTT triggers on shutdown", pending.size()));
+            }
+            for (Trigger trigger : pending) {
+                LOG_DEAD_LETTER.error(String.format("Dropped IFTTT trigger %s on shutdown", trigger));
+            }
+            pending.clear();
+        }
+        try {
+            LOG.info("Closing the HTTP client");
+            httpClient.close();
+        }
+        catch (Exception ex) {
+            LOG.warn("Something strange happened while closing the HTTP client", ex);
+        }
+    }
+
+    /**
+     * Queues an event for sending. This never blocks.
+     * 
+     * @param eventName the name of the event; if null, nothing is sent
+     * @param value1 the first value of the event
+     * @param value2 the second value of the event
+     * @param value3 the third value of the event
+     */
+    void dispatch (String eventName, String value1, String value2, String value3)
+    {
+        if ( eventName == null ) {
+            return;
+        }
+        Trigger trigger = new Trigger(eventName, value1, value2, value3);
+        Trigger dropped = null;
+        synchronized ( pending ) {
+            if ( aggregator != null ) {
+                trigger = aggregator.add(trigger, System.currentTimeMillis());
+            }
+            if ( trigger != null ) {
+                dropped = enqueue(trigger);
+            }
+            else {
+                LOG.debug(String.format("Debouncing IFTTT trigger %s", eventName));
+            }
+        }
+        if ( dropped != null ) {
+            LOG_DEAD_LETTER.error(String.format("Dropped IFTTT trigger %s, since the queue is full", dropped));
+        }
+        semThreadWaker.release();
+    }
+
+    /**
+     * Adds an event to the pending events. If an event with the same name is pending, it is replaced.
+     * 
+     * @param trigger the event to add
+     * @return the oldest event, which was removed since the queue is full; null, if none was removed
+     */
+    private Trigger enqueue (Trigger trigger)
+    {
+        int index = indexOf(trigger.eventName);
+        if ( index >= 0 ) {
+            // A pending retry keeps its delay, so the server is not hammered by a changing event
+            Trigger replaced = pending.set(index, trigger);
+            LOG.debug(String.format("Replacing pending IFTTT trigger %s by %s", replaced, trigger));
+            trigger.dueTs = replaced.dueTs;
+            return null;
+        }
+        Trigger dropped = null;
+        if ( pending.size() >= configuration.getIftttQueueCapacity() ) {
+            dropped = pending.remove(0);
+        }
+        pending.add(trigger);
+        return dropped;
+    }
+
+    /**
+     * @param eventName the name of an event
+     * @return the index of the pending event with the given name; -1, if there is none
+     */
+    private int indexOf (String eventName)
+    {
+        for (int i = 0; i < pending.size(); i++) {
+            if ( pending.get(i).eventName.equals(eventName) ) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the number of events, which wait for being sent
+     */
+    int size ()
+    {
+        synchronized ( pending ) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * This is the entry point for the dispatcher thread. It sends the due events in the order of
+     * their arrival.
+     */
+    private void runDispatcher ()
+    {
+        LOG.debug("Dispatcher thread started");
+        try {
+            while ( !flagShutdown.get() ) {
+                Trigger trigger = null;
+                long waitMs = Long.MAX_VALUE;
+                List<Trigger> dropped = new ArrayList<>();
+                synchronized ( pending ) {
+                    long now = System.currentTimeMillis();
+                    if ( aggregator != null ) {
+                        for (Trigger collected : aggregator.flush(now)) {
+                            Trigger removed = enqueue(collected);
+                            if ( removed != null ) {
+                                dropped.add(removed);
+                            }
+                        }
+                        waitMs = aggregator.getDueTs() - now;
+                    }
+                    if ( !pending.isEmpty() ) {
+                        if ( pending.get(0).dueTs <= now && !isRateLimited(now) ) {
+                            trigger = pending.remove(0);
+                        }
+                        else {
+                            long dueTs = Math.max(pending.get(0).dueTs, rateLimitedUntilTs);
+                            waitMs = Math.min(waitMs, Math.max(1, dueTs - now));
+                        }
+                    }
+                }
+                for (Trigger removed : dropped) {
+                    LOG_DEAD_LETTER.error(String.format("Dropped IFTTT trigger %s, since the queue is full", removed));
+                }
+                if ( trigger == null ) {
+                    try {
+                        semThreadWaker.tryAcquire(waitMs, TimeUnit.MILLISECONDS);
+                    }
+                    catch (InterruptedException ex) {
+                        // Ignored
+                    }
+                    continue;
+                }
+                try {
+                    send(trigger);
+                }
+                catch (Exception ex) {
+                    LOG.error(String.format("Unhandled exception while sending IFTTT trigger %s", trigger), ex);
+                    retry(trigger);
+                }
+            }
+        }
+        finally {
+            LOG.debug("Closing dispatcher thread");
+        }
+    }
+
+    /**
+     * Takes a token of the rate limiter for sending the next event. If no token is available, one is
+     * reserved and the dispatcher waits, until it gets available.
+     * 
+     * @param now the current timestamp
+     * @return true, if the next event has to wait for the reserved token; false, if it may be sent
+     */
+    private boolean isRateLimited (long now)
+    {
+        if ( rateLimiter == null ) {
+            return false;
+        }
+        if ( rateLimitedUntilTs != 0 ) {
+            if ( now < rateLimitedUntilTs ) {
+                return true;
+            }
+            rateLimitedUntilTs = 0;
+            return false;
+        }
+        long waitMs = rateLimiter.reserve();
+        if ( waitMs <= 0 ) {
+            return false;
+        }
+        LOG.info(String.format("Rate limit of IFTTT triggers exceeded, waiting %d ms", waitMs));
+        rateLimitedUntilTs = now + waitMs;
+        return true;
+    }
+
+    /**
+     * Sends an event to the IFTTT server; if it fails, a retry is scheduled.
+     * 
+     * @param trigger the event to send
+     */
+    private void send (Trigger trigger)
+    {
+        LOG.info(String.format("Sending IFTTT trigger %s", trigger));
+
+        String json = String.format("{ \"value1\" : \"%s\", \"value2\" : \"%s\", \"value3\" : \"%s\" }", trigger.value1,
+                trigger.value2, trigger.value3);
+
+        HttpPut httpRequest = new HttpPut(String.format(URL_IFTTT, trigger.eventName, configuration.getIftttMakerKey()));
+        httpRequest.setEntity(new StringEntity(json, ContentType.APPLICATION_JSON));
+
+        try (CloseableHttpResponse response = httpClient.execute(httpRequest)) {
+            int status = response.getStatusLine().getStatusCode();
+            if ( status == HttpStatus.SC_OK ) {
+                LOG.debug("IFTT Trigger sent successfully");
+            }
+            else if ( status >= HttpStatus.SC_INTERNAL_SERVER_ERROR || status == 429 ) {
+                LOG.warn(String.format("IFTTT trigger was not accepted %s => %s", trigger, response.getStatusLine()));
+                retry(trigger);
+            }
+            else {
+                // The request itself is wrong (e.g. an invalid key), so a retry does not help
+                LOG_DEAD_LETTER.error(String.format("Dropped IFTTT trigger %s, since it was rejected => %s", trigger,
+                        response.getStatusLine()));
+            }
+        }
+        catch (IOException ex) {
+            LOG.warn(String.format("Error while sending IFTTT trigger %s", trigger), ex);
+            retry(trigger);
+        }
+    }
+
+    /**
+     * Schedules the retry of a failed event at the head of the queue, unless it was given up or a
+     * newer event with the same name is pending already.
+     * 
+     * @param trigger the failed event
+     */
+    private void retry (Trigger trigger)
+    {
+        trigger.attempts++;
+        if ( trigger.attempts >= configuration.getIftttMaxAttempts() ) {
+            LOG_DEAD_LETTER.error(String.format("Dropped IFTTT trigger %s after %d attempts", trigger, trigger.attempts));
+            return;
+        }
+        long delayMs = configuration.getIftttRetryInitialDelayMs() << Math.min(trigger.attempts - 1, 30);
+        delayMs = Math.min(Math.max(delayMs, 0), configuration.getIftttRetryMaxDelayMs());
+        trigger.dueTs = System.currentTimeMillis() + delayMs;
+        synchronized ( pending ) {
+            int index = indexOf(trigger.eventName);
+            if ( index >= 0 ) {
+                // Only the latest values are sent, but not before the delay of the failed attempt
+                Trigger newer = pending.get(index);
+                newer.dueTs = Math.max(newer.dueTs, trigger.dueTs);
+                return;
+            }
+            pending.add(0, trigger);
+        }
+        LOG.info(String.format("Retrying IFTTT trigger %s in %d ms", trigger, delayMs));
+    }
+
+}
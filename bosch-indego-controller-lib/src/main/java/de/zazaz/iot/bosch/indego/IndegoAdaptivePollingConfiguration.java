@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego;
+
+import java.time.ZoneId;
+
+/**
+ * This contains the configuration of an adaptive polling policy.
+ */
+public class IndegoAdaptivePollingConfiguration implements Cloneable {
+
+    /** the polling interval (in ms), while the device is active (mowing, returning, ...) */
+    private long activeIntervalMs = 15 * 1000;
+
+    /** the maximum polling interval (in ms), while the device is docked */
+    private long idleIntervalMs = 10 * 60 * 1000;
+
+    /** the factor, by which the interval grows with each poll, which shows no change */
+    private double backoffFactor = 2.0;
+
+    /** the time (in ms) before the start of a calendar slot, from which on the active interval is used */
+    private long calendarLeadTimeMs = 2 * 60 * 1000;
+
+    /** the maximum polling interval (in ms), while the device is docked within a calendar slot */
+    private long slotIntervalMs = 60 * 1000;
+
+    /** the interval (in ms), after which the calendar of the device is fetched again */
+    private long calendarRefreshIntervalMs = 60 * 60 * 1000;
+
+    /** the time zone of the calendar of the device; if null, the default time zone is used */
+    private ZoneId calendarZone;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object clone ()
+    {
+        try {
+            return super.clone();
+        }
+        catch (CloneNotSupportedException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Gets the polling interval (in ms), while the device is active (mowing, returning, ...).
+     *
+     * @return the polling interval (in ms), while the device is active
+     */
+    public long getActiveIntervalMs ()
+    {
+        return activeIntervalMs;
+    }
+
+    /**
+     * Sets the polling interval (in ms), while the device is active (mowing, returning, ...).
+     *
+     * @param activeIntervalMs_ the new polling interval (in ms), while the device is active
+     */
+    public void setActiveIntervalMs (long activeIntervalMs_)
+    {
+        activeIntervalMs = activeIntervalMs_;
+    }
+
+    /**
+     * Gets the maximum polling interval (in ms), while the device is docked.
+     *
+     * @return the maximum polling interval (in ms), while the device is docked
+     */
+    public long getIdleIntervalMs ()
+    {
+        return idleIntervalMs;
+    }
+
+    /**
+     * Sets the maximum polling interval (in ms), while the device is docked.
+     *
+     * @param idleIntervalMs_ the new maximum polling interval (in ms), while the device is docked
+     */
+    public void setIdleIntervalMs (long idleIntervalMs_)
+    {
+        idleIntervalMs = idleIntervalMs_;
+    }
+
+    /**
+     * Gets the factor, by which the interval grows with each poll, which shows no change.
+     *
+     * @return the factor, by which the interval grows
+     */
+    public double getBackoffFactor ()
+    {
+        return backoffFactor;
+    }
+
+    /**
+     * Sets the factor, by which the interval grows with each poll, which shows no change.
+     *
+     * @param backoffFactor_ the new factor (at least 1)
+     */
+    public void setBackoffFactor (double backoffFactor_)
+    {
+        backoffFactor = backoffFactor_;
+    }
+
+    /**
+     * Gets the time (in ms) before the start of a calendar slot, from which on the active interval is used.
+     *
+     * @return the lead time (in ms) before the start of a calendar slot
+     */
+    public long getCalendarLeadTimeMs ()
+    {
+        return calendarLeadTimeMs;
+    }
+
+    /**
+     * Sets the time (in ms) before the start of a calendar slot, from which on the active interval is used.
+     *
+     * @param calendarLeadTimeMs_ the new lead time (in ms) before the start of a calendar slot
+     */
+    public void setCalendarLeadTimeMs (long calendarLeadTimeMs_)
+    {
+        calendarLeadTimeMs = calendarLeadTimeMs_;
+    }
+
+    /**
+     * Gets the maximum polling interval (in ms), while the device is docked within a calendar slot.
+     *
+     * @return the maximum polling interval (in ms) within a calendar slot
+     */
+    public long getSlotIntervalMs ()
+    {
+        return slotIntervalMs;
+    }
+
+    /**
+     * Sets the maximum polling interval (in ms), while the device is docked within a calendar slot.
+     *
+     * @param slotIntervalMs_ the new maximum polling interval (in ms) within a calendar slot
+     */
+    public void setSlotIntervalMs (long slotIntervalMs_)
+    {
+        slotIntervalMs = slotIntervalMs_;
+    }
+
+    /**
+     * Gets the interval (in ms), after which the calendar of the device is fetched again.
+     *
+     * @return the interval (in ms), after which the calendar is fetched again
+     */
+    public long getCalendarRefreshIntervalMs ()
+    {
+        return calendarRefreshIntervalMs;
+    }
+
+    /**
+     * Sets the interval (in ms), after which the calendar of the device is fetched again.
+     *
+     * @param calendarRefreshIntervalMs_ the new interval (in ms); 0 disables the calendar
+     */
+    public void setCalendarRefreshIntervalMs (long calendarRefreshIntervalMs_)
+    {
+        calendarRefreshIntervalMs = calendarRefreshIntervalMs_;
+    }
+
+    /**
+     * Gets the time zone of the calendar of the device; if null, the default time zone is used.
+     *
+     * @return the time zone of the calendar
+     */
+    public ZoneId getCalendarZone ()
+    {
+        return calendarZone;
+    }
+
+    /**
+     * Sets the time zone of the calendar of the device; if null, the default time zone is used.
+     *
+     * @param calendarZone_ the new time zone of the calendar
+     */
+    public void setCalendarZone (ZoneId calendarZone_)
+    {
+        calendarZone = calendarZone_;
+    }
+
+}
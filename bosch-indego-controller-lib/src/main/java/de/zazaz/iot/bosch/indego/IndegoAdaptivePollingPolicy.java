@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego;
+
+import java.util.Date;
+
+/**
+ * A polling policy, which adapts the interval to the state of the device:
+ * <ul>
+ * <li>While the device is active (mowing, paused in the lawn, returning to the dock), it is
+ * polled with the active interval.</li>
+ * <li>After a change of the state, the device is polled with the active interval, too.</li>
+ * <li>While the device is docked and its state does not change, the interval grows with each
+ * poll up to the idle interval.</li>
+ * <li>Shortly before the next slot of the calendar or the predicted next cutting starts, the
+ * device is polled with the active interval, so the start of mowing is detected quickly.</li>
+ * <li>A device, which stays docked within a slot of its calendar (e.g. for charging), is polled
+ * at least with the slot interval. After the slot, the interval grows again.</li>
+ * </ul>
+ * So a device, which sleeps in its dock during the night, causes only a few requests, while
+ * changes are still detected quickly during mowing.
+ */
+public class IndegoAdaptivePollingPolicy implements IndegoPollingPolicy {
+
+    /** the configuration to use */
+    private final IndegoAdaptivePollingConfiguration configuration;
+
+    /** the timeline of the calendar slots and the predicted cutting */
+    private volatile IndegoCalendarTimeline timeline = IndegoCalendarTimeline.EMPTY;
+
+    /** the current polling interval (in ms) */
+    private long currentIntervalMs;
+
+    /** the state code of the last poll; -1, if unknown */
+    private int lastStateCode = -1;
+
+    /** the error code of the last poll */
+    private int lastErrorCode;
+
+    /**
+     * Initializes the policy.
+     *
+     * @param configuration_ the configuration to use
+     */
+    public IndegoAdaptivePollingPolicy (IndegoAdaptivePollingConfiguration configuration_)
+    {
+        // Get a clone, since we don't want to be manipulated during runtime
+        configuration = (IndegoAdaptivePollingConfiguration) configuration_.clone();
+        if ( configuration.getActiveIntervalMs() <= 0
+                || configuration.getIdleIntervalMs() < configuration.getActiveIntervalMs() ) {
+            throw new IllegalArgumentException("The idle interval has to be at least the active interval");
+        }
+        if ( configuration.getBackoffFactor() < 1 ) {
+            throw new IllegalArgumentException("The backoff factor has to be at least 1");
+        }
+        currentIntervalMs = configuration.getActiveIntervalMs();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized long nextIntervalMs (DeviceStateInformation state_)
+    {
+        long activeMs = configuration.getActiveIntervalMs();
+        if ( state_ == null ) {
+            lastStateCode = -1;
+            currentIntervalMs = backoff(currentIntervalMs);
+            return currentIntervalMs;
+        }
+
+        boolean changed = state_.getState() != lastStateCode || state_.getError() != lastErrorCode;
+        lastStateCode = state_.getState();
+        lastErrorCode = state_.getError();
+        if ( changed || isActive(state_.getState()) ) {
+            currentIntervalMs = activeMs;
+            return currentIntervalMs;
+        }
+
+        // The interval grows from the limited interval, so it ramps down smoothly after a slot
+        currentIntervalMs = Math.max(activeMs, limitByTimeline(backoff(currentIntervalMs), System.currentTimeMillis()));
+        return currentIntervalMs;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getMinIntervalMs ()
+    {
+        return configuration.getActiveIntervalMs();
+    }
+
+    /**
+     * @return the timeline of the calendar slots and the predicted cutting
+     */
+    public IndegoCalendarTimeline getTimeline ()
+    {
+        return timeline;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getCalendarRefreshIntervalMs ()
+    {
+        return configuration.getCalendarRefreshIntervalMs();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateCalendar (DeviceCalendar calendar_, Date predictedCutting_)
+    {
+        timeline = IndegoCalendarTimeline.compile(calendar_, predictedCutting_, configuration.getCalendarZone());
+    }
+
+    /**
+     * Limits the interval of a docked device by the timeline.
+     *
+     * @param intervalMs_ the interval (in ms) without respect to the timeline
+     * @param now_ the current timestamp
+     * @return the limited interval (in ms)
+     */
+    private long limitByTimeline (long intervalMs_, long now_)
+    {
+        IndegoCalendarTimeline currentTimeline = timeline;
+        if ( currentTimeline.isEmpty() ) {
+            return intervalMs_;
+        }
+        long leadTimeMs = configuration.getCalendarLeadTimeMs();
+        long predictedTs = currentTimeline.getPredictedCuttingTs();
+        if ( predictedTs != 0 && Math.abs(now_ - predictedTs) <= leadTimeMs ) {
+            // Around the predicted cutting
+            return configuration.getActiveIntervalMs();
+        }
+        long result = intervalMs_;
+        if ( currentTimeline.isWithinSlot(now_) ) {
+            result = Math.min(result, configuration.getSlotIntervalMs());
+        }
+        long nextStartTs = currentTimeline.getNextStartTs(now_);
+        if ( nextStartTs != Long.MAX_VALUE ) {
+            long msUntilRampUp = nextStartTs - leadTimeMs - now_;
+            if ( msUntilRampUp <= 0 ) {
+                return configuration.getActiveIntervalMs();
+            }
+            result = Math.min(result, msUntilRampUp);
+        }
+        return result;
+    }
+
+    /**
+     * @param intervalMs_ the current interval (in ms)
+     * @return the grown interval (in ms), limited by the idle interval
+     */
+    private long backoff (long intervalMs_)
+    {
+        long result = (long) (intervalMs_ * configuration.getBackoffFactor());
+        return Math.min(configuration.getIdleIntervalMs(), Math.max(configuration.getActiveIntervalMs(), result));
+    }
+
+    /**
+     * @param stateCode_ the state code of the device
+     * @return true, if the device is active (not docked, not in a special mode)
+     */
+    private static boolean isActive (int stateCode_)
+    {
+        if ( stateCode_ == 0 ) {
+            // Reading status, this changes soon
+            return true;
+        }
+        DeviceCommand command = DeviceStatus.decodeStatusCode(stateCode_).getAssociatedCommand();
+        if ( command == DeviceCommand.MOW || command == DeviceCommand.PAUSE ) {
+            return (stateCode_ & 0xff00) != 0x100;
+        }
+        // Returning to the dock
+        return (stateCode_ & 0xff00) == 0x300;
+    }
+
+}
@@ -0,0 +1,661 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.util.EntityUtils;
+
+
+/**
+ * Instances of this class handle the communication to the Indego device like {@link IndegoController}
+ * does, but without blocking the calling thread. All requests are executed by a non-blocking
+ * HTTP client and the results are delivered by <code>CompletableFuture</code>s, so several
+ * queries (e.g. state, calendar and weather) can be run concurrently.
+ * <p>
+ * The connection pool of the client is configured by an {@link IndegoTransportConfiguration}, like
+ * the pool of the {@link IndegoTransport} of the blocking controller. If the server rejects the
+ * session (e.g. since it has expired), the controller authenticates again and retries the request
+ * once, like the blocking controller does.
+ * <p>
+ * If a request fails, the returned future is completed exceptionally with an
+ * {@link IndegoException} (or one of its subclasses).
+ */
+public class IndegoAsyncController {
+
+    /** the url which provices the service for controlling the device */
+    private final String baseUrl;
+
+    /** for mapping between JSON strings and POJOs */
+    private final IndegoCodecs codecs = IndegoCodecs.getDefault();
+
+    /** the encoded authenticated string for basic authentication */
+    private final String authentication;
+
+    /** the configuration of the connection pool */
+    private final IndegoTransportConfiguration transportConfiguration;
+
+    /** the non-blocking http client instance for communicating to the server */
+    private volatile CloseableHttpAsyncClient httpClient;
+
+    /** the pool of connections of the client */
+    private volatile PoolingNHttpClientConnectionManager connectionManager;
+
+    /** the respons, which was sent by the server after a successfull authentication (contains session, device serial, etc.) */
+    private volatile AuthenticationResponse session;
+
+    /** guards the re-authentication, so only one request authenticates again after the session expired */
+    private final Object authenticationLock = new Object();
+
+    /** the running re-authentication, which is shared by concurrent requests (null, if there is none) */
+    private CompletableFuture<AuthenticationResponse> reauthentication;
+
+    /**
+     * This initializes the controller instance, but does not connect yet.
+     *
+     * @param baseUrl_ the url which provices the service for controlling the device;
+     *      if null, the default base url is used
+     * @param username_ the username for authenticating
+     * @param password_ the password for authenticating
+     */
+    public IndegoAsyncController (String baseUrl_, String username_, String password_)
+    {
+        this(null, baseUrl_, username_, password_);
+    }
+
+    /**
+     * This initializes the controller instance, but does not connect yet.
+     *
+     * @param transportConfiguration_ the configuration of the connection pool; if null, the
+     *      default configuration is used
+     * @param baseUrl_ the url which provices the service for controlling the device;
+     *      if null, the default base url is used
+     * @param username_ the username for authenticating
+     * @param password_ the password for authenticating
+     */
+    public IndegoAsyncController (IndegoTransportConfiguration transportConfiguration_, String baseUrl_,
+            String username_, String password_)
+    {
+        transportConfiguration = transportConfiguration_ != null
+                ? (IndegoTransportConfiguration) transportConfiguration_.clone()
+                : new IndegoTransportConfiguration();
+        if ( baseUrl_ == null ) {
+            baseUrl = IndegoController.BASE_URL_DEFAULT;
+        }
+        else {
+            baseUrl = baseUrl_.endsWith("/") ? baseUrl_ : baseUrl_ + "/";
+        }
+        authentication = Base64.encodeBase64String((username_ + ":" + password_).getBytes());
+    }
+
+    /**
+     * This initializes the controller instance, but does not connect yet.
+     *
+     * @param username_ the username for authenticating
+     * @param password_ the password for authenticating
+     */
+    public IndegoAsyncController (String username_, String password_)
+    {
+        this(null, username_, password_);
+    }
+
+    /**
+     * This connects to the server and authenticates the session.
+     *
+     * @return a future, which is completed when the session is authenticated; it completes
+     *      exceptionally with an {@link IndegoAuthenticationException} in case of wrong
+     *      authentication informations
+     */
+    public synchronized CompletableFuture<Void> connect ()
+    {
+        if ( httpClient != null ) {
+            return failed(new IndegoException("You are already connected"));
+        }
+
+        final CloseableHttpAsyncClient client;
+        try {
+            client = createHttpClient();
+        }
+        catch (IOReactorException ex) {
+            return failed(new IndegoException(ex));
+        }
+        client.start();
+        httpClient = client;
+
+        return authenticate() //
+                .handle((authResponse, ex) -> {
+                    if ( ex != null ) {
+                        // Not closing within the I/O dispatch thread, since close() waits for it
+                        CompletableFuture.runAsync(() -> disconnectIfCurrent(client));
+                        throw new CompletionException(ex instanceof CompletionException ? ex.getCause() : ex);
+                    }
+                    session = authResponse;
+                    return null;
+                });
+    }
+
+    /**
+     * This disconnects from the server und shuts down the session. Pending requests are cancelled.
+     */
+    public synchronized void disconnect ()
+    {
+        CloseableHttpAsyncClient client = httpClient;
+        httpClient = null;
+        connectionManager = null;
+        session = null;
+        try {
+            if ( client != null ) {
+                client.close();
+            }
+        }
+        catch (IOException ex) {
+            // Ignored
+        }
+    }
+
+    /**
+     * Creates the non-blocking client with a connection pool, which is configured like the pool of
+     * the {@link IndegoTransport}.
+     *
+     * @return the client (not started yet)
+     * @throws IOReactorException if the I/O reactor could not be created
+     */
+    private CloseableHttpAsyncClient createHttpClient () throws IOReactorException
+    {
+        IOReactorConfig reactorConfig = IOReactorConfig.custom() //
+                .setConnectTimeout(transportConfiguration.getConnectTimeoutMs()) //
+                .setSoTimeout(transportConfiguration.getSocketTimeoutMs()) //
+                .build();
+        PoolingNHttpClientConnectionManager manager =
+                new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(reactorConfig));
+        manager.setMaxTotal(transportConfiguration.getMaxConnectionsTotal());
+        manager.setDefaultMaxPerRoute(transportConfiguration.getMaxConnectionsPerRoute());
+
+        RequestConfig requestConfig = RequestConfig.custom() //
+                .setConnectTimeout(transportConfiguration.getConnectTimeoutMs()) //
+                .setSocketTimeout(transportConfiguration.getSocketTimeoutMs()) //
+                .setConnectionRequestTimeout(transportConfiguration.getConnectionRequestTimeoutMs()) //
+                .build();
+
+        connectionManager = manager;
+        return HttpAsyncClients.custom() //
+                .setConnectionManager(manager) //
+                .setDefaultRequestConfig(requestConfig) //
+                .setKeepAliveStrategy(
+                        new IndegoTransport.KeepAliveStrategy(transportConfiguration.getDefaultKeepAliveMs())) //
+                .build();
+    }
+
+    /**
+     * Closes the expired and idle connections of the pool. The non-blocking client has no evictor
+     * thread, so this is done before each request.
+     */
+    private void evictConnections ()
+    {
+        PoolingNHttpClientConnectionManager manager = connectionManager;
+        if ( manager != null ) {
+            manager.closeExpiredConnections();
+            manager.closeIdleConnections(transportConfiguration.getIdleConnectionTimeoutMs(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * This sends an authentication request to the server.
+     *
+     * @return a future, which is completed with the new session
+     */
+    private CompletableFuture<AuthenticationResponse> authenticate ()
+    {
+        HttpPost httpPost = new HttpPost(baseUrl + "authenticate");
+        httpPost.addHeader("Authorization", "Basic " + authentication);
+
+        AuthenticationRequest authRequest = new AuthenticationRequest();
+        authRequest.setDevice("");
+        authRequest.setOsType("Android");
+        authRequest.setOsVersion("4.0");
+        authRequest.setDeviceManufacturer("unknown");
+        authRequest.setDeviceType("unknown");
+        try {
+            String json = codecs.getWriter(AuthenticationRequest.class).writeValueAsString(authRequest);
+            httpPost.setEntity(new StringEntity(json, ContentType.APPLICATION_JSON));
+        }
+        catch (IOException ex) {
+            return failed(new IndegoException(ex));
+        }
+        return execute(httpPost, AuthenticationResponse.class, true);
+    }
+
+    /**
+     * This authenticates again, after the given session has expired. If several requests detect
+     * the expiration concurrently, only the first one sends an authentication request; the
+     * others use its result.
+     *
+     * @param expiredSession the session, which was rejected by the server
+     * @return a future, which is completed with the new session
+     */
+    private CompletableFuture<AuthenticationResponse> reauthenticate (final AuthenticationResponse expiredSession)
+    {
+        final CompletableFuture<AuthenticationResponse> result;
+        synchronized ( authenticationLock ) {
+            AuthenticationResponse current = session;
+            if ( current == null ) {
+                return failed(new IndegoException("You are not connected"));
+            }
+            if ( current != expiredSession ) {
+                return CompletableFuture.completedFuture(current);
+            }
+            if ( reauthentication != null ) {
+                return reauthentication;
+            }
+            result = new CompletableFuture<>();
+            reauthentication = result;
+        }
+        authenticate().whenComplete((authResponse, ex) -> {
+            synchronized ( authenticationLock ) {
+                if ( ex == null && session == expiredSession ) {
+                    session = authResponse;
+                }
+                if ( reauthentication == result ) {
+                    reauthentication = null;
+                }
+            }
+            if ( ex != null ) {
+                result.completeExceptionally(ex instanceof CompletionException ? ex.getCause() : ex);
+            }
+            else {
+                result.complete(authResponse);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * This disconnects, if the given client is still the current one (and the controller was not
+     * reconnected meanwhile).
+     *
+     * @param client the client to check against
+     */
+    private synchronized void disconnectIfCurrent (CloseableHttpAsyncClient client)
+    {
+        if ( httpClient == client ) {
+            disconnect();
+        }
+    }
+
+    /**
+     * @return the serial number of the associated Indego device
+     * @throws IndegoException in case of any unexpected event
+     */
+    public String getDeviceSerialNumber () throws IndegoException
+    {
+        return getSession().getAlmSn();
+    }
+
+    /**
+     * This queries the device state from the server.
+     *
+     * @return a future, which is completed with the device state
+     */
+    public CompletableFuture<DeviceStateInformation> getState ()
+    {
+        return doGetRequest("/state", DeviceStateInformation.class);
+    }
+
+    /**
+     * This queries the mowing calendar from the server.
+     *
+     * @return a future, which is completed with the calendar of the device
+     */
+    public CompletableFuture<DeviceCalendar> getCalendar ()
+    {
+        return doGetRequest("/calendar", DeviceCalendar.class);
+    }
+
+    /**
+     * This queries the predictive weather forecast.
+     *
+     * @return a future, which is completed with the weather forecast
+     */
+    public CompletableFuture<LocationWeather> getWeather ()
+    {
+        return doGetRequest("/predictive/weather", LocationWeather.class);
+    }
+
+    /**
+     * This sends a command to the Indego device.
+     *
+     * @param command_ the control command to send to the device.
+     * @return a future, which is completed when the command was accepted; it completes
+     *      exceptionally with an {@link IndegoInvalidCommandException} if the command was not
+     *      processed correctly
+     */
+    public CompletableFuture<Void> sendCommand (DeviceCommand command_)
+    {
+        SetStateRequest request = new SetStateRequest();
+        request.setState(command_.getActionCode());
+        return doPutRequest("/state", request);
+    }
+
+    /**
+     * @return a future, which is completed with the user adjustment of the predictive mowing
+     */
+    public CompletableFuture<Integer> getPredictiveAdjustment ()
+    {
+        return doGetRequest("/predictive/useradjustment", PredictiveAdjustment.class) //
+                .thenApply(adjustment -> adjustment.getAdjustment());
+    }
+
+    /**
+     * @param adjust_ the new user adjustment of the predictive mowing
+     * @return a future, which is completed when the adjustment was accepted
+     */
+    public CompletableFuture<Void> setPredictiveAdjustment (int adjust_)
+    {
+        PredictiveAdjustment adjustment = new PredictiveAdjustment();
+        adjustment.setAdjustment(adjust_);
+        return doPutRequest("/predictive/useradjustment", adjustment);
+    }
+
+    /**
+     * @return a future, which is completed with true, if the predictive mowing is enabled
+     */
+    public CompletableFuture<Boolean> getPredictiveMoving ()
+    {
+        return doGetRequest("/predictive", PredictiveStatus.class) //
+                .thenApply(status -> status.isEnabled());
+    }
+
+    /**
+     * @param enable_ true, if the predictive mowing should be enabled
+     * @return a future, which is completed when the setting was accepted
+     */
+    public CompletableFuture<Void> setPredictiveMoving (boolean enable_)
+    {
+        PredictiveStatus status = new PredictiveStatus();
+        status.setEnabled(enable_);
+        return doPutRequest("/predictive", status);
+    }
+
+    /**
+     * @return a future, which is completed with the time of the next predicted mowing
+     */
+    public CompletableFuture<Date> getPredictiveNextCutting ()
+    {
+        return doGetRequest("/predictive/nextcutting", PredictiveCuttingTime.class) //
+                .thenApply(nextCutting -> nextCutting.getNextCuttingAsDate());
+    }
+
+    /**
+     * @return a future, which is completed with the exclusion times of the predictive mowing
+     */
+    public CompletableFuture<DeviceCalendar> getPredictiveExclusionTime ()
+    {
+        return doGetRequest("/predictive/calendar", DeviceCalendar.class);
+    }
+
+    /**
+     * @param calendar_ the new exclusion times of the predictive mowing
+     * @return a future, which is completed when the exclusion times were accepted
+     */
+    public CompletableFuture<Void> setPredictiveExclusionTime (DeviceCalendar calendar_)
+    {
+        return doPutRequest("/predictive/calendar", calendar_);
+    }
+
+    /**
+     * @return the current session
+     * @throws IndegoException if the controller is not connected
+     */
+    private AuthenticationResponse getSession () throws IndegoException
+    {
+        AuthenticationResponse result = session;
+        if ( result == null ) {
+            throw new IndegoException("You are not connected");
+        }
+        return result;
+    }
+
+    /**
+     * This sends a GET request to the server and unmarshals the JSON result.
+     *
+     * @param deviceUrlSuffix the path (relative to the device url), to which the request should be sent
+     * @param returnType the class to which the JSON result should be mapped
+     * @return a future, which is completed with the mapped result of the request
+     */
+    private <T> CompletableFuture<T> doGetRequest (final String deviceUrlSuffix, Class<T> returnType)
+    {
+        return executeWithSession(usedSession -> {
+            HttpGet httpRequest = new HttpGet(baseUrl + "alms/" + usedSession.getAlmSn() + deviceUrlSuffix);
+            httpRequest.setHeader("x-im-context-id", usedSession.getContextId());
+            return httpRequest;
+        }, returnType);
+    }
+
+    /**
+     * This sends a PUT request to the server.
+     *
+     * @param deviceUrlSuffix the path (relative to the device url), to which the request should be sent
+     * @param request the data, which should be sent to the server (mapped to JSON)
+     * @return a future, which is completed when the server accepted the request
+     */
+    private CompletableFuture<Void> doPutRequest (final String deviceUrlSuffix, Object request)
+    {
+        final String json;
+        try {
+            json = codecs.getWriter(request.getClass()).writeValueAsString(request);
+        }
+        catch (IOException ex) {
+            return failed(new IndegoException(ex));
+        }
+        return executeWithSession(usedSession -> {
+            HttpPut httpRequest = new HttpPut(baseUrl + "alms/" + usedSession.getAlmSn() + deviceUrlSuffix);
+            httpRequest.setHeader("x-im-context-id", usedSession.getContextId());
+            httpRequest.setEntity(new StringEntity(json, ContentType.APPLICATION_JSON));
+            return httpRequest;
+        }, Void.class);
+    }
+
+    /**
+     * Executes a request with the current session. If the server rejects the session, the
+     * controller authenticates again and retries the request once with the new session.
+     *
+     * @param requestFactory creates the request for a session
+     * @param returnType the class to which the JSON result should be mapped; if Void,
+     *      no mapping is tried and null is returned.
+     * @return a future, which is completed with the mapped result of the request
+     */
+    private <T> CompletableFuture<T> executeWithSession (final RequestFactory requestFactory,
+            final Class<T> returnType)
+    {
+        final AuthenticationResponse usedSession;
+        try {
+            usedSession = getSession();
+        }
+        catch (IndegoException ex) {
+            return failed(ex);
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        execute(requestFactory.create(usedSession), returnType, false).whenComplete((value, ex) -> {
+            if ( ex == null ) {
+                result.complete(value);
+            }
+            else if ( ex instanceof IndegoSessionExpiredException ) {
+                reauthenticate(usedSession) //
+                        .thenCompose(newSession -> execute(requestFactory.create(newSession), returnType, false)) //
+                        .whenComplete((retryValue, retryEx) -> {
+                            if ( retryEx == null ) {
+                                result.complete(retryValue);
+                            }
+                            else {
+                                result.completeExceptionally(
+                                        retryEx instanceof CompletionException ? retryEx.getCause() : retryEx);
+                            }
+                        });
+            }
+            else {
+                result.completeExceptionally(ex);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Executes the request by the non-blocking client and maps the response.
+     *
+     * @param httpRequest the request to execute
+     * @param returnType the class to which the JSON result should be mapped; if Void,
+     *      no mapping is tried and null is returned.
+     * @param authenticating true, if this is an authentication request
+     * @return a future, which is completed with the mapped result of the request
+     */
+    private <T> CompletableFuture<T> execute (HttpUriRequest httpRequest, final Class<T> returnType,
+            final boolean authenticating)
+    {
+        CloseableHttpAsyncClient client = httpClient;
+        if ( client == null ) {
+            return failed(new IndegoException("You are not connected"));
+        }
+        evictConnections();
+
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        client.execute(httpRequest, new FutureCallback<HttpResponse>() {
+
+            @Override
+            public void completed (HttpResponse response_)
+            {
+                try {
+                    result.complete(mapResponse(response_, returnType, authenticating));
+                }
+                catch (IndegoException ex) {
+                    result.completeExceptionally(ex);
+                }
+                finally {
+                    EntityUtils.consumeQuietly(response_.getEntity());
+                }
+            }
+
+            @Override
+            public void failed (Exception ex_)
+            {
+                result.completeExceptionally(new IndegoException(ex_));
+            }
+
+            @Override
+            public void cancelled ()
+            {
+                result.completeExceptionally(new IndegoException("The request was cancelled"));
+            }
+
+        });
+        return result;
+    }
+
+    /**
+     * Checks the response status and maps the JSON result.
+     *
+     * @param response the response to map
+     * @param returnType the class to which the JSON result should be mapped; if Void,
+     *      no mapping is tried and null is returned.
+     * @param authenticating true, if this is an authentication request
+     * @return the mapped result of the request
+     * @throws IndegoException in case of any unexpected event
+     */
+    private <T> T mapResponse (HttpResponse response, Class<T> returnType, boolean authenticating)
+            throws IndegoException
+    {
+        int status = response.getStatusLine().getStatusCode();
+        if ( authenticating ) {
+            if ( status == HttpStatus.SC_UNAUTHORIZED ) {
+                throw new IndegoAuthenticationException("Was not able to authenticate");
+            }
+            if ( status != HttpStatus.SC_OK && status != HttpStatus.SC_CREATED ) {
+                throw new IndegoAuthenticationException("The request failed with error: "
+                        + response.getStatusLine().toString());
+            }
+        }
+        else {
+            if ( status == HttpStatus.SC_UNAUTHORIZED || status == HttpStatus.SC_FORBIDDEN ) {
+                throw new IndegoSessionExpiredException("The session was rejected: "
+                        + response.getStatusLine().toString());
+            }
+            if ( status == HttpStatus.SC_INTERNAL_SERVER_ERROR && returnType == Void.class ) {
+                throw new IndegoInvalidCommandException("The request failed with error: "
+                        + response.getStatusLine().toString());
+            }
+            if ( status != HttpStatus.SC_OK ) {
+                throw new IndegoServerException("The request failed with error: "
+                        + response.getStatusLine().toString());
+            }
+        }
+
+        if ( returnType == Void.class ) {
+            return null;
+        }
+        try {
+            return codecs.getReader(returnType).readValue(response.getEntity().getContent());
+        }
+        catch (IOException ex) {
+            throw new IndegoException(ex);
+        }
+    }
+
+    /**
+     * Creates a request for a session.
+     */
+    private interface RequestFactory {
+
+        /**
+         * @param session_ the session to send the request with
+         * @return the request
+         */
+        HttpUriRequest create (AuthenticationResponse session_);
+
+    }
+
+    /**
+     * @param ex the exception to complete the future with
+     * @return an exceptionally completed future
+     */
+    private static <T> CompletableFuture<T> failed (IndegoException ex)
+    {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        result.completeExceptionally(ex);
+        return result;
+    }
+
+}
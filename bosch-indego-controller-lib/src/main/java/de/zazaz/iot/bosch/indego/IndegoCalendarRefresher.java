@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego;
+
+import java.util.Date;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Passes the calendar and the predicted next cutting of a device to a polling policy. They are
+ * fetched at most once per {@link IndegoPollingPolicy#getCalendarRefreshIntervalMs()}; nothing is
+ * fetched, if the policy does not use the calendar.
+ * <p>
+ * An instance is meant to be used by a single polling thread.
+ */
+public class IndegoCalendarRefresher {
+
+    /** the logger */
+    private static final Logger LOG = LogManager.getLogger(IndegoCalendarRefresher.class);
+
+    /** the policy, which receives the calendar */
+    private final IndegoPollingPolicy pollingPolicy;
+
+    /** the timestamp of the last time, the calendar was passed to the polling policy */
+    private long lastRefreshTs;
+
+    /**
+     * Initializes the refresher.
+     * 
+     * @param pollingPolicy_ the policy, which receives the calendar
+     */
+    public IndegoCalendarRefresher (IndegoPollingPolicy pollingPolicy_)
+    {
+        pollingPolicy = pollingPolicy_;
+    }
+
+    /**
+     * Passes the calendar and the predicted next cutting to the polling policy, if the refresh
+     * interval of the policy has elapsed. If the calendar can not be fetched, the policy keeps its
+     * current calendar until the next refresh; a missing predicted next cutting is passed as null.
+     * 
+     * @param controller_ the controller, which is used for fetching the calendar
+     */
+    public void refresh (IndegoController controller_)
+    {
+        long refreshIntervalMs = pollingPolicy.getCalendarRefreshIntervalMs();
+        if ( refreshIntervalMs <= 0 || System.currentTimeMillis() - lastRefreshTs < refreshIntervalMs ) {
+            return;
+        }
+        lastRefreshTs = System.currentTimeMillis();
+        DeviceCalendar calendar;
+        try {
+            LOG.debug("Fetching calendar for polling policy");
+            calendar = controller_.getCalendar();
+        }
+        catch (Exception ex) {
+            LOG.warn("Was not able to fetch the calendar of the device", ex);
+            return;
+        }
+        Date predictedCutting = null;
+        try {
+            predictedCutting = controller_.getPredictiveNextCutting();
+        }
+        catch (Exception ex) {
+            LOG.debug("No predicted next cutting available", ex);
+        }
+        pollingPolicy.updateCalendar(calendar, predictedCutting);
+    }
+
+}
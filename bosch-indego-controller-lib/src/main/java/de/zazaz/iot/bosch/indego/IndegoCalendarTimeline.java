@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import de.zazaz.iot.bosch.indego.DeviceCalendar.DeviceCalendarDayEntry;
+import de.zazaz.iot.bosch.indego.DeviceCalendar.DeviceCalendarDaySlot;
+import de.zazaz.iot.bosch.indego.DeviceCalendar.DeviceCalendarEntry;
+
+/**
+ * A compact timeline of the mowing slots of a device. It is compiled from the enabled slots of
+ * the selected calendar entry and the predicted time of the next cutting. The slots are stored
+ * as sorted, merged intervals of minutes since monday 00:00 (local time of the device).
+ * <p>
+ * The timestamps are calculated for the current week; a change of the daylight saving time
+ * within the week is ignored. This class is immutable.
+ */
+public final class IndegoCalendarTimeline {
+
+    /** the number of minutes of a day */
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    /** the number of minutes of a week */
+    private static final int MINUTES_PER_WEEK = 7 * MINUTES_PER_DAY;
+
+    /** an empty timeline */
+    public static final IndegoCalendarTimeline EMPTY =
+            new IndegoCalendarTimeline(new int[0], new int[0], 0, ZoneId.systemDefault());
+
+    /** the starts of the slots (in minutes since monday 00:00) */
+    private final int[] starts;
+
+    /** the ends of the slots (in minutes since monday 00:00, exclusive) */
+    private final int[] ends;
+
+    /** the timestamp of the predicted next cutting; 0, if unknown */
+    private final long predictedCuttingTs;
+
+    /** the time zone of the device */
+    private final ZoneId zone;
+
+    /**
+     * Initializes the timeline.
+     *
+     * @param starts_ the starts of the slots (in minutes since monday 00:00)
+     * @param ends_ the ends of the slots (in minutes since monday 00:00, exclusive)
+     * @param predictedCuttingTs_ the timestamp of the predicted next cutting; 0, if unknown
+     * @param zone_ the time zone of the device
+     */
+    private IndegoCalendarTimeline (int[] starts_, int[] ends_, long predictedCuttingTs_, ZoneId zone_)
+    {
+        starts = starts_;
+        ends = ends_;
+        predictedCuttingTs = predictedCuttingTs_;
+        zone = zone_;
+    }
+
+    /**
+     * Compiles a timeline.
+     *
+     * @param calendar_ the calendar of the device; may be null
+     * @param predictedCutting_ the predicted next cutting of the device; may be null
+     * @param zone_ the time zone of the device; if null, the default time zone is used
+     * @return the compiled timeline
+     */
+    public static IndegoCalendarTimeline compile (DeviceCalendar calendar_, Date predictedCutting_, ZoneId zone_)
+    {
+        List<int[]> slots = new ArrayList<>();
+        DeviceCalendarEntry[] entries = calendar_ != null ? calendar_.getEntries() : null;
+        if ( entries != null ) {
+            for (DeviceCalendarEntry entry : entries) {
+                if ( entry.getNumber() != calendar_.getSelectedEntryNumber() || entry.getDays() == null ) {
+                    continue;
+                }
+                for (DeviceCalendarDayEntry day : entry.getDays()) {
+                    if ( day.getSlots() == null || day.getNumber() < 0 || day.getNumber() > 6 ) {
+                        continue;
+                    }
+                    for (DeviceCalendarDaySlot slot : day.getSlots()) {
+                        int start = slot.getStartHour() * 60 + slot.getStartMinute();
+                        int end = Math.min(MINUTES_PER_DAY, slot.getEndHour() * 60 + slot.getEndMinute());
+                        if ( slot.isEnabled() && end > start ) {
+                            int dayOffset = day.getNumber() * MINUTES_PER_DAY;
+                            slots.add(new int[] { dayOffset + start, dayOffset + end });
+                        }
+                    }
+                }
+            }
+        }
+        slots.sort((a, b) -> Integer.compare(a[0], b[0]));
+
+        // Merge overlapping and adjacent slots
+        int[] starts = new int[slots.size()];
+        int[] ends = new int[slots.size()];
+        int count = 0;
+        for (int[] slot : slots) {
+            if ( count > 0 && slot[0] <= ends[count - 1] ) {
+                ends[count - 1] = Math.max(ends[count - 1], slot[1]);
+            }
+            else {
+                starts[count] = slot[0];
+                ends[count] = slot[1];
+                count++;
+            }
+        }
+        return new IndegoCalendarTimeline(Arrays.copyOf(starts, count), Arrays.copyOf(ends, count),
+                predictedCutting_ != null ? predictedCutting_.getTime() : 0,
+                zone_ != null ? zone_ : ZoneId.systemDefault());
+    }
+
+    /**
+     * @return true, if the timeline contains neither a slot nor a predicted cutting
+     */
+    public boolean isEmpty ()
+    {
+        return starts.length == 0 && predictedCuttingTs == 0;
+    }
+
+    /**
+     * @return the timestamp of the predicted next cutting; 0, if unknown
+     */
+    public long getPredictedCuttingTs ()
+    {
+        return predictedCuttingTs;
+    }
+
+    /**
+     * @param ts_ the timestamp to check
+     * @return true, if the timestamp is within an enabled slot of the calendar
+     */
+    public boolean isWithinSlot (long ts_)
+    {
+        int minute = getMinuteOfWeek(ts_);
+        for (int i = 0; i < starts.length; i++) {
+            if ( starts[i] <= minute && minute < ends[i] ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines the start of the next mowing, which is either the start of the next slot of the
+     * calendar or the predicted next cutting (whichever comes first).
+     *
+     * @param ts_ the timestamp to start from
+     * @return the timestamp of the next start after the given timestamp; Long.MAX_VALUE, if
+     *      there is none
+     */
+    public long getNextStartTs (long ts_)
+    {
+        long result = predictedCuttingTs > ts_ ? predictedCuttingTs : Long.MAX_VALUE;
+        if ( starts.length == 0 ) {
+            return result;
+        }
+        ZonedDateTime time = Instant.ofEpochMilli(ts_).atZone(zone);
+        int minute = getMinuteOfWeek(time);
+        long minuteStartTs = ts_ - time.getSecond() * 1000L - time.getNano() / 1000000;
+        for (int start : starts) {
+            int minutes = start - minute;
+            if ( minutes <= 0 ) {
+                minutes += MINUTES_PER_WEEK;
+            }
+            result = Math.min(result, minuteStartTs + minutes * 60000L);
+        }
+        return result;
+    }
+
+    /**
+     * Determines the end of the slot, which contains the given timestamp.
+     *
+     * @param ts_ the timestamp within a slot
+     * @return the timestamp of the end of the slot; 0, if the timestamp is not within a slot
+     */
+    public long getSlotEndTs (long ts_)
+    {
+        ZonedDateTime time = Instant.ofEpochMilli(ts_).atZone(zone);
+        int minute = getMinuteOfWeek(time);
+        long minuteStartTs = ts_ - time.getSecond() * 1000L - time.getNano() / 1000000;
+        for (int i = 0; i < starts.length; i++) {
+            if ( starts[i] <= minute && minute < ends[i] ) {
+                return minuteStartTs + (ends[i] - minute) * 60000L;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @param ts_ the timestamp
+     * @return the minutes since monday 00:00 in the time zone of the device
+     */
+    private int getMinuteOfWeek (long ts_)
+    {
+        return getMinuteOfWeek(Instant.ofEpochMilli(ts_).atZone(zone));
+    }
+
+    /**
+     * @param time_ the time in the time zone of the device
+     * @return the minutes since monday 00:00
+     */
+    private static int getMinuteOfWeek (ZonedDateTime time_)
+    {
+        return (time_.getDayOfWeek().getValue() - 1) * MINUTES_PER_DAY + time_.getHour() * 60 + time_.getMinute();
+    }
+
+}
@@ -0,0 +1,264 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A circuit breaker, which protects a remote endpoint from being hammered while it is down.
+ * <p>
+ * While the circuit is closed, all requests are allowed. After a given number of consecutive
+ * failures, the circuit is opened and all requests are rejected for the backoff time. Afterwards,
+ * the circuit is half open: a single probe request is allowed. If the probe succeeds, the circuit
+ * is closed again; if it fails, the circuit is opened again with an increased backoff time
+ * (exponentially up to a maximum, with a random jitter, so many clients don't probe at once).
+ * <p>
+ * The caller has to report the result of each allowed request by {@link #recordSuccess()} or
+ * {@link #recordFailure()}. This class is thread safe.
+ */
+public class IndegoCircuitBreaker {
+
+    /** the logger */
+    private static final Logger LOG = LogManager.getLogger(IndegoCircuitBreaker.class);
+
+    /**
+     * The states of the circuit.
+     */
+    public enum State {
+
+        /** all requests are allowed */
+        CLOSED,
+
+        /** all requests are rejected until the backoff time elapsed */
+        OPEN,
+
+        /** a single probe request is allowed */
+        HALF_OPEN
+
+    }
+
+    /** the configuration */
+    private final IndegoCircuitBreakerConfiguration configuration;
+
+    /** the current state of the circuit */
+    private State state = State.CLOSED;
+
+    /** the number of consecutive failures */
+    private int consecutiveFailures;
+
+    /** the current backoff time (in ms) without jitter; 0, if the circuit was not opened yet */
+    private long backoffMs;
+
+    /** the timestamp, until which the circuit is open (or the probe is awaited, if half open) */
+    private long openUntilTs;
+
+    /** the number of successful requests */
+    private long successCount;
+
+    /** the number of failed requests */
+    private long failureCount;
+
+    /** the number of rejected requests */
+    private long rejectedCount;
+
+    /** the number of times, the circuit was opened */
+    private long openCount;
+
+    /**
+     * Initializes the circuit breaker with the default configuration.
+     */
+    public IndegoCircuitBreaker ()
+    {
+        this(new IndegoCircuitBreakerConfiguration());
+    }
+
+    /**
+     * Initializes the circuit breaker.
+     *
+     * @param configuration_ the configuration to use
+     */
+    public IndegoCircuitBreaker (IndegoCircuitBreakerConfiguration configuration_)
+    {
+        // Get a clone, since we don't want to be manipulated during runtime
+        configuration = (IndegoCircuitBreakerConfiguration) configuration_.clone();
+    }
+
+    /**
+     * Checks, if a request may be executed now. If the backoff time of the open circuit elapsed,
+     * the circuit gets half open and the caller may execute the probe request.
+     *
+     * @return true, if the request may be executed; false, if it is rejected
+     */
+    public synchronized boolean allowRequest ()
+    {
+        long now = System.currentTimeMillis();
+        switch ( state ) {
+            case CLOSED:
+                return true;
+            case OPEN:
+            case HALF_OPEN:
+                // A probe, which was never reported, does not block the circuit forever
+                if ( now >= openUntilTs ) {
+                    state = State.HALF_OPEN;
+                    openUntilTs = now + backoffMs;
+                    return true;
+                }
+                rejectedCount++;
+                return false;
+            default:
+                throw new IllegalStateException("Unknown state " + state);
+        }
+    }
+
+    /**
+     * Reports a successful request; the circuit is closed.
+     */
+    public synchronized void recordSuccess ()
+    {
+        successCount++;
+        consecutiveFailures = 0;
+        backoffMs = 0;
+        state = State.CLOSED;
+    }
+
+    /**
+     * Reports a failed request. The circuit is opened, if the probe failed or if the failure
+     * threshold is reached.
+     */
+    public synchronized void recordFailure ()
+    {
+        failureCount++;
+        consecutiveFailures++;
+        if ( state == State.HALF_OPEN ) {
+            backoffMs = Math.min(configuration.getMaxBackoffMs(),
+                    (long) (Math.max(backoffMs, 1) * Math.max(1.0, configuration.getBackoffFactor())));
+            open();
+        }
+        else if ( state == State.CLOSED && consecutiveFailures >= configuration.getFailureThreshold() ) {
+            backoffMs = Math.min(configuration.getMaxBackoffMs(), configuration.getInitialBackoffMs());
+            open();
+        }
+    }
+
+    /**
+     * Opens the circuit for the current backoff time with a random jitter.
+     */
+    private void open ()
+    {
+        double jitter = configuration.getJitterRatio() > 0
+                ? ThreadLocalRandom.current().nextDouble(-configuration.getJitterRatio(), configuration.getJitterRatio())
+                : 0;
+        state = State.OPEN;
+        openUntilTs = System.currentTimeMillis() + Math.round(backoffMs * (1 + jitter));
+        openCount++;
+    }
+
+    /**
+     * @return the time (in ms), until the next request is allowed; 0, if it is allowed now
+     */
+    public synchronized long getRemainingOpenMs ()
+    {
+        if ( state == State.CLOSED ) {
+            return 0;
+        }
+        return Math.max(0, openUntilTs - System.currentTimeMillis());
+    }
+
+    /**
+     * Logs a warning, if the circuit is open (e.g. since it was opened by the last failure).
+     * 
+     * @param endpoint_ the name of the protected endpoint
+     */
+    public synchronized void logOpenCircuit (String endpoint_)
+    {
+        if ( state == State.OPEN ) {
+            LOG.warn(String.format("Suspending connection attempts to %s for %d ms after %d failures in a row", endpoint_,
+                    getRemainingOpenMs(), consecutiveFailures));
+        }
+    }
+
+    /**
+     * @return the current state of the circuit
+     */
+    public synchronized State getState ()
+    {
+        return state;
+    }
+
+    /**
+     * @return the number of consecutive failures
+     */
+    public synchronized int getConsecutiveFailures ()
+    {
+        return consecutiveFailures;
+    }
+
+    /**
+     * @return the current backoff time (in ms) without jitter; 0, if the circuit is closed
+     */
+    public synchronized long getBackoffMs ()
+    {
+        return backoffMs;
+    }
+
+    /**
+     * @return the number of successful requests since the last reset of the statistics
+     */
+    public synchronized long getSuccessCount ()
+    {
+        return successCount;
+    }
+
+    /**
+     * @return the number of failed requests since the last reset of the statistics
+     */
+    public synchronized long getFailureCount ()
+    {
+        return failureCount;
+    }
+
+    /**
+     * @return the number of rejected requests since the last reset of the statistics
+     */
+    public synchronized long getRejectedCount ()
+    {
+        return rejectedCount;
+    }
+
+    /**
+     * @return the number of times, the circuit was opened since the last reset of the statistics
+     */
+    public synchronized long getOpenCount ()
+    {
+        return openCount;
+    }
+
+    /**
+     * Resets the statistics; the state of the circuit is kept.
+     */
+    public synchronized void resetStatistics ()
+    {
+        successCount = 0;
+        failureCount = 0;
+        rejectedCount = 0;
+        openCount = 0;
+    }
+
+}
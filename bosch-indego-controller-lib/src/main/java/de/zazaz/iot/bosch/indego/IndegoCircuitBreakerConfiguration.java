@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego;
+
+/**
+ * This contains the configuration of a circuit breaker.
+ */
+public class IndegoCircuitBreakerConfiguration implements Cloneable {
+
+    /** the number of consecutive failures, after which the circuit is opened */
+    private int failureThreshold = 3;
+
+    /** the time (in ms), for which the circuit is opened the first time */
+    private long initialBackoffMs = 5000;
+
+    /** the maximum time (in ms), for which the circuit is opened */
+    private long maxBackoffMs = 10 * 60 * 1000;
+
+    /** the factor, by which the open time is increased after each failed probe */
+    private double backoffFactor = 2.0;
+
+    /** the jitter of the open time as ratio of the open time (e.g. 0.2 = +/- 20%) */
+    private double jitterRatio = 0.2;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object clone ()
+    {
+        try {
+            return super.clone();
+        }
+        catch (CloneNotSupportedException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Gets the number of consecutive failures, after which the circuit is opened.
+     *
+     * @return the failure threshold
+     */
+    public int getFailureThreshold ()
+    {
+        return failureThreshold;
+    }
+
+    /**
+     * Sets the number of consecutive failures, after which the circuit is opened.
+     *
+     * @param failureThreshold_ the new failure threshold (at least 1)
+     */
+    public void setFailureThreshold (int failureThreshold_)
+    {
+        failureThreshold = failureThreshold_;
+    }
+
+    /**
+     * Gets the time (in ms), for which the circuit is opened the first time.
+     *
+     * @return the initial open time
+     */
+    public long getInitialBackoffMs ()
+    {
+        return initialBackoffMs;
+    }
+
+    /**
+     * Sets the time (in ms), for which the circuit is opened the first time.
+     *
+     * @param initialBackoffMs_ the new initial open time
+     */
+    public void setInitialBackoffMs (long initialBackoffMs_)
+    {
+        initialBackoffMs = initialBackoffMs_;
+    }
+
+    /**
+     * Gets the maximum time (in ms), for which the circuit is opened.
+     *
+     * @return the maximum open time
+     */
+    public long getMaxBackoffMs ()
+    {
+        return maxBackoffMs;
+    }
+
+    /**
+     * Sets the maximum time (in ms), for which the circuit is opened.
+     *
+     * @param maxBackoffMs_ the new maximum open time
+     */
+    public void setMaxBackoffMs (long maxBackoffMs_)
+    {
+        maxBackoffMs = maxBackoffMs_;
+    }
+
+    /**
+     * Gets the factor, by which the open time is increased after each failed probe.
+     *
+     * @return the backoff factor
+     */
+    public double getBackoffFactor ()
+    {
+        return backoffFactor;
+    }
+
+    /**
+     * Sets the factor, by which the open time is increased after each failed probe.
+     *
+     * @param backoffFactor_ the new backoff factor (at least 1)
+     */
+    public void setBackoffFactor (double backoffFactor_)
+    {
+        backoffFactor = backoffFactor_;
+    }
+
+    /**
+     * Gets the jitter of the open time as ratio of the open time (e.g. 0.2 = +/- 20%).
+     *
+     * @return the jitter ratio
+     */
+    public double getJitterRatio ()
+    {
+        return jitterRatio;
+    }
+
+    /**
+     * Sets the jitter of the open time as ratio of the open time (e.g. 0.2 = +/- 20%).
+     *
+     * @param jitterRatio_ the new jitter ratio (between 0 and 0.5)
+     */
+    public void setJitterRatio (double jitterRatio_)
+    {
+        jitterRatio = jitterRatio_;
+    }
+
+}
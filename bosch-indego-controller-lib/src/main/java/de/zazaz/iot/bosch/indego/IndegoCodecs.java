@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * This holds the readers and writers for mapping between JSON and the POJOs of the
+ * Indego server protocol. Building them requires introspecting the classes, which is
+ * done only once for all controllers: the readers and writers of all known classes
+ * are created in advance, they are immutable and can be shared between threads.
+ * <p>
+ * If the Jackson Afterburner module is found on the classpath, it is registered in
+ * order to replace the reflection based property access by generated bytecode.
+ */
+public final class IndegoCodecs {
+
+    /** the class name of the Afterburner module (optional dependency) */
+    private static final String AFTERBURNER_MODULE = "com.fasterxml.jackson.module.afterburner.AfterburnerModule";
+
+    /** the classes, which are exchanged with the server */
+    private static final List<Class<?>> KNOWN_TYPES = Collections.unmodifiableList(Arrays.<Class<?>> asList(
+            AuthenticationRequest.class, AuthenticationResponse.class, DeviceCalendar.class,
+            DeviceStateInformation.class, LocationWeather.class, PredictiveAdjustment.class,
+            PredictiveCuttingTime.class, PredictiveStatus.class, SetStateRequest.class));
+
+    /** the instance, which is shared by all controllers */
+    private static final IndegoCodecs DEFAULT = new IndegoCodecs(true);
+
+    /** the mapper, from which the readers and writers are derived */
+    private final ObjectMapper mapper;
+
+    /** true, if the Afterburner module was registered */
+    private final boolean afterburnerEnabled;
+
+    /** the readers of the known classes */
+    private final Map<Class<?>, ObjectReader> readers;
+
+    /** the writers of the known classes */
+    private final Map<Class<?>, ObjectWriter> writers;
+
+    /** the readers of other classes, which are created on demand */
+    private final ConcurrentHashMap<Class<?>, ObjectReader> otherReaders = new ConcurrentHashMap<>();
+
+    /** the writers of other classes, which are created on demand */
+    private final ConcurrentHashMap<Class<?>, ObjectWriter> otherWriters = new ConcurrentHashMap<>();
+
+    /**
+     * Initializes the codecs for all known classes.
+     * 
+     * @param useAfterburner_ true, if the Afterburner module should be used (if available)
+     */
+    public IndegoCodecs (boolean useAfterburner_)
+    {
+        mapper = new ObjectMapper();
+        Module afterburner = useAfterburner_ ? createAfterburnerModule() : null;
+        if ( afterburner != null ) {
+            mapper.registerModule(afterburner);
+        }
+        afterburnerEnabled = afterburner != null;
+
+        Map<Class<?>, ObjectReader> knownReaders = new HashMap<>();
+        Map<Class<?>, ObjectWriter> knownWriters = new HashMap<>();
+        for (Class<?> type : KNOWN_TYPES) {
+            // Readers and writers for a fixed type look up the (de)serializer eagerly
+            knownReaders.put(type, mapper.readerFor(type));
+            knownWriters.put(type, mapper.writerFor(type));
+        }
+        readers = Collections.unmodifiableMap(knownReaders);
+        writers = Collections.unmodifiableMap(knownWriters);
+    }
+
+    /**
+     * @return the instance, which is shared by all controllers
+     */
+    public static IndegoCodecs getDefault ()
+    {
+        return DEFAULT;
+    }
+
+    /**
+     * @return true, if the Afterburner module is used
+     */
+    public boolean isAfterburnerEnabled ()
+    {
+        return afterburnerEnabled;
+    }
+
+    /**
+     * Returns the reader for a class.
+     * 
+     * @param type_ the class, to which the JSON should be mapped
+     * @return the reader
+     */
+    public ObjectReader getReader (Class<?> type_)
+    {
+        ObjectReader reader = readers.get(type_);
+        if ( reader == null ) {
+            reader = otherReaders.computeIfAbsent(type_, mapper::readerFor);
+        }
+        return reader;
+    }
+
+    /**
+     * Returns the writer for a class.
+     * 
+     * @param type_ the class, which should be mapped to JSON
+     * @return the writer
+     */
+    public ObjectWriter getWriter (Class<?> type_)
+    {
+        ObjectWriter writer = writers.get(type_);
+        if ( writer == null ) {
+            writer = otherWriters.computeIfAbsent(type_, mapper::writerFor);
+        }
+        return writer;
+    }
+
+    /**
+     * Creates the Afterburner module via reflection, since it is an optional dependency.
+     * 
+     * @return the module; null, if it is not available
+     */
+    private static Module createAfterburnerModule ()
+    {
+        try {
+            return (Module) Class.forName(AFTERBURNER_MODULE).getDeclaredConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException | ClassCastException | LinkageError ex) {
+            return null;
+        }
+    }
+
+}
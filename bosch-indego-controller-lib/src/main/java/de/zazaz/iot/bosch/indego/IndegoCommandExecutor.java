@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Executes the queued commands in the order of their arrival, independently of the polling of a
+ * worker thread. The controller of the worker thread is used for this; the worker thread sets it
+ * by {@link #setActiveController(IndegoController)}, while it is connected.
+ * <p>
+ * If a command can not be sent, the executor asks the worker thread for reconnecting: the worker
+ * thread is woken up and takes the failed controller by {@link #takeReconnectRequest()}. The
+ * command is retried with the next controller up to {@link #MAX_ATTEMPTS} times.
+ * 
+ * @param <C> the type of the queued commands
+ */
+public class IndegoCommandExecutor<C> {
+
+    /** the logger */
+    private static final Logger LOG = LogManager.getLogger(IndegoCommandExecutor.class);
+
+    /** the number of attempts for sending a command to the Indego server */
+    public static final int MAX_ATTEMPTS = 3;
+
+    /** the queued commands */
+    private final IndegoCommandQueue<C> queue;
+
+    /** translates the commands and receives their status */
+    private final IndegoCommandHandler<C> handler;
+
+    /** wakes the worker thread up */
+    private final Runnable workerWakeup;
+
+    /** the connected controller of the worker thread; null, if not connected */
+    private volatile IndegoController activeController;
+
+    /** a controller, which failed executing a command and should be reconnected by the worker thread */
+    private final AtomicReference<IndegoController> reconnectRequest = new AtomicReference<>();
+
+    /**
+     * Initializes the executor.
+     * 
+     * @param queue_ the queued commands
+     * @param handler_ translates the commands and receives their status
+     * @param workerWakeup_ wakes the worker thread up, after a command was finished or a reconnect
+     *      was requested
+     */
+    public IndegoCommandExecutor (IndegoCommandQueue<C> queue_, IndegoCommandHandler<C> handler_, Runnable workerWakeup_)
+    {
+        queue = queue_;
+        handler = handler_;
+        workerWakeup = workerWakeup_;
+    }
+
+    /**
+     * Sets the controller, which is used for executing the commands. This is called by the worker
+     * thread after connecting and before disconnecting.
+     * 
+     * @param controller_ the connected controller; null, if not connected
+     */
+    public void setActiveController (IndegoController controller_)
+    {
+        activeController = controller_;
+        if ( controller_ != null ) {
+            queue.wakeup();
+        }
+    }
+
+    /**
+     * Returns and clears the controller, which failed executing a command. The worker thread should
+     * reconnect, if it is its current controller.
+     * 
+     * @return the failed controller; null, if there is none
+     */
+    public IndegoController takeReconnectRequest ()
+    {
+        return reconnectRequest.getAndSet(null);
+    }
+
+    /**
+     * This is the entry point for the command executor thread. It executes the commands until the
+     * shutdown flag is set; the pending commands are failed afterwards.
+     * 
+     * @param shutdown_ the flag, which signals the shutdown of the executor thread
+     * @param idleTimeoutMs_ the maximum time (in ms) to wait for a command or a controller
+     */
+    public void run (AtomicBoolean shutdown_, long idleTimeoutMs_)
+    {
+        LOG.debug("Command executor thread started");
+        int failedAttempts = 0;
+        IndegoController failedController = null;
+        try {
+            while ( !shutdown_.get() ) {
+                C command = queue.peek();
+                IndegoController controller = activeController;
+                if ( command == null || controller == null || controller == failedController ) {
+                    try {
+                        queue.await(idleTimeoutMs_);
+                    }
+                    catch (InterruptedException ex) {
+                        // Ignored
+                    }
+                    continue;
+                }
+
+                LOG.info(String.format("Processing command '%s'", command));
+                IndegoCommandStatus status;
+                try {
+                    DeviceCommand deviceCommand = handler.getDeviceCommand(command);
+                    handler.setStatus(command, IndegoCommandStatus.EXECUTING);
+                    controller.sendCommand(deviceCommand);
+                    status = IndegoCommandStatus.EXECUTED;
+                    LOG.info(String.format("Command '%s' was sent successfully", command));
+                }
+                catch (IndegoInvalidCommandException ex) {
+                    status = IndegoCommandStatus.REJECTED;
+                    LOG.warn(String.format("The sent command '%s' was not be processed by the "
+                            + "server because it's invalid in the current device state, ignoring it", command), ex);
+                }
+                catch (IllegalArgumentException ex) {
+                    status = IndegoCommandStatus.REJECTED;
+                    LOG.warn(String.format("Received invalid command '%s', ignoring it", command));
+                }
+                catch (Exception ex) {
+                    LOG.error("Exception during sending command to Indego", ex);
+                    // The worker thread reconnects, the command is retried with the new connection
+                    failedController = controller;
+                    reconnectRequest.set(controller);
+                    workerWakeup.run();
+                    if ( ++failedAttempts < MAX_ATTEMPTS ) {
+                        handler.setStatus(command, IndegoCommandStatus.PENDING);
+                        continue;
+                    }
+                    status = IndegoCommandStatus.FAILED;
+                    LOG.error(String.format("Was not able to send command '%s' after %d attempts, dropping it", command,
+                            failedAttempts));
+                }
+                failedAttempts = 0;
+                failedController = null;
+                handler.setStatus(command, status);
+                queue.remove(command);
+
+                // Let the worker thread fetch the new state early
+                workerWakeup.run();
+            }
+            if ( queue.size() > 0 ) {
+                LOG.warn(String.format("Dropping %d pending commands on shutdown", queue.size()));
+                for (C command = queue.peek(); command != null; command = queue.peek()) {
+                    handler.setStatus(command, IndegoCommandStatus.FAILED);
+                    queue.remove(command);
+                }
+            }
+        }
+        finally {
+            LOG.debug("Closing command executor thread");
+        }
+    }
+
+}
@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego;
+
+/**
+ * Translates the queued commands of an {@link IndegoCommandExecutor} into device commands and
+ * receives the changes of their status.
+ * 
+ * @param <C> the type of the queued commands
+ */
+public interface IndegoCommandHandler<C> {
+
+    /**
+     * @param command_ the queued command
+     * @return the device command to send
+     * @throws IllegalArgumentException if the command is invalid
+     */
+    DeviceCommand getDeviceCommand (C command_);
+
+    /**
+     * Is called by the executor thread, when the status of a command changed. It must not block.
+     * 
+     * @param command_ the queued command
+     * @param status_ the new status
+     */
+    void setStatus (C command_, IndegoCommandStatus status_);
+
+}
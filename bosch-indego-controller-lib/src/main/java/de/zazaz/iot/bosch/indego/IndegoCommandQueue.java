@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego;
+
+/**
+ * A FIFO queue of commands, which is drained by an {@link IndegoCommandExecutor}. A command stays
+ * in the queue, until it was executed.
+ * 
+ * @param <C> the type of the queued commands
+ */
+public interface IndegoCommandQueue<C> {
+
+    /**
+     * Returns the oldest pending command without removing it.
+     * 
+     * @return the oldest pending command; null, if there is none
+     */
+    C peek ();
+
+    /**
+     * Waits, until a command was added, {@link #wakeup()} was called or the timeout elapsed.
+     * 
+     * @param timeoutMs_ the maximum time (in ms) to wait
+     * @throws InterruptedException if the thread was interrupted
+     */
+    void await (long timeoutMs_) throws InterruptedException;
+
+    /**
+     * Removes the given command, which was returned by {@link #peek()} before and has finished.
+     * 
+     * @param command_ the command to remove
+     */
+    void remove (C command_);
+
+    /**
+     * Wakes a waiting consumer up.
+     */
+    void wakeup ();
+
+    /**
+     * @return the number of pending commands
+     */
+    int size ();
+
+}
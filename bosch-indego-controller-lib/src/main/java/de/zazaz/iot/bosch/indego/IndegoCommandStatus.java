@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego;
+
+/**
+ * The states of a command, which is executed by an {@link IndegoCommandExecutor}.
+ */
+public enum IndegoCommandStatus {
+
+    /** the command waits for being executed */
+    PENDING,
+
+    /** the command is sent to the server */
+    EXECUTING,
+
+    /** the command was executed by the device */
+    EXECUTED,
+
+    /** the command was rejected, since it's invalid (in the current device state) */
+    REJECTED,
+
+    /** the command was not sent, since the server was not reachable */
+    FAILED;
+
+    /**
+     * @return true, if the execution of the command has finished (successfully or not)
+     */
+    public boolean isFinished ()
+    {
+        return this != PENDING && this != EXECUTING;
+    }
+
+}
@@ -17,9 +17,16 @@
 package de.zazaz.iot.bosch.indego;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Date;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 
 import org.apache.commons.codec.binary.Base64;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
@@ -28,10 +35,8 @@ import org.apache.http.client.methods.HttpPut;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 import org.apache.http.util.EntityUtils;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
  * Instances of this class handle the communcation the the Indego device and provices methods
@@ -44,27 +49,50 @@ public class IndegoController {
     
     /** for limiting the amount of status query requests on the server a minimum interval is specified */
     public static final long MIN_STATE_QUERY_INTERVAL_MS = 60 * 1000;
+
+    /** if the session was not used for this time, it's validated by the server before the next request */
+    public static final long SESSION_IDLE_CHECK_MS = 10 * 60 * 1000;
     
     /** the url which provices the service for controlling the device */ 
     private final String baseUrl;
 
     /** for mapping between JSON strings and POJOs */
-    private final ObjectMapper mapper = new ObjectMapper();
+    private final IndegoCodecs codecs = IndegoCodecs.getDefault();
 
     /** the encoded authenticated string for basic authentication */
     private final String authentication;
 
-    /** the http client instance for communicating to the server */
-    private CloseableHttpClient httpClient;
+    /** the transport, which was passed by the caller and is shared with other controllers (null, if not shared) */
+    private final IndegoTransport sharedTransport;
+
+    /** the transport, which is used while connected (either the shared or an own one) */
+    private IndegoTransport transport;
+
+    /** the http client instance for communicating to the server; each request reads it once */
+    private volatile CloseableHttpClient httpClient;
 
     /** the respons, which was sent by the server after a successfull authentication (contains session, device serial, etc.) */
-    private AuthenticationResponse session;
-    
-    /** the last timestamp, when the device status was queried */
-    private long lastStateQueryTs;
+    private volatile AuthenticationResponse session;
+
+    /** guards the re-authentication, so only one thread authenticates again after the session expired */
+    private final Object authenticationLock = new Object();
+
+    /** the timestamp of the last request, which was accepted with the current session */
+    private volatile long lastSessionUseTs;
     
-    /** this stores the result of the last device status query */
-    private DeviceStateInformation deviceStateCache;
+    /** this caches the responses of the server */
+    private volatile IndegoResponseCache responseCache = new IndegoLruResponseCache();
+
+    /** the time (in ms), for which the responses are cached (by resource) */
+    private final Map<IndegoResource, Long> cacheTimeToLiveMs =
+            Collections.synchronizedMap(new EnumMap<IndegoResource, Long>(IndegoResource.class));
+
+    /** the currently running queries (by url), which are shared by concurrent callers */
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlightRequests =
+            new ConcurrentHashMap<>();
+
+    /** the circuit breaker, which guards the requests to the server (null, if none is used) */
+    private volatile IndegoCircuitBreaker circuitBreaker;
     
     /**
      * This initializes the controller instance, but does not connect yet.
@@ -76,8 +104,29 @@ public class IndegoController {
      */
     public IndegoController (String baseUrl_, String username_, String password_)
     {
+        this(null, baseUrl_, username_, password_);
+    }
+
+    /**
+     * This initializes the controller instance, but does not connect yet. The given transport
+     * is used for all requests; it is not closed when the controller disconnects, so it
+     * can be shared between several controller instances.
+     * 
+     * @param transport_ the transport to use; if null, the controller creates an own transport
+     *      on connecting
+     * @param baseUrl_ the url which provices the service for controlling the device;
+     *      if null, the default base url is used
+     * @param username_ the username for authenticating
+     * @param password_ the password for authenticating
+     */
+    public IndegoController (IndegoTransport transport_, String baseUrl_, String username_, String password_)
+    {
+        sharedTransport = transport_;
         baseUrl = baseUrl_ == null ? BASE_URL_DEFAULT : normalizeBaseUrl(baseUrl_);
         authentication = Base64.encodeBase64String((username_ + ":" + password_).getBytes());
+        for (IndegoResource resource : IndegoResource.values()) {
+            cacheTimeToLiveMs.put(resource, resource.getDefaultTimeToLiveMs());
+        }
     }
 
     /**
@@ -88,8 +137,7 @@ public class IndegoController {
      */
     public IndegoController (String username_, String password_)
     {
-        baseUrl = BASE_URL_DEFAULT;
-        authentication = Base64.encodeBase64String((username_ + ":" + password_).getBytes());
+        this(null, null, username_, password_);
     }
 
     /**
@@ -113,10 +161,15 @@ public class IndegoController {
             throw new IndegoException("You are already connected");
         }
 
+        IndegoCircuitBreaker breaker = enterCircuit();
+        boolean reachable = false;
         try {
-            httpClient = HttpClients.createDefault();
+            transport = sharedTransport != null ? sharedTransport : new IndegoTransport();
+            httpClient = transport.getHttpClient();
             session = doAuthenticate();
-            lastStateQueryTs = 0;
+            lastSessionUseTs = System.currentTimeMillis();
+            responseCache.invalidateAll(session.getAlmSn());
+            reachable = true;
         }
         catch (IndegoException ex) {
             safeCloseClient();
@@ -126,6 +179,9 @@ public class IndegoController {
             safeCloseClient();
             throw new IndegoException(ex);
         }
+        finally {
+            leaveCircuit(breaker, reachable);
+        }
     }
 
     /**
@@ -145,35 +201,72 @@ public class IndegoController {
         return session.getAlmSn();
     }
 
+    /**
+     * Replaces the cache for server responses. A cache can be shared by several controllers.
+     * 
+     * @param responseCache_ the cache to use
+     */
+    public void setResponseCache (IndegoResponseCache responseCache_)
+    {
+        responseCache = responseCache_;
+    }
+
+    /**
+     * Sets the circuit breaker, which guards all requests to the server (including the
+     * authentication). While the circuit is open, the requests fail immediately by an
+     * {@link IndegoCircuitOpenException}. A circuit breaker can be shared by several controllers
+     * (e.g. the controllers of an adapter, which are created again after a connection loss).
+     * 
+     * @param circuitBreaker_ the circuit breaker to use; null, if the requests are not guarded
+     */
+    public void setCircuitBreaker (IndegoCircuitBreaker circuitBreaker_)
+    {
+        circuitBreaker = circuitBreaker_;
+    }
+
+    /**
+     * @return the circuit breaker, which guards all requests to the server; null, if none is used
+     */
+    public IndegoCircuitBreaker getCircuitBreaker ()
+    {
+        return circuitBreaker;
+    }
+
+    /**
+     * Sets the time, for which the responses of a resource are cached. By default, the state
+     * is cached for <code>MIN_STATE_QUERY_INTERVAL_MS</code> milliseconds; the other resources
+     * use the default of {@link IndegoResource#getDefaultTimeToLiveMs()}.
+     * 
+     * @param resource_ the resource to configure
+     * @param timeToLiveMs_ the time (in ms), for which the responses are cached; 0 disables caching
+     */
+    public void setCacheTimeToLive (IndegoResource resource_, long timeToLiveMs_)
+    {
+        cacheTimeToLiveMs.put(resource_, timeToLiveMs_);
+    }
+
     /**
      * This queries the device state from the server or returns a cached state if the
-     * last query was lass than <code>MIN_STATE_QUERY_INTERVAL_MS</code> milliseconds ago.
+     * last query was lass than <code>MIN_STATE_QUERY_INTERVAL_MS</code> milliseconds ago
+     * (or the configured time to live of {@link IndegoResource#STATE}).
      * 
      * @return the device state
      * @throws IndegoException in case of any unexpected event
      */
     public DeviceStateInformation getState () throws IndegoException
     {
-    	synchronized ( this ) {
-    		if ( deviceStateCache != null 
-    				&& System.currentTimeMillis() - MIN_STATE_QUERY_INTERVAL_MS < lastStateQueryTs ) {
-    			return deviceStateCache;
-    		}
-	        DeviceStateInformation state = doGetRequest("alms/" + session.getAlmSn() + "/state",
-	                DeviceStateInformation.class);
-	        deviceStateCache = state;
-	        lastStateQueryTs = System.currentTimeMillis();
-	        return state;
-    	}
+    	return getResource(IndegoResource.STATE, DeviceStateInformation.class);
     }
     
+    /**
+     * This queries the mowing calendar from the server or returns a cached calendar.
+     * 
+     * @return the mowing calendar
+     * @throws IndegoException in case of any unexpected event
+     */
     public DeviceCalendar getCalendar () throws IndegoException
     {
-        synchronized ( this ) {
-            DeviceCalendar calendar = doGetRequest("alms/" + session.getAlmSn() + "/calendar",
-                    DeviceCalendar.class);
-            return calendar;
-        }
+        return getResource(IndegoResource.CALENDAR, DeviceCalendar.class);
     }
 
     /**
@@ -185,28 +278,266 @@ public class IndegoController {
      */
     public void sendCommand (DeviceCommand command_) throws IndegoInvalidCommandException, IndegoException
     {
-    	lastStateQueryTs = 0;
         SetStateRequest request = new SetStateRequest();
         request.setState(command_.getActionCode());
-        doPutRequest("alms/" + session.getAlmSn() + "/state", request, null);
+        try {
+            doPutRequest("alms/" + getCurrentSession().getAlmSn() + "/state", request, null);
+        }
+        finally {
+            invalidate(IndegoResource.STATE);
+        }
     }
 
     /**
-     * Closes the connection and takes care of error handling.
+     * Returns a resource of the device from the cache or queries it from the server, if it
+     * is not cached (or the cache entry has expired). If several threads query the same
+     * resource concurrently, only the first one sends a request; the others wait for
+     * its result.
+     * 
+     * @param resource the resource to query
+     * @param returnType the class to which the JSON result should be mapped
+     * @return the resource
+     * @throws IndegoException in case of any unexpected event
      */
-    private void safeCloseClient ()
+    private <T> T getResource (IndegoResource resource, Class<T> returnType) throws IndegoException
+    {
+        String serial = getCurrentSession().getAlmSn();
+        IndegoResponseCache cache = responseCache;
+        Object cached = cache.get(serial, resource);
+        if ( returnType.isInstance(cached) ) {
+            return returnType.cast(cached);
+        }
+
+        String path = "alms/" + serial + resource.getPath();
+        CompletableFuture<Object> request = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlightRequests.putIfAbsent(path, request);
+        if ( running != null ) {
+            return returnType.cast(awaitResult(running));
+        }
+        try {
+            T result = doGetRequest(path, returnType);
+            // Only cache the result, if the resource was not changed in the meantime
+            if ( inFlightRequests.remove(path, request) ) {
+                Long timeToLiveMs = cacheTimeToLiveMs.get(resource);
+                cache.put(serial, resource, result, timeToLiveMs != null ? timeToLiveMs : 0);
+            }
+            request.complete(result);
+            return result;
+        }
+        catch (Throwable ex) {
+            inFlightRequests.remove(path, request);
+            request.completeExceptionally(ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Waits for the result of a query, which was started by another thread.
+     * 
+     * @param request the running query
+     * @return the result of the query
+     * @throws IndegoException in case of any unexpected event
+     */
+    private Object awaitResult (CompletableFuture<Object> request) throws IndegoException
+    {
+        try {
+            return request.get();
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IndegoException("Interrupted while waiting for the server", ex);
+        }
+        catch (ExecutionException ex) {
+            if ( ex.getCause() instanceof IndegoException ) {
+                throw (IndegoException) ex.getCause();
+            }
+            throw new IndegoException(ex.getCause());
+        }
+    }
+
+    /**
+     * Removes the cached responses of the given resources, after they have been changed.
+     * 
+     * @param resources the resources to invalidate
+     */
+    private void invalidate (IndegoResource... resources)
+    {
+        AuthenticationResponse currentSession = session;
+        if ( currentSession == null ) {
+            return;
+        }
+        for (IndegoResource resource : resources) {
+            responseCache.invalidate(currentSession.getAlmSn(), resource);
+            inFlightRequests.remove("alms/" + currentSession.getAlmSn() + resource.getPath());
+        }
+    }
+
+    /**
+     * This asks the server, if the current session (context id) is still valid.
+     * 
+     * @return true, if the session is valid; false, if it has expired
+     * @throws IndegoException in case of any unexpected event
+     */
+    public boolean checkSession () throws IndegoException
+    {
+        return checkSession(getCurrentSession());
+    }
+
+    /**
+     * This checks the current session by the server and authenticates again, if it has
+     * expired.
+     * 
+     * @throws IndegoAuthenticationException if the authentication failed
+     * @throws IndegoException in case of any unexpected event
+     */
+    public void validateSession () throws IndegoAuthenticationException, IndegoException
+    {
+        AuthenticationResponse currentSession = getCurrentSession();
+        if ( !checkSession(currentSession) ) {
+            reauthenticate(currentSession);
+        }
+    }
+
+    /**
+     * Returns the client for a single request. Since another thread may disconnect meanwhile,
+     * each request reads the client only once.
+     * 
+     * @return the current client
+     * @throws IndegoException if the controller is not connected
+     */
+    private CloseableHttpClient getHttpClient () throws IndegoException
+    {
+        CloseableHttpClient result = httpClient;
+        if ( result == null ) {
+            throw new IndegoException("You are not connected");
+        }
+        return result;
+    }
+
+    /**
+     * @return the current session
+     * @throws IndegoException if the controller is not connected
+     */
+    private AuthenticationResponse getCurrentSession () throws IndegoException
+    {
+        AuthenticationResponse result = session;
+        if ( result == null || httpClient == null ) {
+            throw new IndegoException("You are not connected");
+        }
+        return result;
+    }
+
+    /**
+     * This returns the session for the next request. If the session was not used for
+     * <code>SESSION_IDLE_CHECK_MS</code> milliseconds, it is validated by the server first.
+     * 
+     * @return the session to use
+     * @throws IndegoException in case of any unexpected event
+     */
+    private AuthenticationResponse prepareSession () throws IndegoException
+    {
+        if ( System.currentTimeMillis() - lastSessionUseTs > SESSION_IDLE_CHECK_MS ) {
+            validateSession();
+        }
+        return getCurrentSession();
+    }
+
+    /**
+     * This authenticates again, after the given session has expired. If several threads detect
+     * the expiration concurrently, only the first one sends an authentication request; the
+     * others use its result.
+     * 
+     * @param expiredSession the session, which was rejected by the server
+     * @return the new session
+     * @throws IndegoAuthenticationException if the authentication failed
+     * @throws IndegoException in case of any unexpected event
+     */
+    private AuthenticationResponse reauthenticate (AuthenticationResponse expiredSession)
+            throws IndegoAuthenticationException, IndegoException
+    {
+        synchronized ( authenticationLock ) {
+            if ( session == expiredSession ) {
+                session = doAuthenticate();
+                lastSessionUseTs = System.currentTimeMillis();
+            }
+            return getCurrentSession();
+        }
+    }
+
+    /**
+     * This asks the server, if the given session is still valid.
+     * 
+     * @param sessionToCheck the session to check
+     * @return true, if the session is valid; false, if it has expired
+     * @throws IndegoException in case of any unexpected event
+     */
+    private boolean checkSession (AuthenticationResponse sessionToCheck) throws IndegoException
     {
         try {
-        	if ( httpClient != null ) {
-        		httpClient.close();
-        	}
+            HttpGet httpRequest = new HttpGet(baseUrl + "authenticate/check");
+            httpRequest.setHeader("Authorization", "Basic " + authentication);
+            httpRequest.setHeader("x-im-context-id", sessionToCheck.getContextId());
+            try (CloseableHttpResponse response = getHttpClient().execute(httpRequest)) {
+                try {
+                    int status = response.getStatusLine().getStatusCode();
+                    if ( status == HttpStatus.SC_OK ) {
+                        lastSessionUseTs = System.currentTimeMillis();
+                        return true;
+                    }
+                    if ( isSessionExpired(status) ) {
+                        return false;
+                    }
+                    throw new IndegoException("The request failed with error: "
+                            + response.getStatusLine().toString());
+                }
+                finally {
+                    EntityUtils.consumeQuietly(response.getEntity());
+                }
+            }
         }
         catch (IOException ex) {
-            // Ignored
+            throw new IndegoException(ex);
+        }
+    }
+
+    /**
+     * @param status the HTTP status code of a response
+     * @return true, if the status code signals an invalid session
+     */
+    private static boolean isSessionExpired (int status)
+    {
+        return status == HttpStatus.SC_UNAUTHORIZED || status == HttpStatus.SC_FORBIDDEN;
+    }
+
+    /**
+     * Closes the connection and takes care of error handling.
+     */
+    private void safeCloseClient ()
+    {
+        if ( transport != null && transport != sharedTransport ) {
+            transport.close();
         }
+        transport = null;
         httpClient = null;
     }
 
+    /**
+     * This unmarshals the JSON contents of a response directly from the stream, without
+     * copying it to a string first.
+     * 
+     * @param entity the entity of the response
+     * @param returnType the class to which the JSON result should be mapped
+     * @return the mapped result; null, if the response has no contents
+     * @throws IOException in case of a broken connection or invalid JSON
+     */
+    private <T> T readEntity (HttpEntity entity, Class<T> returnType) throws IOException
+    {
+        if ( entity == null ) {
+            return null;
+        }
+        return codecs.getReader(returnType).readValue(entity.getContent());
+    }
+
     /**
      * This sends an authentication request to the server and unmarshals the result.
      * 
@@ -227,25 +558,30 @@ public class IndegoController {
             authRequest.setOsVersion("4.0");
             authRequest.setDeviceManufacturer("unknown");
             authRequest.setDeviceType("unknown");
-            String json = mapper.writeValueAsString(authRequest);
+            String json = codecs.getWriter(AuthenticationRequest.class).writeValueAsString(authRequest);
             httpPost.setEntity(new StringEntity(json, ContentType.APPLICATION_JSON));
 
-            CloseableHttpResponse response = httpClient.execute(httpPost);
-
-            int status = response.getStatusLine().getStatusCode();
-            if ( status == HttpStatus.SC_UNAUTHORIZED ) {
-                throw new IndegoAuthenticationException("Was not able to authenticate");
+            try (CloseableHttpResponse response = getHttpClient().execute(httpPost)) {
+                try {
+                    int status = response.getStatusLine().getStatusCode();
+                    if ( status == HttpStatus.SC_UNAUTHORIZED ) {
+                        throw new IndegoAuthenticationException("Was not able to authenticate");
+                    }
+                    if ( status != HttpStatus.SC_OK && status != HttpStatus.SC_CREATED ) {
+                        throw new IndegoAuthenticationException("The request failed with error: "
+                                + response.getStatusLine().toString());
+                    }
+
+                    AuthenticationResponse authResponse = readEntity(response.getEntity(),
+                            AuthenticationResponse.class);
+
+                    return authResponse;
+                }
+                finally {
+                    // Consuming the entity releases the connection back to the pool
+                    EntityUtils.consumeQuietly(response.getEntity());
+                }
             }
-            if ( status != HttpStatus.SC_OK && status != HttpStatus.SC_CREATED ) {
-                throw new IndegoAuthenticationException("The request failed with error: "
-                        + response.getStatusLine().toString());
-            }
-
-            String responseContents = EntityUtils.toString(response.getEntity());
-            AuthenticationResponse authResponse = mapper.readValue(responseContents,
-                    AuthenticationResponse.class);
-
-            return authResponse;
         }
         catch (IOException ex) {
             throw new IndegoException(ex);
@@ -263,21 +599,64 @@ public class IndegoController {
     */
     private <T> T doGetRequest (String urlSuffix, Class<? extends T> returnType) throws IndegoException
     {
+        IndegoCircuitBreaker breaker = enterCircuit();
+        boolean reachable = false;
         try {
-            HttpGet httpRequest = new HttpGet(baseUrl + urlSuffix);
-            httpRequest.setHeader("x-im-context-id", session.getContextId());
-            CloseableHttpResponse response = httpClient.execute(httpRequest);
-            if ( response.getStatusLine().getStatusCode() != HttpStatus.SC_OK ) {
-                throw new IndegoAuthenticationException("The request failed with error: "
-                        + response.getStatusLine().toString());
+            AuthenticationResponse usedSession = prepareSession();
+            T result;
+            try {
+                result = doGetRequest(urlSuffix, returnType, usedSession);
             }
-            String responseContents = EntityUtils.toString(response.getEntity());
-            if ( returnType == null ) {
-                return null;
+            catch (IndegoSessionExpiredException ex) {
+                result = doGetRequest(urlSuffix, returnType, reauthenticate(usedSession));
             }
-            else {
-                T result = mapper.readValue(responseContents, returnType);
-                return result;
+            reachable = true;
+            return result;
+        }
+        finally {
+            leaveCircuit(breaker, reachable);
+        }
+    }
+
+    /**
+     * This sends a GET request with the given session to the server and unmarshals the JSON result.
+     * 
+     * @param urlSuffix the path, to which the request should be sent
+     * @param returnType the class to which the JSON result should be mapped; if null,
+     *      no mapping is tried and null is returned.
+     * @param usedSession the session to send the request with
+     * @return the mapped result of the request
+     * @throws IndegoSessionExpiredException if the server rejected the session
+     * @throws IndegoException in case of any unexpected event
+     */
+    private <T> T doGetRequest (String urlSuffix, Class<? extends T> returnType, AuthenticationResponse usedSession)
+            throws IndegoException
+    {
+        try {
+            HttpGet httpRequest = new HttpGet(baseUrl + urlSuffix);
+            httpRequest.setHeader("x-im-context-id", usedSession.getContextId());
+            try (CloseableHttpResponse response = getHttpClient().execute(httpRequest)) {
+                try {
+                    if ( isSessionExpired(response.getStatusLine().getStatusCode()) ) {
+                        throw new IndegoSessionExpiredException("The session was rejected: "
+                                + response.getStatusLine().toString());
+                    }
+                    if ( response.getStatusLine().getStatusCode() != HttpStatus.SC_OK ) {
+                        throw new IndegoServerException("The request failed with error: "
+                                + response.getStatusLine().toString());
+                    }
+                    lastSessionUseTs = System.currentTimeMillis();
+                    if ( returnType == null ) {
+                        return null;
+                    }
+                    else {
+                        T result = readEntity(response.getEntity(), returnType);
+                        return result;
+                    }
+                }
+                finally {
+                    EntityUtils.consumeQuietly(response.getEntity());
+                }
             }
         }
         catch (IOException ex) {
@@ -298,27 +677,112 @@ public class IndegoController {
     private <T> T doPutRequest (String urlSuffix, Object request, Class<? extends T> returnType)
             throws IndegoException
     {
+        IndegoCircuitBreaker breaker = enterCircuit();
+        boolean reachable = false;
         try {
-            HttpPut httpRequest = new HttpPut(baseUrl + urlSuffix);
-            httpRequest.setHeader("x-im-context-id", session.getContextId());
-            String json = mapper.writeValueAsString(request);
-            httpRequest.setEntity(new StringEntity(json, ContentType.APPLICATION_JSON));
-            CloseableHttpResponse response = httpClient.execute(httpRequest);
-            if ( response.getStatusLine().getStatusCode() == HttpStatus.SC_INTERNAL_SERVER_ERROR ) {
-                throw new IndegoInvalidCommandException("The request failed with error: "
-                        + response.getStatusLine().toString());
-            }
-            if ( response.getStatusLine().getStatusCode() != HttpStatus.SC_OK ) {
-                throw new IndegoAuthenticationException("The request failed with error: "
-                        + response.getStatusLine().toString());
+            AuthenticationResponse usedSession = prepareSession();
+            T result;
+            try {
+                result = doPutRequest(urlSuffix, request, returnType, usedSession);
             }
-            String responseContents = EntityUtils.toString(response.getEntity());
-            if ( returnType == null ) {
-                return null;
+            catch (IndegoSessionExpiredException ex) {
+                result = doPutRequest(urlSuffix, request, returnType, reauthenticate(usedSession));
             }
-            else {
-                T result = mapper.readValue(responseContents, returnType);
-                return result;
+            reachable = true;
+            return result;
+        }
+        catch (IndegoInvalidCommandException ex) {
+            // The server is reachable, it just rejected the command in the current device state
+            reachable = true;
+            throw ex;
+        }
+        finally {
+            leaveCircuit(breaker, reachable);
+        }
+    }
+
+    /**
+     * Checks the circuit breaker, before a request is sent to the server.
+     * 
+     * @return the circuit breaker, to which the result of the request has to be reported;
+     *      null, if none is used
+     * @throws IndegoCircuitOpenException if the circuit is open
+     */
+    private IndegoCircuitBreaker enterCircuit () throws IndegoCircuitOpenException
+    {
+        IndegoCircuitBreaker breaker = circuitBreaker;
+        if ( breaker != null && !breaker.allowRequest() ) {
+            throw new IndegoCircuitOpenException(String.format(
+                    "The server is not contacted for another %d ms after repeated failures", breaker.getRemainingOpenMs()));
+        }
+        return breaker;
+    }
+
+    /**
+     * Reports the result of a request to the circuit breaker.
+     * 
+     * @param breaker the circuit breaker, which was returned by {@link #enterCircuit()}
+     * @param reachable true, if the server has processed the request
+     */
+    private static void leaveCircuit (IndegoCircuitBreaker breaker, boolean reachable)
+    {
+        if ( breaker == null ) {
+            return;
+        }
+        if ( reachable ) {
+            breaker.recordSuccess();
+        }
+        else {
+            breaker.recordFailure();
+        }
+    }
+
+    /**
+     * This sends a PUT request with the given session to the server and unmarshals the JSON result.
+     * 
+     * @param urlSuffix the path, to which the request should be sent
+     * @param request the data, which should be sent to the server (mapped to JSON)
+     * @param returnType the class to which the JSON result should be mapped; if null,
+     *      no mapping is tried and null is returned.
+     * @param usedSession the session to send the request with
+     * @return the mapped result of the request
+     * @throws IndegoSessionExpiredException if the server rejected the session
+     * @throws IndegoException in case of any unexpected event
+     */
+    private <T> T doPutRequest (String urlSuffix, Object request, Class<? extends T> returnType,
+            AuthenticationResponse usedSession) throws IndegoException
+    {
+        try {
+            HttpPut httpRequest = new HttpPut(baseUrl + urlSuffix);
+            httpRequest.setHeader("x-im-context-id", usedSession.getContextId());
+            String json = codecs.getWriter(request.getClass()).writeValueAsString(request);
+            httpRequest.setEntity(new StringEntity(json, ContentType.APPLICATION_JSON));
+            try (CloseableHttpResponse response = getHttpClient().execute(httpRequest)) {
+                try {
+                    if ( isSessionExpired(response.getStatusLine().getStatusCode()) ) {
+                        throw new IndegoSessionExpiredException("The session was rejected: "
+                                + response.getStatusLine().toString());
+                    }
+                    if ( response.getStatusLine().getStatusCode() == HttpStatus.SC_INTERNAL_SERVER_ERROR ) {
+                        throw new IndegoInvalidCommandException("The request failed with error: "
+                                + response.getStatusLine().toString());
+                    }
+                    if ( response.getStatusLine().getStatusCode() != HttpStatus.SC_OK ) {
+                        throw new IndegoServerException("The request failed with error: "
+                                + response.getStatusLine().toString());
+                    }
+                    lastSessionUseTs = System.currentTimeMillis();
+                    if ( returnType == null ) {
+                        return null;
+                    }
+                    else {
+                        T result = readEntity(response.getEntity(), returnType);
+                        return result;
+                    }
+                }
+                finally {
+                    EntityUtils.consumeQuietly(response.getEntity());
+                }
             }
         }
         catch (IOException ex) {
@@ -333,75 +797,75 @@ public class IndegoController {
      */
     public LocationWeather getWeather() throws IndegoException
     {
-        synchronized (this)
-        {
-            final LocationWeather weather = doGetRequest("alms/" + session.getAlmSn() + "/predictive/weather",
-                    LocationWeather.class);
-            System.out.println(weather);
-            return weather;
-        }
+        final LocationWeather weather = getResource(IndegoResource.WEATHER, LocationWeather.class);
+        return weather;
     }
 
     public int getPredictiveAdjustment() throws IndegoException
     {
-        synchronized (this)
-        {
-            final PredictiveAdjustment adjustment = doGetRequest(
-                    "alms/" + session.getAlmSn() + "/predictive/useradjustment", PredictiveAdjustment.class);
-            return adjustment.getAdjustment();
-        }
+        final PredictiveAdjustment adjustment = getResource(IndegoResource.PREDICTIVE_ADJUSTMENT,
+                PredictiveAdjustment.class);
+        return adjustment.getAdjustment();
     }
 
     public void setPredictiveAdjustment(final int adjust) throws IndegoException
     {
-        synchronized (this)
+        final PredictiveAdjustment adjustment = new PredictiveAdjustment();
+        adjustment.setAdjustment(adjust);
+        try
+        {
+            doPutRequest("alms/" + getCurrentSession().getAlmSn() + "/predictive/useradjustment", adjustment, null);
+        }
+        finally
         {
-            final PredictiveAdjustment adjustment = new PredictiveAdjustment();
-            adjustment.setAdjustment(adjust);
-            doPutRequest("alms/" + session.getAlmSn() + "/predictive/useradjustment", adjustment, null);
+            invalidate(IndegoResource.PREDICTIVE_ADJUSTMENT, IndegoResource.PREDICTIVE_NEXT_CUTTING);
         }
     }
 
     public boolean getPredictiveMoving() throws IndegoException
     {
-        synchronized (this)
-        {
-            final PredictiveStatus status = doGetRequest("alms/" + session.getAlmSn() + "/predictive",
-                    PredictiveStatus.class);
-            return status.isEnabled();
-        }
+        final PredictiveStatus status = getResource(IndegoResource.PREDICTIVE_STATUS,
+                PredictiveStatus.class);
+        return status.isEnabled();
     }
 
     public void setPredictiveMoving(final boolean enable) throws IndegoException
     {
-        synchronized (this)
+        final PredictiveStatus status = new PredictiveStatus();
+        status.setEnabled(enable);
+        try
+        {
+            doPutRequest("alms/" + getCurrentSession().getAlmSn() + "/predictive", status, null);
+        }
+        finally
         {
-            final PredictiveStatus status = new PredictiveStatus();
-            status.setEnabled(enable);
-            doPutRequest("alms/" + session.getAlmSn() + "/predictive", status, null);
+            invalidate(IndegoResource.PREDICTIVE_STATUS, IndegoResource.PREDICTIVE_NEXT_CUTTING);
         }
     }
 
     public Date getPredictiveNextCutting() throws IndegoException
     {
-        synchronized (this)
-        {
-            final PredictiveCuttingTime nextCutting = doGetRequest(
-                    "alms/" + session.getAlmSn() + "/predictive/nextcutting", PredictiveCuttingTime.class);
-            return nextCutting.getNextCuttingAsDate();
-        }
+        final PredictiveCuttingTime nextCutting = getResource(IndegoResource.PREDICTIVE_NEXT_CUTTING,
+                PredictiveCuttingTime.class);
+        return nextCutting.getNextCuttingAsDate();
     }
 
     public DeviceCalendar getPredictiveExclusionTime() throws IndegoException
     {
-        final DeviceCalendar calendar = doGetRequest("alms/" + session.getAlmSn() + "/predictive/calendar",
-                DeviceCalendar.class);
+        final DeviceCalendar calendar = getResource(IndegoResource.PREDICTIVE_CALENDAR, DeviceCalendar.class);
         return calendar;
     }
 
     public void setPredictiveExclusionTime(final DeviceCalendar calendar) throws IndegoException
     {
-        doPutRequest("alms/" + session.getAlmSn() + "/predictive/calendar", calendar, null);
+        try
+        {
+            doPutRequest("alms/" + getCurrentSession().getAlmSn() + "/predictive/calendar", calendar, null);
+        }
+        finally
+        {
+            invalidate(IndegoResource.PREDICTIVE_CALENDAR, IndegoResource.PREDICTIVE_NEXT_CUTTING);
+        }
     }
 
 }
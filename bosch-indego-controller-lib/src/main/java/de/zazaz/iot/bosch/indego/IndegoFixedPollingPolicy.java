@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego;
+
+/**
+ * A polling policy, which polls with a fixed interval.
+ */
+public class IndegoFixedPollingPolicy implements IndegoPollingPolicy {
+
+    /** the polling interval (in ms) */
+    private final long intervalMs;
+
+    /**
+     * Initializes the policy.
+     *
+     * @param intervalMs_ the polling interval (in ms)
+     */
+    public IndegoFixedPollingPolicy (long intervalMs_)
+    {
+        if ( intervalMs_ <= 0 ) {
+            throw new IllegalArgumentException("The polling interval has to be positive");
+        }
+        intervalMs = intervalMs_;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long nextIntervalMs (DeviceStateInformation state_)
+    {
+        return intervalMs;
+    }
+
+}
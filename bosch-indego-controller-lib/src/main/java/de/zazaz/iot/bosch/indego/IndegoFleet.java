@@ -0,0 +1,524 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A registry for many Indego accounts / devices. All devices share one pool of HTTP connections,
+ * one scheduler thread and a fixed number of worker threads, so the number of threads and
+ * connections depends on the number of concurrently executed requests, not on the number of
+ * devices.
+ * <p>
+ * The fetched states are published to an {@link IndegoStateEventBus} (with the account id as source
+ * id), so any number of sinks can subscribe to the state changes of the polled devices.
+ */
+public class IndegoFleet {
+
+    /**
+     * A request, which is executed by a worker thread of the fleet against the controller of a device.
+     *
+     * @param <T> the type of the result
+     */
+    public interface Request<T> {
+
+        /**
+         * @param controller the connected controller of the device
+         * @return the result of the request
+         * @throws IndegoException in case of any unexpected event
+         */
+        T execute (IndegoController controller) throws IndegoException;
+
+    }
+
+    /** the configuration to use */
+    private final IndegoFleetConfiguration configuration;
+
+    /** the transport, which is shared by all devices */
+    private final IndegoTransport transport;
+
+    /** the worker threads, which execute the requests */
+    private final ExecutorService workers;
+
+    /** the scheduler, which triggers the periodic polling */
+    private final ScheduledExecutorService scheduler;
+
+    /** all registered devices (by account id) */
+    private final ConcurrentHashMap<String, IndegoFleetDevice> devices = new ConcurrentHashMap<>();
+
+    /** the poll scheduler, which spreads the polls and limits the rate of the polls */
+    private final IndegoPollScheduler pollScheduler;
+
+    /** the bus, which receives the fetched states */
+    private final IndegoStateEventBus eventBus;
+
+    /** the scheduled pollings (by account id) */
+    private final ConcurrentHashMap<String, Polling> pollings = new ConcurrentHashMap<>();
+
+    /** this is used for indicating, that the fleet was closed */
+    private final AtomicBoolean flagClosed = new AtomicBoolean(false);
+
+    /**
+     * Initializes the fleet.
+     *
+     * @param configuration_ the configuration to use
+     */
+    public IndegoFleet (IndegoFleetConfiguration configuration_)
+    {
+        this(configuration_, new IndegoStateEventBus());
+    }
+
+    /**
+     * Initializes the fleet with a bus, which may be shared with other producers.
+     *
+     * @param configuration_ the configuration to use
+     * @param eventBus_ the bus, which receives the fetched states
+     */
+    public IndegoFleet (IndegoFleetConfiguration configuration_, IndegoStateEventBus eventBus_)
+    {
+        eventBus = eventBus_;
+        // Get a clone, since we don't want to be manipulated during runtime
+        configuration = (IndegoFleetConfiguration) configuration_.clone();
+        transport = new IndegoTransport(configuration.getTransportConfiguration());
+        workers = Executors.newFixedThreadPool(configuration.getMaxConcurrentRequests(),
+                new NamedThreadFactory("indego-fleet-worker"));
+        scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("indego-fleet-scheduler"));
+        pollScheduler = new IndegoPollScheduler(configuration.getPollSchedulerConfiguration());
+    }
+
+    /**
+     * Registers an account. The connection is established on the first request. While the server
+     * fails repeatedly, the requests of the device fail immediately (see {@link IndegoCircuitBreaker}).
+     *
+     * @param accountId_ an unique id for the account
+     * @param baseUrl_ the url which provices the service for controlling the device;
+     *      if null, the default base url is used
+     * @param username_ the username for authenticating
+     * @param password_ the password for authenticating
+     * @return the registered device
+     */
+    public IndegoFleetDevice addAccount (String accountId_, String baseUrl_, String username_, String password_)
+    {
+        checkNotClosed();
+        IndegoController controller = new IndegoController(transport, baseUrl_, username_, password_);
+        controller.setCircuitBreaker(new IndegoCircuitBreaker(configuration.getCircuitBreakerConfiguration()));
+        IndegoFleetDevice device = new IndegoFleetDevice(accountId_, controller);
+        if ( devices.putIfAbsent(accountId_, device) != null ) {
+            throw new IllegalArgumentException(String.format("The account '%s' is already registered", accountId_));
+        }
+        return device;
+    }
+
+    /**
+     * Removes an account. The polling is stopped and the device is disconnected.
+     *
+     * @param accountId_ the id of the account to remove
+     */
+    public void removeAccount (String accountId_)
+    {
+        stopPolling(accountId_);
+        IndegoFleetDevice device = devices.remove(accountId_);
+        if ( device != null ) {
+            device.disconnect();
+            eventBus.remove(accountId_);
+        }
+    }
+
+    /**
+     * @param accountId_ the id of the account
+     * @return the device of the account (null, if not registered)
+     */
+    public IndegoFleetDevice getDevice (String accountId_)
+    {
+        return devices.get(accountId_);
+    }
+
+    /**
+     * @return all registered devices
+     */
+    public Collection<IndegoFleetDevice> getDevices ()
+    {
+        return Collections.unmodifiableCollection(devices.values());
+    }
+
+    /**
+     * @return the poll scheduler, which spreads the polls and provides the lag statistics
+     */
+    public IndegoPollScheduler getPollScheduler ()
+    {
+        return pollScheduler;
+    }
+
+    /**
+     * @return the bus, which receives the fetched states (e.g. for subscribing to the state changes)
+     */
+    public IndegoStateEventBus getEventBus ()
+    {
+        return eventBus;
+    }
+
+    /**
+     * @return the transport, which is shared by all devices
+     */
+    public IndegoTransport getTransport ()
+    {
+        return transport;
+    }
+
+    /**
+     * Executes a request against the controller of a device by a worker thread. If the request
+     * fails because of the connection or since the controller was not able to authenticate again,
+     * the controller is disconnected and reconnected on the next request. Other failures (e.g. an
+     * error status of the server, an invalid command or an open circuit) keep the session and the
+     * cached responses. An expired session is renewed by the controller itself.
+     * <p>
+     * Other workers may still execute requests with the controller, when it is disconnected; they
+     * fail with an {@link IndegoException}.
+     *
+     * @param accountId_ the id of the account
+     * @param request_ the request to execute
+     * @return a future, which is completed with the result of the request; it completes
+     *      exceptionally with an {@link IndegoException}, if the request failed
+     */
+    public <T> CompletableFuture<T> submit (String accountId_, final Request<T> request_)
+    {
+        final IndegoFleetDevice device = devices.get(accountId_);
+        if ( device == null ) {
+            CompletableFuture<T> result = new CompletableFuture<>();
+            result.completeExceptionally(new IndegoException(String.format("Unknown account: %s", accountId_)));
+            return result;
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return request_.execute(device.getConnectedController());
+            }
+            catch (IndegoException ex) {
+                if ( isConnectionBroken(ex) ) {
+                    device.disconnect();
+                }
+                throw new CompletionException(ex);
+            }
+        }, workers);
+    }
+
+    /**
+     * @param ex_ the failure of a request
+     * @return true, if the failure was caused by the transport or by a failed authentication, so
+     *      the controller has to reconnect
+     */
+    private static boolean isConnectionBroken (IndegoException ex_)
+    {
+        if ( ex_.getCause() instanceof IOException ) {
+            return true;
+        }
+        // A rejected session is renewed by the controller; this is only thrown, if the authentication failed
+        return ex_ instanceof IndegoAuthenticationException && !(ex_ instanceof IndegoSessionExpiredException);
+    }
+
+    /**
+     * Fetches the state of a device from the server and updates the cached state of the device. The
+     * result is published to the event bus; if the state could not be fetched, the device is
+     * published as not reachable.
+     *
+     * @param accountId_ the id of the account
+     * @return a future, which is completed with the fetched state
+     */
+    public CompletableFuture<DeviceStateInformation> fetchState (final String accountId_)
+    {
+        final IndegoFleetDevice device = devices.get(accountId_);
+        CompletableFuture<DeviceStateInformation> result = submit(accountId_, controller -> {
+            DeviceStateInformation state = controller.getState();
+            device.updateCachedState(state);
+            eventBus.publish(accountId_, state);
+            return state;
+        });
+        if ( device != null ) {
+            result.whenComplete((state, ex) -> {
+                if ( ex != null ) {
+                    eventBus.publish(accountId_, null);
+                }
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Starts the periodic polling of the state of a device with a random phase offset. A poll
+     * is deferred, until the previous one has finished.
+     *
+     * @param accountId_ the id of the account
+     * @param intervalMs_ the polling interval (in ms)
+     * @param listener_ the listener, which receives the results
+     */
+    public void startPolling (final String accountId_, long intervalMs_, final IndegoFleetListener listener_)
+    {
+        startPolling(accountId_, pollScheduler.register(intervalMs_), listener_);
+    }
+
+    /**
+     * Starts the periodic polling of the state of a device with a delayed first poll. By using
+     * different delays, the polls of many devices can be spread across the polling interval.
+     *
+     * @param accountId_ the id of the account
+     * @param intervalMs_ the polling interval (in ms)
+     * @param initialDelayMs_ the delay (in ms) of the first poll; this is the phase offset
+     *      of all following polls
+     * @param listener_ the listener, which receives the results
+     */
+    public void startPolling (final String accountId_, long intervalMs_, long initialDelayMs_,
+            final IndegoFleetListener listener_)
+    {
+        startPolling(accountId_, pollScheduler.register(intervalMs_, initialDelayMs_), listener_);
+    }
+
+    /**
+     * Starts the periodic polling of the state of a device within the given slot.
+     *
+     * @param accountId_ the id of the account
+     * @param slot_ the slot, which plans the polls
+     * @param listener_ the listener, which receives the results
+     */
+    private void startPolling (String accountId_, IndegoPollSlot slot_, IndegoFleetListener listener_)
+    {
+        checkNotClosed();
+        IndegoFleetDevice device = devices.get(accountId_);
+        if ( device == null ) {
+            throw new IllegalArgumentException(String.format("Unknown account: %s", accountId_));
+        }
+        Polling polling = new Polling(device, slot_, listener_);
+        Polling previous = pollings.put(accountId_, polling);
+        if ( previous != null ) {
+            previous.cancel();
+        }
+        polling.schedule(slot_.getDelayMs());
+    }
+
+    /**
+     * Stops the periodic polling of the state of a device.
+     *
+     * @param accountId_ the id of the account
+     */
+    public void stopPolling (String accountId_)
+    {
+        Polling polling = pollings.remove(accountId_);
+        if ( polling != null ) {
+            polling.cancel();
+        }
+    }
+
+    /**
+     * This stops all pollings, disconnects all devices and closes the shared transport.
+     */
+    public void close ()
+    {
+        if ( !flagClosed.compareAndSet(false, true) ) {
+            return;
+        }
+        List<String> accountIds = new ArrayList<>(devices.keySet());
+        for (String accountId : accountIds) {
+            stopPolling(accountId);
+        }
+        scheduler.shutdownNow();
+        workers.shutdown();
+        try {
+            workers.awaitTermination(30, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        for (IndegoFleetDevice device : devices.values()) {
+            device.disconnect();
+        }
+        devices.clear();
+        transport.close();
+    }
+
+    /**
+     * @throws IllegalStateException if the fleet was closed
+     */
+    private void checkNotClosed ()
+    {
+        if ( flagClosed.get() ) {
+            throw new IllegalStateException("The fleet is closed");
+        }
+    }
+
+    /**
+     * The periodic polling of a device. Each run reschedules itself for the next planned poll of
+     * its slot; if the global rate limit is exceeded, the poll is delayed without blocking the
+     * scheduler thread. A run, which is due while the previous poll is still executed, neither
+     * takes a permit nor moves the plan; it is started again, when the previous poll has finished.
+     */
+    private class Polling implements Runnable {
+
+        /** the polled device */
+        private final IndegoFleetDevice device;
+
+        /** the slot, which plans the polls */
+        private final IndegoPollSlot slot;
+
+        /** the listener, which receives the results */
+        private final IndegoFleetListener listener;
+
+        /** this is used for indicating, that a poll is executed currently */
+        private final AtomicBoolean inFlight = new AtomicBoolean(false);
+
+        /** this is used for indicating, that a run was due while a poll was executed */
+        private final AtomicBoolean deferred = new AtomicBoolean(false);
+
+        /** this is set, if a permit of the rate limiter was reserved for the next run */
+        private boolean permitReserved;
+
+        /** this is set, if the polling was cancelled */
+        private volatile boolean cancelled;
+
+        /** the next scheduled run */
+        private volatile ScheduledFuture<?> future;
+
+        /**
+         * @param device_ the polled device
+         * @param slot_ the slot, which plans the polls
+         * @param listener_ the listener, which receives the results
+         */
+        Polling (IndegoFleetDevice device_, IndegoPollSlot slot_, IndegoFleetListener listener_)
+        {
+            device = device_;
+            slot = slot_;
+            listener = listener_;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void run ()
+        {
+            if ( cancelled ) {
+                return;
+            }
+            if ( inFlight.get() ) {
+                // The finishing poll starts the run again; check once more, if it has finished meanwhile
+                deferred.set(true);
+                if ( !inFlight.get() && deferred.compareAndSet(true, false) ) {
+                    schedule(0);
+                }
+                return;
+            }
+            if ( !permitReserved ) {
+                long waitMs = slot.reservePermit();
+                if ( waitMs > 0 ) {
+                    permitReserved = true;
+                    schedule(waitMs);
+                    return;
+                }
+            }
+            permitReserved = false;
+            slot.pollStarted();
+            // Only this run starts polls, so no other poll can have started since the check above
+            inFlight.set(true);
+            fetchState(device.getAccountId()).whenComplete((state, ex) -> {
+                inFlight.set(false);
+                if ( deferred.compareAndSet(true, false) ) {
+                    schedule(0);
+                }
+                if ( ex == null ) {
+                    listener.stateUpdated(device, state);
+                }
+                else {
+                    Throwable cause = ex instanceof CompletionException ? ex.getCause() : ex;
+                    listener.stateFailed(device, cause instanceof IndegoException
+                            ? (IndegoException) cause : new IndegoException(cause));
+                }
+            });
+            schedule(slot.getDelayMs());
+        }
+
+        /**
+         * Schedules the next run.
+         *
+         * @param delayMs_ the delay (in ms)
+         */
+        void schedule (long delayMs_)
+        {
+            if ( cancelled || scheduler.isShutdown() ) {
+                return;
+            }
+            future = scheduler.schedule(this, delayMs_, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Cancels the polling.
+         */
+        void cancel ()
+        {
+            cancelled = true;
+            ScheduledFuture<?> current = future;
+            if ( current != null ) {
+                current.cancel(false);
+            }
+        }
+
+    }
+
+    /**
+     * Creates named daemon threads.
+     */
+    private static class NamedThreadFactory implements ThreadFactory {
+
+        /** the prefix of the thread names */
+        private final String prefix;
+
+        /** the number of the next thread */
+        private final AtomicInteger counter = new AtomicInteger(1);
+
+        /**
+         * @param prefix_ the prefix of the thread names
+         */
+        NamedThreadFactory (String prefix_)
+        {
+            prefix = prefix_;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Thread newThread (Runnable runnable_)
+        {
+            Thread result = new Thread(runnable_, prefix + "-" + counter.getAndIncrement());
+            result.setDaemon(true);
+            return result;
+        }
+
+    }
+
+}
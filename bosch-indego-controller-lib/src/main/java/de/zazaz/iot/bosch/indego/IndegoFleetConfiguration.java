@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego;
+
+/**
+ * This contains the configuration to initialize a fleet of Indego devices.
+ */
+public class IndegoFleetConfiguration implements Cloneable {
+
+    /** the configuration of the transport, which is shared by all devices */
+    private IndegoTransportConfiguration transportConfiguration = new IndegoTransportConfiguration();
+
+    /** the maximum number of requests, which are executed concurrently (= number of worker threads) */
+    private int maxConcurrentRequests = 4;
+
+    /** the configuration of the poll scheduler, which spreads the polls of all devices */
+    private IndegoPollSchedulerConfiguration pollSchedulerConfiguration = new IndegoPollSchedulerConfiguration();
+
+    /** the configuration of the circuit breaker of each device, which stops the requests while the server is down */
+    private IndegoCircuitBreakerConfiguration circuitBreakerConfiguration = new IndegoCircuitBreakerConfiguration();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object clone ()
+    {
+        try {
+            IndegoFleetConfiguration result = (IndegoFleetConfiguration) super.clone();
+            result.transportConfiguration = (IndegoTransportConfiguration) transportConfiguration.clone();
+            result.pollSchedulerConfiguration =
+                    (IndegoPollSchedulerConfiguration) pollSchedulerConfiguration.clone();
+            result.circuitBreakerConfiguration =
+                    (IndegoCircuitBreakerConfiguration) circuitBreakerConfiguration.clone();
+            return result;
+        }
+        catch (CloneNotSupportedException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Gets the configuration of the transport, which is shared by all devices.
+     *
+     * @return the configuration of the transport, which is shared by all devices
+     */
+    public IndegoTransportConfiguration getTransportConfiguration ()
+    {
+        return transportConfiguration;
+    }
+
+    /**
+     * Sets the configuration of the transport, which is shared by all devices.
+     *
+     * @param transportConfiguration_ the new configuration of the transport
+     */
+    public void setTransportConfiguration (IndegoTransportConfiguration transportConfiguration_)
+    {
+        transportConfiguration = transportConfiguration_;
+    }
+
+    /**
+     * Gets the maximum number of requests, which are executed concurrently (= number of worker threads).
+     *
+     * @return the maximum number of requests, which are executed concurrently
+     */
+    public int getMaxConcurrentRequests ()
+    {
+        return maxConcurrentRequests;
+    }
+
+    /**
+     * Sets the maximum number of requests, which are executed concurrently (= number of worker threads).
+     *
+     * @param maxConcurrentRequests_ the new maximum number of requests, which are executed concurrently
+     */
+    public void setMaxConcurrentRequests (int maxConcurrentRequests_)
+    {
+        maxConcurrentRequests = maxConcurrentRequests_;
+    }
+
+    /**
+     * Gets the configuration of the poll scheduler, which spreads the polls of all devices.
+     *
+     * @return the configuration of the poll scheduler
+     */
+    public IndegoPollSchedulerConfiguration getPollSchedulerConfiguration ()
+    {
+        return pollSchedulerConfiguration;
+    }
+
+    /**
+     * Sets the configuration of the poll scheduler, which spreads the polls of all devices.
+     *
+     * @param pollSchedulerConfiguration_ the new configuration of the poll scheduler
+     */
+    public void setPollSchedulerConfiguration (IndegoPollSchedulerConfiguration pollSchedulerConfiguration_)
+    {
+        pollSchedulerConfiguration = pollSchedulerConfiguration_;
+    }
+
+    /**
+     * Gets the configuration of the circuit breaker of each device, which stops the requests while
+     * the server is down.
+     *
+     * @return the configuration of the circuit breaker
+     */
+    public IndegoCircuitBreakerConfiguration getCircuitBreakerConfiguration ()
+    {
+        return circuitBreakerConfiguration;
+    }
+
+    /**
+     * Sets the configuration of the circuit breaker of each device, which stops the requests while
+     * the server is down.
+     *
+     * @param circuitBreakerConfiguration_ the new configuration of the circuit breaker
+     */
+    public void setCircuitBreakerConfiguration (IndegoCircuitBreakerConfiguration circuitBreakerConfiguration_)
+    {
+        circuitBreakerConfiguration = circuitBreakerConfiguration_;
+    }
+
+}
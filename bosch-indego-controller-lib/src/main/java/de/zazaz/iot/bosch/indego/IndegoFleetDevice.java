@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego;
+
+/**
+ * A single account / device, which is managed by an {@link IndegoFleet}. It holds the controller
+ * of the account and caches the last state, which was fetched from the server.
+ */
+public class IndegoFleetDevice {
+
+    /** the id, under which the account was registered */
+    private final String accountId;
+
+    /** the controller of the account (shares the transport with all other devices of the fleet) */
+    private final IndegoController controller;
+
+    /** true, if the controller is connected */
+    private boolean connected;
+
+    /** the serial number of the device (null, if never connected) */
+    private volatile String serial;
+
+    /** this stores the result of the last device status query */
+    private volatile DeviceStateInformation cachedState;
+
+    /** the timestamp, when the cached state was fetched */
+    private volatile long cachedStateTs;
+
+    /**
+     * @param accountId_ the id, under which the account was registered
+     * @param controller_ the controller of the account
+     */
+    IndegoFleetDevice (String accountId_, IndegoController controller_)
+    {
+        accountId = accountId_;
+        controller = controller_;
+    }
+
+    /**
+     * @return the id, under which the account was registered
+     */
+    public String getAccountId ()
+    {
+        return accountId;
+    }
+
+    /**
+     * @return the serial number of the device (null, if the device was never connected)
+     */
+    public String getSerial ()
+    {
+        return serial;
+    }
+
+    /**
+     * @return the last state, which was fetched from the server (null, if none was fetched yet)
+     */
+    public DeviceStateInformation getCachedState ()
+    {
+        return cachedState;
+    }
+
+    /**
+     * @return the timestamp, when the cached state was fetched (0, if none was fetched yet)
+     */
+    public long getCachedStateTs ()
+    {
+        return cachedStateTs;
+    }
+
+    /**
+     * Returns the connected controller of this device. The controller is connected on demand.
+     *
+     * @return the connected controller
+     * @throws IndegoException if the connection failed
+     */
+    synchronized IndegoController getConnectedController () throws IndegoException
+    {
+        if ( !connected ) {
+            controller.connect();
+            connected = true;
+            serial = controller.getDeviceSerialNumber();
+        }
+        return controller;
+    }
+
+    /**
+     * This disconnects the controller; it is reconnected on the next request.
+     */
+    synchronized void disconnect ()
+    {
+        if ( connected ) {
+            controller.disconnect();
+            connected = false;
+        }
+    }
+
+    /**
+     * Stores a freshly fetched state.
+     *
+     * @param state_ the state to cache
+     */
+    void updateCachedState (DeviceStateInformation state_)
+    {
+        cachedState = state_;
+        cachedStateTs = System.currentTimeMillis();
+    }
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego;
+
+/**
+ * Receives the results of the periodic state polling of an {@link IndegoFleet}. The methods
+ * are called by the worker threads of the fleet, so they should return quickly.
+ */
+public interface IndegoFleetListener {
+
+    /**
+     * Called, when the state of a device was fetched successfully.
+     *
+     * @param device the device, which was polled
+     * @param state the fetched state
+     */
+    void stateUpdated (IndegoFleetDevice device, DeviceStateInformation state);
+
+    /**
+     * Called, when the state of a device could not be fetched.
+     *
+     * @param device the device, which was polled
+     * @param ex the reason of the failure
+     */
+    void stateFailed (IndegoFleetDevice device, IndegoException ex);
+
+}
@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A size bounded response cache. If the maximum number of entries is reached, the least
+ * recently used entry is evicted.
+ */
+public class IndegoLruResponseCache implements IndegoResponseCache {
+
+    /** the default maximum number of entries */
+    public static final int DEFAULT_MAX_ENTRIES = 64;
+
+    /**
+     * The key of a cache entry.
+     */
+    private static class Key {
+
+        /** the serial number of the device */
+        private final String serial;
+
+        /** the queried resource */
+        private final IndegoResource resource;
+
+        /**
+         * @param serial_ the serial number of the device
+         * @param resource_ the queried resource
+         */
+        Key (String serial_, IndegoResource resource_)
+        {
+            serial = serial_;
+            resource = resource_;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode ()
+        {
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + serial.hashCode();
+            result = prime * result + resource.hashCode();
+            return result;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals (Object obj)
+        {
+            if ( this == obj ) {
+                return true;
+            }
+            if ( obj == null || getClass() != obj.getClass() ) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return serial.equals(other.serial) && resource == other.resource;
+        }
+
+    }
+
+    /**
+     * The value of a cache entry.
+     */
+    private static class Entry {
+
+        /** the cached response */
+        private final Object value;
+
+        /** the timestamp, when the entry expires */
+        private final long expiresTs;
+
+        /**
+         * @param value_ the cached response
+         * @param expiresTs_ the timestamp, when the entry expires
+         */
+        Entry (Object value_, long expiresTs_)
+        {
+            value = value_;
+            expiresTs = expiresTs_;
+        }
+
+    }
+
+    /** the cached entries in access order */
+    private final LinkedHashMap<Key, Entry> entries;
+
+    /**
+     * Initializes the cache with <code>DEFAULT_MAX_ENTRIES</code> entries.
+     */
+    public IndegoLruResponseCache ()
+    {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Initializes the cache.
+     *
+     * @param maxEntries_ the maximum number of entries
+     */
+    public IndegoLruResponseCache (final int maxEntries_)
+    {
+        entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry (Map.Entry<Key, Entry> eldest_)
+            {
+                return size() > maxEntries_;
+            }
+
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Object get (String serial, IndegoResource resource)
+    {
+        Key key = new Key(serial, resource);
+        Entry entry = entries.get(key);
+        if ( entry == null ) {
+            return null;
+        }
+        if ( entry.expiresTs <= System.currentTimeMillis() ) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void put (String serial, IndegoResource resource, Object value, long timeToLiveMs)
+    {
+        if ( timeToLiveMs <= 0 ) {
+            return;
+        }
+        entries.put(new Key(serial, resource), new Entry(value, System.currentTimeMillis() + timeToLiveMs));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void invalidate (String serial, IndegoResource resource)
+    {
+        entries.remove(new Key(serial, resource));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void invalidateAll (String serial)
+    {
+        for (Iterator<Key> iter = entries.keySet().iterator(); iter.hasNext();) {
+            if ( iter.next().serial.equals(serial) ) {
+                iter.remove();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plans the polls of many devices. Each device gets a slot with a fixed phase offset within its
+ * polling interval, so the polls are spread instead of being executed in bursts. Every single
+ * poll is additionally shifted by a random jitter, so independent processes do not synchronize.
+ * <p>
+ * All slots share one rate limiter, which enforces a global budget of polls per second. The
+ * scheduler records the lag of the polls (the time between the planned and the actual start of
+ * a poll), which indicates, that the budget or the number of worker threads is too small.
+ * <p>
+ * This class is thread safe.
+ */
+public class IndegoPollScheduler {
+
+    /** the scheduler, which is shared by default within the JVM */
+    private static final IndegoPollScheduler DEFAULT_INSTANCE =
+            new IndegoPollScheduler(new IndegoPollSchedulerConfiguration());
+
+    /** the configuration to use */
+    private final IndegoPollSchedulerConfiguration configuration;
+
+    /** the rate limiter, which is shared by all slots; null, if unlimited */
+    private final IndegoRateLimiter rateLimiter;
+
+    /** the number of scheduled polls, which were started */
+    private final AtomicLong pollCount = new AtomicLong();
+
+    /** the sum of the lag of all started polls (in ms) */
+    private final AtomicLong totalLagMs = new AtomicLong();
+
+    /** the maximum lag of a started poll (in ms) */
+    private final AtomicLong maxLagMs = new AtomicLong();
+
+    /**
+     * Initializes the scheduler.
+     *
+     * @param configuration_ the configuration to use
+     */
+    public IndegoPollScheduler (IndegoPollSchedulerConfiguration configuration_)
+    {
+        // Get a clone, since we don't want to be manipulated during runtime
+        configuration = (IndegoPollSchedulerConfiguration) configuration_.clone();
+        if ( configuration.getJitterRatio() < 0 || configuration.getJitterRatio() > 0.5 ) {
+            throw new IllegalArgumentException("The jitter ratio has to be between 0 and 0.5");
+        }
+        rateLimiter = configuration.getMaxRequestsPerSecond() > 0
+                ? new IndegoRateLimiter(configuration.getMaxRequestsPerSecond()) : null;
+    }
+
+    /**
+     * @return the scheduler, which is shared by default within the JVM
+     */
+    public static IndegoPollScheduler getDefault ()
+    {
+        return DEFAULT_INSTANCE;
+    }
+
+    /**
+     * Registers a device with a random phase offset.
+     *
+     * @param intervalMs_ the polling interval (in ms)
+     * @return the slot of the device
+     */
+    public IndegoPollSlot register (long intervalMs_)
+    {
+        return register(intervalMs_, ThreadLocalRandom.current().nextLong(Math.max(1, intervalMs_)));
+    }
+
+    /**
+     * Registers a device with the given phase offset. The first poll is planned after the
+     * phase offset; by using different offsets, the polls of many devices can be spread
+     * evenly across the polling interval.
+     *
+     * @param intervalMs_ the polling interval (in ms)
+     * @param phaseMs_ the phase offset (in ms) within the polling interval
+     * @return the slot of the device
+     */
+    public IndegoPollSlot register (long intervalMs_, long phaseMs_)
+    {
+        if ( intervalMs_ <= 0 ) {
+            throw new IllegalArgumentException("The polling interval has to be positive");
+        }
+        return new IndegoPollSlot(this, intervalMs_, Math.max(0, phaseMs_), configuration.getJitterRatio());
+    }
+
+    /**
+     * @return the rate limiter, which is shared by all slots; null, if the rate is unlimited
+     */
+    public IndegoRateLimiter getRateLimiter ()
+    {
+        return rateLimiter;
+    }
+
+    /**
+     * @return the number of scheduled polls, which were started
+     */
+    public long getPollCount ()
+    {
+        return pollCount.get();
+    }
+
+    /**
+     * @return the average lag of the started polls (in ms)
+     */
+    public long getAverageLagMs ()
+    {
+        long count = pollCount.get();
+        return count == 0 ? 0 : totalLagMs.get() / count;
+    }
+
+    /**
+     * @return the maximum lag of a started poll (in ms)
+     */
+    public long getMaxLagMs ()
+    {
+        return maxLagMs.get();
+    }
+
+    /**
+     * Resets the lag statistics.
+     */
+    public void resetStatistics ()
+    {
+        pollCount.set(0);
+        totalLagMs.set(0);
+        maxLagMs.set(0);
+    }
+
+    /**
+     * Reserves a permit of the rate limiter.
+     *
+     * @return the time (in ms), which the caller has to wait before polling
+     */
+    long reservePermit ()
+    {
+        return rateLimiter == null ? 0 : rateLimiter.reserve();
+    }
+
+    /**
+     * Records the lag of a started poll.
+     *
+     * @param lagMs_ the lag (in ms)
+     */
+    void recordLag (long lagMs_)
+    {
+        long lag = Math.max(0, lagMs_);
+        pollCount.incrementAndGet();
+        totalLagMs.addAndGet(lag);
+        maxLagMs.accumulateAndGet(lag, Math::max);
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego;
+
+/**
+ * This contains the configuration of a poll scheduler.
+ */
+public class IndegoPollSchedulerConfiguration implements Cloneable {
+
+    /** the maximum number of polls per second across all devices (0 = unlimited) */
+    private double maxRequestsPerSecond = 10;
+
+    /** the jitter of each poll as ratio of the polling interval (e.g. 0.1 = +/- 10%) */
+    private double jitterRatio = 0.1;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object clone ()
+    {
+        try {
+            return super.clone();
+        }
+        catch (CloneNotSupportedException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Gets the maximum number of polls per second across all devices (0 = unlimited).
+     *
+     * @return the maximum number of polls per second
+     */
+    public double getMaxRequestsPerSecond ()
+    {
+        return maxRequestsPerSecond;
+    }
+
+    /**
+     * Sets the maximum number of polls per second across all devices (0 = unlimited).
+     *
+     * @param maxRequestsPerSecond_ the new maximum number of polls per second
+     */
+    public void setMaxRequestsPerSecond (double maxRequestsPerSecond_)
+    {
+        maxRequestsPerSecond = maxRequestsPerSecond_;
+    }
+
+    /**
+     * Gets the jitter of each poll as ratio of the polling interval (e.g. 0.1 = +/- 10%).
+     *
+     * @return the jitter ratio
+     */
+    public double getJitterRatio ()
+    {
+        return jitterRatio;
+    }
+
+    /**
+     * Sets the jitter of each poll as ratio of the polling interval (e.g. 0.1 = +/- 10%).
+     *
+     * @param jitterRatio_ the new jitter ratio (between 0 and 0.5)
+     */
+    public void setJitterRatio (double jitterRatio_)
+    {
+        jitterRatio = jitterRatio_;
+    }
+
+}
@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The slot of a device within a {@link IndegoPollScheduler}. The polls are planned on a fixed
+ * grid (phase offset + n * interval); each planned poll is shifted by a random jitter.
+ * <p>
+ * A poll, which is started before the planned time (e.g. an immediate refresh after a command),
+ * does not change the plan. A poll, which is started late, continues with the next slot of the
+ * grid, so missed polls are skipped instead of being executed in a burst.
+ * <p>
+ * This class is thread safe.
+ */
+public class IndegoPollSlot {
+
+    /** a poll, which starts less than this before the planned time, counts as planned poll */
+    private static final long EARLY_TOLERANCE_MS = 20;
+
+    /** the scheduler, which created this slot */
+    private final IndegoPollScheduler scheduler;
+
+    /** the jitter of each poll as ratio of the polling interval */
+    private final double jitterRatio;
+
+    /** the polling interval (in ms) */
+    private long intervalMs;
+
+    /** the timestamp of the last planned poll on the grid */
+    private long lastGridTs;
+
+    /** the timestamp of the next poll on the grid */
+    private long gridTs;
+
+    /** the timestamp of the next planned poll (grid + jitter) */
+    private long plannedTs;
+
+    /** the lag of the last planned poll (in ms) */
+    private long lastLagMs;
+
+    /**
+     * Initializes the slot.
+     *
+     * @param scheduler_ the scheduler, which created this slot
+     * @param intervalMs_ the polling interval (in ms)
+     * @param phaseMs_ the phase offset (in ms) of the first poll
+     * @param jitterRatio_ the jitter of each poll as ratio of the polling interval
+     */
+    IndegoPollSlot (IndegoPollScheduler scheduler_, long intervalMs_, long phaseMs_, double jitterRatio_)
+    {
+        scheduler = scheduler_;
+        intervalMs = intervalMs_;
+        jitterRatio = jitterRatio_;
+        gridTs = System.currentTimeMillis() + phaseMs_;
+        lastGridTs = gridTs - intervalMs_;
+        plannedTs = gridTs;
+    }
+
+    /**
+     * @return the polling interval (in ms)
+     */
+    public synchronized long getIntervalMs ()
+    {
+        return intervalMs;
+    }
+
+    /**
+     * Changes the polling interval. The next poll is planned relative to the last planned poll,
+     * so it may be due immediately, if the interval is shortened.
+     *
+     * @param intervalMs_ the new polling interval (in ms)
+     */
+    public synchronized void setIntervalMs (long intervalMs_)
+    {
+        if ( intervalMs_ <= 0 ) {
+            throw new IllegalArgumentException("The polling interval has to be positive");
+        }
+        if ( intervalMs_ == intervalMs ) {
+            return;
+        }
+        intervalMs = intervalMs_;
+        gridTs = lastGridTs + intervalMs;
+        plannedTs = gridTs + nextJitterMs();
+    }
+
+    /**
+     * @return the time (in ms) until the next planned poll; 0, if it is due
+     */
+    public synchronized long getDelayMs ()
+    {
+        return Math.max(0, plannedTs - System.currentTimeMillis());
+    }
+
+    /**
+     * @return the lag (in ms) of the last planned poll
+     */
+    public synchronized long getLastLagMs ()
+    {
+        return lastLagMs;
+    }
+
+    /**
+     * Reserves a permit of the global rate limiter for the next poll. The caller has to wait for
+     * the returned time and call {@link #pollStarted()} afterwards.
+     *
+     * @return the time (in ms), which the caller has to wait before polling
+     */
+    public long reservePermit ()
+    {
+        return scheduler.reservePermit();
+    }
+
+    /**
+     * Waits for a permit of the global rate limiter and marks the poll as started.
+     *
+     * @return the lag (in ms) of the poll; 0, if it was started before the planned time
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    public long acquire () throws InterruptedException
+    {
+        long waitMs = reservePermit();
+        if ( waitMs > 0 ) {
+            Thread.sleep(waitMs);
+        }
+        return pollStarted();
+    }
+
+    /**
+     * Marks the poll as started. If the poll was planned, the lag is recorded and the next poll
+     * is planned.
+     *
+     * @return the lag (in ms) of the poll; 0, if it was started before the planned time
+     */
+    public synchronized long pollStarted ()
+    {
+        long now = System.currentTimeMillis();
+        if ( now + EARLY_TOLERANCE_MS < plannedTs ) {
+            return 0;
+        }
+        long lag = Math.max(0, now - plannedTs);
+        lastLagMs = lag;
+        scheduler.recordLag(lag);
+        lastGridTs = gridTs;
+        do {
+            gridTs += intervalMs;
+        } while ( gridTs <= now );
+        plannedTs = Math.max(now, gridTs + nextJitterMs());
+        return lag;
+    }
+
+    /**
+     * @return a random jitter (in ms) for the next poll
+     */
+    private long nextJitterMs ()
+    {
+        long jitterMs = (long) (intervalMs * jitterRatio);
+        return jitterMs > 0 ? ThreadLocalRandom.current().nextLong(-jitterMs, jitterMs + 1) : 0;
+    }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego;
+
+import java.util.Date;
+
+/**
+ * Determines, how often the state of a device is polled. A policy may keep state between the
+ * polls (e.g. the last state of the device), so an instance must not be shared by several
+ * devices.
+ */
+public interface IndegoPollingPolicy {
+
+    /**
+     * Determines the interval until the next poll.
+     *
+     * @param state_ the state, which was polled; null, if the state could not be polled
+     * @return the interval (in ms) until the next poll
+     */
+    long nextIntervalMs (DeviceStateInformation state_);
+
+    /**
+     * @return the shortest interval (in ms), which is returned by {@link #nextIntervalMs(DeviceStateInformation)};
+     *      the state should not be cached longer than this, so every poll gets a fresh state.
+     *      0, if the policy does not require a shorter cache time than the default one.
+     */
+    default long getMinIntervalMs ()
+    {
+        return 0;
+    }
+
+    /**
+     * @return the interval (in ms), after which the calendar of the device should be passed to
+     *      the policy again (see {@link #updateCalendar(DeviceCalendar, Date)}); 0, if the policy
+     *      does not use the calendar
+     */
+    default long getCalendarRefreshIntervalMs ()
+    {
+        return 0;
+    }
+
+    /**
+     * Passes the current calendar and the predicted next cutting of the device to the policy.
+     *
+     * @param calendar_ the calendar of the device
+     * @param predictedCutting_ the predicted next cutting; null, if unknown
+     */
+    default void updateCalendar (DeviceCalendar calendar_, Date predictedCutting_)
+    {
+        // Not used by default
+    }
+
+}
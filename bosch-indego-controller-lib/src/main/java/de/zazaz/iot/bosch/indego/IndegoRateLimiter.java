@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket, which limits the rate of requests. Up to a given number of requests can be
+ * executed in a burst; afterwards, the tokens are refilled with the given rate.
+ * <p>
+ * A request can reserve a token, which is not available yet (see {@link #reserve()}). The caller
+ * has to wait for the returned time before executing the request, so a scheduler does not need
+ * to block a thread for that.
+ */
+public class IndegoRateLimiter {
+
+    /** the number of tokens, which are refilled per ms */
+    private final double tokensPerMs;
+
+    /** the maximum number of tokens */
+    private final double capacity;
+
+    /** the available tokens; negative, if tokens are reserved in advance */
+    private double tokens;
+
+    /** the timestamp (in ns), when the tokens were refilled the last time */
+    private long lastRefillNanos;
+
+    /**
+     * Initializes the rate limiter with a burst of one second.
+     *
+     * @param requestsPerSecond_ the allowed number of requests per second
+     */
+    public IndegoRateLimiter (double requestsPerSecond_)
+    {
+        this(requestsPerSecond_, Math.max(1, (int) Math.ceil(requestsPerSecond_)));
+    }
+
+    /**
+     * Initializes the rate limiter.
+     *
+     * @param requestsPerSecond_ the allowed number of requests per second
+     * @param burst_ the number of requests, which can be executed at once
+     */
+    public IndegoRateLimiter (double requestsPerSecond_, int burst_)
+    {
+        if ( requestsPerSecond_ <= 0 ) {
+            throw new IllegalArgumentException("The rate has to be positive");
+        }
+        if ( burst_ < 1 ) {
+            throw new IllegalArgumentException("The burst has to be at least 1");
+        }
+        tokensPerMs = requestsPerSecond_ / 1000.0;
+        capacity = burst_;
+        tokens = burst_;
+        lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Reserves a token for a request.
+     *
+     * @return the time (in ms), which the caller has to wait before executing the request;
+     *      0, if it can be executed immediately
+     */
+    public synchronized long reserve ()
+    {
+        refill();
+        tokens -= 1;
+        if ( tokens >= 0 ) {
+            return 0;
+        }
+        return (long) Math.ceil(-tokens / tokensPerMs);
+    }
+
+    /**
+     * Takes a token, if one is available immediately.
+     *
+     * @return true, if the request may be executed; false, if the rate is exceeded
+     */
+    public synchronized boolean tryAcquire ()
+    {
+        refill();
+        if ( tokens < 1 ) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    /**
+     * Takes a token and waits, until it is available.
+     *
+     * @return the time (in ms), which was waited
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    public long acquire () throws InterruptedException
+    {
+        long waitMs = reserve();
+        if ( waitMs > 0 ) {
+            Thread.sleep(waitMs);
+        }
+        return waitMs;
+    }
+
+    /**
+     * Adds the tokens, which were refilled since the last call.
+     */
+    private void refill ()
+    {
+        long now = System.nanoTime();
+        double elapsedMs = (now - lastRefillNanos) / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        tokens = Math.min(capacity, tokens + elapsedMs * tokensPerMs);
+        lastRefillNanos = now;
+    }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego;
+
+/**
+ * All device resources, which can be queried from the server.
+ */
+public enum IndegoResource {
+
+    /** the device state */
+    STATE("/state", IndegoController.MIN_STATE_QUERY_INTERVAL_MS), //
+    /** the mowing calendar */
+    CALENDAR("/calendar", 60 * 60 * 1000), //
+    /** the weather forecast */
+    WEATHER("/predictive/weather", 60 * 60 * 1000), //
+    /** the predictive mowing setting */
+    PREDICTIVE_STATUS("/predictive", 10 * 60 * 1000), //
+    /** the user adjustment of the predictive mowing */
+    PREDICTIVE_ADJUSTMENT("/predictive/useradjustment", 10 * 60 * 1000), //
+    /** the next predicted mowing */
+    PREDICTIVE_NEXT_CUTTING("/predictive/nextcutting", 10 * 60 * 1000), //
+    /** the exclusion times of the predictive mowing */
+    PREDICTIVE_CALENDAR("/predictive/calendar", 60 * 60 * 1000); //
+
+    /** the path of the resource (relative to the device url) */
+    private final String path;
+
+    /** the default time (in ms), for which a response is cached */
+    private final long defaultTimeToLiveMs;
+
+    IndegoResource (String path_, long defaultTimeToLiveMs_)
+    {
+        path = path_;
+        defaultTimeToLiveMs = defaultTimeToLiveMs_;
+    }
+
+    /**
+     * @return the path of the resource (relative to the device url)
+     */
+    public String getPath ()
+    {
+        return path;
+    }
+
+    /**
+     * @return the default time (in ms), for which a response is cached
+     */
+    public long getDefaultTimeToLiveMs ()
+    {
+        return defaultTimeToLiveMs;
+    }
+
+}
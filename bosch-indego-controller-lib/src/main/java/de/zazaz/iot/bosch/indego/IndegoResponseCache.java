@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego;
+
+/**
+ * A cache for server responses, which is used by {@link IndegoController}. The entries are
+ * keyed by device serial and resource. Implementations have to be thread safe, since a cache
+ * can be shared by several controllers.
+ */
+public interface IndegoResponseCache {
+
+    /**
+     * @param serial the serial number of the device
+     * @param resource the queried resource
+     * @return the cached response; null, if there is none or it has expired
+     */
+    Object get (String serial, IndegoResource resource);
+
+    /**
+     * Stores a response.
+     *
+     * @param serial the serial number of the device
+     * @param resource the queried resource
+     * @param value the response to cache
+     * @param timeToLiveMs the time (in ms), for which the response is valid
+     */
+    void put (String serial, IndegoResource resource, Object value, long timeToLiveMs);
+
+    /**
+     * Removes a cached response.
+     *
+     * @param serial the serial number of the device
+     * @param resource the resource to invalidate
+     */
+    void invalidate (String serial, IndegoResource resource);
+
+    /**
+     * Removes all cached responses of a device.
+     *
+     * @param serial the serial number of the device
+     */
+    void invalidateAll (String serial);
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Delays the restarts of a worker thread after unhandled exceptions. It is based on an
+ * {@link IndegoCircuitBreaker}, which opens on every failed run: the delay grows with each
+ * restart in a row; if the worker was running for longer than the last delay, it starts over.
+ * <p>
+ * An instance is meant to be used by a single worker thread.
+ */
+public class IndegoRestartBackoff {
+
+    /** the logger */
+    private static final Logger LOG = LogManager.getLogger(IndegoRestartBackoff.class);
+
+    /** the circuit breaker, which calculates the delays */
+    private final IndegoCircuitBreaker circuitBreaker;
+
+    /**
+     * Initializes the backoff.
+     * 
+     * @param configuration_ the configuration of the backoff times; the failure threshold is ignored
+     */
+    public IndegoRestartBackoff (IndegoCircuitBreakerConfiguration configuration_)
+    {
+        IndegoCircuitBreakerConfiguration configuration = (IndegoCircuitBreakerConfiguration) configuration_.clone();
+        configuration.setFailureThreshold(1);
+        circuitBreaker = new IndegoCircuitBreaker(configuration);
+    }
+
+    /**
+     * Waits before restarting the worker after an unhandled exception. The wait is ended early,
+     * if the shutdown flag is set and a permit of the wakeup semaphore is released.
+     * 
+     * @param startTs_ the timestamp, when the failed run was started
+     * @param wakeup_ the semaphore, which wakes up the worker thread
+     * @param shutdown_ the flag, which signals the shutdown of the worker thread
+     */
+    public void awaitRestart (long startTs_, Semaphore wakeup_, AtomicBoolean shutdown_)
+    {
+        if ( System.currentTimeMillis() - startTs_ > circuitBreaker.getBackoffMs() ) {
+            circuitBreaker.recordSuccess();
+        }
+        circuitBreaker.recordFailure();
+        LOG.info(String.format("Restarting in %d ms", circuitBreaker.getRemainingOpenMs()));
+        while ( !shutdown_.get() && !circuitBreaker.allowRequest() ) {
+            try {
+                wakeup_.tryAcquire(circuitBreaker.getRemainingOpenMs(), TimeUnit.MILLISECONDS);
+            }
+            catch (InterruptedException ex) {
+                // Ignored
+            }
+        }
+    }
+
+    /**
+     * @return the circuit breaker, which calculates the delays (e.g. for reading its statistics)
+     */
+    public IndegoCircuitBreaker getCircuitBreaker ()
+    {
+        return circuitBreaker;
+    }
+
+}
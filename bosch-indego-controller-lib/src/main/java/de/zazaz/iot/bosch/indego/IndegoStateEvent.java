@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego;
+
+/**
+ * A change of the state of a device, which was detected by an {@link IndegoStateEventBus} by
+ * comparing two successive states of the device.
+ */
+public class IndegoStateEvent {
+
+    /**
+     * The kinds of changes.
+     */
+    public enum Type {
+
+        /** the device is reachable again (the previous state is the last known one, if any) */
+        ONLINE,
+
+        /** the device is not reachable anymore (there is no current state) */
+        OFFLINE,
+
+        /** the state code changed (see {@link DeviceStateInformation#getState()}) */
+        STATE,
+
+        /** the error code changed (see {@link DeviceStateInformation#getError()}) */
+        ERROR,
+
+        /** the mowed percentage changed (see {@link DeviceStateInformation#getMowed()}) */
+        MOWED,
+
+        /** the runtime counters changed (see {@link DeviceStateInformation#getRuntime()}) */
+        RUNTIME,
+
+        /** a new map is available (see {@link DeviceStateInformation#isMapUpdateAvailable()}) */
+        MAP_UPDATE
+
+    }
+
+    /** the kind of the change */
+    private final Type type;
+
+    /** the id of the device, as it was published to the bus */
+    private final String sourceId;
+
+    /** the state before the change (null, if unknown) */
+    private final DeviceStateInformation previousState;
+
+    /** the state after the change (null, if the device is not reachable) */
+    private final DeviceStateInformation currentState;
+
+    /** the timestamp, when the change was detected */
+    private final long timestamp;
+
+    /**
+     * @param type_ the kind of the change
+     * @param sourceId_ the id of the device, as it was published to the bus
+     * @param previousState_ the state before the change (null, if unknown)
+     * @param currentState_ the state after the change (null, if the device is not reachable)
+     * @param timestamp_ the timestamp, when the change was detected
+     */
+    public IndegoStateEvent (Type type_, String sourceId_, DeviceStateInformation previousState_,
+            DeviceStateInformation currentState_, long timestamp_)
+    {
+        type = type_;
+        sourceId = sourceId_;
+        previousState = previousState_;
+        currentState = currentState_;
+        timestamp = timestamp_;
+    }
+
+    /**
+     * @return the kind of the change
+     */
+    public Type getType ()
+    {
+        return type;
+    }
+
+    /**
+     * @return the id of the device, as it was published to the bus
+     */
+    public String getSourceId ()
+    {
+        return sourceId;
+    }
+
+    /**
+     * @return the state before the change (null, if unknown)
+     */
+    public DeviceStateInformation getPreviousState ()
+    {
+        return previousState;
+    }
+
+    /**
+     * @return the state after the change (null, if the device is not reachable)
+     */
+    public DeviceStateInformation getCurrentState ()
+    {
+        return currentState;
+    }
+
+    /**
+     * @return the timestamp, when the change was detected
+     */
+    public long getTimestamp ()
+    {
+        return timestamp;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString ()
+    {
+        return String.format("%s of %s", type, sourceId);
+    }
+
+}
@@ -0,0 +1,380 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.zazaz.iot.bosch.indego.DeviceStateInformation.GetStateResponseRuntime;
+import de.zazaz.iot.bosch.indego.DeviceStateInformation.GetStateResponseRuntimes;
+import de.zazaz.iot.bosch.indego.IndegoStateEvent.Type;
+
+/**
+ * Distributes the state changes of devices to any number of subscribers. The producer (e.g. an
+ * {@link IndegoFleet} or an adapter, which polls a device) publishes each fetched state; the bus
+ * compares it with the previous state of the same device and notifies the subscribers of the
+ * detected changes (see {@link IndegoStateEvent.Type}). So a device is polled once, and the changes
+ * are fanned out to all interested sinks.
+ * <p>
+ * The first state of a device is the baseline, which does not cause any events. If a device is not
+ * reachable, its last known state is kept, so the changes are detected against it after the device
+ * is reachable again.
+ * <p>
+ * This class is thread safe without locking: the states are swapped by compare-and-set and the
+ * subscribers are notified by the publishing thread. The states of a device should be published
+ * by one thread at a time, so the events are delivered in order.
+ */
+public class IndegoStateEventBus {
+
+    /** the logger */
+    private static final Logger LOG = LogManager.getLogger(IndegoStateEventBus.class);
+
+    /**
+     * The last published state of a device.
+     */
+    private static class Snapshot {
+
+        /** the last known state (null, if none was published yet) */
+        private final DeviceStateInformation state;
+
+        /** true, if the device was reachable at the last publication */
+        private final boolean online;
+
+        /**
+         * @param state_ the last known state
+         * @param online_ true, if the device was reachable at the last publication
+         */
+        Snapshot (DeviceStateInformation state_, boolean online_)
+        {
+            state = state_;
+            online = online_;
+        }
+
+    }
+
+    /**
+     * A registered listener.
+     */
+    private static class Subscription {
+
+        /** the listener to notify */
+        private final IndegoStateListener listener;
+
+        /** the id of the device, whose changes are delivered; null, if the changes of all devices are delivered */
+        private final String sourceId;
+
+        /** the kinds of changes, which are delivered */
+        private final EnumSet<Type> types;
+
+        /**
+         * @param listener_ the listener to notify
+         * @param sourceId_ the id of the device, whose changes are delivered (null: all devices)
+         * @param types_ the kinds of changes, which are delivered
+         */
+        Subscription (IndegoStateListener listener_, String sourceId_, EnumSet<Type> types_)
+        {
+            listener = listener_;
+            sourceId = sourceId_;
+            types = types_;
+        }
+
+        /**
+         * @param event_ a detected change
+         * @return true, if the change has to be delivered to the listener
+         */
+        boolean matches (IndegoStateEvent event_)
+        {
+            return types.contains(event_.getType()) && (sourceId == null || sourceId.equals(event_.getSourceId()));
+        }
+
+    }
+
+    /** the last published states of the devices (by id) */
+    private final ConcurrentHashMap<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    /** the registered listeners */
+    private final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    /** the number of published states */
+    private final AtomicLong publishCount = new AtomicLong();
+
+    /** the number of detected changes */
+    private final AtomicLong eventCount = new AtomicLong();
+
+    /** the number of notifications, which failed with an exception of the listener */
+    private final AtomicLong listenerFailureCount = new AtomicLong();
+
+    /**
+     * Registers a listener for all changes of all devices.
+     *
+     * @param listener_ the listener to notify
+     */
+    public void subscribe (IndegoStateListener listener_)
+    {
+        subscribe(listener_, null);
+    }
+
+    /**
+     * Registers a listener for some kinds of changes of a device.
+     *
+     * @param listener_ the listener to notify
+     * @param sourceId_ the id of the device, whose changes are delivered; null, if the changes of all
+     *      devices are delivered
+     * @param types_ the kinds of changes, which are delivered; if none is given, all changes are delivered
+     */
+    public void subscribe (IndegoStateListener listener_, String sourceId_, Type... types_)
+    {
+        if ( listener_ == null ) {
+            throw new IllegalArgumentException("The listener must not be null");
+        }
+        EnumSet<Type> types = types_.length == 0 ? EnumSet.allOf(Type.class) : EnumSet.copyOf(Arrays.asList(types_));
+        subscriptions.add(new Subscription(listener_, sourceId_, types));
+    }
+
+    /**
+     * Removes all registrations of a listener.
+     *
+     * @param listener_ the listener to remove
+     */
+    public void unsubscribe (IndegoStateListener listener_)
+    {
+        List<Subscription> removed = new ArrayList<>();
+        for (Subscription subscription : subscriptions) {
+            if ( subscription.listener == listener_ ) {
+                removed.add(subscription);
+            }
+        }
+        subscriptions.removeAll(removed);
+    }
+
+    /**
+     * Publishes the current state of a device. The subscribers are notified of the changes against
+     * the previously published state by the calling thread.
+     *
+     * @param sourceId_ the id of the device
+     * @param state_ the fetched state; null, if the device is not reachable
+     */
+    public void publish (String sourceId_, DeviceStateInformation state_)
+    {
+        if ( sourceId_ == null ) {
+            throw new IllegalArgumentException("The source id must not be null");
+        }
+        publishCount.incrementAndGet();
+        Snapshot previous;
+        Snapshot current;
+        do {
+            previous = snapshots.get(sourceId_);
+            if ( state_ != null ) {
+                current = new Snapshot(state_, true);
+            }
+            else {
+                current = new Snapshot(previous != null ? previous.state : null, false);
+            }
+        }
+        while ( !swap(sourceId_, previous, current) );
+
+        List<IndegoStateEvent> events = diff(sourceId_, previous, current);
+        if ( events.isEmpty() ) {
+            return;
+        }
+        eventCount.addAndGet(events.size());
+        for (IndegoStateEvent event : events) {
+            for (Subscription subscription : subscriptions) {
+                if ( subscription.matches(event) ) {
+                    notify(subscription.listener, event);
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets the state of a device, e.g. if it is not polled anymore. The next published state is
+     * the baseline again.
+     *
+     * @param sourceId_ the id of the device
+     */
+    public void remove (String sourceId_)
+    {
+        snapshots.remove(sourceId_);
+    }
+
+    /**
+     * @param sourceId_ the id of the device
+     * @return the last known state of the device (null, if none was published)
+     */
+    public DeviceStateInformation getLastState (String sourceId_)
+    {
+        Snapshot snapshot = snapshots.get(sourceId_);
+        return snapshot != null ? snapshot.state : null;
+    }
+
+    /**
+     * @param sourceId_ the id of the device
+     * @return true, if the device was reachable at the last publication
+     */
+    public boolean isOnline (String sourceId_)
+    {
+        Snapshot snapshot = snapshots.get(sourceId_);
+        return snapshot != null && snapshot.online;
+    }
+
+    /**
+     * @return the number of published states
+     */
+    public long getPublishCount ()
+    {
+        return publishCount.get();
+    }
+
+    /**
+     * @return the number of detected changes
+     */
+    public long getEventCount ()
+    {
+        return eventCount.get();
+    }
+
+    /**
+     * @return the number of notifications, which failed with an exception of the listener
+     */
+    public long getListenerFailureCount ()
+    {
+        return listenerFailureCount.get();
+    }
+
+    /**
+     * Replaces the snapshot of a device, if it was not replaced concurrently.
+     *
+     * @param sourceId_ the id of the device
+     * @param expected_ the expected snapshot (null, if none is expected)
+     * @param snapshot_ the new snapshot
+     * @return true, if the snapshot was replaced
+     */
+    private boolean swap (String sourceId_, Snapshot expected_, Snapshot snapshot_)
+    {
+        if ( expected_ == null ) {
+            return snapshots.putIfAbsent(sourceId_, snapshot_) == null;
+        }
+        return snapshots.replace(sourceId_, expected_, snapshot_);
+    }
+
+    /**
+     * Detects the changes between two successive snapshots of a device.
+     *
+     * @param sourceId_ the id of the device
+     * @param previous_ the previous snapshot (null, if none was published)
+     * @param current_ the current snapshot
+     * @return the detected changes
+     */
+    private List<IndegoStateEvent> diff (String sourceId_, Snapshot previous_, Snapshot current_)
+    {
+        List<IndegoStateEvent> result = new ArrayList<>();
+        if ( previous_ == null ) {
+            // The first state is the baseline
+            return result;
+        }
+        long now = System.currentTimeMillis();
+        DeviceStateInformation oldState = previous_.state;
+        if ( !current_.online ) {
+            if ( previous_.online ) {
+                result.add(new IndegoStateEvent(Type.OFFLINE, sourceId_, oldState, null, now));
+            }
+            return result;
+        }
+        DeviceStateInformation newState = current_.state;
+        if ( !previous_.online ) {
+            result.add(new IndegoStateEvent(Type.ONLINE, sourceId_, oldState, newState, now));
+        }
+        if ( oldState == null ) {
+            return result;
+        }
+        if ( oldState.getState() != newState.getState() ) {
+            result.add(new IndegoStateEvent(Type.STATE, sourceId_, oldState, newState, now));
+        }
+        if ( oldState.getError() != newState.getError() ) {
+            result.add(new IndegoStateEvent(Type.ERROR, sourceId_, oldState, newState, now));
+        }
+        if ( oldState.getMowed() != newState.getMowed() ) {
+            result.add(new IndegoStateEvent(Type.MOWED, sourceId_, oldState, newState, now));
+        }
+        if ( !isSameRuntime(oldState, newState) ) {
+            result.add(new IndegoStateEvent(Type.RUNTIME, sourceId_, oldState, newState, now));
+        }
+        if ( (newState.isMapUpdateAvailable() && !oldState.isMapUpdateAvailable())
+                || newState.getMapSvgCacheTimestamp() != oldState.getMapSvgCacheTimestamp() ) {
+            result.add(new IndegoStateEvent(Type.MAP_UPDATE, sourceId_, oldState, newState, now));
+        }
+        return result;
+    }
+
+    /**
+     * @param oldState_ the previous state
+     * @param newState_ the current state
+     * @return true, if the runtime counters of both states are equal
+     */
+    private boolean isSameRuntime (DeviceStateInformation oldState_, DeviceStateInformation newState_)
+    {
+        GetStateResponseRuntimes oldRuntime = oldState_.getRuntime();
+        GetStateResponseRuntimes newRuntime = newState_.getRuntime();
+        if ( oldRuntime == null || newRuntime == null ) {
+            return oldRuntime == newRuntime;
+        }
+        return isSameRuntime(oldRuntime.getTotal(), newRuntime.getTotal())
+                && isSameRuntime(oldRuntime.getSession(), newRuntime.getSession());
+    }
+
+    /**
+     * @param oldRuntime_ the previous runtime counters
+     * @param newRuntime_ the current runtime counters
+     * @return true, if both runtime counters are equal
+     */
+    private boolean isSameRuntime (GetStateResponseRuntime oldRuntime_, GetStateResponseRuntime newRuntime_)
+    {
+        if ( oldRuntime_ == null || newRuntime_ == null ) {
+            return oldRuntime_ == newRuntime_;
+        }
+        return oldRuntime_.getOperate() == newRuntime_.getOperate()
+                && oldRuntime_.getCharge() == newRuntime_.getCharge();
+    }
+
+    /**
+     * Notifies a listener. An exception of the listener is logged and counted; it does not affect
+     * the other listeners.
+     *
+     * @param listener_ the listener to notify
+     * @param event_ the detected change
+     */
+    private void notify (IndegoStateListener listener_, IndegoStateEvent event_)
+    {
+        try {
+            listener_.stateChanged(event_);
+        }
+        catch (RuntimeException ex) {
+            listenerFailureCount.incrementAndGet();
+            LOG.error(String.format("Listener %s failed to handle the event %s", listener_, event_), ex);
+        }
+    }
+
+}
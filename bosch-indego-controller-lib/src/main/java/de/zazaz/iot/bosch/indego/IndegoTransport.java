@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * The HTTP transport, which is used by the controllers for communicating with the Indego server.
+ * It holds a pool of keep-alive connections, so a single transport instance can be shared by
+ * many controllers (and therefore many devices) within one JVM.
+ */
+public class IndegoTransport {
+
+    /** the configuration to use */
+    private final IndegoTransportConfiguration configuration;
+
+    /** the pool of connections */
+    private final PoolingHttpClientConnectionManager connectionManager;
+
+    /** the http client instance, which is backed by the connection pool */
+    private final CloseableHttpClient httpClient;
+
+    /**
+     * This initializes the transport with the default configuration.
+     */
+    public IndegoTransport ()
+    {
+        this(new IndegoTransportConfiguration());
+    }
+
+    /**
+     * This initializes the transport.
+     *
+     * @param configuration_ the configuration to use
+     */
+    public IndegoTransport (IndegoTransportConfiguration configuration_)
+    {
+        // Get a clone, since we don't want to be manipulated during runtime
+        configuration = (IndegoTransportConfiguration) configuration_.clone();
+
+        connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(configuration.getMaxConnectionsTotal());
+        connectionManager.setDefaultMaxPerRoute(configuration.getMaxConnectionsPerRoute());
+        connectionManager.setValidateAfterInactivity(configuration.getValidateAfterInactivityMs());
+
+        RequestConfig requestConfig = RequestConfig.custom() //
+                .setConnectTimeout(configuration.getConnectTimeoutMs()) //
+                .setSocketTimeout(configuration.getSocketTimeoutMs()) //
+                .setConnectionRequestTimeout(configuration.getConnectionRequestTimeoutMs()) //
+                .build();
+
+        httpClient = HttpClients.custom() //
+                .setConnectionManager(connectionManager) //
+                .setDefaultRequestConfig(requestConfig) //
+                .setKeepAliveStrategy(new KeepAliveStrategy(configuration.getDefaultKeepAliveMs())) //
+                .evictExpiredConnections() //
+                .evictIdleConnections(configuration.getIdleConnectionTimeoutMs(), TimeUnit.MILLISECONDS) //
+                .build();
+    }
+
+    /**
+     * @return the http client instance, which is backed by the connection pool
+     */
+    public CloseableHttpClient getHttpClient ()
+    {
+        return httpClient;
+    }
+
+    /**
+     * @return the current statistics of the connection pool (leased, available, etc.)
+     */
+    public PoolStats getPoolStats ()
+    {
+        return connectionManager.getTotalStats();
+    }
+
+    /**
+     * This closes all pooled connections. The transport can't be used afterwards.
+     */
+    public void close ()
+    {
+        try {
+            httpClient.close();
+        }
+        catch (IOException ex) {
+            // Ignored
+        }
+    }
+
+    /**
+     * Uses the keep-alive duration sent by the server; if there is none, a default duration
+     * is used instead of keeping the connection open forever. It is used by the
+     * {@link IndegoAsyncController}, too.
+     */
+    static class KeepAliveStrategy implements ConnectionKeepAliveStrategy {
+
+        /** the keep-alive duration (in ms), if the server does not send a keep-alive header */
+        private final long defaultKeepAliveMs;
+
+        /**
+         * @param defaultKeepAliveMs_ the keep-alive duration (in ms), if the server does not send a
+         *      keep-alive header
+         */
+        KeepAliveStrategy (long defaultKeepAliveMs_)
+        {
+            defaultKeepAliveMs = defaultKeepAliveMs_;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public long getKeepAliveDuration (HttpResponse response_, HttpContext context_)
+        {
+            long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response_, context_);
+            return duration > 0 ? duration : defaultKeepAliveMs;
+        }
+
+    }
+
+}
@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego;
+
+/**
+ * This contains the configuration to initialize the HTTP transport, which is used for
+ * communicating with the Indego server.
+ */
+public class IndegoTransportConfiguration implements Cloneable {
+
+    /** the maximum number of pooled connections (over all routes) */
+    private int maxConnectionsTotal = 20;
+
+    /** the maximum number of pooled connections per route (host) */
+    private int maxConnectionsPerRoute = 4;
+
+    /** the time (in ms), after which idle connections are evicted from the pool */
+    private long idleConnectionTimeoutMs = 30 * 1000;
+
+    /** the keep-alive duration (in ms), if the server does not send a keep-alive header */
+    private long defaultKeepAliveMs = 30 * 1000;
+
+    /** the inactivity (in ms), after which a pooled connection is validated before reuse */
+    private int validateAfterInactivityMs = 2 * 1000;
+
+    /** the timeout (in ms) for establishing a connection */
+    private int connectTimeoutMs = 10 * 1000;
+
+    /** the timeout (in ms) for waiting for data */
+    private int socketTimeoutMs = 30 * 1000;
+
+    /** the timeout (in ms) for leasing a connection from the pool */
+    private int connectionRequestTimeoutMs = 10 * 1000;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object clone ()
+    {
+        try {
+            return super.clone();
+        }
+        catch (CloneNotSupportedException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Gets the maximum number of pooled connections (over all routes).
+     *
+     * @return the maximum number of pooled connections (over all routes)
+     */
+    public int getMaxConnectionsTotal ()
+    {
+        return maxConnectionsTotal;
+    }
+
+    /**
+     * Sets the maximum number of pooled connections (over all routes).
+     *
+     * @param maxConnectionsTotal_ the new maximum number of pooled connections (over all routes)
+     */
+    public void setMaxConnectionsTotal (int maxConnectionsTotal_)
+    {
+        maxConnectionsTotal = maxConnectionsTotal_;
+    }
+
+    /**
+     * Gets the maximum number of pooled connections per route (host).
+     *
+     * @return the maximum number of pooled connections per route (host)
+     */
+    public int getMaxConnectionsPerRoute ()
+    {
+        return maxConnectionsPerRoute;
+    }
+
+    /**
+     * Sets the maximum number of pooled connections per route (host).
+     *
+     * @param maxConnectionsPerRoute_ the new maximum number of pooled connections per route (host)
+     */
+    public void setMaxConnectionsPerRoute (int maxConnectionsPerRoute_)
+    {
+        maxConnectionsPerRoute = maxConnectionsPerRoute_;
+    }
+
+    /**
+     * Gets the time (in ms), after which idle connections are evicted from the pool.
+     *
+     * @return the time (in ms), after which idle connections are evicted from the pool
+     */
+    public long getIdleConnectionTimeoutMs ()
+    {
+        return idleConnectionTimeoutMs;
+    }
+
+    /**
+     * Sets the time (in ms), after which idle connections are evicted from the pool.
+     *
+     * @param idleConnectionTimeoutMs_ the new time (in ms), after which idle connections are evicted
+     */
+    public void setIdleConnectionTimeoutMs (long idleConnectionTimeoutMs_)
+    {
+        idleConnectionTimeoutMs = idleConnectionTimeoutMs_;
+    }
+
+    /**
+     * Gets the keep-alive duration (in ms), if the server does not send a keep-alive header.
+     *
+     * @return the keep-alive duration (in ms), if the server does not send a keep-alive header
+     */
+    public long getDefaultKeepAliveMs ()
+    {
+        return defaultKeepAliveMs;
+    }
+
+    /**
+     * Sets the keep-alive duration (in ms), if the server does not send a keep-alive header.
+     *
+     * @param defaultKeepAliveMs_ the new keep-alive duration (in ms)
+     */
+    public void setDefaultKeepAliveMs (long defaultKeepAliveMs_)
+    {
+        defaultKeepAliveMs = defaultKeepAliveMs_;
+    }
+
+    /**
+     * Gets the inactivity (in ms), after which a pooled connection is validated before reuse.
+     *
+     * @return the inactivity (in ms), after which a pooled connection is validated before reuse
+     */
+    public int getValidateAfterInactivityMs ()
+    {
+        return validateAfterInactivityMs;
+    }
+
+    /**
+     * Sets the inactivity (in ms), after which a pooled connection is validated before reuse.
+     *
+     * @param validateAfterInactivityMs_ the new inactivity (in ms)
+     */
+    public void setValidateAfterInactivityMs (int validateAfterInactivityMs_)
+    {
+        validateAfterInactivityMs = validateAfterInactivityMs_;
+    }
+
+    /**
+     * Gets the timeout (in ms) for establishing a connection.
+     *
+     * @return the timeout (in ms) for establishing a connection
+     */
+    public int getConnectTimeoutMs ()
+    {
+        return connectTimeoutMs;
+    }
+
+    /**
+     * Sets the timeout (in ms) for establishing a connection.
+     *
+     * @param connectTimeoutMs_ the new timeout (in ms) for establishing a connection
+     */
+    public void setConnectTimeoutMs (int connectTimeoutMs_)
+    {
+        connectTimeoutMs = connectTimeoutMs_;
+    }
+
+    /**
+     * Gets the timeout (in ms) for waiting for data.
+     *
+     * @return the timeout (in ms) for waiting for data
+     */
+    public int getSocketTimeoutMs ()
+    {
+        return socketTimeoutMs;
+    }
+
+    /**
+     * Sets the timeout (in ms) for waiting for data.
+     *
+     * @param socketTimeoutMs_ the new timeout (in ms) for waiting for data
+     */
+    public void setSocketTimeoutMs (int socketTimeoutMs_)
+    {
+        socketTimeoutMs = socketTimeoutMs_;
+    }
+
+    /**
+     * Gets the timeout (in ms) for leasing a connection from the pool.
+     *
+     * @return the timeout (in ms) for leasing a connection from the pool
+     */
+    public int getConnectionRequestTimeoutMs ()
+    {
+        return connectionRequestTimeoutMs;
+    }
+
+    /**
+     * Sets the timeout (in ms) for leasing a connection from the pool.
+     *
+     * @param connectionRequestTimeoutMs_ the new timeout (in ms) for leasing a connection from the pool
+     */
+    public void setConnectionRequestTimeoutMs (int connectionRequestTimeoutMs_)
+    {
+        connectionRequestTimeoutMs = connectionRequestTimeoutMs_;
+    }
+
+}
@@ -23,20 +23,34 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
 import org.eclipse.paho.client.mqttv3.MqttCallback;
-import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttClientPersistence;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
 import org.eclipse.paho.client.mqttv3.MqttException;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
 import org.eclipse.paho.client.mqttv3.MqttPersistenceException;
 import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.eclipse.paho.client.mqttv3.persist.MqttDefaultFilePersistence;
 
 import de.zazaz.iot.bosch.indego.DeviceCommand;
 import de.zazaz.iot.bosch.indego.DeviceStateInformation;
-import de.zazaz.iot.bosch.indego.DeviceStatus;
+import de.zazaz.iot.bosch.indego.IndegoCalendarRefresher;
+import de.zazaz.iot.bosch.indego.IndegoCircuitBreaker;
+import de.zazaz.iot.bosch.indego.IndegoCommandExecutor;
+import de.zazaz.iot.bosch.indego.IndegoCommandHandler;
+import de.zazaz.iot.bosch.indego.IndegoCommandStatus;
 import de.zazaz.iot.bosch.indego.IndegoController;
 import de.zazaz.iot.bosch.indego.IndegoException;
-import de.zazaz.iot.bosch.indego.IndegoInvalidCommandException;
+import de.zazaz.iot.bosch.indego.IndegoFixedPollingPolicy;
+import de.zazaz.iot.bosch.indego.IndegoPollScheduler;
+import de.zazaz.iot.bosch.indego.IndegoPollSlot;
+import de.zazaz.iot.bosch.indego.IndegoPollingPolicy;
+import de.zazaz.iot.bosch.indego.IndegoResource;
+import de.zazaz.iot.bosch.indego.IndegoRestartBackoff;
+import de.zazaz.iot.bosch.indego.IndegoStateEventBus;
+import de.zazaz.iot.bosch.indego.IndegoTransport;
 
 /**
  * This class connects to an Indego device and MQTT broker and maps the device status and commands to/from MQTT topics.
@@ -73,12 +87,12 @@ public class MqttIndegoAdapter {
 
     public static final String MQTT_TOPIC_RUNTIME_SESSION_CHARGE_MINS = "runtimeSessionChargeMins";
 
+    /** the topic of the complete state as JSON document (see {@link MqttIndegoStateDocument}) */
+    public static final String MQTT_TOPIC_STATE_DOCUMENT = "state";
+
     /** the logger */
     private static final Logger LOG = LogManager.getLogger(MqttIndegoAdapter.class);
 
-    /** the retainment flag for the data topics */
-    private static final boolean RETAINMENT = true;
-
     /** the configuration to use */
     private final MqttIndegoAdapterConfiguration configuration;
 
@@ -88,23 +102,55 @@ public class MqttIndegoAdapter {
     /** semaphore for waking worker thread up */
     private Semaphore semThreadWaker;
 
+    /** the publisher of the state topics; only accessed by the worker thread */
+    private final MqttIndegoPublisher publisher;
+
+    /** the timestamp, when all state topics were published the last time */
+    private long lastFullPublishTs;
+
     /** a reference to the worker thread */
     private Thread threadWorker;
 
+    /** the received commands, which wait for being executed */
+    private MqttIndegoCommandQueue commandQueue;
+
+    /** a reference to the command executor thread */
+    private Thread threadCommandExecutor;
+
+    /** executes the received commands with the controller of the worker thread */
+    private IndegoCommandExecutor<String> commandExecutor;
+
+    /** this is used for indicating, that a command was executed and the command topic should be cleared */
+    private final AtomicBoolean flagClearCommand = new AtomicBoolean(false);
+
+    /** backs off the connection attempts to the Indego server, while it is down */
+    private final IndegoCircuitBreaker indegoCircuitBreaker;
+
+    /** the connection pool to the Indego server, which is kept across reconnects until shutdown */
+    private IndegoTransport indegoTransport;
+
+    /** backs off the connection attempts to the MQTT broker, while it is down */
+    private final IndegoCircuitBreaker mqttCircuitBreaker;
+
+    /** backs off the restarts of the worker thread after unhandled exceptions */
+    private final IndegoRestartBackoff restartBackoff;
+
     /**
      * This class handles callbacks for commands
      */
     private class MqttIndegoCommandCallback implements MqttCallback {
 
-        /** the command string, which was sent last (null, if there is no command) */
-        private String lastCommand;
-
         /**
          * {@inheritDoc}
          */
         @Override
         public void connectionLost (Throwable arg0)
         {
+            // Let the worker reconnect, even if there is nothing to publish
+            Semaphore semWakeup = semThreadWaker;
+            if ( semWakeup != null ) {
+                semWakeup.release();
+            }
         }
 
         /**
@@ -123,20 +169,46 @@ public class MqttIndegoAdapter {
         {
             if ( topic.equals(configuration.getMqttTopicRoot() + MQTT_TOPIC_COMMAND) ) {
                 String command = new String(message.getPayload()).trim();
-                lastCommand = "".equals(command) ? null : command;
-                Thread worker = threadWorker;
-                if ( worker != null ) {
-                    semThreadWaker.release();
+                MqttIndegoCommandQueue queue = commandQueue;
+                if ( "".equals(command) || queue == null ) {
+                    return;
+                }
+                if ( queue.offer(command) ) {
+                    LOG.debug(String.format("Queued command '%s'", command));
+                }
+                else {
+                    LOG.warn(String.format("Ignoring command '%s', since it is already pending or too many commands are pending",
+                            command));
                 }
             }
         }
 
+    }
+
+    /**
+     * This class translates the commands received via MQTT for the command executor
+     */
+    private class MqttIndegoCommandHandler implements IndegoCommandHandler<String> {
+
         /**
-         * @return the command string, which was sent last (null, if there is no command)
+         * {@inheritDoc}
          */
-        public String getLastCommand ()
+        @Override
+        public DeviceCommand getDeviceCommand (String command)
         {
-            return lastCommand;
+            return DeviceCommand.valueOf(command);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void setStatus (String command, IndegoCommandStatus status)
+        {
+            if ( status.isFinished() ) {
+                // Let the worker thread clear the command topic and publish the new state
+                flagClearCommand.set(true);
+            }
         }
 
     }
@@ -150,6 +222,11 @@ public class MqttIndegoAdapter {
     {
         // Get a clone, since we don't want to be manipulated during runtime
         configuration = (MqttIndegoAdapterConfiguration) configuration_.clone();
+        publisher = new MqttIndegoPublisher(configuration.getMqttQos(), configuration.getMqttMaxInflight(),
+                configuration.isMqttStateDocumentEnabled());
+        indegoCircuitBreaker = new IndegoCircuitBreaker(configuration.getCircuitBreakerConfiguration());
+        mqttCircuitBreaker = new IndegoCircuitBreaker(configuration.getCircuitBreakerConfiguration());
+        restartBackoff = new IndegoRestartBackoff(configuration.getCircuitBreakerConfiguration());
     }
 
     /**
@@ -162,6 +239,17 @@ public class MqttIndegoAdapter {
         }
         flagShutdown.set(false);
         semThreadWaker = new Semaphore(0);
+        commandQueue = new MqttIndegoCommandQueue(configuration.getCommandQueueCapacity());
+        commandExecutor = new IndegoCommandExecutor<>(commandQueue, new MqttIndegoCommandHandler(), semThreadWaker::release);
+        indegoTransport = new IndegoTransport();
+        threadCommandExecutor = new Thread(new Runnable() {
+
+            @Override
+            public void run ()
+            {
+                commandExecutor.run(flagShutdown, configuration.getPollingIntervalMs());
+            }
+        });
         threadWorker = new Thread(new Runnable() {
 
             @Override
@@ -174,10 +262,22 @@ public class MqttIndegoAdapter {
         try {
             threadWorker.start();
             LOG.debug("Worker thread started");
+            threadCommandExecutor.start();
+            LOG.debug("Command executor thread started");
         }
         catch (RuntimeException ex) {
             LOG.error("Failed to start worker thread", ex);
+            if ( threadWorker.isAlive() ) {
+                flagShutdown.set(true);
+                semThreadWaker.release();
+                joinThread(threadWorker);
+            }
             threadWorker = null;
+            threadCommandExecutor = null;
+            commandQueue = null;
+            commandExecutor = null;
+            indegoTransport.close();
+            indegoTransport = null;
             throw ex;
         }
     }
@@ -194,25 +294,63 @@ public class MqttIndegoAdapter {
             LOG.debug("Requesting worker thread to shut down");
             flagShutdown.set(true);
             semThreadWaker.release();
+            commandQueue.wakeup();
+            LOG.debug("Waiting for command executor thread");
+            joinThread(threadCommandExecutor);
             LOG.debug("Waiting for worker thread");
-            while ( true ) {
-                try {
-                    threadWorker.join();
-                    break;
-                }
-                catch (InterruptedException ex) {
-                    // Ignored
-                }
-            }
+            joinThread(threadWorker);
             LOG.debug("Worker thread terminated, shutdown complete");
         }
         finally {
+            if ( indegoTransport != null ) {
+                indegoTransport.close();
+                indegoTransport = null;
+            }
             threadWorker = null;
+            threadCommandExecutor = null;
             semThreadWaker = null;
+            commandQueue = null;
+            commandExecutor = null;
             flagShutdown.set(false);
         }
     }
 
+    /**
+     * Waits for the termination of a thread.
+     * 
+     * @param thread the thread to wait for
+     */
+    private void joinThread (Thread thread)
+    {
+        while ( true ) {
+            try {
+                thread.join();
+                break;
+            }
+            catch (InterruptedException ex) {
+                // Ignored
+            }
+        }
+    }
+
+    /**
+     * @return the circuit breaker, which backs off the connection attempts to the Indego server
+     *      (e.g. for reading its statistics)
+     */
+    public IndegoCircuitBreaker getIndegoCircuitBreaker ()
+    {
+        return indegoCircuitBreaker;
+    }
+
+    /**
+     * @return the circuit breaker, which backs off the connection attempts to the MQTT broker
+     *      (e.g. for reading its statistics)
+     */
+    public IndegoCircuitBreaker getMqttCircuitBreaker ()
+    {
+        return mqttCircuitBreaker;
+    }
+
     /**
      * This is the initial entry point for the worker thread.
      */
@@ -221,11 +359,13 @@ public class MqttIndegoAdapter {
         LOG.debug("Worker thread started");
         try {
             while ( !flagShutdown.get() ) {
+                long startTs = System.currentTimeMillis();
                 try {
                     runInternal();
                 }
                 catch (Exception ex) {
                     LOG.fatal("Unhandled exception thrown! Trying a restart...", ex);
+                    restartBackoff.awaitRestart(startTs, semThreadWaker, flagShutdown);
                 }
             }
         }
@@ -239,43 +379,91 @@ public class MqttIndegoAdapter {
      */
     private void runInternal ()
     {
-        MqttClient mqttClient = null;
+        MqttAsyncClient mqttClient = null;
         IndegoController indegoController = null;
         MqttIndegoCommandCallback callback = new MqttIndegoCommandCallback();
         Semaphore semWakeup = semThreadWaker;
+        IndegoStateEventBus eventBus = configuration.getEventBus();
+        String eventSourceId = configuration.getEventSourceId() != null
+                ? configuration.getEventSourceId() : configuration.getIndegoUsername();
+        IndegoPollScheduler pollScheduler = configuration.getPollScheduler() != null
+                ? configuration.getPollScheduler() : IndegoPollScheduler.getDefault();
+        IndegoPollSlot pollSlot = pollScheduler.register(configuration.getPollingIntervalMs());
+        IndegoPollingPolicy pollingPolicy = configuration.getPollingPolicy() != null
+                ? configuration.getPollingPolicy() : new IndegoFixedPollingPolicy(configuration.getPollingIntervalMs());
+        IndegoCalendarRefresher calendarRefresher = new IndegoCalendarRefresher(pollingPolicy);
 
         try {
             while ( !flagShutdown.get() ) {
-                if ( mqttClient == null ) {
+                if ( mqttClient != null && !mqttClient.isConnected() ) {
+                    LOG.info("Connection to MQTT broker lost");
+                    disconnect(mqttClient);
+                    mqttClient = null;
+                }
+                IndegoController failedController = commandExecutor.takeReconnectRequest();
+                if ( failedController != null && failedController == indegoController ) {
+                    LOG.info("Command execution failed, reconnecting to Indego server.");
+                    commandExecutor.setActiveController(null);
+                    disconnect(indegoController);
+                    indegoController = null;
+                }
+                if ( mqttClient == null && mqttCircuitBreaker.allowRequest() ) {
                     LOG.info("No MQTT connection. Creating connection.");
                     mqttClient = connectMqtt(callback);
                     if ( mqttClient == null ) {
                         LOG.warn("Was not able to connect to MQTT broker.");
+                        mqttCircuitBreaker.recordFailure();
+                        mqttCircuitBreaker.logOpenCircuit("MQTT broker");
+                    }
+                    else {
+                        mqttCircuitBreaker.recordSuccess();
                     }
                 }
-                if ( indegoController == null ) {
+                // The controller reports the result of the connection attempt to the circuit breaker
+                if ( indegoController == null && indegoCircuitBreaker.getRemainingOpenMs() == 0 ) {
                     LOG.info("No connection to Indego server. Creating connection.");
                     indegoController = connectIndego();
                     if ( indegoController == null ) {
                         LOG.warn("Was not able to connect to Indego server.");
+                        indegoCircuitBreaker.logOpenCircuit("Indego server");
+                    }
+                    else {
+                        commandExecutor.setActiveController(indegoController);
                     }
                 }
 
                 DeviceStateInformation currentState = null;
 
                 if ( indegoController != null ) {
+                    try {
+                        long lagMs = pollSlot.acquire();
+                        if ( lagMs > pollSlot.getIntervalMs() / 2 ) {
+                            LOG.warn(String.format("Polling is %d ms behind schedule", lagMs));
+                        }
+                    }
+                    catch (InterruptedException ex) {
+                        // Ignored
+                    }
                     try {
                         currentState = indegoController.getState();
+                        calendarRefresher.refresh(indegoController);
                     }
                     catch (Exception ex) {
                         LOG.error("Exception during fetching Indego state", ex);
+                        commandExecutor.setActiveController(null);
                         disconnect(indegoController);
                         indegoController = null;
+                        indegoCircuitBreaker.logOpenCircuit("Indego server");
                     }
                 }
 
                 if ( mqttClient != null ) {
                     try {
+                        if ( System.currentTimeMillis() - lastFullPublishTs >= configuration.getMqttFullRepublishIntervalMs() ) {
+                            LOG.debug("Publishing all state topics");
+                            publisher.clearPublishedValues();
+                            lastFullPublishTs = System.currentTimeMillis();
+                        }
                         if ( currentState != null ) {
                             pushMqttStateOnline(mqttClient, currentState);
                         }
@@ -283,28 +471,11 @@ public class MqttIndegoAdapter {
                             pushMqttStateOffline(mqttClient);
                         }
 
-                        String deviceCommand = fetchDeviceCommand(mqttClient, callback);
-                        if ( indegoController != null && deviceCommand != null ) {
-                            LOG.info(String.format("Processing command '%s'", deviceCommand));
-                            try {
-                                try {
-                                    indegoController.sendCommand(DeviceCommand.valueOf(deviceCommand));
-                                }
-                                catch (IndegoInvalidCommandException ex) {
-                                    LOG.warn(String.format("The sent command '%s' was not be processed by the "
-                                            + "server because it's invalid in the current device state, ignoring it", deviceCommand), ex);
-                                }
-                                catch (IllegalArgumentException ex) {
-                                    LOG.warn(String.format("Received invalid command '%s', ignoring it", deviceCommand));
-                                }
-                                clearMqttDeviceCommand(mqttClient);
-                            }
-                            catch (Exception ex) {
-                                LOG.error("Exception during sending command to Indego", ex);
-                                disconnect(indegoController);
-                                indegoController = null;
-                            }
+                        if ( flagClearCommand.getAndSet(false) ) {
+                            clearMqttDeviceCommand(mqttClient);
                         }
+
+                        publisher.awaitPendingDeliveries(0);
                     }
                     catch (Exception ex) {
                         LOG.error("Exception during pushing state to MQTT or fetching device command from MQTT", ex);
@@ -313,8 +484,21 @@ public class MqttIndegoAdapter {
                     }
                 }
 
+                if ( eventBus != null ) {
+                    // The subscribers of the bus get the changes of this poll, too
+                    eventBus.publish(eventSourceId, currentState);
+                }
+
+                pollSlot.setIntervalMs(pollingPolicy.nextIntervalMs(currentState));
+                long delayMs = pollSlot.getDelayMs();
+                if ( indegoController == null || mqttClient == null ) {
+                    // Don't wake up for reconnecting, before the circuit breakers allow it
+                    long retryMs = Math.min(indegoController == null ? indegoCircuitBreaker.getRemainingOpenMs() : Long.MAX_VALUE,
+                            mqttClient == null ? mqttCircuitBreaker.getRemainingOpenMs() : Long.MAX_VALUE);
+                    delayMs = Math.max(delayMs, retryMs);
+                }
                 try {
-                    semWakeup.tryAcquire(configuration.getPollingIntervalMs(), TimeUnit.MILLISECONDS);
+                    semWakeup.tryAcquire(delayMs, TimeUnit.MILLISECONDS);
                 }
                 catch (InterruptedException ex) {
                     // Ignored
@@ -322,176 +506,49 @@ public class MqttIndegoAdapter {
             }
         }
         finally {
+            commandExecutor.setActiveController(null);
             disconnect(mqttClient);
             disconnect(indegoController);
         }
     }
 
     /**
-     * Publishes a single topic on the MQTT broker
-     * 
-     * @param mqttClient the broker connection
-     * @param topic the topic to publish (relative to configured topic root)
-     * @param data the data to publish
-     * @param retained if the data should be retained
-     * @throws MqttPersistenceException
-     * @throws MqttException
-     */
-    private void publish (MqttClient mqttClient, String topic, boolean data, boolean retained)
-            throws MqttPersistenceException, MqttException
-    {
-        publish(mqttClient, topic, data ? "1" : "0", retained);
-    }
-
-    /**
-     * Publishes a single topic on the MQTT broker
-     * 
-     * @param mqttClient the broker connection
-     * @param topic the topic to publish (relative to configured topic root)
-     * @param data the data to publish
-     * @param retained if the data should be retained
-     * @throws MqttPersistenceException
-     * @throws MqttException
-     */
-    private void publish (MqttClient mqttClient, String topic, int data, boolean retained) throws MqttPersistenceException, MqttException
-    {
-        publish(mqttClient, topic, Integer.toString(data), retained);
-    }
-
-    /**
-     * Publishes a single topic on the MQTT broker
-     * 
-     * @param mqttClient the broker connection
-     * @param topic the topic to publish (relative to configured topic root)
-     * @param data the data to publish
-     * @param retained if the data should be retained
-     * @throws MqttPersistenceException
-     * @throws MqttException
-     */
-    private void publish (MqttClient mqttClient, String topic, long data, boolean retained) throws MqttPersistenceException, MqttException
-    {
-        publish(mqttClient, topic, Long.toString(data), retained);
-    }
-
-    /**
-     * Publishes a single topic on the MQTT broker
-     * 
-     * @param mqttClient the broker connection
-     * @param topic the topic to publish (relative to configured topic root)
-     * @param data the data to publish
-     * @param retained if the data should be retained
-     * @throws MqttPersistenceException
-     * @throws MqttException
-     */
-    private void publish (MqttClient mqttClient, String topic, String data, boolean retained) throws MqttPersistenceException, MqttException
-    {
-        if ( LOG.isDebugEnabled() ) {
-            LOG.debug(String.format("Publishing '%s' to topic '%s' (retained = %s)", data, topic, retained));
-        }
-
-        MqttMessage msg = new MqttMessage(data.getBytes());
-        msg.setQos(configuration.getMqttQos());
-        msg.setRetained(retained);
-        mqttClient.publish(configuration.getMqttTopicRoot() + topic, msg);
-    }
-
-    /**
-     * Fetches the last unprocessed command, which was sent to the adapter.
-     * 
-     * @param mqttClient the connection to use
-     * @param callback the callback, which processes published messages
-     * @return the command to executre (null, if there is none)
-     */
-    private String fetchDeviceCommand (MqttClient mqttClient, MqttIndegoCommandCallback callback)
-    {
-        return callback.getLastCommand();
-    }
-
-    /**
-     * This clears the command topic after processing.
+     * This pushes the current state of the Indego device to the MQTT broker.
      * 
      * @param mqttClient the connection to use
+     * @param state the Indego state to write out
      * @throws MqttPersistenceException
      * @throws MqttException
      */
-    private void clearMqttDeviceCommand (MqttClient mqttClient) throws MqttPersistenceException, MqttException
+    private void pushMqttStateOnline (MqttAsyncClient mqttClient, DeviceStateInformation state) throws MqttPersistenceException, MqttException
     {
-        publish(mqttClient, MQTT_TOPIC_COMMAND, "", true);
+        LOG.info("Pushing online state to MQTT");
+        publisher.pushStateOnline(mqttClient, configuration.getMqttTopicRoot(), state);
     }
 
     /**
-     * This writes the given device state to the data topics and sets the online state topic to true.
+     * This marks the Indego device as offline.
      * 
      * @param mqttClient the connection to use
-     * @param state the Indego state to write out
      * @throws MqttPersistenceException
      * @throws MqttException
      */
-    private void pushMqttStateOnline (MqttClient mqttClient, DeviceStateInformation state) throws MqttPersistenceException, MqttException
+    private void pushMqttStateOffline (MqttAsyncClient mqttClient) throws MqttPersistenceException, MqttException
     {
-        LOG.info("Pushing online state to MQTT");
-
-        DeviceStatus status = DeviceStatus.decodeStatusCode(state.getState());
-
-        int stateLevel;
-        switch ( status.getAssociatedCommand() ) {
-        case MOW:
-            stateLevel = 2;
-            break;
-        case PAUSE:
-            stateLevel = 1;
-            break;
-        case RETURN:
-            stateLevel = 0;
-            break;
-        default:
-            stateLevel = -1;
-            break;
-        }
-        if ( state.getError() != 0 ) {
-            stateLevel = -1;
-        }
-
-        publish(mqttClient, MQTT_TOPIC_ONLINE, true, true);
-        publish(mqttClient, MQTT_TOPIC_STATE_CODE, status.getCode(), RETAINMENT);
-        publish(mqttClient, MQTT_TOPIC_STATE_MESSAGE, status.getMessage(), RETAINMENT);
-        publish(mqttClient, MQTT_TOPIC_ERROR_CODE, state.getError(), RETAINMENT);
-        publish(mqttClient, MQTT_TOPIC_STATE_LEVEL, stateLevel, RETAINMENT);
-        publish(mqttClient, MQTT_TOPIC_MOWED_PERCENTAGE, state.getMowed(), RETAINMENT);
-        publish(mqttClient, MQTT_TOPIC_MAP_SVG_CACHE_TS, state.getMapSvgCacheTimestamp(), RETAINMENT);
-        publish(mqttClient, MQTT_TOPIC_MAP_UPDATE_AVAILABLE, state.isMapUpdateAvailable(), RETAINMENT);
-        publish(mqttClient, MQTT_TOPIC_MOWED_TS, state.getMowedTimestamp(), RETAINMENT);
-        publish(mqttClient, MQTT_TOPIC_MOW_MODE, state.getMowMode(), RETAINMENT);
-        publish(mqttClient, MQTT_TOPIC_RUNTIME_TOTAL_OPERATE_MINS, state.getRuntime().getTotal().getOperate(), RETAINMENT);
-        publish(mqttClient, MQTT_TOPIC_RUNTIME_TOTAL_CHARGE_MINS, state.getRuntime().getTotal().getCharge(), RETAINMENT);
-        publish(mqttClient, MQTT_TOPIC_RUNTIME_SESSION_OPERATE_MINS, state.getRuntime().getSession().getOperate(), RETAINMENT);
-        publish(mqttClient, MQTT_TOPIC_RUNTIME_SESSION_CHARGE_MINS, state.getRuntime().getSession().getCharge(), RETAINMENT);
+        LOG.info("Pushing offline state to MQTT");
+        publisher.pushStateOffline(mqttClient, configuration.getMqttTopicRoot());
     }
 
     /**
-     * This marks the Indego device as offline.
+     * Clears the command topic, after the command was executed.
      * 
      * @param mqttClient the connection to use
      * @throws MqttPersistenceException
      * @throws MqttException
      */
-    private void pushMqttStateOffline (MqttClient mqttClient) throws MqttPersistenceException, MqttException
+    private void clearMqttDeviceCommand (MqttAsyncClient mqttClient) throws MqttPersistenceException, MqttException
     {
-        LOG.info("Pushing offline state to MQTT");
-
-        publish(mqttClient, MQTT_TOPIC_ONLINE, false, true);
-        publish(mqttClient, MQTT_TOPIC_STATE_CODE, 0, RETAINMENT);
-        publish(mqttClient, MQTT_TOPIC_STATE_MESSAGE, "", RETAINMENT);
-        publish(mqttClient, MQTT_TOPIC_ERROR_CODE, 0, RETAINMENT);
-        publish(mqttClient, MQTT_TOPIC_STATE_LEVEL, -2, RETAINMENT);
-        publish(mqttClient, MQTT_TOPIC_MOWED_PERCENTAGE, 0, RETAINMENT);
-        publish(mqttClient, MQTT_TOPIC_MAP_SVG_CACHE_TS, 0, RETAINMENT);
-        publish(mqttClient, MQTT_TOPIC_MAP_UPDATE_AVAILABLE, false, RETAINMENT);
-        publish(mqttClient, MQTT_TOPIC_MOWED_TS, 0, RETAINMENT);
-        publish(mqttClient, MQTT_TOPIC_RUNTIME_TOTAL_OPERATE_MINS, 0, RETAINMENT);
-        publish(mqttClient, MQTT_TOPIC_RUNTIME_TOTAL_CHARGE_MINS, 0, RETAINMENT);
-        publish(mqttClient, MQTT_TOPIC_RUNTIME_SESSION_OPERATE_MINS, 0, RETAINMENT);
-        publish(mqttClient, MQTT_TOPIC_RUNTIME_SESSION_CHARGE_MINS, 0, RETAINMENT);
+        publisher.clearCommand(mqttClient, configuration.getMqttTopicRoot());
     }
 
     /**
@@ -503,8 +560,16 @@ public class MqttIndegoAdapter {
     {
         try {
             LOG.info("Connecting to Indego");
-            IndegoController result = new IndegoController(configuration.getIndegoBaseUrl(),
+            // The transport is shared by the successive controllers, so no pool is created per attempt
+            IndegoController result = new IndegoController(indegoTransport, configuration.getIndegoBaseUrl(),
                     configuration.getIndegoUsername(), configuration.getIndegoPassword());
+            result.setCircuitBreaker(indegoCircuitBreaker);
+            IndegoPollingPolicy pollingPolicy = configuration.getPollingPolicy();
+            if ( pollingPolicy != null && pollingPolicy.getMinIntervalMs() > 0 ) {
+                // Every poll of the policy should get a fresh state instead of the cached one
+                result.setCacheTimeToLive(IndegoResource.STATE,
+                        Math.min(IndegoResource.STATE.getDefaultTimeToLiveMs(), pollingPolicy.getMinIntervalMs()));
+            }
             result.connect();
             LOG.info("Connection to Indego established");
             return result;
@@ -521,22 +586,49 @@ public class MqttIndegoAdapter {
      * @param callback the callback to use
      * @return a connected client instance; null, if the connection was not successful.
      */
-    private MqttClient connectMqtt (MqttIndegoCommandCallback callback)
+    private MqttAsyncClient connectMqtt (MqttIndegoCommandCallback callback)
     {
-        MqttClient result = null;
+        MqttAsyncClient result = null;
         try {
             LOG.info("Connecting to MQTT broker");
-            result = new MqttClient(configuration.getMqttBroker(), configuration.getMqttClientId(), new MemoryPersistence());
+            // A persistent session keeps the unacknowledged publications in files, which are sent
+            // again after reconnecting (even after a restart)
+            MqttClientPersistence persistence = !configuration.isMqttPersistentSession() ? new MemoryPersistence()
+                    : configuration.getMqttPersistenceDirectory() != null
+                            ? new MqttDefaultFilePersistence(configuration.getMqttPersistenceDirectory())
+                            : new MqttDefaultFilePersistence();
+            result = new MqttAsyncClient(configuration.getMqttBroker(), configuration.getMqttClientId(), persistence);
             MqttConnectOptions options = new MqttConnectOptions();
-            options.setCleanSession(true);
-            options.setUserName(configuration.getMqttUsername());
-            options.setPassword(configuration.getMqttPassword().toCharArray());
+            options.setCleanSession(!configuration.isMqttPersistentSession());
+            // An empty user name is rejected by the client, it means anonymous access
+            if ( configuration.getMqttUsername() != null && !configuration.getMqttUsername().isEmpty() ) {
+                options.setUserName(configuration.getMqttUsername());
+            }
+            if ( configuration.getMqttPassword() != null && !configuration.getMqttPassword().isEmpty() ) {
+                options.setPassword(configuration.getMqttPassword().toCharArray());
+            }
             options.setWill(configuration.getMqttTopicRoot() + MQTT_TOPIC_ONLINE, "0".getBytes(), 1, true);
+            // The window is limited by the publisher; the client releases its in-flight slots
+            // shortly after completing the delivery tokens, so its own limit needs some headroom.
+            options.setMaxInflight(Math.max(MqttConnectOptions.MAX_INFLIGHT_DEFAULT, 2 * configuration.getMqttMaxInflight()));
             result.setCallback(callback);
-            result.connect(options);
+            IMqttToken connectToken = result.connect(options);
+            connectToken.waitForCompletion(MqttIndegoPublisher.MQTT_COMPLETION_TIMEOUT_MS);
             LOG.info("Connection to MQTT broker established");
+            publisher.clearPendingDeliveries();
+            if ( connectToken.getSessionPresent() ) {
+                // The broker kept the retained values and the subscription, so only the changed
+                // topics are published; the online topic may have been reset by the last will.
+                LOG.info("Resuming MQTT session");
+                publisher.clearPublishedValues(configuration.getMqttTopicRoot() + MQTT_TOPIC_ONLINE);
+                return result;
+            }
+            // The broker may have lost the retained values (and has set the online topic by the last will)
+            publisher.clearPublishedValues();
+            lastFullPublishTs = System.currentTimeMillis();
             LOG.info("Subscribing to MQTT command topics");
-            result.subscribe(configuration.getMqttTopicRoot() + MQTT_TOPIC_COMMAND);
+            result.subscribe(configuration.getMqttTopicRoot() + MQTT_TOPIC_COMMAND, configuration.getMqttQos())
+                    .waitForCompletion(MqttIndegoPublisher.MQTT_COMPLETION_TIMEOUT_MS);
             return result;
         }
         catch (MqttException ex) {
@@ -576,26 +668,37 @@ public class MqttIndegoAdapter {
      * 
      * @param mqttClient the client to disconnect
      */
-    private void disconnect (MqttClient mqttClient)
+    private void disconnect (MqttAsyncClient mqttClient)
     {
         try {
             if ( mqttClient != null ) {
                 LOG.info("Disconnecting from MQTT broker");
+                if ( !mqttClient.isConnected() ) {
+                    // The broker has set the online topic by the last will already
+                    publisher.clearPendingDeliveries();
+                    mqttClient.close();
+                    return;
+                }
                 try {
                     LOG.debug("Resetting online state topic");
-                    publish(mqttClient, MQTT_TOPIC_ONLINE, false, true);
+                    publisher.publish(mqttClient, configuration.getMqttTopicRoot() + MQTT_TOPIC_ONLINE, false, true);
+                    publisher.awaitPendingDeliveries(0);
                 }
                 catch (MqttException ex) {
                     LOG.warn("Was not able to reset the online state topic.", ex);
                 }
                 try {
                     LOG.debug("Doing MQTT disconnect");
-                    mqttClient.disconnect();
+                    mqttClient.disconnect().waitForCompletion(MqttIndegoPublisher.MQTT_COMPLETION_TIMEOUT_MS);
                 }
                 catch (MqttException ex) {
                     LOG.warn("Was not able to disconnect from MQTT broker normally, forcing disconnect.", ex);
                     mqttClient.disconnectForcibly();
                 }
+                finally {
+                    publisher.clearPendingDeliveries();
+                    mqttClient.close();
+                }
             }
         }
         catch (Exception ex) {
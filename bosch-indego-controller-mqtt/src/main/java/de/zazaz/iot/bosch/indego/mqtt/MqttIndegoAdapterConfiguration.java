@@ -16,6 +16,11 @@
  */
 package de.zazaz.iot.bosch.indego.mqtt;
 
+import de.zazaz.iot.bosch.indego.IndegoCircuitBreakerConfiguration;
+import de.zazaz.iot.bosch.indego.IndegoPollScheduler;
+import de.zazaz.iot.bosch.indego.IndegoPollingPolicy;
+import de.zazaz.iot.bosch.indego.IndegoStateEventBus;
+
 /**
  * This contains the configuration to initialize the MQTT adapter.
  */
@@ -38,6 +43,9 @@ public class MqttIndegoAdapterConfiguration implements Cloneable {
 
     /** the quality of service to use for communicating to the MQTT broker (see MQTT spec) */
     private int mqttQos = 1;
+
+    /** the maximum number of publications, which are sent without waiting for the acknowledgement of the broker */
+    private int mqttMaxInflight = 10;
     
     /** Base url of the Indego web service (if different from default) */
     private String indegoBaseUrl;
@@ -51,6 +59,36 @@ public class MqttIndegoAdapterConfiguration implements Cloneable {
     /** the polling interval (in ms) */
     private int pollingIntervalMs;
 
+    /** the scheduler, which spreads the polls; if null, the default scheduler of the JVM is used */
+    private IndegoPollScheduler pollScheduler;
+
+    /** the policy, which determines the polling interval; if null, the polling interval is fixed */
+    private IndegoPollingPolicy pollingPolicy;
+
+    /** the bus, to which the polled states are published; if null, the states are not published */
+    private IndegoStateEventBus eventBus;
+
+    /** the id of the device on the event bus; if null, the Indego username is used */
+    private String eventSourceId;
+
+    /** the interval (in ms), after which all state topics are published again, even if unchanged */
+    private long mqttFullRepublishIntervalMs = 10 * 60 * 1000;
+
+    /** true, if the complete state is published as JSON document to the state topic, too */
+    private boolean mqttStateDocumentEnabled;
+
+    /** true, if the MQTT session survives reconnects (clean session = false), with unacknowledged publications stored in files */
+    private boolean mqttPersistentSession;
+
+    /** the directory for storing the unacknowledged publications of a persistent session (default: working directory) */
+    private String mqttPersistenceDirectory;
+
+    /** the maximum number of received commands, which wait for being executed */
+    private int commandQueueCapacity = 16;
+
+    /** the configuration of the circuit breakers, which back off the reconnects to the Indego server and the MQTT broker */
+    private IndegoCircuitBreakerConfiguration circuitBreakerConfiguration = new IndegoCircuitBreakerConfiguration();
+
     /**
      * {@inheritDoc}
      */
@@ -58,7 +96,10 @@ public class MqttIndegoAdapterConfiguration implements Cloneable {
     public Object clone ()
     {
         try {
-            return super.clone();
+            MqttIndegoAdapterConfiguration result = (MqttIndegoAdapterConfiguration) super.clone();
+            result.circuitBreakerConfiguration =
+                    (IndegoCircuitBreakerConfiguration) circuitBreakerConfiguration.clone();
+            return result;
         }
         catch (CloneNotSupportedException ex) {
             throw new RuntimeException(ex);
@@ -249,6 +290,26 @@ public class MqttIndegoAdapterConfiguration implements Cloneable {
         this.indegoPassword = indegoPassword;
     }
 
+    /**
+     * Gets the maximum number of publications, which are sent without waiting for the acknowledgement of the broker.
+     *
+     * @return the maximum number of unacknowledged publications
+     */
+    public int getMqttMaxInflight ()
+    {
+        return mqttMaxInflight;
+    }
+
+    /**
+     * Sets the maximum number of publications, which are sent without waiting for the acknowledgement of the broker.
+     *
+     * @param mqttMaxInflight the new maximum number of unacknowledged publications (at least 1)
+     */
+    public void setMqttMaxInflight (int mqttMaxInflight)
+    {
+        this.mqttMaxInflight = mqttMaxInflight;
+    }
+
     /**
      * Gets the polling interval (in ms).
      *
@@ -269,4 +330,217 @@ public class MqttIndegoAdapterConfiguration implements Cloneable {
         this.pollingIntervalMs = pollingIntervalMs;
     }
 
+    /**
+     * Gets the scheduler, which spreads the polls; if null, the default scheduler of the JVM is used.
+     *
+     * @return the scheduler, which spreads the polls
+     */
+    public IndegoPollScheduler getPollScheduler ()
+    {
+        return pollScheduler;
+    }
+
+    /**
+     * Sets the scheduler, which spreads the polls. Adapters, which share a scheduler, share its
+     * limit of polls per second, too.
+     *
+     * @param pollScheduler the new scheduler; if null, the default scheduler of the JVM is used
+     */
+    public void setPollScheduler (IndegoPollScheduler pollScheduler)
+    {
+        this.pollScheduler = pollScheduler;
+    }
+
+    /**
+     * Gets the policy, which determines the polling interval; if null, the polling interval is fixed.
+     *
+     * @return the policy, which determines the polling interval
+     */
+    public IndegoPollingPolicy getPollingPolicy ()
+    {
+        return pollingPolicy;
+    }
+
+    /**
+     * Sets the policy, which determines the polling interval; if null, the polling interval is fixed.
+     * The policy must not be shared with other adapters.
+     *
+     * @param pollingPolicy the new policy, which determines the polling interval
+     */
+    public void setPollingPolicy (IndegoPollingPolicy pollingPolicy)
+    {
+        this.pollingPolicy = pollingPolicy;
+    }
+
+    /**
+     * Gets the bus, to which the polled states are published; if null, the states are not published.
+     *
+     * @return the bus, to which the polled states are published
+     */
+    public IndegoStateEventBus getEventBus ()
+    {
+        return eventBus;
+    }
+
+    /**
+     * Sets the bus, to which the polled states are published. Other sinks (e.g. an IFTTT adapter)
+     * can subscribe to the bus for the state changes, instead of polling the device themselves.
+     *
+     * @param eventBus the new bus; if null, the states are not published
+     */
+    public void setEventBus (IndegoStateEventBus eventBus)
+    {
+        this.eventBus = eventBus;
+    }
+
+    /**
+     * Gets the id of the device on the event bus; if null, the Indego username is used.
+     *
+     * @return the id of the device on the event bus
+     */
+    public String getEventSourceId ()
+    {
+        return eventSourceId;
+    }
+
+    /**
+     * Sets the id of the device on the event bus.
+     *
+     * @param eventSourceId the new id of the device; if null, the Indego username is used
+     */
+    public void setEventSourceId (String eventSourceId)
+    {
+        this.eventSourceId = eventSourceId;
+    }
+
+    /**
+     * Gets the interval (in ms), after which all state topics are published again, even if unchanged.
+     * Between full publications, only the changed topics are published.
+     *
+     * @return the interval (in ms), after which all state topics are published again; 0, if all
+     *      topics are published on every poll
+     */
+    public long getMqttFullRepublishIntervalMs ()
+    {
+        return mqttFullRepublishIntervalMs;
+    }
+
+    /**
+     * Sets the interval (in ms), after which all state topics are published again, even if unchanged.
+     *
+     * @param mqttFullRepublishIntervalMs the new interval (in ms); 0, if all topics should be published
+     *      on every poll
+     */
+    public void setMqttFullRepublishIntervalMs (long mqttFullRepublishIntervalMs)
+    {
+        this.mqttFullRepublishIntervalMs = mqttFullRepublishIntervalMs;
+    }
+
+    /**
+     * Gets the flag, if the complete state is published as JSON document to the state topic, too.
+     *
+     * @return true, if the state document is published additionally to the single topics
+     */
+    public boolean isMqttStateDocumentEnabled ()
+    {
+        return mqttStateDocumentEnabled;
+    }
+
+    /**
+     * Sets the flag, if the complete state is published as JSON document to the state topic, too.
+     *
+     * @param mqttStateDocumentEnabled true, if the state document should be published additionally
+     *      to the single topics
+     */
+    public void setMqttStateDocumentEnabled (boolean mqttStateDocumentEnabled)
+    {
+        this.mqttStateDocumentEnabled = mqttStateDocumentEnabled;
+    }
+
+    /**
+     * Gets the flag, if the MQTT session survives reconnects (clean session = false).
+     *
+     * @return true, if the MQTT session survives reconnects
+     */
+    public boolean isMqttPersistentSession ()
+    {
+        return mqttPersistentSession;
+    }
+
+    /**
+     * Sets the flag, if the MQTT session survives reconnects (clean session = false). The broker
+     * keeps the subscription then, and the unacknowledged publications are stored in files and
+     * sent again after reconnecting. After resuming a session, only the changed state topics are
+     * published.
+     *
+     * @param mqttPersistentSession true, if the MQTT session should survive reconnects
+     */
+    public void setMqttPersistentSession (boolean mqttPersistentSession)
+    {
+        this.mqttPersistentSession = mqttPersistentSession;
+    }
+
+    /**
+     * Gets the directory for storing the unacknowledged publications of a persistent session.
+     *
+     * @return the directory; null, if the working directory is used
+     */
+    public String getMqttPersistenceDirectory ()
+    {
+        return mqttPersistenceDirectory;
+    }
+
+    /**
+     * Sets the directory for storing the unacknowledged publications of a persistent session.
+     *
+     * @param mqttPersistenceDirectory the new directory; null, if the working directory should be used
+     */
+    public void setMqttPersistenceDirectory (String mqttPersistenceDirectory)
+    {
+        this.mqttPersistenceDirectory = mqttPersistenceDirectory;
+    }
+
+    /**
+     * Gets the maximum number of received commands, which wait for being executed.
+     *
+     * @return the maximum number of received commands, which wait for being executed
+     */
+    public int getCommandQueueCapacity ()
+    {
+        return commandQueueCapacity;
+    }
+
+    /**
+     * Sets the maximum number of received commands, which wait for being executed. Further commands
+     * are ignored.
+     *
+     * @param commandQueueCapacity the new maximum number of received commands, which wait for being
+     *      executed
+     */
+    public void setCommandQueueCapacity (int commandQueueCapacity)
+    {
+        this.commandQueueCapacity = commandQueueCapacity;
+    }
+
+    /**
+     * Gets the configuration of the circuit breakers, which back off the reconnects to the Indego server and the MQTT broker.
+     *
+     * @return the configuration of the circuit breakers
+     */
+    public IndegoCircuitBreakerConfiguration getCircuitBreakerConfiguration ()
+    {
+        return circuitBreakerConfiguration;
+    }
+
+    /**
+     * Sets the configuration of the circuit breakers, which back off the reconnects to the Indego server and the MQTT broker
+     * (and the restarts of the worker thread after an unhandled exception).
+     *
+     * @param circuitBreakerConfiguration the new configuration of the circuit breakers
+     */
+    public void setCircuitBreakerConfiguration (IndegoCircuitBreakerConfiguration circuitBreakerConfiguration)
+    {
+        this.circuitBreakerConfiguration = circuitBreakerConfiguration;
+    }
+
 }
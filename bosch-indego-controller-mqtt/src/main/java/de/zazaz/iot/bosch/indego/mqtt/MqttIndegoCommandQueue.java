@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego.mqtt;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.zazaz.iot.bosch.indego.IndegoCommandQueue;
+
+/**
+ * A bounded, lock-free FIFO queue of device commands, which were received via MQTT. It is filled
+ * by the MQTT callback thread and drained by the command executor of {@link MqttIndegoAdapter}.
+ * <p>
+ * A command stays in the queue, until it was executed (see {@link #remove(String)}). A command,
+ * which equals the last queued one, is not queued a second time, while that one is pending (e.g.
+ * if a retained command is sent again by the broker after reconnecting). Other repeated commands
+ * are queued, so the last received command is always the one, which is executed last.
+ * <p>
+ * The queue supports a single producer and a single consumer.
+ */
+class MqttIndegoCommandQueue implements IndegoCommandQueue<String> {
+
+    /** the maximum number of pending commands */
+    private final int capacity;
+
+    /** the pending commands (oldest first) */
+    private final ConcurrentLinkedQueue<String> commands = new ConcurrentLinkedQueue<>();
+
+    /** the number of pending commands */
+    private final AtomicInteger size = new AtomicInteger();
+
+    /** semaphore for waking the consumer up */
+    private final Semaphore semWaker = new Semaphore(0);
+
+    /** the last queued command (the tail of the queue, while it is not empty); only accessed by the producer */
+    private String lastCommand;
+
+    /**
+     * @param capacity_ the maximum number of pending commands
+     */
+    MqttIndegoCommandQueue (int capacity_)
+    {
+        if ( capacity_ < 1 ) {
+            throw new IllegalArgumentException("The capacity has to be at least 1");
+        }
+        capacity = capacity_;
+    }
+
+    /**
+     * Adds a command to the end of the queue.
+     * 
+     * @param command_ the command to add
+     * @return true, if the command was added; false, if it equals the last pending command or the
+     *      queue is full
+     */
+    boolean offer (String command_)
+    {
+        if ( size.get() > 0 && command_.equals(lastCommand) ) {
+            return false;
+        }
+        if ( size.incrementAndGet() > capacity ) {
+            size.decrementAndGet();
+            return false;
+        }
+        lastCommand = command_;
+        commands.add(command_);
+        semWaker.release();
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String peek ()
+    {
+        return commands.peek();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void await (long timeoutMs_) throws InterruptedException
+    {
+        semWaker.tryAcquire(timeoutMs_, TimeUnit.MILLISECONDS);
+        semWaker.drainPermits();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void remove (String command_)
+    {
+        if ( commands.remove(command_) ) {
+            size.decrementAndGet();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void wakeup ()
+    {
+        semWaker.release();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size ()
+    {
+        return size.get();
+    }
+
+}
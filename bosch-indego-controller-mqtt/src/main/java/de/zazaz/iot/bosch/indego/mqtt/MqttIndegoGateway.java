@@ -0,0 +1,726 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego.mqtt;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttCallback;
+import org.eclipse.paho.client.mqttv3.MqttClientPersistence;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.eclipse.paho.client.mqttv3.persist.MqttDefaultFilePersistence;
+
+import de.zazaz.iot.bosch.indego.DeviceCommand;
+import de.zazaz.iot.bosch.indego.DeviceStateInformation;
+import de.zazaz.iot.bosch.indego.IndegoCircuitBreaker;
+import de.zazaz.iot.bosch.indego.IndegoException;
+import de.zazaz.iot.bosch.indego.IndegoFleet;
+import de.zazaz.iot.bosch.indego.IndegoFleetDevice;
+import de.zazaz.iot.bosch.indego.IndegoFleetListener;
+import de.zazaz.iot.bosch.indego.IndegoInvalidCommandException;
+import de.zazaz.iot.bosch.indego.IndegoPollScheduler;
+import de.zazaz.iot.bosch.indego.IndegoRestartBackoff;
+
+/**
+ * This class connects many Indego accounts with a single MQTT connection. The topics of a device
+ * are the same as the ones of {@link MqttIndegoAdapter}, but placed below the serial number of the
+ * device: "&lt;root&gt;/&lt;serial&gt;/&lt;topic&gt;". The commands of all devices are received
+ * by a single wildcard subscription ("&lt;root&gt;/+/command").
+ * <p>
+ * The devices are managed by an {@link IndegoFleet}, so the number of threads and HTTP connections
+ * does not depend on the number of devices. The polls of the devices are spread across the polling
+ * interval. A single thread publishes the results to the MQTT broker.
+ * <p>
+ * Since a MQTT connection has only one last will, the online topic of a device is not reset by the
+ * broker, if the gateway dies. Instead, the gateway has an own online topic ("&lt;root&gt;/online").
+ */
+public class MqttIndegoGateway {
+
+    /** the logger */
+    private static final Logger LOG = LogManager.getLogger(MqttIndegoGateway.class);
+
+    /**
+     * The credentials of a registered account.
+     */
+    private static class Account {
+
+        /** the base url of the Indego web service (null, if default) */
+        private final String baseUrl;
+
+        /** the username for connecting to the Indego server */
+        private final String username;
+
+        /** the password for connecting to the Indego server */
+        private final String password;
+
+        /**
+         * @param baseUrl_ the base url of the Indego web service (null, if default)
+         * @param username_ the username for connecting to the Indego server
+         * @param password_ the password for connecting to the Indego server
+         */
+        Account (String baseUrl_, String username_, String password_)
+        {
+            baseUrl = baseUrl_;
+            username = username_;
+            password = password_;
+        }
+
+    }
+
+    /** the configuration to use */
+    private final MqttIndegoGatewayConfiguration configuration;
+
+    /** the registered accounts (by account id) */
+    private final Map<String, Account> accounts = new LinkedHashMap<>();
+
+    /** the fleet, which manages the devices; null, if not started */
+    private IndegoFleet fleet;
+
+    /** this is used for indicating, that we are request to shutdown */
+    private final AtomicBoolean flagShutdown = new AtomicBoolean(false);
+
+    /** semaphore for waking the publisher thread up */
+    private final Semaphore semThreadWaker = new Semaphore(0);
+
+    /** a reference to the publisher thread */
+    private Thread threadPublisher;
+
+    /** the publisher of the state topics; only accessed by the publisher thread */
+    private final MqttIndegoPublisher publisher;
+
+    /** backs off the connection attempts to the MQTT broker, while it is down */
+    private final IndegoCircuitBreaker mqttCircuitBreaker;
+
+    /** backs off the restarts of the publisher thread after unhandled exceptions */
+    private final IndegoRestartBackoff restartBackoff;
+
+    /** the timestamp, when all state topics were published the last time; only accessed by the publisher thread */
+    private long lastFullPublishTs;
+
+    /** the serial numbers of the devices (by account id) */
+    private final ConcurrentHashMap<String, String> serials = new ConcurrentHashMap<>();
+
+    /** the account ids of the devices (by serial number) */
+    private final ConcurrentHashMap<String, String> accountIds = new ConcurrentHashMap<>();
+
+    /** the last fetched states (by account id); missing, if the device is offline */
+    private final ConcurrentHashMap<String, DeviceStateInformation> states = new ConcurrentHashMap<>();
+
+    /** the accounts, whose state has to be published */
+    private final Set<String> dirtyAccounts = ConcurrentHashMap.newKeySet();
+
+    /** the serial numbers of the devices, whose command topic has to be cleared */
+    private final Set<String> commandsToClear = ConcurrentHashMap.newKeySet();
+
+    /** the execution of the last received command (by account id); commands of a device are executed one after the other */
+    private final ConcurrentHashMap<String, CompletableFuture<Void>> commandChains = new ConcurrentHashMap<>();
+
+    /** the number of pending commands (by account id) */
+    private final ConcurrentHashMap<String, AtomicInteger> pendingCommandCounts = new ConcurrentHashMap<>();
+
+    /** the last received command (by account id); only accessed by the MQTT callback thread */
+    private final Map<String, String> lastCommands = new ConcurrentHashMap<>();
+
+    /**
+     * This receives the results of the polling of the fleet.
+     */
+    private final IndegoFleetListener fleetListener = new IndegoFleetListener() {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void stateUpdated (IndegoFleetDevice device, DeviceStateInformation state)
+        {
+            String serial = device.getSerial();
+            if ( serial != null && serials.putIfAbsent(device.getAccountId(), serial) == null ) {
+                LOG.info(String.format("Account '%s' belongs to device %s", device.getAccountId(), serial));
+                accountIds.put(serial, device.getAccountId());
+            }
+            states.put(device.getAccountId(), state);
+            markDirty(device.getAccountId());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void stateFailed (IndegoFleetDevice device, IndegoException ex)
+        {
+            LOG.warn(String.format("Was not able to fetch the state of account '%s': %s", device.getAccountId(),
+                    ex.getMessage()));
+            LOG.debug("Details of the failure", ex);
+            if ( states.remove(device.getAccountId()) != null ) {
+                markDirty(device.getAccountId());
+            }
+        }
+
+    };
+
+    /**
+     * This class handles callbacks for commands
+     */
+    private class MqttIndegoGatewayCallback implements MqttCallback {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void connectionLost (Throwable arg0)
+        {
+            // Let the publisher reconnect, even if there is nothing to publish
+            semThreadWaker.release();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void deliveryComplete (IMqttDeliveryToken arg0)
+        {
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void messageArrived (String topic, MqttMessage message) throws Exception
+        {
+            String root = configuration.getMqttTopicRoot();
+            String suffix = "/" + MqttIndegoAdapter.MQTT_TOPIC_COMMAND;
+            if ( !topic.startsWith(root) || !topic.endsWith(suffix) || topic.length() <= root.length() + suffix.length() ) {
+                return;
+            }
+            String serial = topic.substring(root.length(), topic.length() - suffix.length());
+            String command = new String(message.getPayload()).trim();
+            if ( "".equals(command) ) {
+                return;
+            }
+            String accountId = accountIds.get(serial);
+            if ( accountId == null ) {
+                LOG.warn(String.format("Ignoring command '%s' for unknown device %s", command, serial));
+                return;
+            }
+            queueCommand(accountId, serial, command);
+        }
+
+    }
+
+    /**
+     * Initializes the gateway.
+     * 
+     * @param configuration_ the configuration to use
+     */
+    public MqttIndegoGateway (MqttIndegoGatewayConfiguration configuration_)
+    {
+        // Get a clone, since we don't want to be manipulated during runtime
+        configuration = (MqttIndegoGatewayConfiguration) configuration_.clone();
+        publisher = new MqttIndegoPublisher(configuration.getMqttQos(), configuration.getMqttMaxInflight(),
+                configuration.isMqttStateDocumentEnabled());
+        mqttCircuitBreaker = new IndegoCircuitBreaker(configuration.getCircuitBreakerConfiguration());
+        restartBackoff = new IndegoRestartBackoff(configuration.getCircuitBreakerConfiguration());
+    }
+
+    /**
+     * Registers an account. If the gateway is already started, the polling of the device is started
+     * immediately.
+     * 
+     * @param accountId_ an unique id for the account
+     * @param baseUrl_ the url which provices the service for controlling the device;
+     *      if null, the default base url is used
+     * @param username_ the username for authenticating
+     * @param password_ the password for authenticating
+     */
+    public synchronized void addAccount (String accountId_, String baseUrl_, String username_, String password_)
+    {
+        if ( accounts.containsKey(accountId_) ) {
+            throw new IllegalArgumentException(String.format("The account '%s' is already registered", accountId_));
+        }
+        accounts.put(accountId_, new Account(baseUrl_, username_, password_));
+        if ( fleet != null ) {
+            long intervalMs = configuration.getPollingIntervalMs();
+            registerAccount(accountId_, ThreadLocalRandom.current().nextLong(intervalMs));
+        }
+    }
+
+    /**
+     * This starts the gateway.
+     */
+    public synchronized void startup ()
+    {
+        if ( threadPublisher != null ) {
+            throw new IllegalStateException("The gateway is already started");
+        }
+        flagShutdown.set(false);
+        semThreadWaker.drainPermits();
+        fleet = configuration.getEventBus() != null
+                ? new IndegoFleet(configuration.getFleetConfiguration(), configuration.getEventBus())
+                : new IndegoFleet(configuration.getFleetConfiguration());
+
+        // Spread the polls of the devices across the polling interval
+        List<String> ids = new ArrayList<>(accounts.keySet());
+        long intervalMs = configuration.getPollingIntervalMs();
+        for (int i = 0; i < ids.size(); i++) {
+            registerAccount(ids.get(i), i * intervalMs / ids.size());
+        }
+
+        threadPublisher = new Thread(new Runnable() {
+
+            @Override
+            public void run ()
+            {
+                runOuter();
+            }
+        }, "indego-mqtt-gateway-publisher");
+        LOG.debug("Starting publisher thread");
+        try {
+            threadPublisher.start();
+            LOG.debug("Publisher thread started");
+        }
+        catch (RuntimeException ex) {
+            LOG.error("Failed to start publisher thread", ex);
+            threadPublisher = null;
+            fleet.close();
+            fleet = null;
+            throw ex;
+        }
+    }
+
+    /**
+     * This shuts down the gateway. The devices are marked as offline.
+     */
+    public synchronized void shutdown ()
+    {
+        if ( threadPublisher == null ) {
+            throw new IllegalStateException("The gateway is not started");
+        }
+        try {
+            LOG.debug("Closing fleet");
+            fleet.close();
+            LOG.debug("Requesting publisher thread to shut down");
+            flagShutdown.set(true);
+            semThreadWaker.release();
+            LOG.debug("Waiting for publisher thread");
+            while ( true ) {
+                try {
+                    threadPublisher.join();
+                    break;
+                }
+                catch (InterruptedException ex) {
+                    // Ignored
+                }
+            }
+            LOG.debug("Publisher thread terminated, shutdown complete");
+        }
+        finally {
+            threadPublisher = null;
+            fleet = null;
+            states.clear();
+            dirtyAccounts.clear();
+            commandsToClear.clear();
+            commandChains.clear();
+            pendingCommandCounts.clear();
+            lastCommands.clear();
+            flagShutdown.set(false);
+        }
+    }
+
+    /**
+     * Registers an account at the fleet and starts its polling.
+     * 
+     * @param accountId_ the id of the account
+     * @param initialDelayMs_ the delay (in ms) of the first poll
+     */
+    private void registerAccount (String accountId_, long initialDelayMs_)
+    {
+        Account account = accounts.get(accountId_);
+        fleet.addAccount(accountId_, account.baseUrl, account.username, account.password);
+        fleet.startPolling(accountId_, configuration.getPollingIntervalMs(), initialDelayMs_, fleetListener);
+    }
+
+    /**
+     * Reports the lag of the polls since the last report.
+     */
+    private void logScheduleLag ()
+    {
+        IndegoFleet currentFleet = fleet;
+        if ( currentFleet == null ) {
+            return;
+        }
+        IndegoPollScheduler pollScheduler = currentFleet.getPollScheduler();
+        LOG.info(String.format("Polled %d times, schedule lag: average %d ms, maximum %d ms",
+                pollScheduler.getPollCount(), pollScheduler.getAverageLagMs(), pollScheduler.getMaxLagMs()));
+        pollScheduler.resetStatistics();
+    }
+
+    /**
+     * Marks the state of an account for publishing.
+     * 
+     * @param accountId_ the id of the account
+     */
+    private void markDirty (String accountId_)
+    {
+        dirtyAccounts.add(accountId_);
+        semThreadWaker.release();
+    }
+
+    /**
+     * Queues a received command for execution. The commands of a device are executed in the order of
+     * their arrival. A command, which equals the last pending command of the device, is ignored.
+     * 
+     * @param accountId_ the id of the account
+     * @param serial_ the serial number of the device
+     * @param command_ the received command
+     */
+    private void queueCommand (final String accountId_, final String serial_, final String command_)
+    {
+        final IndegoFleet currentFleet = fleet;
+        if ( currentFleet == null ) {
+            return;
+        }
+        final DeviceCommand deviceCommand;
+        try {
+            deviceCommand = DeviceCommand.valueOf(command_);
+        }
+        catch (IllegalArgumentException ex) {
+            LOG.warn(String.format("Received invalid command '%s' for device %s, ignoring it", command_, serial_));
+            commandsToClear.add(serial_);
+            semThreadWaker.release();
+            return;
+        }
+
+        final AtomicInteger pendingCount = pendingCommandCounts.computeIfAbsent(accountId_, id -> new AtomicInteger());
+        if ( pendingCount.get() > 0 && command_.equals(lastCommands.get(accountId_)) ) {
+            LOG.debug(String.format("Ignoring command '%s' for device %s, since it is already pending", command_, serial_));
+            return;
+        }
+        if ( pendingCount.incrementAndGet() > configuration.getMaxPendingCommands() ) {
+            pendingCount.decrementAndGet();
+            LOG.warn(String.format("Ignoring command '%s' for device %s, since too many commands are pending", command_,
+                    serial_));
+            return;
+        }
+        lastCommands.put(accountId_, command_);
+
+        commandChains.compute(accountId_, (id, previous) -> {
+            CompletableFuture<Void> predecessor = previous != null ? previous.handle((result, ex) -> null)
+                    : CompletableFuture.completedFuture(null);
+            return predecessor.thenCompose(v -> currentFleet.submit(accountId_, controller -> {
+                LOG.info(String.format("Processing command '%s' for device %s", command_, serial_));
+                controller.sendCommand(deviceCommand);
+                return (Void) null;
+            })).whenComplete((result, ex) -> {
+                pendingCount.decrementAndGet();
+                Throwable cause = ex != null && ex.getCause() != null ? ex.getCause() : ex;
+                if ( cause instanceof IndegoInvalidCommandException ) {
+                    LOG.warn(String.format("The sent command '%s' was not be processed by the server because it's invalid "
+                            + "in the current state of device %s, ignoring it", command_, serial_));
+                }
+                else if ( cause != null ) {
+                    LOG.error(String.format("Exception during sending command '%s' to device %s", command_, serial_), cause);
+                }
+                commandsToClear.add(serial_);
+                semThreadWaker.release();
+                // Publish the new state as soon as possible
+                currentFleet.fetchState(accountId_).whenComplete((state, ex2) -> {
+                    IndegoFleetDevice device = currentFleet.getDevice(accountId_);
+                    if ( state != null && device != null ) {
+                        fleetListener.stateUpdated(device, state);
+                    }
+                });
+            });
+        });
+    }
+
+    /**
+     * @return the circuit breaker, which backs off the connection attempts to the MQTT broker
+     *      (e.g. for reading its statistics)
+     */
+    public IndegoCircuitBreaker getMqttCircuitBreaker ()
+    {
+        return mqttCircuitBreaker;
+    }
+
+    /**
+     * This is the initial entry point for the publisher thread.
+     */
+    private void runOuter ()
+    {
+        LOG.debug("Publisher thread started");
+        try {
+            while ( !flagShutdown.get() ) {
+                long startTs = System.currentTimeMillis();
+                try {
+                    runInternal();
+                }
+                catch (Exception ex) {
+                    LOG.fatal("Unhandled exception thrown! Trying a restart...", ex);
+                    restartBackoff.awaitRestart(startTs, semThreadWaker, flagShutdown);
+                }
+            }
+        }
+        finally {
+            LOG.debug("Closing publisher thread");
+        }
+    }
+
+    /**
+     * This is the inner run method of the publisher thread, which does the actual work.
+     */
+    private void runInternal ()
+    {
+        MqttAsyncClient mqttClient = null;
+        MqttIndegoGatewayCallback callback = new MqttIndegoGatewayCallback();
+
+        try {
+            while ( !flagShutdown.get() ) {
+                if ( mqttClient != null && !mqttClient.isConnected() ) {
+                    LOG.info("Connection to MQTT broker lost");
+                    disconnect(mqttClient);
+                    mqttClient = null;
+                }
+                if ( mqttClient == null && mqttCircuitBreaker.allowRequest() ) {
+                    LOG.info("No MQTT connection. Creating connection.");
+                    mqttClient = connectMqtt(callback);
+                    if ( mqttClient == null ) {
+                        LOG.warn("Was not able to connect to MQTT broker.");
+                        mqttCircuitBreaker.recordFailure();
+                        mqttCircuitBreaker.logOpenCircuit("MQTT broker");
+                    }
+                    else {
+                        mqttCircuitBreaker.recordSuccess();
+                    }
+                }
+
+                if ( mqttClient != null ) {
+                    try {
+                        if ( System.currentTimeMillis() - lastFullPublishTs >= configuration.getMqttFullRepublishIntervalMs() ) {
+                            LOG.debug("Publishing all state topics");
+                            publisher.clearPublishedValues();
+                            lastFullPublishTs = System.currentTimeMillis();
+                            dirtyAccounts.addAll(serials.keySet());
+                            logScheduleLag();
+                        }
+                        for (Iterator<String> iter = dirtyAccounts.iterator(); iter.hasNext();) {
+                            String accountId = iter.next();
+                            iter.remove();
+                            pushMqttState(mqttClient, accountId);
+                        }
+                        for (Iterator<String> iter = commandsToClear.iterator(); iter.hasNext();) {
+                            String serial = iter.next();
+                            iter.remove();
+                            publisher.clearCommand(mqttClient, getTopicPrefix(serial));
+                        }
+                        publisher.awaitPendingDeliveries(0);
+                    }
+                    catch (Exception ex) {
+                        LOG.error("Exception during pushing state to MQTT", ex);
+                        disconnect(mqttClient);
+                        mqttClient = null;
+                    }
+                }
+
+                long delayMs = configuration.getPollingIntervalMs();
+                if ( mqttClient == null ) {
+                    // Don't wake up for reconnecting, before the circuit breaker allows it
+                    delayMs = Math.max(delayMs, mqttCircuitBreaker.getRemainingOpenMs());
+                }
+                try {
+                    semThreadWaker.tryAcquire(delayMs, TimeUnit.MILLISECONDS);
+                }
+                catch (InterruptedException ex) {
+                    // Ignored
+                }
+            }
+        }
+        finally {
+            disconnect(mqttClient);
+        }
+    }
+
+    /**
+     * Publishes the last fetched state of a device.
+     * 
+     * @param mqttClient the connection to use
+     * @param accountId the id of the account
+     * @throws MqttException
+     */
+    private void pushMqttState (MqttAsyncClient mqttClient, String accountId) throws MqttException
+    {
+        String serial = serials.get(accountId);
+        if ( serial == null ) {
+            // Never connected, so the topics are unknown
+            return;
+        }
+        DeviceStateInformation state = states.get(accountId);
+        if ( state != null ) {
+            publisher.pushStateOnline(mqttClient, getTopicPrefix(serial), state);
+        }
+        else {
+            LOG.info(String.format("Pushing offline state of device %s to MQTT", serial));
+            publisher.pushStateOffline(mqttClient, getTopicPrefix(serial));
+        }
+    }
+
+    /**
+     * @param serial the serial number of a device
+     * @return the prefix of the topics of the device
+     */
+    private String getTopicPrefix (String serial)
+    {
+        return configuration.getMqttTopicRoot() + serial + "/";
+    }
+
+    /**
+     * Connects to the MQTT broker by using a given notification callback.
+     * 
+     * @param callback the callback to use
+     * @return a connected client instance; null, if the connection was not successful.
+     */
+    private MqttAsyncClient connectMqtt (MqttIndegoGatewayCallback callback)
+    {
+        MqttAsyncClient result = null;
+        try {
+            LOG.info("Connecting to MQTT broker");
+            // A persistent session keeps the unacknowledged publications in files, which are sent
+            // again after reconnecting (even after a restart)
+            MqttClientPersistence persistence = !configuration.isMqttPersistentSession() ? new MemoryPersistence()
+                    : configuration.getMqttPersistenceDirectory() != null
+                            ? new MqttDefaultFilePersistence(configuration.getMqttPersistenceDirectory())
+                            : new MqttDefaultFilePersistence();
+            result = new MqttAsyncClient(configuration.getMqttBroker(), configuration.getMqttClientId(), persistence);
+            MqttConnectOptions options = new MqttConnectOptions();
+            options.setCleanSession(!configuration.isMqttPersistentSession());
+            // An empty user name is rejected by the client, it means anonymous access
+            if ( configuration.getMqttUsername() != null && !configuration.getMqttUsername().isEmpty() ) {
+                options.setUserName(configuration.getMqttUsername());
+            }
+            if ( configuration.getMqttPassword() != null && !configuration.getMqttPassword().isEmpty() ) {
+                options.setPassword(configuration.getMqttPassword().toCharArray());
+            }
+            options.setWill(configuration.getMqttTopicRoot() + MqttIndegoAdapter.MQTT_TOPIC_ONLINE, "0".getBytes(), 1, true);
+            // The window is limited by the publisher; the client releases its in-flight slots
+            // shortly after completing the delivery tokens, so its own limit needs some headroom.
+            options.setMaxInflight(Math.max(MqttConnectOptions.MAX_INFLIGHT_DEFAULT, 2 * configuration.getMqttMaxInflight()));
+            result.setCallback(callback);
+            IMqttToken connectToken = result.connect(options);
+            connectToken.waitForCompletion(MqttIndegoPublisher.MQTT_COMPLETION_TIMEOUT_MS);
+            LOG.info("Connection to MQTT broker established");
+            publisher.clearPendingDeliveries();
+            boolean sessionPresent = connectToken.getSessionPresent();
+            if ( sessionPresent ) {
+                // The broker kept the retained values and the subscription, so only the changed
+                // topics are published; the online topic may have been reset by the last will.
+                LOG.info("Resuming MQTT session");
+                publisher.clearPublishedValues(configuration.getMqttTopicRoot() + MqttIndegoAdapter.MQTT_TOPIC_ONLINE);
+            }
+            else {
+                // The broker may have lost the retained values
+                publisher.clearPublishedValues();
+                lastFullPublishTs = System.currentTimeMillis();
+            }
+            dirtyAccounts.addAll(serials.keySet());
+            publisher.publish(result, configuration.getMqttTopicRoot() + MqttIndegoAdapter.MQTT_TOPIC_ONLINE, true, true);
+            if ( sessionPresent ) {
+                return result;
+            }
+            LOG.info("Subscribing to MQTT command topics");
+            result.subscribe(configuration.getMqttTopicRoot() + "+/" + MqttIndegoAdapter.MQTT_TOPIC_COMMAND,
+                    configuration.getMqttQos()).waitForCompletion(MqttIndegoPublisher.MQTT_COMPLETION_TIMEOUT_MS);
+            return result;
+        }
+        catch (MqttException ex) {
+            LOG.error("Connection to MQTT broker failed", ex);
+            try {
+                if ( result.isConnected() ) {
+                    result.disconnectForcibly();
+                }
+            }
+            catch (Exception ex2) {
+                // Ignored
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Disconnects a connected MQTT client. Before, all devices and the gateway are marked as offline.
+     * 
+     * @param mqttClient the client to disconnect
+     */
+    private void disconnect (MqttAsyncClient mqttClient)
+    {
+        try {
+            if ( mqttClient != null ) {
+                LOG.info("Disconnecting from MQTT broker");
+                if ( !mqttClient.isConnected() ) {
+                    // The broker has set the online topic by the last will already
+                    publisher.clearPendingDeliveries();
+                    mqttClient.close();
+                    return;
+                }
+                try {
+                    LOG.debug("Resetting online state topics");
+                    for (String serial : accountIds.keySet()) {
+                        publisher.pushStateOffline(mqttClient, getTopicPrefix(serial));
+                    }
+                    publisher.publish(mqttClient, configuration.getMqttTopicRoot() + MqttIndegoAdapter.MQTT_TOPIC_ONLINE, false,
+                            true);
+                    publisher.awaitPendingDeliveries(0);
+                }
+                catch (MqttException ex) {
+                    LOG.warn("Was not able to reset the online state topics.", ex);
+                }
+                try {
+                    LOG.debug("Doing MQTT disconnect");
+                    mqttClient.disconnect().waitForCompletion(MqttIndegoPublisher.MQTT_COMPLETION_TIMEOUT_MS);
+                }
+                catch (MqttException ex) {
+                    LOG.warn("Was not able to disconnect from MQTT broker normally, forcing disconnect.", ex);
+                    mqttClient.disconnectForcibly();
+                }
+                finally {
+                    publisher.clearPendingDeliveries();
+                    mqttClient.close();
+                }
+            }
+        }
+        catch (Exception ex) {
+            LOG.warn("Something strange happened while disconnecting from MQTT broker", ex);
+        }
+    }
+
+}
@@ -0,0 +1,424 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego.mqtt;
+
+import de.zazaz.iot.bosch.indego.IndegoCircuitBreakerConfiguration;
+import de.zazaz.iot.bosch.indego.IndegoFleetConfiguration;
+import de.zazaz.iot.bosch.indego.IndegoStateEventBus;
+
+/**
+ * This contains the configuration for initializing the {@link MqttIndegoGateway}.
+ */
+public class MqttIndegoGatewayConfiguration implements Cloneable {
+
+    /** the connection string for the MQTT broker (eg: "tcp://iot.eclipse.org:1883") */
+    private String mqttBroker;
+
+    /** the username for authenticating against the MQTT broker */
+    private String mqttUsername;
+
+    /** the password for authenticating against the MQTT broker */
+    private String mqttPassword;
+
+    /** the client id for connecting to the MQTT broker; the id of the gateway */
+    private String mqttClientId;
+
+    /** the root topic (namespace); the topics of a device are placed below the root and its serial number */
+    private String mqttTopicRoot;
+
+    /** the quality of service to use for communicating to the MQTT broker (see MQTT spec) */
+    private int mqttQos = 1;
+
+    /** the maximum number of publications, which are sent without waiting for the acknowledgement of the broker */
+    private int mqttMaxInflight = 10;
+
+    /** the interval (in ms), after which all state topics are published again, even if unchanged */
+    private long mqttFullRepublishIntervalMs = 10 * 60 * 1000;
+
+    /** true, if the complete state of a device is published as JSON document to its state topic, too */
+    private boolean mqttStateDocumentEnabled;
+
+    /** true, if the MQTT session survives reconnects (clean session = false), with unacknowledged publications stored in files */
+    private boolean mqttPersistentSession;
+
+    /** the directory for storing the unacknowledged publications of a persistent session (default: working directory) */
+    private String mqttPersistenceDirectory;
+
+    /** the polling interval (in ms) of every device */
+    private int pollingIntervalMs = 15000;
+
+    /** the maximum number of received commands per device, which wait for being executed */
+    private int maxPendingCommands = 16;
+
+    /** the configuration of the fleet, which manages the connections to the Indego server */
+    private IndegoFleetConfiguration fleetConfiguration = new IndegoFleetConfiguration();
+
+    /** the bus, to which the fleet publishes the polled states; if null, the fleet uses a bus of its own */
+    private IndegoStateEventBus eventBus;
+
+    /** the configuration of the circuit breakers, which back off the reconnects to the MQTT broker */
+    private IndegoCircuitBreakerConfiguration circuitBreakerConfiguration = new IndegoCircuitBreakerConfiguration();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object clone ()
+    {
+        try {
+            MqttIndegoGatewayConfiguration result = (MqttIndegoGatewayConfiguration) super.clone();
+            result.fleetConfiguration = (IndegoFleetConfiguration) fleetConfiguration.clone();
+            result.circuitBreakerConfiguration =
+                    (IndegoCircuitBreakerConfiguration) circuitBreakerConfiguration.clone();
+            return result;
+        }
+        catch (CloneNotSupportedException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Gets the connection string for the MQTT broker (eg: "tcp://iot.eclipse.org:1883").
+     *
+     * @return the connection string for the MQTT broker (eg: "tcp://iot.eclipse.org:1883")
+     */
+    public String getMqttBroker ()
+    {
+        return mqttBroker;
+    }
+
+    /**
+     * Sets the connection string for the MQTT broker (eg: "tcp://iot.eclipse.org:1883").
+     *
+     * @param mqttBroker the new connection string for the MQTT broker (eg: "tcp://iot.eclipse.org:1883")
+     */
+    public void setMqttBroker (String mqttBroker)
+    {
+        this.mqttBroker = mqttBroker;
+    }
+
+    /**
+     * Gets the username for authenticating against the MQTT broker.
+     *
+     * @return the username for authenticating against the MQTT broker
+     */
+    public String getMqttUsername ()
+    {
+        return mqttUsername;
+    }
+
+    /**
+     * Sets the username for authenticating against the MQTT broker.
+     *
+     * @param mqttUsername the new username for authenticating against the MQTT broker
+     */
+    public void setMqttUsername (String mqttUsername)
+    {
+        this.mqttUsername = mqttUsername;
+    }
+
+    /**
+     * Gets the password for authenticating against the MQTT broker.
+     *
+     * @return the password for authenticating against the MQTT broker
+     */
+    public String getMqttPassword ()
+    {
+        return mqttPassword;
+    }
+
+    /**
+     * Sets the password for authenticating against the MQTT broker.
+     *
+     * @param mqttPassword the new password for authenticating against the MQTT broker
+     */
+    public void setMqttPassword (String mqttPassword)
+    {
+        this.mqttPassword = mqttPassword;
+    }
+
+    /**
+     * Gets the client id for connecting to the MQTT broker; the id of the gateway.
+     *
+     * @return the client id for connecting to the MQTT broker; the id of the gateway
+     */
+    public String getMqttClientId ()
+    {
+        return mqttClientId;
+    }
+
+    /**
+     * Sets the client id for connecting to the MQTT broker; the id of the gateway.
+     *
+     * @param mqttClientId the new client id for connecting to the MQTT broker; the id of the gateway
+     */
+    public void setMqttClientId (String mqttClientId)
+    {
+        this.mqttClientId = mqttClientId;
+    }
+
+    /**
+     * Gets the root topic (namespace); the topics of a device are placed below the root and its serial number.
+     *
+     * @return the root topic (namespace); the topics of a device are placed below the root and its serial number
+     */
+    public String getMqttTopicRoot ()
+    {
+        return mqttTopicRoot;
+    }
+
+    /**
+     * Sets the root topic (namespace); the topics of a device are placed below the root and its serial number.
+     * If the root does not have an ending "/", this is added.
+     *
+     * @param mqttTopicRoot the new root topic (namespace); the topics of a device are placed below the root and its serial number
+     */
+    public void setMqttTopicRoot (String mqttTopicRoot)
+    {
+        if ( !mqttTopicRoot.endsWith("/") ) {
+            mqttTopicRoot = mqttTopicRoot + "/";
+        }
+        this.mqttTopicRoot = mqttTopicRoot;
+    }
+
+    /**
+     * Gets the quality of service to use for communicating to the MQTT broker (see MQTT spec).
+     *
+     * @return the quality of service to use for communicating to the MQTT broker (see MQTT spec)
+     */
+    public int getMqttQos ()
+    {
+        return mqttQos;
+    }
+
+    /**
+     * Sets the quality of service to use for communicating to the MQTT broker (see MQTT spec).
+     *
+     * @param mqttQos the new quality of service to use for communicating to the MQTT broker (see MQTT spec)
+     */
+    public void setMqttQos (int mqttQos)
+    {
+        this.mqttQos = mqttQos;
+    }
+
+    /**
+     * Gets the maximum number of publications, which are sent without waiting for the acknowledgement of the broker.
+     *
+     * @return the maximum number of publications, which are sent without waiting for the acknowledgement of the broker
+     */
+    public int getMqttMaxInflight ()
+    {
+        return mqttMaxInflight;
+    }
+
+    /**
+     * Sets the maximum number of publications, which are sent without waiting for the acknowledgement of the broker.
+     *
+     * @param mqttMaxInflight the new maximum number of publications, which are sent without waiting for the acknowledgement of the broker
+     */
+    public void setMqttMaxInflight (int mqttMaxInflight)
+    {
+        this.mqttMaxInflight = mqttMaxInflight;
+    }
+
+    /**
+     * Gets the interval (in ms), after which all state topics are published again, even if unchanged.
+     *
+     * @return the interval (in ms), after which all state topics are published again, even if unchanged
+     */
+    public long getMqttFullRepublishIntervalMs ()
+    {
+        return mqttFullRepublishIntervalMs;
+    }
+
+    /**
+     * Sets the interval (in ms), after which all state topics are published again, even if unchanged.
+     *
+     * @param mqttFullRepublishIntervalMs the new interval (in ms), after which all state topics are published again, even if unchanged
+     */
+    public void setMqttFullRepublishIntervalMs (long mqttFullRepublishIntervalMs)
+    {
+        this.mqttFullRepublishIntervalMs = mqttFullRepublishIntervalMs;
+    }
+
+    /**
+     * Gets the flag, if the complete state of a device is published as JSON document to its state topic, too.
+     *
+     * @return true, if the complete state of a device is published as JSON document to its state topic, too
+     */
+    public boolean isMqttStateDocumentEnabled ()
+    {
+        return mqttStateDocumentEnabled;
+    }
+
+    /**
+     * Sets the flag, if the complete state of a device is published as JSON document to its state topic, too.
+     *
+     * @param mqttStateDocumentEnabled true, if the complete state of a device should be published as JSON document to its state topic, too
+     */
+    public void setMqttStateDocumentEnabled (boolean mqttStateDocumentEnabled)
+    {
+        this.mqttStateDocumentEnabled = mqttStateDocumentEnabled;
+    }
+
+    /**
+     * Gets the flag, if the MQTT session survives reconnects (clean session = false).
+     *
+     * @return true, if the MQTT session survives reconnects
+     */
+    public boolean isMqttPersistentSession ()
+    {
+        return mqttPersistentSession;
+    }
+
+    /**
+     * Sets the flag, if the MQTT session survives reconnects (clean session = false). The broker
+     * keeps the subscription then, and the unacknowledged publications are stored in files and
+     * sent again after reconnecting. After resuming a session, only the changed state topics are
+     * published.
+     *
+     * @param mqttPersistentSession true, if the MQTT session should survive reconnects
+     */
+    public void setMqttPersistentSession (boolean mqttPersistentSession)
+    {
+        this.mqttPersistentSession = mqttPersistentSession;
+    }
+
+    /**
+     * Gets the directory for storing the unacknowledged publications of a persistent session.
+     *
+     * @return the directory; null, if the working directory is used
+     */
+    public String getMqttPersistenceDirectory ()
+    {
+        return mqttPersistenceDirectory;
+    }
+
+    /**
+     * Sets the directory for storing the unacknowledged publications of a persistent session.
+     *
+     * @param mqttPersistenceDirectory the new directory; null, if the working directory should be used
+     */
+    public void setMqttPersistenceDirectory (String mqttPersistenceDirectory)
+    {
+        this.mqttPersistenceDirectory = mqttPersistenceDirectory;
+    }
+
+    /**
+     * Gets the polling interval (in ms) of every device.
+     *
+     * @return the polling interval (in ms) of every device
+     */
+    public int getPollingIntervalMs ()
+    {
+        return pollingIntervalMs;
+    }
+
+    /**
+     * Sets the polling interval (in ms) of every device.
+     *
+     * @param pollingIntervalMs the new polling interval (in ms) of every device
+     */
+    public void setPollingIntervalMs (int pollingIntervalMs)
+    {
+        this.pollingIntervalMs = pollingIntervalMs;
+    }
+
+    /**
+     * Gets the maximum number of received commands per device, which wait for being executed.
+     *
+     * @return the maximum number of received commands per device, which wait for being executed
+     */
+    public int getMaxPendingCommands ()
+    {
+        return maxPendingCommands;
+    }
+
+    /**
+     * Sets the maximum number of received commands per device, which wait for being executed.
+     *
+     * @param maxPendingCommands the new maximum number of received commands per device, which wait for being executed
+     */
+    public void setMaxPendingCommands (int maxPendingCommands)
+    {
+        this.maxPendingCommands = maxPendingCommands;
+    }
+
+    /**
+     * Gets the configuration of the fleet, which manages the connections to the Indego server.
+     *
+     * @return the configuration of the fleet, which manages the connections to the Indego server
+     */
+    public IndegoFleetConfiguration getFleetConfiguration ()
+    {
+        return fleetConfiguration;
+    }
+
+    /**
+     * Sets the configuration of the fleet, which manages the connections to the Indego server.
+     *
+     * @param fleetConfiguration the new configuration of the fleet, which manages the connections to the Indego server
+     */
+    public void setFleetConfiguration (IndegoFleetConfiguration fleetConfiguration)
+    {
+        this.fleetConfiguration = fleetConfiguration;
+    }
+
+    /**
+     * Gets the bus, to which the fleet publishes the polled states; if null, the fleet uses a bus of its own.
+     *
+     * @return the bus, to which the fleet publishes the polled states
+     */
+    public IndegoStateEventBus getEventBus ()
+    {
+        return eventBus;
+    }
+
+    /**
+     * Sets the bus, to which the fleet publishes the polled states. The account ids are used as ids
+     * of the devices on the bus, so other sinks can subscribe to the changes of single devices.
+     *
+     * @param eventBus the new bus; if null, the fleet uses a bus of its own
+     */
+    public void setEventBus (IndegoStateEventBus eventBus)
+    {
+        this.eventBus = eventBus;
+    }
+
+    /**
+     * Gets the configuration of the circuit breakers, which back off the reconnects to the MQTT broker.
+     *
+     * @return the configuration of the circuit breakers
+     */
+    public IndegoCircuitBreakerConfiguration getCircuitBreakerConfiguration ()
+    {
+        return circuitBreakerConfiguration;
+    }
+
+    /**
+     * Sets the configuration of the circuit breakers, which back off the reconnects to the MQTT broker
+     * and the restarts of the publisher thread. The requests to the Indego server are guarded by the
+     * circuit breakers of the fleet (see {@link IndegoFleetConfiguration#getCircuitBreakerConfiguration()}).
+     *
+     * @param circuitBreakerConfiguration the new configuration of the circuit breakers
+     */
+    public void setCircuitBreakerConfiguration (IndegoCircuitBreakerConfiguration circuitBreakerConfiguration)
+    {
+        this.circuitBreakerConfiguration = circuitBreakerConfiguration;
+    }
+
+}
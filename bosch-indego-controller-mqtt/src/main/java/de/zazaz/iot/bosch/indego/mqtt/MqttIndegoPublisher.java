@@ -0,0 +1,344 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego.mqtt;
+
+import static de.zazaz.iot.bosch.indego.mqtt.MqttIndegoAdapter.*;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.MqttPersistenceException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import de.zazaz.iot.bosch.indego.DeviceStateInformation;
+import de.zazaz.iot.bosch.indego.DeviceStatus;
+import de.zazaz.iot.bosch.indego.IndegoCodecs;
+
+/**
+ * Publishes the state of Indego devices to the topics of an MQTT broker. This is shared by
+ * {@link MqttIndegoAdapter} and {@link MqttIndegoGateway}.
+ * <p>
+ * Retained state topics are only published, if their value changed (see
+ * {@link #clearPublishedValues()}). Up to a given number of publications are sent without waiting
+ * for the acknowledgement of the broker (see {@link #awaitPendingDeliveries(int)}).
+ * <p>
+ * Instances are not thread safe; they have to be used by a single thread.
+ */
+class MqttIndegoPublisher {
+
+    /** the time (in ms) to wait for the completion of an MQTT operation (connect, delivery, ...) */
+    static final long MQTT_COMPLETION_TIMEOUT_MS = 30 * 1000;
+
+    /** the logger */
+    private static final Logger LOG = LogManager.getLogger(MqttIndegoPublisher.class);
+
+    /** the writer for the state document, which is cached by the shared codecs */
+    private static final ObjectWriter STATE_DOCUMENT_WRITER =
+            IndegoCodecs.getDefault().getWriter(MqttIndegoStateDocument.class);
+
+    /** the retainment flag for the data topics */
+    private static final boolean RETAINMENT = true;
+
+    /** the quality of service to use for publishing */
+    private final int qos;
+
+    /** the maximum number of publications, which are sent without waiting for the acknowledgement of the broker */
+    private final int maxInflight;
+
+    /** true, if the complete state is published as JSON document to the state topic, too */
+    private final boolean stateDocumentEnabled;
+
+    /** the last published values of the retained state topics (by full topic) */
+    private final Map<String, String> publishedValues = new HashMap<>();
+
+    /** the publications, which are not acknowledged by the broker yet (oldest first) */
+    private final ArrayDeque<IMqttDeliveryToken> pendingDeliveries = new ArrayDeque<>();
+
+    /**
+     * @param qos_ the quality of service to use for publishing
+     * @param maxInflight_ the maximum number of publications, which are sent without waiting for
+     *      the acknowledgement of the broker
+     * @param stateDocumentEnabled_ true, if the complete state is published as JSON document to the
+     *      state topic, too
+     */
+    MqttIndegoPublisher (int qos_, int maxInflight_, boolean stateDocumentEnabled_)
+    {
+        qos = qos_;
+        maxInflight = maxInflight_;
+        stateDocumentEnabled = stateDocumentEnabled_;
+    }
+
+    /**
+     * Forgets the published values, so all state topics are published again. This has to be called
+     * after (re-)connecting to the broker, since the broker may have lost the retained values.
+     */
+    void clearPublishedValues ()
+    {
+        publishedValues.clear();
+    }
+
+    /**
+     * Forgets the published values of the topics below the given prefix.
+     * 
+     * @param topicPrefix_ the prefix of the topics
+     */
+    void clearPublishedValues (String topicPrefix_)
+    {
+        publishedValues.keySet().removeIf(topic -> topic.startsWith(topicPrefix_));
+    }
+
+    /**
+     * Forgets the unacknowledged publications; this has to be called, when the connection is closed.
+     */
+    void clearPendingDeliveries ()
+    {
+        pendingDeliveries.clear();
+    }
+
+    /**
+     * Publishes the state of a connected device.
+     * 
+     * @param mqttClient_ the connection to use
+     * @param topicPrefix_ the prefix of the topics of the device
+     * @param state_ the Indego state to write out
+     * @throws MqttPersistenceException
+     * @throws MqttException
+     */
+    void pushStateOnline (MqttAsyncClient mqttClient_, String topicPrefix_, DeviceStateInformation state_)
+            throws MqttPersistenceException, MqttException
+    {
+        DeviceStatus status = DeviceStatus.decodeStatusCode(state_.getState());
+
+        int stateLevel;
+        switch ( status.getAssociatedCommand() ) {
+        case MOW:
+            stateLevel = 2;
+            break;
+        case PAUSE:
+            stateLevel = 1;
+            break;
+        case RETURN:
+            stateLevel = 0;
+            break;
+        default:
+            stateLevel = -1;
+            break;
+        }
+        if ( state_.getError() != 0 ) {
+            stateLevel = -1;
+        }
+
+        publish(mqttClient_, topicPrefix_ + MQTT_TOPIC_ONLINE, true, true);
+        publish(mqttClient_, topicPrefix_ + MQTT_TOPIC_STATE_CODE, status.getCode(), RETAINMENT);
+        publish(mqttClient_, topicPrefix_ + MQTT_TOPIC_STATE_MESSAGE, status.getMessage(), RETAINMENT);
+        publish(mqttClient_, topicPrefix_ + MQTT_TOPIC_ERROR_CODE, state_.getError(), RETAINMENT);
+        publish(mqttClient_, topicPrefix_ + MQTT_TOPIC_STATE_LEVEL, stateLevel, RETAINMENT);
+        publish(mqttClient_, topicPrefix_ + MQTT_TOPIC_MOWED_PERCENTAGE, state_.getMowed(), RETAINMENT);
+        publish(mqttClient_, topicPrefix_ + MQTT_TOPIC_MAP_SVG_CACHE_TS, state_.getMapSvgCacheTimestamp(), RETAINMENT);
+        publish(mqttClient_, topicPrefix_ + MQTT_TOPIC_MAP_UPDATE_AVAILABLE, state_.isMapUpdateAvailable(), RETAINMENT);
+        publish(mqttClient_, topicPrefix_ + MQTT_TOPIC_MOWED_TS, state_.getMowedTimestamp(), RETAINMENT);
+        publish(mqttClient_, topicPrefix_ + MQTT_TOPIC_MOW_MODE, state_.getMowMode(), RETAINMENT);
+        publish(mqttClient_, topicPrefix_ + MQTT_TOPIC_RUNTIME_TOTAL_OPERATE_MINS, state_.getRuntime().getTotal().getOperate(),
+                RETAINMENT);
+        publish(mqttClient_, topicPrefix_ + MQTT_TOPIC_RUNTIME_TOTAL_CHARGE_MINS, state_.getRuntime().getTotal().getCharge(),
+                RETAINMENT);
+        publish(mqttClient_, topicPrefix_ + MQTT_TOPIC_RUNTIME_SESSION_OPERATE_MINS, state_.getRuntime().getSession().getOperate(),
+                RETAINMENT);
+        publish(mqttClient_, topicPrefix_ + MQTT_TOPIC_RUNTIME_SESSION_CHARGE_MINS, state_.getRuntime().getSession().getCharge(),
+                RETAINMENT);
+        publishStateDocument(mqttClient_, topicPrefix_, MqttIndegoStateDocument.online(state_, status, stateLevel));
+    }
+
+    /**
+     * Marks a device as offline.
+     * 
+     * @param mqttClient_ the connection to use
+     * @param topicPrefix_ the prefix of the topics of the device
+     * @throws MqttPersistenceException
+     * @throws MqttException
+     */
+    void pushStateOffline (MqttAsyncClient mqttClient_, String topicPrefix_) throws MqttPersistenceException, MqttException
+    {
+        publish(mqttClient_, topicPrefix_ + MQTT_TOPIC_ONLINE, false, true);
+        publish(mqttClient_, topicPrefix_ + MQTT_TOPIC_STATE_CODE, 0, RETAINMENT);
+        publish(mqttClient_, topicPrefix_ + MQTT_TOPIC_STATE_MESSAGE, "", RETAINMENT);
+        publish(mqttClient_, topicPrefix_ + MQTT_TOPIC_ERROR_CODE, 0, RETAINMENT);
+        publish(mqttClient_, topicPrefix_ + MQTT_TOPIC_STATE_LEVEL, -2, RETAINMENT);
+        publish(mqttClient_, topicPrefix_ + MQTT_TOPIC_MOWED_PERCENTAGE, 0, RETAINMENT);
+        publish(mqttClient_, topicPrefix_ + MQTT_TOPIC_MAP_SVG_CACHE_TS, 0, RETAINMENT);
+        publish(mqttClient_, topicPrefix_ + MQTT_TOPIC_MAP_UPDATE_AVAILABLE, false, RETAINMENT);
+        publish(mqttClient_, topicPrefix_ + MQTT_TOPIC_MOWED_TS, 0, RETAINMENT);
+        publish(mqttClient_, topicPrefix_ + MQTT_TOPIC_RUNTIME_TOTAL_OPERATE_MINS, 0, RETAINMENT);
+        publish(mqttClient_, topicPrefix_ + MQTT_TOPIC_RUNTIME_TOTAL_CHARGE_MINS, 0, RETAINMENT);
+        publish(mqttClient_, topicPrefix_ + MQTT_TOPIC_RUNTIME_SESSION_OPERATE_MINS, 0, RETAINMENT);
+        publish(mqttClient_, topicPrefix_ + MQTT_TOPIC_RUNTIME_SESSION_CHARGE_MINS, 0, RETAINMENT);
+        publishStateDocument(mqttClient_, topicPrefix_, MqttIndegoStateDocument.offline());
+    }
+
+    /**
+     * Clears the command topic of a device, after the command was executed.
+     * 
+     * @param mqttClient_ the connection to use
+     * @param topicPrefix_ the prefix of the topics of the device
+     * @throws MqttPersistenceException
+     * @throws MqttException
+     */
+    void clearCommand (MqttAsyncClient mqttClient_, String topicPrefix_) throws MqttPersistenceException, MqttException
+    {
+        publish(mqttClient_, topicPrefix_ + MQTT_TOPIC_COMMAND, "", true);
+    }
+
+    /**
+     * Publishes the complete state as JSON document to the state topic, if enabled.
+     * 
+     * @param mqttClient_ the connection to use
+     * @param topicPrefix_ the prefix of the topics of the device
+     * @param document_ the document to publish
+     * @throws MqttPersistenceException
+     * @throws MqttException
+     */
+    private void publishStateDocument (MqttAsyncClient mqttClient_, String topicPrefix_, MqttIndegoStateDocument document_)
+            throws MqttPersistenceException, MqttException
+    {
+        if ( !stateDocumentEnabled ) {
+            return;
+        }
+        String json;
+        try {
+            json = STATE_DOCUMENT_WRITER.writeValueAsString(document_);
+        }
+        catch (JsonProcessingException ex) {
+            LOG.error("Was not able to serialize the state document", ex);
+            return;
+        }
+        publish(mqttClient_, topicPrefix_ + MQTT_TOPIC_STATE_DOCUMENT, json, RETAINMENT);
+    }
+
+    /**
+     * Publishes a single topic on the MQTT broker
+     * 
+     * @param mqttClient_ the broker connection
+     * @param topic_ the topic to publish
+     * @param data_ the data to publish
+     * @param retained_ if the data should be retained
+     * @throws MqttPersistenceException
+     * @throws MqttException
+     */
+    void publish (MqttAsyncClient mqttClient_, String topic_, boolean data_, boolean retained_)
+            throws MqttPersistenceException, MqttException
+    {
+        publish(mqttClient_, topic_, data_ ? "1" : "0", retained_);
+    }
+
+    /**
+     * Publishes a single topic on the MQTT broker
+     * 
+     * @param mqttClient_ the broker connection
+     * @param topic_ the topic to publish
+     * @param data_ the data to publish
+     * @param retained_ if the data should be retained
+     * @throws MqttPersistenceException
+     * @throws MqttException
+     */
+    private void publish (MqttAsyncClient mqttClient_, String topic_, int data_, boolean retained_)
+            throws MqttPersistenceException, MqttException
+    {
+        publish(mqttClient_, topic_, Integer.toString(data_), retained_);
+    }
+
+    /**
+     * Publishes a single topic on the MQTT broker
+     * 
+     * @param mqttClient_ the broker connection
+     * @param topic_ the topic to publish
+     * @param data_ the data to publish
+     * @param retained_ if the data should be retained
+     * @throws MqttPersistenceException
+     * @throws MqttException
+     */
+    private void publish (MqttAsyncClient mqttClient_, String topic_, long data_, boolean retained_)
+            throws MqttPersistenceException, MqttException
+    {
+        publish(mqttClient_, topic_, Long.toString(data_), retained_);
+    }
+
+    /**
+     * Publishes a single topic on the MQTT broker. A retained value is skipped, if it was
+     * published already.
+     * 
+     * @param mqttClient_ the broker connection
+     * @param topic_ the topic to publish
+     * @param data_ the data to publish
+     * @param retained_ if the data should be retained
+     * @throws MqttPersistenceException
+     * @throws MqttException
+     */
+    private void publish (MqttAsyncClient mqttClient_, String topic_, String data_, boolean retained_)
+            throws MqttPersistenceException, MqttException
+    {
+        // The command topic is written by other clients, so we don't know its current value
+        boolean tracked = retained_ && !topic_.endsWith(MQTT_TOPIC_COMMAND);
+        if ( tracked && data_.equals(publishedValues.get(topic_)) ) {
+            return;
+        }
+        if ( LOG.isDebugEnabled() ) {
+            LOG.debug(String.format("Publishing '%s' to topic '%s' (retained = %s)", data_, topic_, retained_));
+        }
+
+        // Limit the number of unacknowledged publications
+        awaitPendingDeliveries(maxInflight - 1);
+
+        MqttMessage msg = new MqttMessage(data_.getBytes());
+        msg.setQos(qos);
+        msg.setRetained(retained_);
+        pendingDeliveries.add(mqttClient_.publish(topic_, msg));
+        if ( tracked ) {
+            publishedValues.put(topic_, data_);
+        }
+    }
+
+    /**
+     * Waits, until the broker acknowledged the pending publications (starting with the oldest one).
+     * 
+     * @param maxPending_ the number of publications, which may stay pending
+     * @throws MqttException if a publication failed or was not acknowledged in time
+     */
+    void awaitPendingDeliveries (int maxPending_) throws MqttException
+    {
+        while ( pendingDeliveries.size() > Math.max(0, maxPending_) ) {
+            IMqttDeliveryToken token = pendingDeliveries.peek();
+            try {
+                token.waitForCompletion(MQTT_COMPLETION_TIMEOUT_MS);
+            }
+            catch (MqttException ex) {
+                pendingDeliveries.clear();
+                throw ex;
+            }
+            pendingDeliveries.remove();
+        }
+    }
+
+}
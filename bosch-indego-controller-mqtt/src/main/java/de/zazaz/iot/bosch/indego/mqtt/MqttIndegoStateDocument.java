@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.zazaz.iot.bosch.indego.mqtt;
+
+import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.annotation.JsonSetter;
+
+import de.zazaz.iot.bosch.indego.DeviceCommand;
+import de.zazaz.iot.bosch.indego.DeviceStateInformation;
+import de.zazaz.iot.bosch.indego.DeviceStatus;
+
+/**
+ * The complete state of the device, which is published as a single JSON document to the state
+ * topic (see {@link MqttIndegoAdapter#MQTT_TOPIC_STATE_DOCUMENT}). In contrast to the per-field
+ * topics, a consumer gets a consistent view of the device with a single message.
+ */
+@JsonPropertyOrder({ "online", "stateLevel", "status", "device" })
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MqttIndegoStateDocument {
+
+    /**
+     * The decoded device status.
+     */
+    @JsonPropertyOrder({ "code", "message", "command" })
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Status {
+
+        /** the status code */
+        private int code;
+
+        /** the message of the status */
+        private String message;
+
+        /** the command, which is associated with the status */
+        private DeviceCommand command;
+
+        @JsonGetter("code")
+        public int getCode ()
+        {
+            return code;
+        }
+
+        @JsonSetter("code")
+        public void setCode (int code_)
+        {
+            code = code_;
+        }
+
+        @JsonGetter("message")
+        public String getMessage ()
+        {
+            return message;
+        }
+
+        @JsonSetter("message")
+        public void setMessage (String message_)
+        {
+            message = message_;
+        }
+
+        @JsonGetter("command")
+        public DeviceCommand getCommand ()
+        {
+            return command;
+        }
+
+        @JsonSetter("command")
+        public void setCommand (DeviceCommand command_)
+        {
+            command = command_;
+        }
+
+    }
+
+    /** true, if the device is connected */
+    private boolean online;
+
+    /** the state level (see {@link MqttIndegoAdapter#MQTT_TOPIC_STATE_LEVEL}) */
+    private int stateLevel;
+
+    /** the decoded device status; null, if offline */
+    private Status status;
+
+    /** the raw device state; null, if offline */
+    private DeviceStateInformation device;
+
+    /**
+     * Creates the document for a connected device.
+     * 
+     * @param state_ the device state
+     * @param status_ the decoded device status
+     * @param stateLevel_ the state level
+     * @return the document
+     */
+    public static MqttIndegoStateDocument online (DeviceStateInformation state_, DeviceStatus status_, int stateLevel_)
+    {
+        Status status = new Status();
+        status.setCode(status_.getCode());
+        status.setMessage(status_.getMessage());
+        status.setCommand(status_.getAssociatedCommand());
+
+        MqttIndegoStateDocument result = new MqttIndegoStateDocument();
+        result.setOnline(true);
+        result.setStateLevel(stateLevel_);
+        result.setStatus(status);
+        result.setDevice(state_);
+        return result;
+    }
+
+    /**
+     * Creates the document for a disconnected device.
+     * 
+     * @return the document
+     */
+    public static MqttIndegoStateDocument offline ()
+    {
+        MqttIndegoStateDocument result = new MqttIndegoStateDocument();
+        result.setOnline(false);
+        result.setStateLevel(-2);
+        return result;
+    }
+
+    @JsonGetter("online")
+    public boolean isOnline ()
+    {
+        return online;
+    }
+
+    @JsonSetter("online")
+    public void setOnline (boolean online_)
+    {
+        online = online_;
+    }
+
+    @JsonGetter("stateLevel")
+    public int getStateLevel ()
+    {
+        return stateLevel;
+    }
+
+    @JsonSetter("stateLevel")
+    public void setStateLevel (int stateLevel_)
+    {
+        stateLevel = stateLevel_;
+    }
+
+    @JsonGetter("status")
+    public Status getStatus ()
+    {
+        return status;
+    }
+
+    @JsonSetter("status")
+    public void setStatus (Status status_)
+    {
+        status = status_;
+    }
+
+    @JsonGetter("device")
+    public DeviceStateInformation getDevice ()
+    {
+        return device;
+    }
+
+    @JsonSetter("device")
+    public void setDevice (DeviceStateInformation device_)
+    {
+        device = device_;
+    }
+
+}
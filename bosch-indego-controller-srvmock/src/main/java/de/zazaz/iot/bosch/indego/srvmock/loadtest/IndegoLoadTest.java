@@ -0,0 +1,144 @@
+package de.zazaz.iot.bosch.indego.srvmock.loadtest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import io.moquette.BrokerConstants;
+import io.moquette.broker.Server;
+import io.moquette.broker.config.MemoryConfig;
+
+import de.zazaz.iot.bosch.indego.mqtt.MqttIndegoAdapter;
+import de.zazaz.iot.bosch.indego.mqtt.MqttIndegoAdapterConfiguration;
+import de.zazaz.iot.bosch.indego.srvmock.IndegoServerMock;
+import de.zazaz.iot.bosch.indego.srvmock.service.mockimpl.MockObjects;
+
+/**
+ * A load test, which runs the server mock with many generated devices, an embedded MQTT
+ * broker and one MQTT adapter per device in a single JVM. It reports the cycle overhead of
+ * the adapters (how far the polling deadlines slip), the publish throughput, the CPU load
+ * and the heap usage periodically. Run it with the provided dependencies (embedded Tomcat)
+ * on the classpath, e.g.:
+ * 
+ * <pre>
+ * mvn -pl bosch-indego-controller-srvmock exec:java -Dexec.classpathScope=compile \
+ *     -Dexec.mainClass=de.zazaz.iot.bosch.indego.srvmock.loadtest.IndegoLoadTest \
+ *     -Dexec.args="--devices 2000 --interval 10000 --duration 300"
+ * </pre>
+ */
+public class IndegoLoadTest {
+
+    private static final String TOPIC_ROOT = "indego/";
+
+    public static void main (String[] args) throws Exception
+    {
+        Options options = new Options();
+        options.addOption(Option.builder("n").longOpt("devices").hasArg().desc("The number of devices (default: 1000)").build());
+        options.addOption(Option.builder("i").longOpt("interval").hasArg().desc("The polling interval in ms (default: 10000)").build());
+        options.addOption(Option.builder("t").longOpt("duration").hasArg().desc("The duration of the test in s (default: 300)").build());
+        options.addOption(Option.builder("r").longOpt("report").hasArg().desc("The report interval in s (default: 10)").build());
+        options.addOption(Option.builder().longOpt("http-port").hasArg().desc("The port of the server mock (default: 18080)").build());
+        options.addOption(Option.builder().longOpt("mqtt-port").hasArg().desc("The port of the MQTT broker (default: 11883)").build());
+        options.addOption(Option.builder("q").longOpt("qos").hasArg().desc("The MQTT QoS of the adapters (default: 1)").build());
+        options.addOption(Option.builder().longOpt("full-republish").hasArg()
+                .desc("The interval in ms, after which the adapters publish unchanged topics (default: 0, every poll)").build());
+        options.addOption(Option.builder("?").longOpt("help").desc("Prints this help").build());
+
+        CommandLine cmds;
+        try {
+            CommandLineParser parser = new DefaultParser();
+            cmds = parser.parse(options, args);
+        }
+        catch (ParseException ex) {
+            System.err.println(ex.getMessage());
+            new HelpFormatter().printHelp(IndegoLoadTest.class.getName(), options);
+            System.exit(1);
+            return;
+        }
+        if ( cmds.hasOption("?") ) {
+            new HelpFormatter().printHelp(IndegoLoadTest.class.getName(), options);
+            return;
+        }
+
+        int devices = Integer.parseInt(cmds.getOptionValue("n", "1000"));
+        int intervalMs = Integer.parseInt(cmds.getOptionValue("i", "10000"));
+        long durationS = Long.parseLong(cmds.getOptionValue("t", "300"));
+        long reportS = Long.parseLong(cmds.getOptionValue("r", "10"));
+        int httpPort = Integer.parseInt(cmds.getOptionValue("http-port", "18080"));
+        int mqttPort = Integer.parseInt(cmds.getOptionValue("mqtt-port", "11883"));
+        int qos = Integer.parseInt(cmds.getOptionValue("q", "1"));
+        long fullRepublishMs = Long.parseLong(cmds.getOptionValue("full-republish", "0"));
+
+        System.out.println(String.format("Starting server mock with %d devices on port %d", devices, httpPort));
+        System.setProperty(MockObjects.PROPERTY_GENERATED_DEVICES, Integer.toString(devices));
+        ConfigurableApplicationContext serverMock = SpringApplication.run(IndegoServerMock.class,
+                "--server.port=" + httpPort);
+
+        System.out.println(String.format("Starting MQTT broker on port %d", mqttPort));
+        Properties brokerProperties = new Properties();
+        brokerProperties.setProperty(BrokerConstants.HOST_PROPERTY_NAME, "127.0.0.1");
+        brokerProperties.setProperty(BrokerConstants.PORT_PROPERTY_NAME, Integer.toString(mqttPort));
+        brokerProperties.setProperty(BrokerConstants.WEB_SOCKET_PORT_PROPERTY_NAME, BrokerConstants.DISABLED_PORT_BIND);
+        brokerProperties.setProperty(BrokerConstants.PERSISTENT_STORE_PROPERTY_NAME, "");
+        brokerProperties.setProperty(BrokerConstants.ALLOW_ANONYMOUS_PROPERTY_NAME, "true");
+        // Otherwise the acknowledgements are delayed until the next periodic flush
+        brokerProperties.setProperty(BrokerConstants.IMMEDIATE_BUFFER_FLUSH_PROPERTY_NAME, "true");
+        // The statistics expect the messages of a device in order
+        brokerProperties.setProperty(BrokerConstants.BROKER_INTERCEPTOR_THREAD_POOL_SIZE, "1");
+        LoadTestStatistics statistics = new LoadTestStatistics(TOPIC_ROOT, intervalMs);
+        Server broker = new Server();
+        broker.startServer(new MemoryConfig(brokerProperties), Collections.singletonList(statistics));
+
+        List<MqttIndegoAdapter> adapters = new ArrayList<>(devices);
+        try {
+            System.out.println(String.format("Starting %d adapters within %d ms", devices, intervalMs));
+            for (int i = 0; i < devices; i++) {
+                MqttIndegoAdapterConfiguration config = new MqttIndegoAdapterConfiguration();
+                config.setIndegoBaseUrl("http://127.0.0.1:" + httpPort + "/");
+                config.setIndegoUsername(MockObjects.getGeneratedDeviceUsername(i));
+                config.setIndegoPassword(MockObjects.GENERATED_DEVICE_PASSWORD);
+                config.setMqttBroker("tcp://127.0.0.1:" + mqttPort);
+                config.setMqttClientId("IndegoLoadTest-" + i);
+                config.setMqttUsername("");
+                config.setMqttPassword("");
+                config.setMqttTopicRoot(TOPIC_ROOT + MockObjects.getGeneratedDeviceSerial(i) + "/");
+                config.setMqttQos(qos);
+                config.setPollingIntervalMs(intervalMs);
+                config.setMqttFullRepublishIntervalMs(fullRepublishMs);
+                MqttIndegoAdapter adapter = new MqttIndegoAdapter(config);
+                adapter.startup();
+                adapters.add(adapter);
+                // Spread the start over one interval, like independently started adapters
+                TimeUnit.MICROSECONDS.sleep(intervalMs * 1000L / devices);
+            }
+
+            long endTs = System.currentTimeMillis() + durationS * 1000;
+            statistics.report();
+            while ( System.currentTimeMillis() < endTs ) {
+                TimeUnit.SECONDS.sleep(reportS);
+                System.out.println(statistics.report());
+            }
+        }
+        finally {
+            System.out.println("Shutting down");
+            for (MqttIndegoAdapter adapter : adapters) {
+                adapter.shutdown();
+            }
+            broker.stopServer();
+            serverMock.close();
+        }
+    }
+
+}
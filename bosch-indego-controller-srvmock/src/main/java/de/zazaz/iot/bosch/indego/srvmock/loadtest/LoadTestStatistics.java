@@ -0,0 +1,205 @@
+package de.zazaz.iot.bosch.indego.srvmock.loadtest;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.moquette.interception.AbstractInterceptHandler;
+import io.moquette.interception.messages.InterceptPublishMessage;
+
+import de.zazaz.iot.bosch.indego.mqtt.MqttIndegoAdapter;
+
+/**
+ * Collects the statistics of a load test by intercepting the messages, which are published
+ * by the adapters on the broker. Each adapter publishes the state topics once per poll cycle:
+ * <ul>
+ * <li>the cycle overhead is the time between two state publications of a device minus the
+ * polling interval, i.e. the time used for querying the server and publishing the state;
+ * it grows, when the deadlines of the polling interval slip</li>
+ * <li>the publish duration is the time between the first and the last topic of a cycle</li>
+ * </ul>
+ * Since the adapters only publish changed topics, the cycles can only be tracked, if the
+ * adapters are configured to publish all topics on every poll. The broker has to deliver
+ * the intercepted messages from a single thread, since the per device tracking is not
+ * synchronized.
+ */
+public class LoadTestStatistics extends AbstractInterceptHandler {
+
+    /**
+     * A set of samples (in ms), from which percentiles are calculated.
+     */
+    static class Samples {
+
+        private long[] values = new long[1024];
+
+        private int count;
+
+        synchronized void add (long value)
+        {
+            if ( count == values.length ) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[count++] = value;
+        }
+
+        /**
+         * Returns the sorted samples and resets the set.
+         * 
+         * @return the sorted samples since the last call
+         */
+        synchronized long[] drain ()
+        {
+            long[] result = Arrays.copyOf(values, count);
+            count = 0;
+            Arrays.sort(result);
+            return result;
+        }
+
+        static long percentile (long[] sorted, double percentile)
+        {
+            if ( sorted.length == 0 ) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+        }
+
+        static String format (long[] sorted)
+        {
+            return String.format("n=%d p50=%d p90=%d p99=%d max=%d", sorted.length, percentile(sorted, 50),
+                    percentile(sorted, 90), percentile(sorted, 99), percentile(sorted, 100));
+        }
+
+    }
+
+    /**
+     * The tracking data of a single device.
+     */
+    private static class DeviceTracker {
+
+        /** the time (in ns), when the last cycle was started */
+        private long cycleStartNs;
+
+        /** the time (in ns), when the last state was published */
+        private long lastStateNs;
+
+    }
+
+    /** the topic root, which is used by all adapters (followed by the serial number) */
+    private final String topicRoot;
+
+    /** the polling interval of the adapters */
+    private final long pollingIntervalMs;
+
+    /** the tracking data (by serial number) */
+    private final Map<String, DeviceTracker> devices = new HashMap<>();
+
+    /** the number of intercepted messages */
+    private final AtomicLong publishCount = new AtomicLong();
+
+    /** the number of published device states */
+    private final AtomicLong cycleCount = new AtomicLong();
+
+    private final Samples cycleOverheads = new Samples();
+
+    private final Samples publishDurations = new Samples();
+
+    /** the time (in ns) of the last report */
+    private long lastReportNs = System.nanoTime();
+
+    /** the publish count of the last report */
+    private long lastPublishCount;
+
+    /**
+     * @param topicRoot_ the topic root, which is used by all adapters (followed by the serial number)
+     * @param pollingIntervalMs_ the polling interval of the adapters
+     */
+    public LoadTestStatistics (String topicRoot_, long pollingIntervalMs_)
+    {
+        topicRoot = topicRoot_;
+        pollingIntervalMs = pollingIntervalMs_;
+    }
+
+    @Override
+    public String getID ()
+    {
+        return "indego-load-test";
+    }
+
+    @Override
+    public void onPublish (InterceptPublishMessage msg)
+    {
+        try {
+            long now = System.nanoTime();
+            publishCount.incrementAndGet();
+            String topic = msg.getTopicName();
+            if ( !topic.startsWith(topicRoot) ) {
+                return;
+            }
+            int separator = topic.indexOf('/', topicRoot.length());
+            if ( separator < 0 ) {
+                return;
+            }
+            String serial = topic.substring(topicRoot.length(), separator);
+            String subTopic = topic.substring(separator + 1);
+            DeviceTracker tracker = devices.computeIfAbsent(serial, o -> new DeviceTracker());
+
+            if ( MqttIndegoAdapter.MQTT_TOPIC_ONLINE.equals(subTopic) ) {
+                tracker.cycleStartNs = now;
+            }
+            else if ( MqttIndegoAdapter.MQTT_TOPIC_STATE_CODE.equals(subTopic) ) {
+                cycleCount.incrementAndGet();
+                if ( tracker.lastStateNs != 0 ) {
+                    long periodMs = (now - tracker.lastStateNs) / 1000000;
+                    cycleOverheads.add(Math.max(0, periodMs - pollingIntervalMs));
+                }
+                tracker.lastStateNs = now;
+            }
+            else if ( MqttIndegoAdapter.MQTT_TOPIC_RUNTIME_SESSION_CHARGE_MINS.equals(subTopic)
+                    && tracker.cycleStartNs != 0 ) {
+                publishDurations.add((now - tracker.cycleStartNs) / 1000000);
+                tracker.cycleStartNs = 0;
+            }
+        }
+        finally {
+            // Releases the payload
+            super.onPublish(msg);
+        }
+    }
+
+    /**
+     * Creates a report of the statistics since the last report.
+     * 
+     * @return the report
+     */
+    public synchronized String report ()
+    {
+        long now = System.nanoTime();
+        long publishes = publishCount.get();
+        double seconds = (now - lastReportNs) / 1e9;
+        double publishRate = (publishes - lastPublishCount) / seconds;
+        lastReportNs = now;
+        lastPublishCount = publishes;
+
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        String cpu = os instanceof com.sun.management.OperatingSystemMXBean
+                ? String.format("%.0f%%", ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuLoad() * 100)
+                : String.format("load %.2f", os.getSystemLoadAverage());
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+
+        return String.format("devices=%d cycles=%d publishes/s=%.0f%n" //
+                + "  cycle overhead ms: %s%n" //
+                + "  publish duration ms: %s%n" //
+                + "  cpu=%s heap=%dMB/%dMB threads=%d", //
+                devices.size(), cycleCount.get(), publishRate, //
+                Samples.format(cycleOverheads.drain()), //
+                Samples.format(publishDurations.drain()), //
+                cpu, heap.getUsed() >> 20, heap.getCommitted() >> 20,
+                ManagementFactory.getThreadMXBean().getThreadCount());
+    }
+
+}
@@ -6,4 +6,6 @@ public interface ContextHandlerService {
     
     void deleteContext (String contextId) throws IndegoServiceException;
 
+    IndegoContext getContext (String contextId) throws IndegoServiceException;
+
 }
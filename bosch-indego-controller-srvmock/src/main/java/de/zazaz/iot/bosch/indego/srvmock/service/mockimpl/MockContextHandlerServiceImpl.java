@@ -31,6 +31,14 @@ public class MockContextHandlerServiceImpl implements MockContextHandlerService
             .setContext(null);
     }
 
+    @Override
+    public IndegoContext getContext (String contextId) throws IndegoServiceException
+    {
+        return MockObjects
+            .findIndegoDeviceByContext(contextId)
+            .orElseThrow(() -> new IndegoSecurityException(String.format("Invalid context id: %s", contextId)));
+    }
+
     @Override
     public MockIndegoDevice getDevice (String contextId, String serial) throws IndegoServiceException
     {
@@ -78,7 +78,9 @@ public class MockIndegoDevice implements IndegoContext {
     
     public void setContext (String context)
     {
+        String oldContext = this.context;
         this.context = context;
+        MockObjects.contextChanged(this, oldContext);
     }
 
     public DeviceStateInformation getState ()
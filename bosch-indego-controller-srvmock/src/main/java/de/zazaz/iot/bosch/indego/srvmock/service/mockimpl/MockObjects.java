@@ -1,53 +1,102 @@
 package de.zazaz.iot.bosch.indego.srvmock.service.mockimpl;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 public class MockObjects {
     
+    /** the system property, which specifies the number of additional devices (for load tests) */
+    public static final String PROPERTY_GENERATED_DEVICES = "indego.srvmock.generated-devices";
+    
+    /** the password of the generated devices */
+    public static final String GENERATED_DEVICE_PASSWORD = "loadpass";
+    
     public static final List<MockIndegoDevice> lstDevices = Collections.unmodifiableList(new ArrayList<MockIndegoDevice>() {
         private static final long serialVersionUID = 1L;
         {
             add(new MockIndegoDevice("user1@indego.local", "pass1", "fd5db7a0-f552-4664-bd95-11ffe36df930", "1234567890"));
             add(new MockIndegoDevice("user2@indego.local", "pass2", "69835bae-f1d5-4640-80ed-fedc1d845764", "0987654321"));
+            int generatedDevices = Integer.getInteger(PROPERTY_GENERATED_DEVICES, 0);
+            for (int i = 0; i < generatedDevices; i++) {
+                add(new MockIndegoDevice(getGeneratedDeviceUsername(i), GENERATED_DEVICE_PASSWORD,
+                        UUID.nameUUIDFromBytes(getGeneratedDeviceUsername(i).getBytes(StandardCharsets.UTF_8)).toString(),
+                        getGeneratedDeviceSerial(i)));
+            }
         }
     });
     
+    private static final Map<String, MockIndegoDevice> devicesByUsername = index(lstDevices, o -> o.getUsername());
+    
+    private static final Map<String, MockIndegoDevice> devicesByUserId = index(lstDevices, o -> o.getUserId());
+    
+    private static final Map<String, MockIndegoDevice> devicesBySerial = index(lstDevices, o -> o.getDeviceSerial());
+    
+    /** the devices by (lower case) context id; this is updated, when a context is assigned to a device */
+    private static final Map<String, MockIndegoDevice> devicesByContext = new ConcurrentHashMap<>();
+    
+    private static Map<String, MockIndegoDevice> index (List<MockIndegoDevice> devices,
+            Function<MockIndegoDevice, String> keyExtractor)
+    {
+        Map<String, MockIndegoDevice> result = new HashMap<>();
+        for (MockIndegoDevice device : devices) {
+            result.put(keyExtractor.apply(device).toLowerCase(), device);
+        }
+        return Collections.unmodifiableMap(result);
+    }
+    
+    public static String getGeneratedDeviceUsername (int index)
+    {
+        return String.format("load%d@indego.local", index);
+    }
+    
+    public static String getGeneratedDeviceSerial (int index)
+    {
+        return String.format("9%09d", index);
+    }
+    
+    static void contextChanged (MockIndegoDevice device, String oldContext)
+    {
+        if ( oldContext != null ) {
+            devicesByContext.remove(oldContext.toLowerCase(), device);
+        }
+        if ( device.getContext() != null ) {
+            devicesByContext.put(device.getContext().toLowerCase(), device);
+        }
+    }
+    
     public static Optional<MockIndegoDevice> findIndegoDeviceByUsernameAndPassword (String username, String password)
     {
-        return lstDevices.stream()
-                .filter(o -> o.getUsername().equalsIgnoreCase(username) && o.getPassword().equals(password))
-                .findFirst();
+        return Optional.ofNullable(devicesByUsername.get(username.toLowerCase()))
+                .filter(o -> o.getPassword().equals(password));
     }
     
     public static Optional<MockIndegoDevice> findIndegoDeviceByUserId (String userId)
     {
-        return lstDevices.stream()
-                .filter(o -> o.getUserId().equalsIgnoreCase(userId))
-                .findFirst();
+        return Optional.ofNullable(devicesByUserId.get(userId.toLowerCase()));
     }
     
     public static Optional<MockIndegoDevice> findIndegoDeviceBySerial (String serial)
     {
-        return lstDevices.stream()
-                .filter(o -> serial.equalsIgnoreCase(o.getDeviceSerial()))
-                .findFirst();
+        return Optional.ofNullable(devicesBySerial.get(serial.toLowerCase()));
     }
     
     public static Optional<MockIndegoDevice> findIndegoDeviceByContext (String context)
     {
-        return lstDevices.stream()
-                .filter(o -> context.equalsIgnoreCase(o.getContext()))
-                .findFirst();
+        return Optional.ofNullable(devicesByContext.get(context.toLowerCase()));
     }
     
     public static Optional<MockIndegoDevice> findIndegoDeviceByContextAndSerial (String context, String serial)
     {
-        return lstDevices.stream()
-                .filter(o -> context.equalsIgnoreCase(o.getContext()) && serial.equalsIgnoreCase(o.getDeviceSerial()))
-                .findFirst();
+        return findIndegoDeviceByContext(context)
+                .filter(o -> serial.equalsIgnoreCase(o.getDeviceSerial()));
     }
 
 }
@@ -68,12 +68,18 @@ public class AuthenticationController extends AbstractController {
     }
     
     @RequestMapping(value = "/check", method = RequestMethod.GET)
-    public ResponseEntity<Void> check (
-            @RequestHeader(IndegoWebConstants.HEADER_AUTHORIZATION) String authorization)
+    @ResponseBody
+    public ResponseEntity<AuthenticationResponse> check (
+            @RequestHeader(IndegoWebConstants.HEADER_AUTHORIZATION) String authorization,
+            @RequestHeader(IndegoWebConstants.HEADER_CONTEXT_ID) String contextId)
                     throws IndegoServiceException
     {
-        // TODO Implement
-        throw new RuntimeException("Not implemented");
+        IndegoContext context = srvContextHandler.getContext(contextId);
+        
+        AuthenticationResponse result = new AuthenticationResponse();
+        result.setContextId(context.getContext());
+        result.setUserId(context.getUserId());
+        return new ResponseEntity<AuthenticationResponse>(result, HttpStatus.OK);
     }
     
 }